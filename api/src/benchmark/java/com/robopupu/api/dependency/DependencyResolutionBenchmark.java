@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * {@link DependencyResolutionBenchmark} measures the time and the allocated bytes per
+ * {@link D#get(Class)} for the single-result resolution path. The scopes use a caching
+ * {@link DependencyProvider} written like the code generated ones. Three cases are measured:
+ * a cache hit in the active scope, a cache hit routed to the application scope, and a miss that
+ * instantiates a prototype dependency in a fresh scope. The allocation is read from
+ * {@code com.sun.management.ThreadMXBean}, so it is reported only on a JVM that supports it.
+ * <p>
+ * Run with {@code java -cp <classes> com.robopupu.api.dependency.DependencyResolutionBenchmark [iterations]}.
+ */
+public final class DependencyResolutionBenchmark {
+
+    private static final int DEFAULT_ITERATIONS = 1000000;
+    private static final int MISS_ITERATIONS = 10000;
+
+    private static Object sink;
+
+    public static void main(final String[] args) {
+        final int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+
+        D.setAppScope(new BenchmarkAppScope());
+
+        final BenchmarkOwner owner = new BenchmarkOwner();
+        D.activateScope(owner);
+
+        for (int i = 0; i < iterations / 4; i++) {
+            sink = D.get(Service.class);
+            sink = D.get(Repository.class);
+        }
+
+        measure("hit (routed to app scope)", iterations, new Runnable() {
+            @Override
+            public void run() {
+                sink = D.get(Service.class);
+            }
+        });
+
+        measure("hit (active scope)", iterations, new Runnable() {
+            @Override
+            public void run() {
+                sink = D.get(Repository.class);
+            }
+        });
+
+        long missNanos = 0;
+        long missBytes = 0;
+
+        for (int i = 0; i < MISS_ITERATIONS; i++) {
+            final BenchmarkScope scope = new BenchmarkScope();
+            final long startBytes = getAllocatedBytes();
+            final long startTime = System.nanoTime();
+            sink = D.get(scope, Widget.class);
+            missNanos += System.nanoTime() - startTime;
+            missBytes += getAllocatedBytes() - startBytes;
+        }
+
+        report("miss (new prototype)", MISS_ITERATIONS, missNanos, missBytes);
+        D.disposeScope(owner);
+    }
+
+    private static void measure(final String name, final int iterations, final Runnable operation) {
+        final long startBytes = getAllocatedBytes();
+        final long startTime = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+
+        final long nanos = System.nanoTime() - startTime;
+        report(name, iterations, nanos, getAllocatedBytes() - startBytes);
+    }
+
+    private static void report(final String name, final int iterations, final long nanos, final long bytes) {
+        final String allocation = (bytes >= 0) ? String.format("%.2f bytes/get", (double) bytes / iterations) : "allocation n/a";
+        System.out.println(String.format("%-28s %8.1f ns/get  %s", name, (double) nanos / iterations, allocation));
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread.
+     *
+     * @return The number of bytes, or {@code Long.MIN_VALUE} if it cannot be measured.
+     */
+    private static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return Long.MIN_VALUE;
+    }
+
+    interface Service {
+    }
+
+    interface Repository {
+    }
+
+    static final class ServiceImpl implements Service {
+    }
+
+    static final class RepositoryImpl implements Repository {
+    }
+
+    static final class Widget {
+    }
+
+    static final class BenchmarkAppScope extends DependencyScope {
+
+        @Override
+        public boolean isAppScope() {
+            return true;
+        }
+
+        @Override
+        protected DependencyProvider createDependencyProvider() {
+            final DependencyProvider provider = new BenchmarkAppScopeProvider();
+            provider.setScope(this);
+            return provider;
+        }
+    }
+
+    static final class BenchmarkScope extends DependencyScope {
+
+        @Override
+        protected DependencyProvider createDependencyProvider() {
+            final DependencyProvider provider = new BenchmarkScopeProvider();
+            provider.setScope(this);
+            return provider;
+        }
+    }
+
+    static final class BenchmarkOwner implements DependencyScopeOwner {
+
+        private final BenchmarkScope scope = new BenchmarkScope();
+
+        @Override
+        public DependencyScope getOwnedScope() {
+            return scope;
+        }
+
+        @Override
+        public Class<? extends DependencyScope> getScopeClass() {
+            return BenchmarkScope.class;
+        }
+    }
+
+    /**
+     * {@link BenchmarkAppScopeProvider} provides a scoped {@link Service} like a code generated
+     * {@link DependencyProvider}.
+     */
+    static final class BenchmarkAppScopeProvider extends DependencyProvider {
+
+        BenchmarkAppScopeProvider() {
+            super(1);
+        }
+
+        @Override
+        protected boolean isCaching() {
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected <T> T getDependency(final Class<T> dependencyType) {
+            if (dependencyType.isAssignableFrom(ServiceImpl.class)) {
+                Service dependency = (Service) getScoped(0);
+
+                if (dependency == null) {
+                    dependency = setScoped(0, new ServiceImpl());
+                }
+                return (T) resolved(dependencyType, dependency);
+            }
+            return null;
+        }
+
+        @Override
+        protected <T> void getDependencies(final DependencyQuery<T> query) {
+            final T dependency = getDependency(query.getDependencyType());
+
+            if (dependency != null) {
+                query.add(dependency);
+            }
+        }
+    }
+
+    /**
+     * {@link BenchmarkScopeProvider} provides a scoped {@link Repository} and a prototype
+     * {@link Widget} like a code generated {@link DependencyProvider}.
+     */
+    static final class BenchmarkScopeProvider extends DependencyProvider {
+
+        BenchmarkScopeProvider() {
+            super(1);
+        }
+
+        @Override
+        protected boolean isCaching() {
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected <T> T getDependency(final Class<T> dependencyType) {
+            if (dependencyType.isAssignableFrom(RepositoryImpl.class)) {
+                Repository dependency = (Repository) getScoped(0);
+
+                if (dependency == null) {
+                    dependency = setScoped(0, new RepositoryImpl());
+                }
+                return (T) resolved(dependencyType, dependency);
+            }
+
+            if (dependencyType.isAssignableFrom(Widget.class)) {
+                return (T) new Widget();
+            }
+            return null;
+        }
+
+        @Override
+        protected <T> void getDependencies(final DependencyQuery<T> query) {
+            final T dependency = getDependency(query.getDependencyType());
+
+            if (dependency != null) {
+                query.add(dependency);
+            }
+        }
+    }
+}
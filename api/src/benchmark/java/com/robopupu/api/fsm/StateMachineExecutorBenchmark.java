@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.door.State;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * {@link StateMachineExecutorBenchmark} measures the event throughput of a large population of
+ * {@link DoorMachine}s run by a {@link StateMachineExecutor}. The machines use the flyweight
+ * states and are attached to the executor, so that their {@link Timeout}s would be dispatched by
+ * their shards. Each round toggles every machine between {@link DoorMachine.Locked} and
+ * {@link DoorMachine.Unlocked}, first by posting the events one at a time using the
+ * {@link State.Async} proxies, then using a {@link StateMachineExecutor.Batch}, and finally by
+ * invoking the event methods directly from a single thread for comparison. The final state of
+ * every machine is verified after each round.
+ * <p>
+ * Run with {@code java -Xmx2g -cp <classes> com.robopupu.api.fsm.StateMachineExecutorBenchmark
+ * [machines] [shards] [rounds]}.
+ */
+public final class StateMachineExecutorBenchmark {
+
+    private static final int DEFAULT_MACHINE_COUNT = 1000000;
+    private static final int DEFAULT_ROUND_COUNT = 3;
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int machineCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_MACHINE_COUNT;
+        final int shardCount = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final int roundCount = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_ROUND_COUNT;
+
+        final StateMachineExecutor executor = new StateMachineExecutor(shardCount, StateMachineExecutor.DEFAULT_BATCH_SIZE);
+        final DoorMachine[] machines = new DoorMachine[machineCount];
+        final State.Async[] proxies = new State.Async[machineCount];
+
+        long startTime = System.nanoTime();
+
+        for (int i = 0; i < machineCount; i++) {
+            machines[i] = new DoorMachine();
+            machines[i].setFlyweightEnabled(true);
+            proxies[i] = new State.Async(executor, machines[i]);
+            machines[i].start();
+        }
+
+        System.out.println(String.format("created %d machines in %.0f ms using %d shards", machineCount,
+                (System.nanoTime() - startTime) / 1e6, shardCount));
+
+        for (int round = 0; round < roundCount; round++) {
+            startTime = System.nanoTime();
+
+            for (final State.Async proxy : proxies) {
+                proxy.lock();
+            }
+
+            for (final State.Async proxy : proxies) {
+                proxy.unlock();
+            }
+
+            awaitShards(executor, machines);
+            final double postedRate = getRate(2L * machineCount, startTime);
+            verify(machines, DoorMachine.Unlocked.class);
+
+            final StateMachineExecutor.Batch batch = executor.newBatch();
+            final State.Async[] batchProxies = new State.Async[machineCount];
+
+            for (int i = 0; i < machineCount; i++) {
+                batchProxies[i] = new State.Async(batch, machines[i]);
+            }
+
+            startTime = System.nanoTime();
+
+            for (final State.Async proxy : batchProxies) {
+                proxy.lock();
+            }
+
+            for (final State.Async proxy : batchProxies) {
+                proxy.unlock();
+            }
+
+            batch.flush();
+            awaitShards(executor, machines);
+            final double batchedRate = getRate(2L * machineCount, startTime);
+            verify(machines, DoorMachine.Unlocked.class);
+
+            startTime = System.nanoTime();
+
+            for (final DoorMachine machine : machines) {
+                machine.getDoor().lock();
+            }
+
+            for (final DoorMachine machine : machines) {
+                machine.getDoor().unlock();
+            }
+
+            final double directRate = getRate(2L * machineCount, startTime);
+            verify(machines, DoorMachine.Unlocked.class);
+
+            System.out.println(String.format("round %d: posted %.2f M events/s, batched %.2f M events/s, direct single-thread %.2f M events/s",
+                    round, postedRate, batchedRate, directRate));
+        }
+
+        executor.stopAndWait();
+    }
+
+    /**
+     * Waits until each shard has dispatched the tasks posted to it before this method was invoked.
+     *
+     * @param executor A {@link StateMachineExecutor}.
+     * @param machines The {@link DoorMachine}s run by the {@link StateMachineExecutor}.
+     * @throws InterruptedException If the waiting was interrupted.
+     */
+    private static void awaitShards(final StateMachineExecutor executor, final DoorMachine[] machines) throws InterruptedException {
+        final boolean[] awaited = new boolean[executor.getShardCount()];
+        final CountDownLatch latch = new CountDownLatch(awaited.length);
+        int awaitedCount = 0;
+
+        for (int i = 0; i < machines.length && awaitedCount < awaited.length; i++) {
+            final int index = executor.getShardIndex(machines[i]);
+
+            if (!awaited[index]) {
+                awaited[index] = true;
+                awaitedCount++;
+                executor.execute(machines[i], new Runnable() {
+                    @Override
+                    public void run() {
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+
+        for (int i = awaitedCount; i < awaited.length; i++) {
+            latch.countDown();
+        }
+        latch.await();
+    }
+
+    private static double getRate(final long eventCount, final long startTime) {
+        return eventCount * 1e3 / (System.nanoTime() - startTime);
+    }
+
+    private static void verify(final DoorMachine[] machines, final Class<?> stateClass) {
+        for (final DoorMachine machine : machines) {
+            if (machine.getCurrentState().getClass() != stateClass) {
+                throw new IllegalStateException("Unexpected state: " + machine.getCurrentState());
+            }
+        }
+    }
+}
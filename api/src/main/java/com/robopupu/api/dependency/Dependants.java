@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * {@link Dependants} is a container used by a {@link DependencyScope} for caching the dependants
+ * that have requested dependencies. A dependant is stored only once regardless how many times it
+ * is added, because the dependants are compared by their identity. The dependants are indexed by
+ * their concrete types, so that finding a dependant of a requested type depends only on the number
+ * of distinct dependant types. By default the dependants are weakly referenced, so that a dependant
+ * that is not used elsewhere does not stay reachable through a long-lived {@link DependencyScope}.
+ */
+public class Dependants {
+
+    /*
+     * The cached dependants indexed by their concrete types.
+     */
+    private final HashMap<Class<?>, ArrayList<Entry>> entries;
+
+    /*
+     * A {@link ReferenceQueue} for the entries of garbage collected dependants.
+     */
+    private final ReferenceQueue<Object> queue;
+
+    /*
+     * A {@code boolean} flag specifying if the dependants are weakly referenced.
+     */
+    private final boolean weak;
+
+    /*
+     * A counter used for ordering the dependants by the time they were added.
+     */
+    private long sequence;
+
+    /*
+     * The number of the cached dependants.
+     */
+    private int size;
+
+    public Dependants() {
+        this(true);
+    }
+
+    /**
+     * Constructs a new instance of {@link Dependants}.
+     *
+     * @param weak A {@code boolean} flag specifying if the dependants are weakly referenced.
+     */
+    public Dependants(final boolean weak) {
+        this.weak = weak;
+        entries = new HashMap<>();
+        queue = weak ? new ReferenceQueue<>() : null;
+    }
+
+    /**
+     * Tests if the dependants are weakly referenced.
+     *
+     * @return A {@code boolean} value.
+     */
+    public boolean isWeak() {
+        return weak;
+    }
+
+    /**
+     * Gets the number of the cached dependants.
+     *
+     * @return The number as an {@code int}.
+     */
+    public int size() {
+        expunge();
+        return size;
+    }
+
+    /**
+     * Tests if there are no cached dependants.
+     *
+     * @return A {@code boolean} value.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Adds the given dependant. If the dependant is already added, it becomes the most recently
+     * added dependant.
+     *
+     * @param dependant The dependant {@link Object}. May not be {@code null}.
+     * @return A {@code boolean} value indicating if the dependant was not already added.
+     */
+    public boolean add(final Object dependant) {
+        expunge();
+
+        final Class<?> type = dependant.getClass();
+        ArrayList<Entry> typeEntries = entries.get(type);
+
+        if (typeEntries == null) {
+            typeEntries = new ArrayList<>(1);
+            entries.put(type, typeEntries);
+        } else {
+            for (int i = typeEntries.size() - 1; i >= 0; i--) {
+                final Entry entry = typeEntries.get(i);
+
+                if (entry.get() == dependant) {
+                    typeEntries.remove(i);
+                    typeEntries.add(entry);
+                    entry.sequence = ++sequence;
+                    return false;
+                }
+            }
+        }
+
+        typeEntries.add(new Entry(dependant, weak ? queue : null, ++sequence));
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the given dependant.
+     *
+     * @param dependant The dependant {@link Object}.
+     * @return A {@code boolean} value indicating if the dependant was removed.
+     */
+    public boolean remove(final Object dependant) {
+        if (dependant == null) {
+            return false;
+        }
+
+        expunge();
+
+        final ArrayList<Entry> typeEntries = entries.get(dependant.getClass());
+
+        if (typeEntries != null) {
+            for (int i = typeEntries.size() - 1; i >= 0; i--) {
+                final Entry entry = typeEntries.get(i);
+
+                if (entry.get() == dependant) {
+                    removeEntry(typeEntries, i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes and returns the most recently added dependant that is an instance of the specified type.
+     *
+     * @param dependencyType A {@link Class} specifying the type.
+     * @param <T>            A type parameter for casting the dependant to expected type.
+     * @return The found dependant or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T remove(final Class<T> dependencyType) {
+        expunge();
+
+        while (size > 0) {
+            ArrayList<Entry> foundEntries = null;
+            Entry foundEntry = null;
+
+            for (final Class<?> type : entries.keySet()) {
+                if (dependencyType.isAssignableFrom(type)) {
+                    final ArrayList<Entry> typeEntries = entries.get(type);
+                    final Entry entry = typeEntries.get(typeEntries.size() - 1);
+
+                    if (foundEntry == null || entry.sequence > foundEntry.sequence) {
+                        foundEntries = typeEntries;
+                        foundEntry = entry;
+                    }
+                }
+            }
+
+            if (foundEntry == null) {
+                break;
+            }
+
+            final Object dependant = foundEntry.get();
+            removeEntry(foundEntries, foundEntries.size() - 1);
+
+            // A weakly referenced dependant may have been collected before its entry is enqueued
+
+            if (dependant != null) {
+                return (T) dependant;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes all the dependants.
+     */
+    public void clear() {
+        for (final ArrayList<Entry> typeEntries : entries.values()) {
+            for (final Entry entry : typeEntries) {
+                entry.clear();
+            }
+        }
+        entries.clear();
+        size = 0;
+
+        if (weak) {
+            while (queue.poll() != null) {
+                // Drain the queue of the cleared entries
+            }
+        }
+    }
+
+    /**
+     * Removes the entry at the given index. The entries are kept in the order in which they were
+     * added, so that the most recently added entry is always the last one.
+     *
+     * @param typeEntries The {@link ArrayList} of entries for a dependant type.
+     * @param index       The index of the entry to be removed.
+     */
+    private void removeEntry(final ArrayList<Entry> typeEntries, final int index) {
+        final Entry entry = typeEntries.remove(index);
+        entry.clear();
+        size--;
+
+        if (typeEntries.isEmpty()) {
+            entries.remove(entry.type);
+        }
+    }
+
+    /**
+     * Removes the entries of weakly referenced dependants that have been garbage collected.
+     */
+    private void expunge() {
+        if (weak) {
+            Reference<?> reference;
+
+            while ((reference = queue.poll()) != null) {
+                final Entry entry = (Entry) reference;
+                final ArrayList<Entry> typeEntries = entries.get(entry.type);
+
+                if (typeEntries != null && typeEntries.remove(entry)) {
+                    size--;
+
+                    if (typeEntries.isEmpty()) {
+                        entries.remove(entry.type);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link Entry} holds a reference to a dependant. A strongly referenced dependant is also
+     * held in a field, because the referent of a {@link WeakReference} could be cleared by GC.
+     */
+    private static final class Entry extends WeakReference<Object> {
+
+        final Object dependant;
+        final Class<?> type;
+        long sequence;
+
+        Entry(final Object dependant, final ReferenceQueue<Object> queue, final long sequence) {
+            super(dependant, queue);
+            this.dependant = (queue == null) ? dependant : null;
+            type = dependant.getClass();
+            this.sequence = sequence;
+        }
+    }
+}
@@ -2,36 +2,97 @@ package com.robopupu.api.dependency;
 
 import com.robopupu.api.mvp.View;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * {@link DependenciesCache} is used for saving and restoring {@link DependencyScope}s for
  * their {@link DependencyScopeOwner}s, and for saving and accessing {@link DependencyMap}s using
  * {@link String} based keys. {@link View}s have a dedicated method {@link View#getViewTag()}
  * for providing the key.
+ *
+ * By default the cache is unbounded. A bounded cache evicts the least recently used
+ * {@link DependencyMap}s and saved {@link DependencyScope}s when the number of entries exceeds
+ * the given maximum size. The currently active {@link DependencyScope} and its parent scopes are
+ * never evicted, and an evicted {@link DependencyScope} is disposed. An optional
+ * {@link EvictionListener} is notified about the evicted entries. The hit,
+ * miss, and eviction counts are collected into {@link Statistics} for sizing the cache.
  */
 public class DependenciesCache {
 
-    private final HashMap<String, DependencyMap> dependencyMaps;
-    private final HashMap<String, DependencyScope> savedScopes;
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final Entries<DependencyMap> dependencyMaps;
+    private final Entries<DependencyScope> savedScopes;
+
+    private EvictionListener evictionListener;
 
     public DependenciesCache() {
-        dependencyMaps = new HashMap<>();
-        savedScopes = new HashMap<>();
+        this(UNBOUNDED, UNBOUNDED);
+    }
+
+    /**
+     * Constructs a new instance of bounded {@link DependenciesCache}.
+     *
+     * @param maxDependencyMaps The maximum number of cached {@link DependencyMap}s.
+     * @param maxSavedScopes    The maximum number of saved {@link DependencyScope}s.
+     */
+    public DependenciesCache(final int maxDependencyMaps, final int maxSavedScopes) {
+        dependencyMaps = new Entries<>(maxDependencyMaps);
+        savedScopes = new Entries<>(maxSavedScopes);
+    }
+
+    /**
+     * Sets the {@link EvictionListener} notified about the evicted entries.
+     *
+     * @param listener An {@link EvictionListener}. May be {@code null}.
+     */
+    public void setEvictionListener(final EvictionListener listener) {
+        evictionListener = listener;
+    }
+
+    /**
+     * Sets the maximum number of cached {@link DependencyMap}s. The least recently used
+     * {@link DependencyMap}s are evicted if the cache contains more of them.
+     *
+     * @param maxSize The maximum number as an {@code int}.
+     */
+    public void setMaxDependencyMaps(final int maxSize) {
+        dependencyMaps.setMaxSize(maxSize);
+        evictDependencyMaps();
+    }
+
+    /**
+     * Sets the maximum number of saved {@link DependencyScope}s. The least recently used
+     * {@link DependencyScope}s are evicted if the cache contains more of them.
+     *
+     * @param maxSize The maximum number as an {@code int}.
+     */
+    public void setMaxSavedScopes(final int maxSize) {
+        savedScopes.setMaxSize(maxSize);
+        evictSavedScopes();
     }
 
     public void addDependencies(final String key, final DependencyMap dependences) {
         dependencyMaps.put(key, dependences);
+        evictDependencyMaps();
     }
 
     public DependencyMap addDependencies(final String key) {
-        if (dependencyMaps.containsKey(key)) {
-            return dependencyMaps.get(key);
-        } else {
-            final DependencyMap dependencies = new DependencyMap();
+        DependencyMap dependencies = dependencyMaps.lookUp(key);
+
+        if (dependencies == null) {
+            dependencies = new DependencyMap();
             dependencyMaps.put(key, dependencies);
-            return dependencies;
+            evictDependencyMaps();
         }
+        return dependencies;
     }
 
     public DependencyMap removeDependencies(final String key) {
@@ -39,7 +100,7 @@ public class DependenciesCache {
     }
 
     public DependencyMap getDependencies(final String key) {
-        return dependencyMaps.get(key);
+        return dependencyMaps.lookUp(key);
     }
 
     public boolean hasDependencies(final View view) {
@@ -47,18 +108,16 @@ public class DependenciesCache {
     }
 
     public DependencyMap getDependencies(final View view) {
-        return dependencyMaps.get(view.getViewTag());
+        return dependencyMaps.lookUp(view.getViewTag());
     }
 
     public DependencyMap getDependencies(final View view, final boolean createDependencyMap) {
         final String key = view.getViewTag();
 
-        if (dependencyMaps.containsKey(key)) {
-            return dependencyMaps.get(key);
-        } else if (createDependencyMap) {
+        if (createDependencyMap) {
             return addDependencies(key);
         }
-        return null;
+        return dependencyMaps.lookUp(key);
     }
 
     public DependencyMap removeDependencies(final View view) {
@@ -67,10 +126,11 @@ public class DependenciesCache {
 
     public void saveDependencyScope(final DependencyScopeOwner owner, final DependencyScope scope) {
         savedScopes.put(owner.getScopeClass().getName(), scope);
+        evictSavedScopes();
     }
 
     public DependencyScope getDependencyScope(final DependencyScopeOwner owner) {
-        return savedScopes.get(owner.getScopeClass().getName());
+        return savedScopes.lookUp(owner.getScopeClass().getName());
     }
 
     public DependencyScope removeDependencyScope(final DependencyScopeOwner owner) {
@@ -89,4 +149,223 @@ public class DependenciesCache {
         }
         D.disposeScope(owner);
     }
+
+    /**
+     * Gets a snapshot of the {@link Statistics} of the cached {@link DependencyMap}s.
+     *
+     * @return A {@link Statistics}.
+     */
+    public Statistics getDependencyMapStatistics() {
+        return dependencyMaps.getStatistics();
+    }
+
+    /**
+     * Gets a snapshot of the {@link Statistics} of the saved {@link DependencyScope}s.
+     *
+     * @return A {@link Statistics}.
+     */
+    public Statistics getSavedScopeStatistics() {
+        return savedScopes.getStatistics();
+    }
+
+    /**
+     * Resets the hit, miss, and eviction counts of this {@link DependenciesCache}.
+     */
+    public void resetStatistics() {
+        dependencyMaps.resetStatistics();
+        savedScopes.resetStatistics();
+    }
+
+    /**
+     * Evicts the least recently used {@link DependencyMap}s that exceed the maximum size.
+     */
+    private void evictDependencyMaps() {
+        Map.Entry<String, DependencyMap> entry;
+
+        while ((entry = dependencyMaps.evictEldest(Collections.emptySet())) != null) {
+            if (evictionListener != null) {
+                evictionListener.onDependenciesEvicted(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used {@link DependencyScope}s that exceed the maximum size. The
+     * currently active {@link DependencyScope} and its parent scopes are in use, so they are
+     * skipped and the next least recently used {@link DependencyScope}s are evicted instead.
+     * Only the {@link DependencyScope}s that have actually been disposed are reported to
+     * the {@link EvictionListener}.
+     */
+    private void evictSavedScopes() {
+        final List<DependencyScope> activeScopes = new ArrayList<>();
+
+        for (DependencyScope scope = D.getActiveScope(); scope != null; scope = scope.getParentScope()) {
+            activeScopes.add(scope);
+        }
+
+        Map.Entry<String, DependencyScope> entry;
+
+        while ((entry = savedScopes.evictEldest(activeScopes)) != null) {
+            final DependencyScope scope = entry.getValue();
+
+            Dependency.disposeScope(scope);
+
+            if (evictionListener != null && scope.isDisposed()) {
+                evictionListener.onDependencyScopeEvicted(entry.getKey(), scope);
+            }
+        }
+    }
+
+    /**
+     * {@link EvictionListener} is notified when a bounded {@link DependenciesCache} evicts
+     * its least recently used entries.
+     */
+    public interface EvictionListener {
+
+        /**
+         * Invoked when the given {@link DependencyMap} has been evicted.
+         *
+         * @param key          The key of the {@link DependencyMap} as a {@link String}.
+         * @param dependencies The evicted {@link DependencyMap}.
+         */
+        void onDependenciesEvicted(String key, DependencyMap dependencies);
+
+        /**
+         * Invoked when the given {@link DependencyScope} has been evicted and disposed.
+         *
+         * @param key   The key of the {@link DependencyScope} as a {@link String}.
+         * @param scope The evicted {@link DependencyScope}.
+         */
+        void onDependencyScopeEvicted(String key, DependencyScope scope);
+    }
+
+    /**
+     * {@link Statistics} is a snapshot of the hit, miss, and eviction counts of the entries
+     * of a {@link DependenciesCache}. Only the lookups that return an entry or fail to find one
+     * are counted as hits and misses.
+     */
+    public static final class Statistics {
+
+        private final int size;
+        private final int maxSize;
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+
+        Statistics(final int size, final int maxSize, final long hitCount, final long missCount, final long evictionCount) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * Gets the ratio of hits to all the counted lookups.
+         *
+         * @return The ratio as a {@code double}, or {@code 0} if there have been no lookups.
+         */
+        public double getHitRate() {
+            final long lookupCount = hitCount + missCount;
+            return (lookupCount == 0) ? 0 : (double) hitCount / lookupCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics[size=" + size + ", maxSize=" + maxSize + ", hits=" + hitCount
+                    + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+        }
+    }
+
+    /**
+     * {@link Entries} extends {@link LinkedHashMap} in access order to keep the least recently
+     * used entry first, and counts the lookups and evictions of the entries.
+     */
+    private static final class Entries<V> extends LinkedHashMap<String, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private int maxSize;
+        private long hitCount;
+        private long missCount;
+        private long evictionCount;
+
+        Entries(final int maxSize) {
+            super(16, 0.75f, true);
+            setMaxSize(maxSize);
+        }
+
+        void setMaxSize(final int maxSize) {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("Parameter maxSize must be positive");
+            }
+            this.maxSize = maxSize;
+        }
+
+        V lookUp(final String key) {
+            final V value = get(key);
+
+            if (value != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+            return value;
+        }
+
+        /**
+         * Removes the least recently used entry if this {@link Entries} exceeds its maximum size.
+         *
+         * @param retained A {@link Collection} of the values that must not be evicted.
+         * @return The evicted entry as a {@link Map.Entry}, or {@code null} if no entry was evicted.
+         */
+        Map.Entry<String, V> evictEldest(final Collection<?> retained) {
+            if (size() > maxSize) {
+                final Iterator<Map.Entry<String, V>> iterator = entrySet().iterator();
+
+                while (iterator.hasNext()) {
+                    final Map.Entry<String, V> entry = iterator.next();
+                    final V value = entry.getValue();
+
+                    if (!retained.contains(value)) {
+                        final String key = entry.getKey();
+                        iterator.remove();
+                        evictionCount++;
+                        return new AbstractMap.SimpleImmutableEntry<>(key, value);
+                    }
+                }
+            }
+            return null;
+        }
+
+        Statistics getStatistics() {
+            return new Statistics(size(), maxSize, hitCount, missCount, evictionCount);
+        }
+
+        void resetStatistics() {
+            hitCount = 0;
+            missCount = 0;
+            evictionCount = 0;
+        }
+    }
 }
@@ -18,7 +18,11 @@ package com.robopupu.api.dependency;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@link Dependency} implements a manager that is used to manage {@link DependencyScope}
@@ -40,9 +44,34 @@ public class Dependency {
     private final static HashMap<String, DependencyScope> dependencyScopes = new HashMap<>();
 
     /**
-     * The currently active {@link DependencyScope}.
+     * The currently active {@link DependencyScope}. The field is volatile, because the active
+     * {@link DependencyScope} is read by the threads instantiating dependencies in the background.
      */
-    private static DependencyScope activeScope = null;
+    private static volatile DependencyScope activeScope = null;
+
+    /**
+     * A version number of the routing tables of {@link DependencyScope}s. The version is incremented
+     * whenever a scope is activated, parented, or disposed, and the scope is stamped with the new
+     * version to invalidate the routing tables of the scopes that search it for dependencies.
+     */
+    private static final AtomicInteger routingVersion = new AtomicInteger();
+
+    /**
+     * An {@link ExecutorService} used for instantiating the eager dependencies.
+     */
+    private static ExecutorService eagerExecutor;
+
+    /**
+     * An optional {@link DependencyProfile} used for recording and replaying the resolving of
+     * dependencies.
+     */
+    private static volatile DependencyProfile profile;
+
+    /**
+     * A {@link ScopeRegistry} used for looking up and instantiating {@link DependencyScope}s and
+     * their {@link DependencyProvider}s.
+     */
+    private static ScopeRegistry scopeRegistry;
 
     /**
      * Adds the {@link DependencyScope} owner by the given {@link DependencyScopeOwner} to
@@ -93,13 +122,11 @@ public class Dependency {
         T scope = (T) dependencyScopes.get(scopeClassName);
 
         if (scope == null) {
-            Class<? extends DependencyScope> scopeClass = null;
+            final Class<? extends DependencyScope> scopeClass = getScopeRegistry().getScopeClass(scopeClassName);
 
-            try {
-                scopeClass = (Class<? extends DependencyScope>)Class.forName(scopeClassName);
-            } catch (ClassNotFoundException e) {
+            if (scopeClass != null) {
+                scope = getScope(scopeClass, createInstance);
             }
-            scope = getScope(scopeClass, createInstance);
         }
         return scope;
     }
@@ -137,12 +164,12 @@ public class Dependency {
         DependencyScope scope  = dependencyScopes.get(id);
 
         if (scope == null && createInstance) {
-            try {
-                scope = scopeClass.newInstance();
-                dependencyScopes.put(id, scope);
-            } catch (Exception e) {
+            scope = getScopeRegistry().newScope(scopeClass);
+
+            if (scope == null) {
                 throw new IllegalStateException("Failed to instantiate scope: " + id);
             }
+            dependencyScopes.put(id, scope);
         }
         return (T)scope;
     }
@@ -155,6 +182,100 @@ public class Dependency {
         return appScope;
     }
 
+    /**
+     * Gets the {@link ExecutorService} used for instantiating the eager dependencies of
+     * an activated {@link DependencyScope}. By default a {@link ForkJoinPool} is used.
+     *
+     * @return An {@link ExecutorService}.
+     */
+    public static synchronized ExecutorService getEagerExecutor() {
+        if (eagerExecutor == null) {
+            eagerExecutor = new ForkJoinPool();
+        }
+        return eagerExecutor;
+    }
+
+    /**
+     * Sets the {@link ExecutorService} used for instantiating the eager dependencies of
+     * an activated {@link DependencyScope}.
+     *
+     * @param executor An {@link ExecutorService}.
+     */
+    public static synchronized void setEagerExecutor(final ExecutorService executor) {
+        eagerExecutor = executor;
+    }
+
+    /**
+     * Gets the {@link ScopeRegistry} used for looking up and instantiating {@link DependencyScope}s
+     * and their {@link DependencyProvider}s. By default the chain of the {@link ScopeRegistry}s
+     * generated by the annotation processor for the compiled modules is used if they exist.
+     *
+     * @return A {@link ScopeRegistry}. May not return {@code null}.
+     */
+    public static synchronized ScopeRegistry getScopeRegistry() {
+        if (scopeRegistry == null) {
+            scopeRegistry = ScopeRegistry.load();
+        }
+        return scopeRegistry;
+    }
+
+    /**
+     * Sets the {@link ScopeRegistry} used for looking up and instantiating {@link DependencyScope}s
+     * and their {@link DependencyProvider}s.
+     *
+     * @param registry A {@link ScopeRegistry}. May not be {@code null}.
+     */
+    public static synchronized void setScopeRegistry(final ScopeRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Parameter registry may not be null");
+        }
+        scopeRegistry = registry;
+    }
+
+    /**
+     * Gets the {@link DependencyProfile} used for recording and replaying the resolving of
+     * dependencies.
+     *
+     * @return A {@link DependencyProfile}. May return {@code null}.
+     */
+    public static DependencyProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Sets the {@link DependencyProfile} used for recording and replaying the resolving of
+     * dependencies. The dependencies recorded in the given {@link DependencyProfile} for
+     * a {@link DependencyScope} are resolved in the background when the {@link DependencyScope}
+     * is activated. The {@link DependencyProfile} should be set before the application
+     * {@link DependencyScope} is set.
+     *
+     * @param profile A {@link DependencyProfile}. May be {@code null} to disable profiling.
+     */
+    public static void setProfile(final DependencyProfile profile) {
+        Dependency.profile = profile;
+    }
+
+    /**
+     * Resolves the dependencies recorded for the given {@link DependencyScope} in the current
+     * {@link DependencyProfile} in the background.
+     *
+     * @param scope A {@link DependencyScope}.
+     */
+    private static void replayProfile(final DependencyScope scope) {
+        if (profile != null) {
+            final List<Class<?>> dependencyTypes = profile.getDependencyTypes(scope);
+
+            if (!dependencyTypes.isEmpty()) {
+                getEagerExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        scope.createDependencies(dependencyTypes);
+                    }
+                });
+            }
+        }
+    }
+
     /**
      * Gets the {@link DependencyScope} that is set to be currently the active one. Note that only
      * one {@link DependencyScope} can be active at any given. If no {@link DependencyScope} is
@@ -163,8 +284,10 @@ public class Dependency {
      * @return A {@link DependencyScope}. May not return {@code null}.
      */
     public static DependencyScope getActiveScope() {
-        if (activeScope != null) {
-            return activeScope;
+        final DependencyScope scope = activeScope;
+
+        if (scope != null) {
+            return scope;
         }
         return appScope;
     }
@@ -178,13 +301,17 @@ public class Dependency {
             throw new IllegalArgumentException("Parameter scope may not be null");
         }
         Dependency.appScope = appScope;
+        appScope.invalidateRoutes();
+        replayProfile(appScope);
     }
 
     /**
      * Activates a {@link DependencyScope} for the given {@link DependencyScopeOwner}.
      * The active {@link DependencyScope} is used for resolving dependencies. Setting the currently
      * active {@link DependencyScope} is not thread safe. Therefore this method can be invoked
-     * only from the Main UI thread.
+     * only from the Main UI thread. The eager dependencies of the activated
+     * {@link DependencyScope} are instantiated in the background using
+     * {@link Dependency#getEagerExecutor()}, and this method does not wait for them.
      *
      * @param owner A {@link DependencyScopeOwner}.
      */
@@ -200,8 +327,11 @@ public class Dependency {
 
         if (activeScope != scope && !scope.isAppScope()) {
             activeScope = scope;
-            activeScope.initialize();
-            activeScope.onActivated(owner);
+            scope.initialize();
+            scope.onActivated(owner);
+            scope.invalidateRoutes();
+            scope.createEagerDependencies(getEagerExecutor());
+            replayProfile(scope);
         }
     }
 
@@ -266,6 +396,26 @@ public class Dependency {
             if (scope == activeScope) {
                 activeScope = null;
             }
+            scope.invalidateRoutes();
+        }
+    }
+
+    /**
+     * Disposes the given {@link DependencyScope} that is no longer used by any
+     * {@link DependencyScopeOwner}, e.g. a saved scope evicted from a {@link DependenciesCache}.
+     *
+     * @param scope A {@link DependencyScope}.
+     */
+    static void disposeScope(final DependencyScope scope) {
+        if (scope.isDisposable() && !scope.isDisposed()) {
+            if (dependencyScopes.get(scope.getId()) == scope) {
+                dependencyScopes.remove(scope.getId());
+            }
+
+            if (scope == activeScope) {
+                activeScope = null;
+            }
+            scope.dispose();
         }
     }
 
@@ -376,6 +526,79 @@ public class Dependency {
         return scope.getDependency(dependencyType, dependant, false);
     }
 
+    /**
+     * Gets a {@link Lazy} handle to a dependency of the specified type. The dependency is resolved
+     * from the currently active {@link DependencyScope} when the handle is used for the first time.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return A {@link Lazy}.
+     */
+    public static <T> Lazy<T> getLazy(final Class<T> dependencyType) {
+        return getActiveScope().getLazy(dependencyType);
+    }
+
+    /**
+     * Gets a {@link Lazy} handle to a dependency of the specified type. The dependency is resolved
+     * from the given {@link DependencyScope} when the handle is used for the first time.
+     *
+     * @param scope          A {@link DependencyScope}.
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return A {@link Lazy}.
+     */
+    public static <T> Lazy<T> getLazy(final DependencyScope scope, final Class<T> dependencyType) {
+        return scope.getLazy(dependencyType);
+    }
+
+    /**
+     * Gets a {@link Provider} handle to a dependency of the specified type. The dependency is
+     * resolved from the currently active {@link DependencyScope}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return A {@link Provider}.
+     */
+    public static <T> Provider<T> getProvider(final Class<T> dependencyType) {
+        return getActiveScope().getProvider(dependencyType);
+    }
+
+    /**
+     * Gets a {@link Provider} handle to a dependency of the specified type. The dependency is
+     * resolved from the given {@link DependencyScope}.
+     *
+     * @param scope          A {@link DependencyScope}.
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return A {@link Provider}.
+     */
+    public static <T> Provider<T> getProvider(final DependencyScope scope, final Class<T> dependencyType) {
+        return scope.getProvider(dependencyType);
+    }
+
+    /**
+     * Injects the fields of the given target object that are annotated with {@link Inject}. The
+     * dependencies are resolved from the currently active {@link DependencyScope}.
+     *
+     * @param target The target object.
+     * @return A {@code boolean} value indicating if the target had any fields to be injected.
+     */
+    public static boolean inject(final Object target) {
+        return Injectors.inject(getActiveScope(), target);
+    }
+
+    /**
+     * Injects the fields of the given target object that are annotated with {@link Inject}. The
+     * dependencies are resolved from the given {@link DependencyScope}.
+     *
+     * @param scope  A {@link DependencyScope}.
+     * @param target The target object.
+     * @return A {@code boolean} value indicating if the target had any fields to be injected.
+     */
+    public static boolean inject(final DependencyScope scope, final Object target) {
+        return Injectors.inject(scope, target);
+    }
+
 ////////////////
 
     /**
@@ -486,6 +709,62 @@ public class Dependency {
         return query.getFoundDependencies();
     }
 
+    /**
+     * Gets an {@link Iterable} over all dependencies of the specified type. The dependencies are
+     * requested lazily from the currently active {@link DependencyScope} while they are iterated.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return An {@link Iterable} providing {@link DependencyIterator}s.
+     */
+    public static <T> Iterable<T> iterateAll(final Class<T> dependencyType) {
+        return iterateAll(getActiveScope(), dependencyType, null);
+    }
+
+    /**
+     * Gets an {@link Iterable} over all dependencies of the specified type. The dependencies are
+     * requested lazily from the given {@link DependencyScope} while they are iterated.
+     *
+     * @param scope          A {@link DependencyScope}.
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return An {@link Iterable} providing {@link DependencyIterator}s.
+     */
+    public static <T> Iterable<T> iterateAll(final DependencyScope scope, final Class<T> dependencyType) {
+        return iterateAll(scope, dependencyType, null);
+    }
+
+    /**
+     * Gets an {@link Iterable} over all dependencies of the specified type. The dependencies are
+     * requested lazily from the given {@link DependencyScope} while they are iterated. Each
+     * {@link Iterator} returned by the {@link Iterable} starts a new search.
+     *
+     * @param scope          A {@link DependencyScope}.
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param dependant      The object requesting the requested. This parameter is required when the requesting object
+     *                       is also a requested within the object graph represented by the active {@link Dependency}.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return An {@link Iterable} providing {@link DependencyIterator}s.
+     */
+    public static <T> Iterable<T> iterateAll(final DependencyScope scope, final Class<T> dependencyType, final Object dependant) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new DependencyIterator<>(scope, dependencyType, dependant);
+            }
+        };
+    }
+
+    /**
+     * Gets a new version of the routing tables of {@link DependencyScope}s. The version is used for
+     * stamping a {@link DependencyScope} that has been changed.
+     *
+     * @return The version as an {@code int}.
+     */
+    static int nextRoutingVersion() {
+        return routingVersion.incrementAndGet();
+    }
+
     /**
      * This method resets the application level {@link DependencyScope} to {@code null}.
      * This method is added only for testing purposes.
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link DependencyIterator} iterates all the dependencies of a given type that are available
+ * from a {@link DependencyScope}. The dependencies are searched lazily scope by scope in the same
+ * order as {@link Dependency#getAll(DependencyScope, Class)} searches them: the cached dependencies,
+ * the dependants, the dependencies provided by the {@link DependencyScope} and its
+ * {@link DependencyProvider}, the parent {@link DependencyScope}s, and the application scope.
+ * A dependency is provided only when the iteration reaches it, so a consumer that stops
+ * iterating does not cause the remaining dependencies to be created.
+ *
+ * @param <T> The type of the iterated dependencies.
+ */
+public class DependencyIterator<T> implements Iterator<T> {
+
+    private static final int PHASE_CACHED = 0;
+    private static final int PHASE_DEPENDANT = 1;
+    private static final int PHASE_OWN = 2;
+    private static final int PHASE_PROVIDED = 3;
+    private static final int PHASE_DONE = 4;
+
+    private final ArrayList<T> cachedDependencies;
+    private final Class<T> dependencyType;
+
+    /*
+     * The dependencies returned by this {@link DependencyIterator} indexed by their concrete types.
+     */
+    private final HashMap<Class<?>, T> foundDependencies;
+
+    private int cachedIndex;
+    private int matchCount;
+    private T nextDependency;
+    private int phase;
+    private DependencyScope scope;
+
+    /**
+     * Constructs a new instance of {@link DependencyIterator}.
+     *
+     * @param scope          The {@link DependencyScope} the search is started from.
+     * @param dependencyType A {@link Class} specifying the type of the iterated dependencies.
+     * @param dependant      The requesting object. May be {@code null}.
+     */
+    public DependencyIterator(final DependencyScope scope, final Class<T> dependencyType, final Object dependant) {
+        this.scope = scope;
+        this.dependencyType = dependencyType;
+        cachedDependencies = new ArrayList<>();
+        foundDependencies = new HashMap<>();
+        phase = (scope != null) ? PHASE_CACHED : PHASE_DONE;
+
+        if (scope != null && dependant != null) {
+            scope.addDependant(dependant);
+        }
+
+        if (scope != null) {
+            scope.getCachedDependencies(dependencyType, cachedDependencies);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextDependency == null) {
+            nextDependency = findNext();
+        }
+        return nextDependency != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final T dependency = nextDependency;
+        nextDependency = null;
+        return dependency;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private T findNext() {
+        while (phase != PHASE_DONE) {
+            T dependency = null;
+
+            switch (phase) {
+                case PHASE_CACHED: {
+                    if (cachedIndex < cachedDependencies.size()) {
+                        dependency = cachedDependencies.get(cachedIndex++);
+
+                        if (foundDependencies.containsKey(dependency.getClass())) {
+                            continue;
+                        }
+                        foundDependencies.put(dependency.getClass(), dependency);
+                    } else {
+                        phase = PHASE_DEPENDANT;
+                    }
+                    break;
+                }
+                case PHASE_DEPENDANT: {
+                    dependency = scope.takeDependant(dependencyType);
+
+                    if (dependency != null) {
+                        if (foundDependencies.containsKey(dependency.getClass())) {
+                            dependency = null;
+                        } else {
+                            foundDependencies.put(dependency.getClass(), dependency);
+                        }
+                    }
+                    phase = scope.isMocked() ? PHASE_DONE : PHASE_OWN;
+                    break;
+                }
+                case PHASE_OWN: {
+                    dependency = scope.getOwnDependency(newQuery());
+                    phase = PHASE_PROVIDED;
+                    break;
+                }
+                case PHASE_PROVIDED: {
+
+                    // The providers already iterated are skipped by their count, because a provider
+                    // method does not declare the concrete type of its dependency
+
+                    final DependencyQuery<T> query = new DependencyQuery<>(dependencyType,
+                            DependencyQuery.Mode.FIRST_MATCHING_DEPENDENCY, foundDependencies, matchCount);
+                    dependency = scope.getNextProvidedDependency(query);
+                    matchCount = query.getMatchCount();
+
+                    if (dependency == null) {
+                        phase = PHASE_DONE;
+                    }
+                    break;
+                }
+            }
+
+            if (phase == PHASE_DONE) {
+                nextScope();
+            }
+
+            if (dependency != null) {
+                return dependency;
+            }
+        }
+        return null;
+    }
+
+    private DependencyQuery<T> newQuery() {
+        return new DependencyQuery<>(dependencyType, DependencyQuery.Mode.FIRST_MATCHING_DEPENDENCY, foundDependencies);
+    }
+
+    private void nextScope() {
+        scope = scope.getNextScope();
+        cachedIndex = 0;
+        matchCount = 0;
+        cachedDependencies.clear();
+
+        if (scope != null) {
+            scope.getCachedDependencies(dependencyType, cachedDependencies);
+            phase = PHASE_CACHED;
+        }
+    }
+}
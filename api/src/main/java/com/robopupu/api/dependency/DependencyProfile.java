@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link DependencyProfile} records the order in which the dependencies are resolved by
+ * the {@link DependencyScope}s and the time spent for resolving them. The recorded profile can
+ * be written to a file and read on the next launch of the application, so that the recorded
+ * dependencies can be resolved in the background as soon as a {@link DependencyScope} is
+ * activated. A {@link DependencyProfile} is taken into use by invoking
+ * {@link Dependency#setProfile(DependencyProfile)}.
+ */
+public class DependencyProfile {
+
+    private static final int MAGIC = 0x52504450;
+    private static final int VERSION = 1;
+
+    /*
+     * The recorded resolving times in microseconds of the dependency types in the order they were
+     * resolved. The types are indexed by the class names of the {@link DependencyScope}s.
+     */
+    private final HashMap<String, LinkedHashMap<String, Integer>> scopes;
+
+    public DependencyProfile() {
+        scopes = new HashMap<>();
+    }
+
+    /**
+     * Reads a {@link DependencyProfile} from the given {@link File}. If the file does not exist or
+     * it is not a valid profile, an empty {@link DependencyProfile} is returned.
+     *
+     * @param file A {@link File}.
+     * @return A {@link DependencyProfile}.
+     */
+    public static DependencyProfile read(final File file) {
+        final DependencyProfile profile = new DependencyProfile();
+
+        if (file.exists()) {
+            DataInputStream input = null;
+
+            try {
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+                if (input.readInt() == MAGIC && input.readInt() == VERSION) {
+                    final int scopeCount = input.readInt();
+
+                    for (int i = 0; i < scopeCount; i++) {
+                        final String scopeClassName = input.readUTF();
+                        final int typeCount = input.readInt();
+                        final LinkedHashMap<String, Integer> types = new LinkedHashMap<>();
+
+                        for (int j = 0; j < typeCount; j++) {
+                            final String typeName = input.readUTF();
+                            types.put(typeName, input.readInt());
+                        }
+                        profile.scopes.put(scopeClassName, types);
+                    }
+                }
+            } catch (IOException e) {
+                profile.scopes.clear();
+            } finally {
+                close(input);
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Writes this {@link DependencyProfile} to the given {@link File}.
+     *
+     * @param file A {@link File}.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void write(final File file) throws IOException {
+        DataOutputStream output = null;
+
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(scopes.size());
+
+            for (final Map.Entry<String, LinkedHashMap<String, Integer>> scope : scopes.entrySet()) {
+                output.writeUTF(scope.getKey());
+                output.writeInt(scope.getValue().size());
+
+                for (final Map.Entry<String, Integer> type : scope.getValue().entrySet()) {
+                    output.writeUTF(type.getKey());
+                    output.writeInt(type.getValue());
+                }
+            }
+        } finally {
+            close(output);
+        }
+    }
+
+    /**
+     * Records that a dependency of the specified type was resolved by the given
+     * {@link DependencyScope}. Only the first resolving of a type is recorded.
+     *
+     * @param scope          The resolving {@link DependencyScope}.
+     * @param dependencyType A {@link Class} specifying the type of the resolved dependency.
+     * @param nanos          The time spent for resolving in nanoseconds.
+     */
+    public synchronized void record(final DependencyScope scope, final Class<?> dependencyType, final long nanos) {
+        final String scopeClassName = scope.getClass().getName();
+        LinkedHashMap<String, Integer> types = scopes.get(scopeClassName);
+
+        if (types == null) {
+            types = new LinkedHashMap<>();
+            scopes.put(scopeClassName, types);
+        }
+
+        final String typeName = dependencyType.getName();
+
+        if (!types.containsKey(typeName)) {
+            types.put(typeName, (int) Math.min(Integer.MAX_VALUE, nanos / 1000));
+        }
+    }
+
+    /**
+     * Gets the recorded dependency types of the given {@link DependencyScope} in the order they
+     * were resolved. The types that can no longer be loaded are omitted.
+     *
+     * @param scope A {@link DependencyScope}.
+     * @return A {@link List} of dependency types as {@link Class}es.
+     */
+    public synchronized List<Class<?>> getDependencyTypes(final DependencyScope scope) {
+        final ArrayList<Class<?>> dependencyTypes = new ArrayList<>();
+        final LinkedHashMap<String, Integer> types = scopes.get(scope.getClass().getName());
+
+        if (types != null) {
+            final ClassLoader classLoader = scope.getClass().getClassLoader();
+
+            for (final String typeName : types.keySet()) {
+                try {
+                    dependencyTypes.add(Class.forName(typeName, false, classLoader));
+                } catch (ClassNotFoundException e) {
+                    // The type has been removed since the profile was recorded
+                }
+            }
+        }
+        return dependencyTypes;
+    }
+
+    /**
+     * Gets the recorded time spent by the given {@link DependencyScope} for resolving
+     * the dependencies of the specified type.
+     *
+     * @param scope          A {@link DependencyScope}.
+     * @param dependencyType A {@link Class} specifying the dependency type.
+     * @return The time in microseconds or {@code -1} if the type has not been recorded.
+     */
+    public synchronized int getResolvingTime(final DependencyScope scope, final Class<?> dependencyType) {
+        final LinkedHashMap<String, Integer> types = scopes.get(scope.getClass().getName());
+
+        if (types != null) {
+            final Integer time = types.get(dependencyType.getName());
+
+            if (time != null) {
+                return time;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes all the recorded dependencies.
+     */
+    public synchronized void clear() {
+        scopes.clear();
+    }
+
+    private static void close(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.robopupu.api.dependency;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 /*
  * {@link DependencyProvider} is an abstract base class for code generated concrete implementations
  * that generated by an annotation processor for {@link DependencyScope} classes annotated with
@@ -9,10 +12,211 @@ public abstract class DependencyProvider {
 
     public static final String SUFFIX = "_DependencyProvider";
 
+    private static final Object[] NO_SCOPED_DEPENDENCIES = new Object[0];
+
     protected DependencyScope scope;
 
+    /*
+     * The preallocated slots for the dependencies provided with {@link Lifecycle#SCOPED} by a code
+     * generated implementation.
+     */
+    private final Object[] scopedDependencies;
+
+    protected DependencyProvider() {
+        this(0);
+    }
+
+    /**
+     * Constructs a new instance of {@link DependencyProvider}.
+     *
+     * @param scopedDependencyCount The number of slots for the dependencies provided with
+     *                              {@link Lifecycle#SCOPED}.
+     */
+    protected DependencyProvider(final int scopedDependencyCount) {
+        scopedDependencies = (scopedDependencyCount > 0) ? new Object[scopedDependencyCount] : NO_SCOPED_DEPENDENCIES;
+    }
+
     protected abstract <T> void getDependencies(final DependencyQuery<T> query);
 
+    /**
+     * Gets a single dependency of the specified type. The code generated implementations override
+     * this method to provide the dependency without allocating a {@link DependencyQuery}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return The provided dependency or {@code null}.
+     */
+    protected <T> T getDependency(final Class<T> dependencyType) {
+        final DependencyQuery<T> query = new DependencyQuery<>(dependencyType);
+        getDependencies(query);
+        return query.getFoundDependency();
+    }
+
+    /**
+     * Gets the types of the dependencies provided by methods, constructors, and classes annotated
+     * with {@link Eager}. The types are grouped by their levels in the dependency graph, so that
+     * the dependencies of a level depend only on the dependencies of the preceding levels.
+     *
+     * @return An array of {@link Class} arrays, one for each level. May return {@code null}.
+     */
+    protected Class<?>[][] getEagerDependencies() {
+        return null;
+    }
+
+    /**
+     * Leases a dependency of the specified type from the {@link ObjectPool} of the
+     * {@link DependencyScope}. This method is used by the code generated implementations for
+     * the dependencies provided by methods, constructors, and classes annotated with {@link Pooled}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the pooled dependency.
+     * @param maxPoolSize    The maximum size of the {@link ObjectPool}.
+     * @param <T>            A type parameter for casting the dependency to expected type.
+     * @return A pooled dependency or {@code null} if there is no pooled dependency available.
+     */
+    protected <T> T lease(final Class<T> dependencyType, final int maxPoolSize) {
+        return scope.leaseDependency(dependencyType, maxPoolSize);
+    }
+
+    /**
+     * Records the given created dependency as leased by the {@link DependencyScope}, so that it
+     * is returned to the {@link ObjectPool} when the {@link DependencyScope} is disposed.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the pooled dependency.
+     * @param dependency     The created dependency.
+     * @param maxPoolSize    The maximum size of the {@link ObjectPool}.
+     * @param <T>            A type parameter for casting the dependency to expected type.
+     * @return The given dependency.
+     */
+    protected <T> T leased(final Class<?> dependencyType, final T dependency, final int maxPoolSize) {
+        return scope.addLeasedDependency(dependencyType, dependency, maxPoolSize);
+    }
+
+    /**
+     * Tests if this {@link DependencyProvider} caches the dependencies it provides according to
+     * their {@link Lifecycle}s. The dependencies provided by a caching {@link DependencyProvider} are
+     * not cached by the {@link DependencyScope}. The code generated implementations are caching.
+     *
+     * @return A {@code boolean} value. This default implementation returns {@code false}.
+     */
+    protected boolean isCaching() {
+        return false;
+    }
+
+    /**
+     * Gets the scoped dependency stored in the specified slot.
+     *
+     * @param index The index of the slot.
+     * @return The dependency or {@code null} if it has not been created yet.
+     */
+    protected final Object getScoped(final int index) {
+        synchronized (scopedDependencies) {
+            return scopedDependencies[index];
+        }
+    }
+
+    /**
+     * Stores the given created dependency to the specified slot unless a dependency has already been
+     * stored concurrently, in which case the stored dependency is retained.
+     *
+     * @param index      The index of the slot.
+     * @param dependency The created dependency.
+     * @param <T>        A type parameter for casting the dependency to expected type.
+     * @return The dependency stored in the slot.
+     */
+    @SuppressWarnings("unchecked")
+    protected final <T> T setScoped(final int index, final T dependency) {
+        final Object storedDependency;
+
+        synchronized (scopedDependencies) {
+            if (scopedDependencies[index] == null) {
+                scopedDependencies[index] = dependency;
+            }
+            storedDependency = scopedDependencies[index];
+        }
+
+        if (storedDependency == dependency) {
+            scope.attachDependency(dependency);
+        }
+        return (T) storedDependency;
+    }
+
+    /**
+     * Attaches the given created singleton dependency to the application {@link DependencyScope}.
+     * A singleton outlives the {@link DependencyScope} of this {@link DependencyProvider}, so it is
+     * not attached to the {@link DependencyScope} that happened to request it first. If there is
+     * no application {@link DependencyScope}, the dependency is left unattached.
+     *
+     * @param dependency The created dependency.
+     * @param <T>        A type parameter for casting the dependency to expected type.
+     * @return The given dependency.
+     */
+    protected final <T> T attached(final T dependency) {
+        final DependencyScope appScope = Dependency.getAppScope();
+
+        if (appScope != null) {
+            appScope.attachDependency(dependency);
+        }
+        return dependency;
+    }
+
+    /**
+     * Records the given dependency as resolved for the requested type, so that the subsequent requests
+     * are resolved from the cache of the {@link DependencyScope} without this {@link DependencyProvider}.
+     *
+     * @param dependencyType A {@link Class} specifying the requested type.
+     * @param dependency     The resolved dependency.
+     * @param <T>            A type parameter for casting the dependency to expected type.
+     * @return The given dependency.
+     */
+    protected final <T> T resolved(final Class<?> dependencyType, final T dependency) {
+        scope.addResolvedDependency(dependencyType, dependency);
+        return dependency;
+    }
+
+    /**
+     * Adds the scoped dependencies to the given {@link Collection}.
+     *
+     * @param dependencies A {@link Collection} for the dependencies.
+     */
+    void getScopedDependencies(final Collection<Object> dependencies) {
+        synchronized (scopedDependencies) {
+            for (final Object dependency : scopedDependencies) {
+                if (dependency != null) {
+                    dependencies.add(dependency);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the given dependency from the slots of the scoped dependencies.
+     *
+     * @param dependency The dependency to be removed.
+     * @return A {@code boolean} value indicating if the dependency was removed.
+     */
+    boolean removeScoped(final Object dependency) {
+        boolean removed = false;
+
+        synchronized (scopedDependencies) {
+            for (int i = 0; i < scopedDependencies.length; i++) {
+                if (scopedDependencies[i] == dependency) {
+                    scopedDependencies[i] = null;
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Clears the slots of the scoped dependencies.
+     */
+    void clearScoped() {
+        synchronized (scopedDependencies) {
+            Arrays.fill(scopedDependencies, null);
+        }
+    }
+
     public void setScope(final DependencyScope scope) {
         this.scope = scope;
     }
@@ -19,14 +19,52 @@ public class DependencyQuery<T> {
     private final HashMap<Class<?>, T> foundDependencies;
     private final Mode mode;
 
+    /*
+     * The number of matching providers that are skipped, and the number of matching providers
+     * tested so far. These allow the providers of a {@link DependencyProvider} to be iterated one
+     * by one using successive {@link DependencyQuery}s.
+     */
+    private final int skippedMatches;
+    private int matchCount;
+
+    private T lastFoundDependency;
+
     public DependencyQuery(final Class<T> dependencyType) {
         this(dependencyType, Mode.FIRST_MATCHING_DEPENDENCY);
     }
 
     public DependencyQuery(final Class<T> dependencyType, final Mode mode) {
+        this(dependencyType, mode, new HashMap<Class<?>, T>());
+    }
+
+    /**
+     * Constructs a new instance of {@link DependencyQuery} that shares the given found dependencies,
+     * so that the dependencies found by previous queries are not matched again.
+     *
+     * @param dependencyType    A {@link Class} specifying the type of the queried dependencies.
+     * @param mode              A {@link Mode}.
+     * @param foundDependencies A {@link HashMap} containing the found dependencies indexed by their
+     *                          concrete types.
+     */
+    DependencyQuery(final Class<T> dependencyType, final Mode mode, final HashMap<Class<?>, T> foundDependencies) {
+        this(dependencyType, mode, foundDependencies, 0);
+    }
+
+    /**
+     * Constructs a new instance of {@link DependencyQuery} that shares the given found dependencies
+     * and skips the specified number of matching providers.
+     *
+     * @param dependencyType    A {@link Class} specifying the type of the queried dependencies.
+     * @param mode              A {@link Mode}.
+     * @param foundDependencies A {@link HashMap} containing the found dependencies indexed by their
+     *                          concrete types.
+     * @param skippedMatches    The number of matching providers to be skipped.
+     */
+    DependencyQuery(final Class<T> dependencyType, final Mode mode, final HashMap<Class<?>, T> foundDependencies, final int skippedMatches) {
         this.dependencyType = dependencyType;
-        foundDependencies = new HashMap<>();
+        this.foundDependencies = foundDependencies;
         this.mode = mode;
+        this.skippedMatches = skippedMatches;
     }
 
     @SuppressWarnings("unchecked")
@@ -72,7 +110,7 @@ public class DependencyQuery<T> {
 
     @SuppressWarnings("unchecked")
     public <T> T getFoundDependency() {
-        return (T) foundDependencies.get(0);
+        return foundDependencies.isEmpty() ? null : (T) foundDependencies.values().iterator().next();
     }
 
     public Mode getMode() {
@@ -83,8 +121,18 @@ public class DependencyQuery<T> {
         return !foundDependencies.isEmpty();
     }
 
+    /**
+     * Gets the dependency that was most recently added to this {@link DependencyQuery}.
+     *
+     * @return The found dependency or {@code null}.
+     */
+    public T getLastFoundDependency() {
+        return lastFoundDependency;
+    }
+
     public boolean add(final T dependency) {
         foundDependencies.put(dependency.getClass(), dependency);
+        lastFoundDependency = dependency;
         return (mode == Mode.FIRST_MATCHING_DEPENDENCY);
     }
 
@@ -94,8 +142,18 @@ public class DependencyQuery<T> {
 
     public boolean matches(final Class<?> providedType, final Class<?> concreteType) {
         if (dependencyType.isAssignableFrom(providedType)) {
-            return !foundDependencies.containsKey(concreteType);
+            return (matchCount++ >= skippedMatches) && !foundDependencies.containsKey(concreteType);
         }
         return false;
     }
+
+    /**
+     * Gets the number of matching providers tested by this {@link DependencyQuery}, including
+     * the skipped ones.
+     *
+     * @return The number as an {@code int}.
+     */
+    int getMatchCount() {
+        return matchCount;
+    }
 }
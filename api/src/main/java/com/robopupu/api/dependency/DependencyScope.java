@@ -18,9 +18,14 @@ package com.robopupu.api.dependency;
 import com.robopupu.api.plugin.PluginBus;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@link DependencyScope} provides an abstract base class for implementing objects that provide
@@ -36,13 +41,33 @@ public abstract class DependencyScope {
      * A cache of dependants that have request dependencies. These dependants are temporarily
      * cached because they can also be dependencies for other objects.
      */
-    protected final ArrayList<Object> dependants;
+    protected final Dependants dependants;
+
+    /*
+     * A lock that guards the caches and the routing table of this {@link DependencyScope}. The lock
+     * is not held while a request is delegated to another {@link DependencyScope}, or while
+     * a caching {@link DependencyProvider} creates a dependency, so the {@link DependencyScope}s
+     * resolve dependencies independently of each other.
+     */
+    private final Object resolutionLock = new Object();
 
     /*
      * A cache of created and provided dependencies.
      */
     protected final HashMap<Class<?>, HashSet<Object>> dependencies;
 
+    /*
+     * The cached dependencies that have been resolved for the requested dependency types. This
+     * allows a cache hit to be resolved without iterating the cached dependencies.
+     */
+    private final HashMap<Class<?>, Object> resolvedDependencies;
+
+    /*
+     * The dependencies leased from {@link ObjectPool}s. The leased dependencies are returned to
+     * their {@link ObjectPool}s when this {@link DependencyScope} is disposed.
+     */
+    private final IdentityHashMap<Object, ObjectPool<Object>> leasedDependencies;
+
     /**
      * A reference to an optional overriding {@link DependencyScope} used providing mock dependencies.
      */
@@ -71,14 +96,57 @@ public abstract class DependencyScope {
      */
     protected boolean initialized;
 
+    /*
+     * A {@code boolean} flag indicating if this {@link DependencyScope} has been disposed since it
+     * was initialized.
+     */
+    private volatile boolean disposed;
+
+    /*
+     * An optional {@link DependencyTracer} for collecting statistics about resolving dependencies.
+     */
+    private volatile DependencyTracer tracer;
+
     /*
      * A helper field for storing the currently requested type of dependency.
      */
     private Class<?> dependencyType;
 
+    /*
+     * A routing table that maps a dependency type to the {@link DependencyScope} that has supplied
+     * a dependency of the type from the chain of parent scopes or from the application scope.
+     */
+    private final HashMap<Class<?>, DependencyScope> routes;
+
+    /*
+     * The version of {@link DependencyScope#getRoutingVersion()} that the routing table is valid for.
+     */
+    private int routingVersion;
+
+    /*
+     * The routing version this {@link DependencyScope} was stamped with when it was last activated,
+     * parented, mocked, or disposed.
+     */
+    private volatile int changeVersion;
+
     protected DependencyScope() {
+        this(true);
+    }
+
+    /**
+     * Constructs a new instance of {@link DependencyScope}.
+     *
+     * @param weakDependants A {@code boolean} flag specifying if the cached dependants are weakly
+     *                       referenced, so that a dependant not used elsewhere can be garbage
+     *                       collected while this {@link DependencyScope} is alive. The default
+     *                       constructor uses weak references.
+     */
+    protected DependencyScope(final boolean weakDependants) {
         dependencies = new HashMap<>();
-        dependants = new ArrayList<>();
+        resolvedDependencies = new HashMap<>();
+        leasedDependencies = new IdentityHashMap<>();
+        dependants = new Dependants(weakDependants);
+        routes = new HashMap<>();
         initialized = false;
     }
 
@@ -143,6 +211,7 @@ public abstract class DependencyScope {
      */
     public void setParentScope(final DependencyScope parent) {
         parentScope = parent;
+        invalidateRoutes();
     }
 
     /**
@@ -165,6 +234,26 @@ public abstract class DependencyScope {
     @SuppressWarnings("unused")
     public void setMockedScope(final DependencyScope scope) {
         mockScope = scope;
+        invalidateRoutes();
+    }
+
+    /**
+     * Gets the {@link DependencyTracer} of this {@link DependencyScope}.
+     *
+     * @return A {@link DependencyTracer}. May return {@code null}.
+     */
+    public DependencyTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Sets a {@link DependencyTracer} for collecting statistics about resolving the dependencies
+     * requested from this {@link DependencyScope}.
+     *
+     * @param tracer A {@link DependencyTracer}. May be {@code null} to disable tracing.
+     */
+    public void setTracer(final DependencyTracer tracer) {
+        this.tracer = tracer;
     }
 
     /**
@@ -176,6 +265,15 @@ public abstract class DependencyScope {
         return true;
     }
 
+    /**
+     * Tests if this {@link DependencyScope} has been disposed since it was initialized.
+     *
+     * @return A {@code boolean} value.
+     */
+    boolean isDisposed() {
+        return disposed;
+    }
+
     /**
      * Adds the given {@link Object} as a dependant to this {@link DependencyScope}.
      *
@@ -241,24 +339,76 @@ public abstract class DependencyScope {
             if (dependencies == null) {
                 dependencies = new HashSet<>();
                 this.dependencies.put(dependencyType, dependencies);
-            }
 
-            dependencies.add(dependency);
+                // A dependency cached for the exact type precedes one resolved by a subtype
 
-            if (dependency instanceof Scopeable) {
-                ((Scopeable) dependency).setScope(this);
-            }
-
-            if (dependency instanceof DependencyScopeOwner && owner == null) {
-                setOwner((DependencyScopeOwner) dependency);
+                resolvedDependencies.remove(dependencyType);
             }
 
+            dependencies.add(dependency);
+            attachDependency(dependency);
             return (T) dependency;
         } else {
             throw new IllegalArgumentException("Parameter 'dependency' may not be null");
         }
     }
 
+    /**
+     * Attaches the given dependency to this {@link DependencyScope}. A {@link Scopeable} dependency
+     * is set to this {@link DependencyScope}, and a {@link DependencyScopeOwner} dependency becomes
+     * the owner of this {@link DependencyScope} if it does not have an owner.
+     *
+     * @param dependency The dependency {@link Object}.
+     */
+    void attachDependency(final Object dependency) {
+        if (dependency instanceof Scopeable) {
+            ((Scopeable) dependency).setScope(this);
+        }
+
+        if (dependency instanceof DependencyScopeOwner && owner == null) {
+            setOwner((DependencyScopeOwner) dependency);
+        }
+    }
+
+    /**
+     * Records the given dependency as resolved for the specified type. This method is used by
+     * a caching {@link DependencyProvider} for the dependencies it has cached itself.
+     *
+     * @param dependencyType A {@link Class} specifying the requested type.
+     * @param dependency     The resolved dependency.
+     */
+    void addResolvedDependency(final Class<?> dependencyType, final Object dependency) {
+        synchronized (resolutionLock) {
+            if (!disposed) {
+                resolvedDependencies.put(dependencyType, dependency);
+            }
+        }
+    }
+
+    /**
+     * Gets a {@link Lazy} handle to a dependency of the specified type. The dependency is resolved
+     * from this {@link DependencyScope} when the handle is used for the first time.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return A {@link Lazy}.
+     */
+    public <T> Lazy<T> getLazy(final Class<T> dependencyType) {
+        return new Lazy<>(this, dependencyType);
+    }
+
+    /**
+     * Gets a {@link Provider} handle to a dependency of the specified type. The dependency is
+     * resolved from this {@link DependencyScope}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return A {@link Provider}.
+     */
+    public <T> Provider<T> getProvider(final Class<T> dependencyType) {
+        return new Provider<>(this, dependencyType);
+    }
+
     /**
      * This method is meant to be implemented by each concrete implementation of {@link DependencyScope}.
      * The requested dependency instance is returned by the implementation, if it is capable of providing
@@ -290,85 +440,164 @@ public abstract class DependencyScope {
      * @return The returned instance. If {@code null} is returned it indicates an error in
      * the implementation of the {@link DependencyScope}.
      */
-    @SuppressWarnings("unchecked")
     protected <T> T getDependency(final Class<T> dependencyType, final Object dependant, final boolean createNew) {
-        final Class<?> savedDependencyType = this.dependencyType;
+        final DependencyTracer tracer = this.tracer;
+        final long traceStartTime = (tracer != null) ? System.nanoTime() : 0;
 
-        this.dependencyType = dependencyType;
+        DependencyTracer.Tier tier = DependencyTracer.Tier.CACHE;
+        DependencyScope route = null;
+        T dependency;
 
-        if (dependant != null) {
-            dependants.add(dependant);
-        }
+        synchronized (resolutionLock) {
+            if (dependant != null) {
+                dependants.add(dependant);
+            }
 
-        T dependency = null;
+            dependency = lookDependencyInCache(dependencyType);
 
-        final HashSet<T> dependencies = (HashSet<T>) this.dependencies.get(dependencyType);
+            if (dependency == null) {
+                tier = DependencyTracer.Tier.DEPENDANT;
+                dependency = lookDependencyAmongDependants(dependencyType);
 
-        if (!dependencies.isEmpty()) {
-            for (final Class<?> key : this.dependencies.keySet()) {
-                if (dependencyType.isAssignableFrom(key)) {
-                    dependency = (T) this.dependencies.get(key);
-                    break;
+                if (dependency == null) {
+                    route = getRoute(dependencyType);
                 }
             }
         }
 
-        if (dependency == null) {
-            dependency = lookDependencyAmongDependants(dependencyType);
+        if (route != null) {
+            tier = DependencyTracer.Tier.ROUTE;
+            dependency = lookRoutedDependency(dependencyType, route);
+        }
 
-            if (dependency == null) {
+        if (dependency == null) {
+            final DependencyScope mockScope = this.mockScope;
 
-                if (mockScope != null) {
-                    dependency = mockScope.getDependency(dependencyType, dependant, createNew);
-                } else {
+            if (mockScope != null) {
+                tier = DependencyTracer.Tier.MOCK;
+                dependency = mockScope.getDependency(dependencyType, dependant, createNew);
+            } else {
+                tier = DependencyTracer.Tier.PROVIDER;
+                dependency = provideDependency(dependencyType);
+            }
 
-                    dependency = getDependency();
+            if (dependency == null) {
+                final DependencyScope parentScope = this.parentScope;
+                DependencyScope supplier = null;
+
+                // The parent scope delegates to the application scope by itself
+
+                if (parentScope != null) {
+                    tier = DependencyTracer.Tier.PARENT;
+                    supplier = parentScope;
+                    dependency = parentScope.getDependency(dependencyType, null, createNew);
+                } else if (!isAppScope()) {
+                    tier = DependencyTracer.Tier.APP;
+                    supplier = Dependency.getAppScope();
+                    dependency = supplier.getDependency(dependencyType, dependant, createNew);
+                }
 
-                    if (dependency == null) {
-                        if (getDependencyProvider() != null) {
-                            final DependencyQuery<T> query = DependencyQuery.find(dependencyType);
-                            dependencyProvider.getDependencies(query);
+                if (dependency != null) {
+                    addRoute(dependencyType, dependency, supplier);
+                } else if (createNew) {
+                    // As the last resort, try to instantiate the dependency using default constructor
 
-                            if (query.foundDependencies()) {
-                                dependency = query.getFoundDependency();
-                            }
-                        }
-                    }
+                    tier = DependencyTracer.Tier.NEW_INSTANCE;
+                    dependency = Factories.newInstance(dependencyType);
 
                     if (dependency != null) {
-                        cache(dependencyType, dependency);
+                        dependency = cacheIfAbsent(dependencyType, dependency);
                     }
                 }
+            }
+        }
 
-                if (dependency == null) {
-                    if (parentScope != null) {
-                        dependency = parentScope.getDependency(dependencyType, null, createNew);
-                    }
+        if (tracer != null) {
+            tracer.record(this, dependencyType, (dependency != null) ? tier : DependencyTracer.Tier.MISS,
+                    System.nanoTime() - traceStartTime);
+        }
+        return dependency;
+    }
 
-                    if (dependency == null && !isAppScope()) {
-                        dependency = Dependency.getAppScope().getDependency(dependencyType, dependant, createNew);
-                    }
+    /**
+     * Provides a dependency of the specified type using the method {@link DependencyScope#getDependency()}
+     * or the {@link DependencyProvider} of this {@link DependencyScope}. A caching
+     * {@link DependencyProvider} is invoked without holding the resolution lock, because it caches
+     * the dependencies it creates by itself. A non-caching {@link DependencyProvider} is invoked
+     * holding the resolution lock, and the provided dependency is cached.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return The provided dependency or {@code null}.
+     */
+    private <T> T provideDependency(final Class<T> dependencyType) {
+        final DependencyProfile profile = Dependency.getProfile();
+        final long startTime = (profile != null) ? System.nanoTime() : 0;
+        final DependencyProvider provider;
 
-                    if (dependency == null && createNew) {
-                        // As the last resort, try to instantiate the dependency using default constructor
+        T dependency;
 
-                        try {
-                            dependency = dependencyType.newInstance();
-                        } catch (Exception e) {
-                        }
+        synchronized (resolutionLock) {
+            dependency = getScopeDependency(dependencyType);
+            provider = getDependencyProvider();
 
+            if (dependency != null) {
+                cache(dependencyType, dependency);
+            } else if (provider != null && !provider.isCaching()) {
+                dependency = provider.getDependency(dependencyType);
 
-                        if (dependency != null) {
-                            cache(dependencyType, dependency);
-                        }
-                    }
+                if (dependency != null) {
+                    cache(dependencyType, dependency);
                 }
             }
         }
-        this.dependencyType = savedDependencyType;
+
+        if (dependency == null && provider != null && provider.isCaching()) {
+            dependency = provider.getDependency(dependencyType);
+        }
+
+        if (dependency != null && profile != null) {
+            profile.record(this, dependencyType, System.nanoTime() - startTime);
+        }
         return dependency;
     }
 
+    /**
+     * Gets a dependency of the specified type using the method {@link DependencyScope#getDependency()}
+     * implemented by a concrete {@link DependencyScope}. This method must be invoked holding
+     * the resolution lock.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return The dependency or {@code null}.
+     */
+    private <T> T getScopeDependency(final Class<T> dependencyType) {
+        final Class<?> savedDependencyType = this.dependencyType;
+        this.dependencyType = dependencyType;
+
+        try {
+            return getDependency();
+        } finally {
+            this.dependencyType = savedDependencyType;
+        }
+    }
+
+    /**
+     * Caches the given created dependency unless a dependency of the specified type has been
+     * cached concurrently, in which case the cached dependency is retained.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the dependency.
+     * @param dependency     The created dependency.
+     * @param <T>            A type parameter for casting the dependency to expected type.
+     * @return The cached dependency.
+     */
+    private <T> T cacheIfAbsent(final Class<T> dependencyType, final T dependency) {
+        synchronized (resolutionLock) {
+            final T cachedDependency = lookDependencyInCache(dependencyType);
+            return (cachedDependency != null) ? cachedDependency : cache(dependencyType, dependency);
+        }
+    }
+
     /**
      * Gets an dependency instance of the specified type. The requested dependency is first searched
      * from the currently active {@link DependencyScope}. If a requested instance is not found the search
@@ -383,53 +612,523 @@ public abstract class DependencyScope {
      */
     @SuppressWarnings("unchecked")
     protected <T> void getDependencies(final DependencyQuery<T> query, final Object dependant) {
+        final Class<T> dependencyType = query.getDependencyType();
+        final DependencyScope mockScope = this.mockScope;
+        final DependencyProvider provider;
+
+        synchronized (resolutionLock) {
+            if (dependant != null) {
+                dependants.add(dependant);
+            }
+
+            for (final Class<?> key : dependencies.keySet()) {
+                if (dependencyType.isAssignableFrom(key)) {
+                    for (final T dependency : (HashSet<T>) dependencies.get(key)) {
+                        query.add(dependency);
+                    }
+                }
+            }
 
-        final Class<?> savedDependencyType = dependencyType;
+            lookDependenciesAmongDependants(query);
 
-        dependencyType = query.getDependencyType();
+            if (mockScope != null) {
+                provider = null;
+            } else {
+                final T dependency = getScopeDependency(dependencyType);
 
-        if (dependant != null) {
-            dependants.add(dependant);
+                if (dependency != null) {
+                    query.add(dependency); // TODO
+                }
+
+                provider = getDependencyProvider();
+
+                if (provider != null && provider.isCaching()) {
+                    if (dependency != null) {
+                        cache(dependencyType, dependency);
+                    }
+                } else {
+                    if (provider != null) {
+                        provider.getDependencies(query);
+                    }
+
+                    if (query.foundDependencies()) {
+                        for (final T foundDependency : query.getFoundDependencies()) {
+                            cache(dependencyType, foundDependency);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (mockScope != null) {
+            mockScope.getDependencies(query, dependant);
+            return;
+        }
+
+        if (provider != null && provider.isCaching()) {
+            provider.getDependencies(query);
         }
 
-        for (final Class<?> key : dependencies.keySet()) {
-            if (dependencyType.isAssignableFrom(key)) {
-                for (final T dependency : (HashSet<T>) dependencies.get(key)) {
+        final DependencyScope parentScope = this.parentScope;
+
+        if (parentScope != null) {
+            parentScope.getDependencies(query, null);
+        } else if (!isAppScope()) {
+            Dependency.getAppScope().getDependencies(query, dependant);
+        }
+    }
+
+    /**
+     * Adds the cached dependencies of the specified type to the given {@link List}. This method is
+     * used by {@link DependencyIterator} for iterating the dependencies of this {@link DependencyScope}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependencies.
+     * @param dependencies   A {@link List} for the found dependencies.
+     * @param <T>            A type parameter for casting the dependencies to expected type.
+     */
+    @SuppressWarnings("unchecked")
+    <T> void getCachedDependencies(final Class<T> dependencyType, final List<T> dependencies) {
+        synchronized (resolutionLock) {
+            for (final Class<?> key : this.dependencies.keySet()) {
+                if (dependencyType.isAssignableFrom(key)) {
+                    dependencies.addAll((HashSet<T>) this.dependencies.get(key));
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes a dependant of the specified type and caches it as a dependency. This method is used
+     * by {@link DependencyIterator} for iterating the dependencies of this {@link DependencyScope}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the dependency to expected type.
+     * @return The found dependant or {@code null}.
+     */
+    <T> T takeDependant(final Class<T> dependencyType) {
+        synchronized (resolutionLock) {
+            return lookDependencyAmongDependants(dependencyType);
+        }
+    }
+
+    /**
+     * Gets a dependency matching the given {@link DependencyQuery} that is provided by the method
+     * {@link DependencyScope#getDependency()} of this {@link DependencyScope}. This method is used
+     * by {@link DependencyIterator} for iterating the dependencies of this {@link DependencyScope}.
+     *
+     * @param query A {@link DependencyQuery} in mode {@link DependencyQuery.Mode#FIRST_MATCHING_DEPENDENCY}.
+     * @param <T>   A type parameter for casting the dependency to expected type.
+     * @return The provided dependency or {@code null}.
+     */
+    <T> T getOwnDependency(final DependencyQuery<T> query) {
+        synchronized (resolutionLock) {
+            final Class<?> savedDependencyType = this.dependencyType;
+            final Class<T> dependencyType = query.getDependencyType();
+
+            this.dependencyType = dependencyType;
+
+            try {
+                final T dependency = getDependency();
+
+                if (dependency != null && query.matches(dependencyType, dependency.getClass())) {
                     query.add(dependency);
+                    return cache(dependencyType, dependency);
+                }
+                return null;
+            } finally {
+                this.dependencyType = savedDependencyType;
+            }
+        }
+    }
+
+    /**
+     * Gets the next dependency matching the given {@link DependencyQuery} that is provided by
+     * the {@link DependencyProvider} of this {@link DependencyScope}. The dependencies already
+     * found by the {@link DependencyQuery} are not provided again. This method is used by
+     * {@link DependencyIterator} for iterating the dependencies of this {@link DependencyScope}.
+     *
+     * @param query A {@link DependencyQuery} in mode {@link DependencyQuery.Mode#FIRST_MATCHING_DEPENDENCY}.
+     * @param <T>   A type parameter for casting the dependency to expected type.
+     * @return The provided dependency or {@code null} if there are no more dependencies.
+     */
+    <T> T getNextProvidedDependency(final DependencyQuery<T> query) {
+        final DependencyProvider provider;
+
+        synchronized (resolutionLock) {
+            provider = getDependencyProvider();
+
+            if (provider == null) {
+                return null;
+            }
+
+            if (!provider.isCaching()) {
+                provider.getDependencies(query);
+
+                final T dependency = query.getLastFoundDependency();
+
+                if (dependency != null) {
+                    cache(query.getDependencyType(), dependency);
                 }
+                return dependency;
             }
         }
 
-        lookDependenciesAmongDependants(query);
+        provider.getDependencies(query);
+        return query.getLastFoundDependency();
+    }
 
+    /**
+     * Gets the {@link DependencyScope} that is searched for dependencies after this
+     * {@link DependencyScope}. A mock {@link DependencyScope} replaces this one, otherwise
+     * the parent {@link DependencyScope} is searched, and the application scope is searched
+     * as the last one.
+     *
+     * @return A {@link DependencyScope} or {@code null}.
+     */
+    DependencyScope getNextScope() {
         if (mockScope != null) {
-            mockScope.getDependencies(query, dependant);
-        } else {
-            final T dependency = getDependency();
+            return mockScope;
+        } else if (parentScope != null) {
+            return parentScope;
+        } else if (!isAppScope()) {
+            return Dependency.getAppScope();
+        }
+        return null;
+    }
+
+    /**
+     * Tests if the dependencies of this {@link DependencyScope} are provided by a mock
+     * {@link DependencyScope}.
+     *
+     * @return A {@code boolean} value.
+     */
+    boolean isMocked() {
+        return mockScope != null;
+    }
+
+    /**
+     * Instantiates the dependencies declared to be eager by the {@link DependencyProvider} of this
+     * {@link DependencyScope}. The dependencies are instantiated level by level using the given
+     * {@link ExecutorService}, so that the dependencies of the same level are instantiated in
+     * parallel, and the next level is submitted when all the dependencies of the previous level
+     * have been instantiated. This method returns without waiting for the dependencies to be
+     * instantiated. An eager dependency requested before it has been instantiated in
+     * the background is instantiated on request.
+     *
+     * @param executor An {@link ExecutorService} used for instantiating the dependencies.
+     */
+    void createEagerDependencies(final ExecutorService executor) {
+        final Class<?>[][] levels;
+
+        synchronized (resolutionLock) {
+            final DependencyProvider provider = getDependencyProvider();
+            levels = (provider != null) ? provider.getEagerDependencies() : null;
+        }
+
+        if (levels != null) {
+            submitEagerLevel(executor, levels, 0);
+        }
+    }
+
+    /**
+     * Submits the eager dependencies of the specified level to the given {@link ExecutorService}.
+     * The last instantiated dependency of the level submits the next level. The remaining levels
+     * are not submitted if this {@link DependencyScope} has been disposed.
+     *
+     * @param executor An {@link ExecutorService} used for instantiating the dependencies.
+     * @param levels   The eager dependency types grouped by their levels.
+     * @param index    The index of the level.
+     */
+    private void submitEagerLevel(final ExecutorService executor, final Class<?>[][] levels, final int index) {
+        int nextIndex = index;
+
+        while (nextIndex < levels.length && levels[nextIndex].length == 0) {
+            nextIndex++;
+        }
+
+        if (nextIndex == levels.length || disposed) {
+            return;
+        }
+
+        final int levelIndex = nextIndex;
+        final Class<?>[] level = levels[levelIndex];
+        final AtomicInteger pendingCount = new AtomicInteger(level.length);
+
+        for (final Class<?> dependencyType : level) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!disposed) {
+                            createEagerDependency(dependencyType);
+                        }
+                    } catch (RuntimeException e) {
+                        // A failed eager dependency is created again on its first request
+                    } finally {
+                        if (pendingCount.decrementAndGet() == 0) {
+                            submitEagerLevel(executor, levels, levelIndex + 1);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Instantiates the dependencies of the specified types in the given order. This method is used
+     * for resolving the dependencies recorded in a {@link DependencyProfile} in the background.
+     * The instantiating is stopped if this {@link DependencyScope} is disposed.
+     *
+     * @param dependencyTypes A {@link List} of dependency types as {@link Class}es.
+     */
+    void createDependencies(final List<Class<?>> dependencyTypes) {
+        for (final Class<?> dependencyType : dependencyTypes) {
+            if (disposed) {
+                return;
+            }
+
+            try {
+                createEagerDependency(dependencyType);
+            } catch (RuntimeException e) {
+                // A failed dependency is created again on its first request
+            }
+        }
+    }
+
+    /**
+     * Instantiates and caches an eager dependency of the specified type unless it is already cached.
+     * A caching {@link DependencyProvider} instantiates the dependency without holding
+     * the resolution lock, so that the dependencies can be instantiated in parallel, and retains
+     * a dependency cached concurrently. If this {@link DependencyScope} is disposed while
+     * the dependency is instantiated, the dependency is dropped instead of cached.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the dependency.
+     * @param <T>            A type parameter for casting the dependency to expected type.
+     * @return The cached dependency or {@code null}.
+     */
+    private <T> T createEagerDependency(final Class<T> dependencyType) {
+        final DependencyProvider provider;
+
+        synchronized (resolutionLock) {
+            if (disposed) {
+                return null;
+            }
+
+            final T dependency = lookDependencyInCache(dependencyType);
+            provider = getDependencyProvider();
+
+            if (dependency != null || provider == null) {
+                return dependency;
+            }
+
+            if (!provider.isCaching()) {
+                final T providedDependency = provider.getDependency(dependencyType);
+                return (providedDependency != null) ? cache(dependencyType, providedDependency) : null;
+            }
+        }
+
+        final T dependency = provider.getDependency(dependencyType);
+
+        synchronized (resolutionLock) {
+            if (!disposed) {
+                return dependency;
+            }
 
             if (dependency != null) {
-                query.add(dependency); // TODO
+                provider.removeScoped(dependency);
             }
+        }
+
+        // A pooled dependency leased after disposing is returned to its pool
+
+        releaseLeasedDependencies();
+        return null;
+    }
 
-            if (getDependencyProvider() != null) {
-                dependencyProvider.getDependencies(query);
+    /**
+     * Looks up the requested dependency from the cache of this {@link DependencyScope}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return The found cached instance or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T lookDependencyInCache(final Class<T> dependencyType) {
+        Object dependency = resolvedDependencies.get(dependencyType);
+
+        if (dependency != null) {
+            return (T) dependency;
+        }
+
+        HashSet<Object> dependencies = this.dependencies.get(dependencyType);
+
+        if (dependencies != null && !dependencies.isEmpty()) {
+            dependency = dependencies.iterator().next();
+        } else {
+            for (final Class<?> key : this.dependencies.keySet()) {
+                if (dependencyType.isAssignableFrom(key)) {
+                    dependencies = this.dependencies.get(key);
+
+                    if (!dependencies.isEmpty()) {
+                        dependency = dependencies.iterator().next();
+                        break;
+                    }
+                }
             }
+        }
+
+        if (dependency != null) {
+            resolvedDependencies.put(dependencyType, dependency);
+        }
+        return (T) dependency;
+    }
+
+    /**
+     * Gets the {@link DependencyScope} that is recorded in the routing table to have supplied
+     * the specified dependency type earlier. The routing table is cleared if it is no longer valid.
+     * This method must be invoked holding the resolution lock.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @return A {@link DependencyScope} or {@code null}.
+     */
+    private DependencyScope getRoute(final Class<?> dependencyType) {
+        final int version = getRoutingVersion();
 
-            if (query.foundDependencies()) {
-                for (final T foundDependency : query.getFoundDependencies()) {
-                    cache(dependencyType, foundDependency);
+        if (routingVersion != version) {
+            routes.clear();
+            routingVersion = version;
+            return null;
+        }
+        return routes.get(dependencyType);
+    }
+
+    /**
+     * Looks up the requested dependency directly from the given {@link DependencyScope} that is
+     * recorded in the routing table to have supplied the dependency type earlier. A route that is
+     * no longer valid is removed.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param route          The {@link DependencyScope} recorded in the routing table.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return The found instance or {@code null}.
+     */
+    private <T> T lookRoutedDependency(final Class<T> dependencyType, final DependencyScope route) {
+        final T dependency = route.getCachedDependency(dependencyType);
+
+        if (dependency == null) {
+            synchronized (resolutionLock) {
+                if (routes.get(dependencyType) == route) {
+                    routes.remove(dependencyType);
                 }
             }
+        }
+        return dependency;
+    }
+
+    /**
+     * Invalidates the routing tables of this {@link DependencyScope} and the {@link DependencyScope}s
+     * that search it for dependencies, i.e. its subtree. The routing tables of the other
+     * {@link DependencyScope}s remain valid.
+     */
+    void invalidateRoutes() {
+        changeVersion = Dependency.nextRoutingVersion();
+    }
+
+    /**
+     * Gets the version of the routing table of this {@link DependencyScope}. The version is
+     * the latest routing version any of the {@link DependencyScope}s searched for dependencies
+     * after this {@link DependencyScope} has been stamped with, so it changes whenever a route
+     * recorded by this {@link DependencyScope} may have become invalid.
+     *
+     * @return The version as an {@code int}.
+     */
+    int getRoutingVersion() {
+        int version = 0;
+        DependencyScope scope = this;
 
-            if (parentScope != null) {
-                parentScope.getDependencies(query, null);
+        while (scope != null) {
+            version = Math.max(version, scope.changeVersion);
+            scope = scope.mockScope != null ? scope.mockScope : scope.parentScope;
+        }
+
+        final DependencyScope appScope = Dependency.getAppScope();
+
+        if (appScope != null) {
+            version = Math.max(version, appScope.changeVersion);
+        }
+        return version;
+    }
+
+    /**
+     * Records a route to the {@link DependencyScope} that has cached the given dependency. The
+     * chain of parent scopes is searched starting from the given {@link DependencyScope}, and
+     * the application scope is searched as the last one.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the supplied dependency.
+     * @param dependency     The supplied dependency.
+     * @param scope          The {@link DependencyScope} the dependency was requested from.
+     */
+    private void addRoute(final Class<?> dependencyType, final Object dependency, final DependencyScope scope) {
+        final DependencyScope supplier = findSupplier(dependencyType, dependency, scope);
+
+        if (supplier != null) {
+            synchronized (resolutionLock) {
+                routes.put(dependencyType, supplier);
             }
+        }
+    }
+
+    /**
+     * Finds the {@link DependencyScope} that has cached the given dependency. The chain of parent
+     * scopes is searched starting from the given {@link DependencyScope}, and the application scope
+     * is searched as the last one.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the supplied dependency.
+     * @param dependency     The supplied dependency.
+     * @param scope          The {@link DependencyScope} to start the search from.
+     * @return The found {@link DependencyScope} or {@code null}.
+     */
+    private static DependencyScope findSupplier(final Class<?> dependencyType, final Object dependency, final DependencyScope scope) {
+        DependencyScope supplier = scope;
 
-            if (!isAppScope()) {
-                Dependency.getAppScope().getDependencies(query, dependant);
+        while (supplier != null) {
+            if (supplier.getCachedDependency(dependencyType) == dependency) {
+                return supplier;
             }
+            supplier = supplier.mockScope != null ? supplier.mockScope : supplier.parentScope;
+        }
+
+        supplier = Dependency.getAppScope();
+
+        if (supplier != null && supplier.getCachedDependency(dependencyType) == dependency) {
+            return supplier;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the {@link DependencyScope} that has cached the given dependency resolved from this
+     * {@link DependencyScope}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the resolved dependency.
+     * @param dependency     The resolved dependency.
+     * @return The found {@link DependencyScope} or {@code null}.
+     */
+    DependencyScope getSupplier(final Class<?> dependencyType, final Object dependency) {
+        return findSupplier(dependencyType, dependency, this);
+    }
+
+    /**
+     * Gets a dependency of the specified type only from the cache of this {@link DependencyScope}.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param <T>            A type parameter for casting the requested dependency to expected type.
+     * @return The cached dependency or {@code null}.
+     */
+    <T> T getCachedDependency(final Class<T> dependencyType) {
+        synchronized (resolutionLock) {
+            return lookDependencyInCache(dependencyType);
         }
-        dependencyType = savedDependencyType;
     }
 
     /**
@@ -439,16 +1138,11 @@ public abstract class DependencyScope {
      * @param <T>            A type parameter for casting the requested dependency to expected type.
      * @return The found requested instance or {@code null}.
      */
-    @SuppressWarnings("unchecked")
     private <T> T lookDependencyAmongDependants(final Class<T> dependencyType) {
+        final T dependant = dependants.remove(dependencyType);
 
-        for (int i = dependants.size() - 1; i >= 0; i--) {
-            final Object dependant = dependants.get(i);
-
-            if (dependencyType.isAssignableFrom(dependant.getClass())) {
-                dependants.remove(dependant);
-                return cache(dependencyType, dependant);
-            }
+        if (dependant != null) {
+            return cache(dependencyType, dependant);
         }
         return null;
     }
@@ -460,17 +1154,12 @@ public abstract class DependencyScope {
      * @param <T>  A type parameter for casting the requested dependency to expected type.
      * @return The found requested instance or {@code null}.
      */
-    @SuppressWarnings("unchecked")
     private <T> T lookDependenciesAmongDependants(final DependencyQuery<T> query) {
+        final T dependant = dependants.remove(query.getDependencyType());
 
-        for (int i = dependants.size() - 1; i >= 0; i--) {
-            final Object dependant = dependants.get(i);
-
-            if (query.isMatchingType(dependant.getClass())) {
-                dependants.remove(dependant);
-                query.add((T) dependant);
-                return cache(query.getDependencyType(), dependant);
-            }
+        if (dependant != null) {
+            query.add(dependant);
+            return cache(query.getDependencyType(), dependant);
         }
         return null;
     }
@@ -479,27 +1168,106 @@ public abstract class DependencyScope {
      * Disposes this {@link DependencyScope} to support effective GC and to avoid memory leaks.
      */
     protected void dispose() {
-        final ArrayList<Object> dependencies = new ArrayList<>();
+        final Set<Object> dependencies = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        final DependencyScope mockScope;
 
-        for (final HashSet<Object> dependencySet : this.dependencies.values()) {
-            dependencies.addAll(dependencySet);
-        }
+        // The dependencies instantiated in the background check the disposed flag holding the lock
+
+        synchronized (resolutionLock) {
+            disposed = true;
 
-        for (final Object dependency : dependencies) {
-            if (PluginBus.isPlugged(dependency)) {
-                PluginBus.unplug(dependency);
+            for (final HashSet<Object> dependencySet : this.dependencies.values()) {
+                dependencies.addAll(dependencySet);
             }
+
+            if (dependencyProvider != null) {
+                dependencyProvider.getScopedDependencies(dependencies);
+                dependencyProvider.clearScoped();
+            }
+
+            // The cache is cleared before unplugging so that the unplugged Scopeables do not need to
+            // be searched from it one by one
+
+            this.dependencies.clear();
+            resolvedDependencies.clear();
+            dependants.clear();
+            routes.clear();
+            parentScope = null;
+            owner = null;
+            dependencyType = null;
+            mockScope = this.mockScope;
+            this.mockScope = null;
         }
 
-        this.dependencies.clear();
-        dependants.clear();
-        parentScope = null;
-        owner = null;
-        dependencyType = null;
+        PluginBus.unplugAll(dependencies);
+        releaseLeasedDependencies();
 
         if (mockScope != null) {
             mockScope.dispose();
-            mockScope = null;
+        }
+        invalidateRoutes();
+    }
+
+    /**
+     * Leases a dependency of the specified type from the {@link ObjectPool} of this
+     * {@link DependencyScope} class.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the pooled dependency.
+     * @param maxPoolSize    The maximum size of the {@link ObjectPool}.
+     * @param <T>            A type parameter for casting the dependency to expected type.
+     * @return A pooled dependency or {@code null} if the {@link ObjectPool} is empty.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T leaseDependency(final Class<T> dependencyType, final int maxPoolSize) {
+        final ObjectPool<Object> pool = (ObjectPool<Object>) ObjectPool.getPool(getClass(), dependencyType, maxPoolSize);
+        final Object dependency = pool.acquire();
+
+        if (dependency != null) {
+            synchronized (leasedDependencies) {
+                leasedDependencies.put(dependency, pool);
+            }
+        }
+        return (T) dependency;
+    }
+
+    /**
+     * Records the given created dependency as leased, so that it is returned to the
+     * {@link ObjectPool} of this {@link DependencyScope} class when this {@link DependencyScope}
+     * is disposed.
+     *
+     * @param dependencyType A {@link Class} specifying the type of the pooled dependency.
+     * @param dependency     The created dependency.
+     * @param maxPoolSize    The maximum size of the {@link ObjectPool}.
+     * @param <T>            A type parameter for casting the dependency to expected type.
+     * @return The given dependency.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T addLeasedDependency(final Class<?> dependencyType, final T dependency, final int maxPoolSize) {
+        if (dependency != null) {
+            final ObjectPool<Object> pool = (ObjectPool<Object>) ObjectPool.getPool(getClass(), dependencyType, maxPoolSize);
+
+            synchronized (leasedDependencies) {
+                leasedDependencies.put(dependency, pool);
+            }
+        }
+        return dependency;
+    }
+
+    private void releaseLeasedDependencies() {
+        final ArrayList<Object> dependencies;
+        final ArrayList<ObjectPool<Object>> pools;
+
+        synchronized (leasedDependencies) {
+            if (leasedDependencies.isEmpty()) {
+                return;
+            }
+            dependencies = new ArrayList<>(leasedDependencies.keySet());
+            pools = new ArrayList<>(leasedDependencies.values());
+            leasedDependencies.clear();
+        }
+
+        for (int i = dependencies.size() - 1; i >= 0; i--) {
+            pools.get(i).release(dependencies.get(i));
         }
     }
 
@@ -537,21 +1305,21 @@ public abstract class DependencyScope {
     /**
      * Invoked to initialize this {@link DependencyScope}.
      */
-    @SuppressWarnings("unchecked")
     public void initialize() {
-        if (dependencyProvider == null) {
-            initialized = true;
-
-            dependencyProvider = createDependencyProvider();
+        synchronized (resolutionLock) {
+            disposed = false;
 
             if (dependencyProvider == null) {
-                final String className = getClass().getName() + DependencyProvider.SUFFIX;
+                initialized = true;
+
+                dependencyProvider = createDependencyProvider();
+
+                if (dependencyProvider == null) {
+                    dependencyProvider = Dependency.getScopeRegistry().newDependencyProvider(getClass());
 
-                try {
-                    final Class<DependencyProvider> dependencyProviderClass = (Class<DependencyProvider>) Class.forName(className);
-                    dependencyProvider = dependencyProviderClass.newInstance();
-                    dependencyProvider.setScope(this);
-                } catch (Exception e) {
+                    if (dependencyProvider != null) {
+                        dependencyProvider.setScope(this);
+                    }
                 }
             }
         }
@@ -578,19 +1346,27 @@ public abstract class DependencyScope {
     public List<Class<?>> removeDependency(final Object dependency) {
         final ArrayList<Class<?>> removedDependencyTypes = new ArrayList<>();
 
-        for (final Class<?> key : dependencies.keySet()) {
-            final HashSet<?> dependencies = this.dependencies.get(key);
+        synchronized (resolutionLock) {
+            for (final Class<?> key : dependencies.keySet()) {
+                final HashSet<?> dependencies = this.dependencies.get(key);
 
-            if (dependencies.contains(dependency)) {
-                removedDependencyTypes.add(key);
+                if (dependencies.contains(dependency)) {
+                    removedDependencyTypes.add(key);
+                }
             }
-        }
 
-        for (final Class<?> key : removedDependencyTypes) {
-            final HashSet<?> dependencies = this.dependencies.get(key);
-            dependencies.remove(key);
+            for (final Class<?> key : removedDependencyTypes) {
+                final HashSet<?> dependencies = this.dependencies.get(key);
+                dependencies.remove(dependency);
+            }
+
+            final boolean removedScoped = (dependencyProvider != null) && dependencyProvider.removeScoped(dependency);
+
+            if (!removedDependencyTypes.isEmpty() || removedScoped) {
+                resolvedDependencies.values().removeAll(Collections.singleton(dependency));
+            }
+            dependants.remove(dependency);
         }
-        dependants.remove(dependency);
         return removedDependencyTypes;
     }
 
@@ -600,14 +1376,27 @@ public abstract class DependencyScope {
      * @param dependency The dependency as an {@link Object}.
      */
     public boolean hasDependency(final Object dependency) {
-        for (final Class<?> key : dependencies.keySet()) {
-            final HashSet<?> dependencies = this.dependencies.get(key);
+        synchronized (resolutionLock) {
+            for (final Class<?> key : dependencies.keySet()) {
+                final HashSet<?> dependencies = this.dependencies.get(key);
 
-            if (dependencies.contains(dependency)) {
-                return true;
+                if (dependencies.contains(dependency)) {
+                    return true;
+                }
             }
+
+            if (dependencyProvider != null) {
+                final ArrayList<Object> scopedDependencies = new ArrayList<>();
+                dependencyProvider.getScopedDependencies(scopedDependencies);
+
+                for (final Object scopedDependency : scopedDependencies) {
+                    if (scopedDependency == dependency) {
+                        return true;
+                    }
+                }
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -616,6 +1405,10 @@ public abstract class DependencyScope {
      * @param dependencyType A {@link Class} specifying the dependency type.
      */
     public boolean hasDependency(final Class<?> dependencyType) {
-        return dependencies.containsKey(dependencyType) && !dependencies.get(dependencyType).isEmpty();
+        synchronized (resolutionLock) {
+            return (dependencies.containsKey(dependencyType) && !dependencies.get(dependencyType).isEmpty())
+                    || resolvedDependencies.containsKey(dependencyType);
+        }
     }
+
 }
@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link DependencyTracer} collects statistics about how the dependencies are resolved by
+ * the {@link DependencyScope}s it is set to using {@link DependencyScope#setTracer(DependencyTracer)}.
+ * For each resolving it records the {@link Tier} that supplied the dependency and the time spent,
+ * and it counts per dependency type the cache misses that took longer than a given threshold.
+ * A type whose expensive misses repeat is flagged, because it is likely missing a cache or
+ * a {@link Lifecycle}. The collected statistics can be read as a {@link Snapshot}. The same
+ * {@link DependencyTracer} can be shared by several {@link DependencyScope}s.
+ */
+public class DependencyTracer {
+
+    /**
+     * The default threshold in nanoseconds for an expensive cache miss.
+     */
+    public static final long DEFAULT_EXPENSIVE_NANOS = 1000000L;
+
+    /**
+     * The default number of expensive cache misses after which a dependency type is flagged.
+     */
+    public static final int DEFAULT_REPEATED_MISS_COUNT = 3;
+
+    /**
+     * The number of buckets in a latency histogram. Bucket {@code i} counts the resolving times
+     * {@code t} in nanoseconds for which {@code 2^(i-1) <= t < 2^i}, and the last bucket counts
+     * all the longer times.
+     */
+    public static final int HISTOGRAM_SIZE = 32;
+
+    /**
+     * {@link Tier} specifies where a requested dependency was found or how it was created.
+     */
+    public enum Tier {
+
+        /**
+         * The dependency was found from the cache of the resolving {@link DependencyScope}.
+         */
+        CACHE(true),
+
+        /**
+         * The dependency was one of the dependants of the resolving {@link DependencyScope}.
+         */
+        DEPENDANT(true),
+
+        /**
+         * The dependency was found from the cache of the {@link DependencyScope} that has
+         * supplied the dependency type earlier.
+         */
+        ROUTE(true),
+
+        /**
+         * The dependency was provided by the resolving {@link DependencyScope} or its
+         * {@link DependencyProvider}.
+         */
+        PROVIDER(false),
+
+        /**
+         * The dependency was supplied by the mock {@link DependencyScope}.
+         */
+        MOCK(false),
+
+        /**
+         * The dependency was supplied by the parent {@link DependencyScope}.
+         */
+        PARENT(false),
+
+        /**
+         * The dependency was supplied by the application scope.
+         */
+        APP(false),
+
+        /**
+         * The dependency was instantiated reflectively using its default constructor.
+         */
+        NEW_INSTANCE(false),
+
+        /**
+         * The dependency was not found.
+         */
+        MISS(false);
+
+        private final boolean cacheHit;
+
+        Tier(final boolean cacheHit) {
+            this.cacheHit = cacheHit;
+        }
+
+        /**
+         * Tests if this {@link Tier} represents a cache hit.
+         *
+         * @return A {@code boolean} value.
+         */
+        public boolean isCacheHit() {
+            return cacheHit;
+        }
+    }
+
+    private final long expensiveNanos;
+    private final int repeatedMissCount;
+
+    /*
+     * The counts of the resolved dependencies per {@link Tier}.
+     */
+    private final long[] tierCounts;
+
+    /*
+     * The collected statistics indexed by the dependency types.
+     */
+    private final HashMap<Class<?>, TypeTrace> typeTraces;
+
+    public DependencyTracer() {
+        this(DEFAULT_EXPENSIVE_NANOS, DEFAULT_REPEATED_MISS_COUNT);
+    }
+
+    /**
+     * Constructs a new instance of {@link DependencyTracer}.
+     *
+     * @param expensiveNanos    The threshold in nanoseconds for an expensive cache miss.
+     * @param repeatedMissCount The number of expensive cache misses after which a dependency
+     *                          type is flagged.
+     */
+    public DependencyTracer(final long expensiveNanos, final int repeatedMissCount) {
+        if (repeatedMissCount <= 0) {
+            throw new IllegalArgumentException("Parameter repeatedMissCount must be positive");
+        }
+        this.expensiveNanos = expensiveNanos;
+        this.repeatedMissCount = repeatedMissCount;
+        tierCounts = new long[Tier.values().length];
+        typeTraces = new HashMap<>();
+    }
+
+    /**
+     * Records that a dependency of the specified type was resolved by the given
+     * {@link DependencyScope}. The time includes resolving the dependencies of the dependency.
+     *
+     * @param scope          The resolving {@link DependencyScope}.
+     * @param dependencyType A {@link Class} specifying the type of the requested dependency.
+     * @param tier           The {@link Tier} that supplied the dependency.
+     * @param nanos          The time spent for resolving in nanoseconds.
+     */
+    public synchronized void record(final DependencyScope scope, final Class<?> dependencyType, final Tier tier, final long nanos) {
+        tierCounts[tier.ordinal()]++;
+
+        TypeTrace trace = typeTraces.get(dependencyType);
+
+        if (trace == null) {
+            trace = new TypeTrace(dependencyType);
+            typeTraces.put(dependencyType, trace);
+        }
+
+        trace.count++;
+        trace.totalNanos += nanos;
+        trace.maxNanos = Math.max(trace.maxNanos, nanos);
+        trace.histogram[getBucket(nanos)]++;
+
+        if (!tier.isCacheHit() && nanos >= expensiveNanos) {
+            trace.expensiveMissCount++;
+        }
+    }
+
+    /**
+     * Takes a {@link Snapshot} of the collected statistics.
+     *
+     * @return A {@link Snapshot}.
+     */
+    public synchronized Snapshot getSnapshot() {
+        final EnumMap<Tier, Long> counts = new EnumMap<>(Tier.class);
+
+        for (final Tier tier : Tier.values()) {
+            counts.put(tier, tierCounts[tier.ordinal()]);
+        }
+
+        final ArrayList<TypeStatistics> types = new ArrayList<>(typeTraces.size());
+
+        for (final TypeTrace trace : typeTraces.values()) {
+            types.add(new TypeStatistics(trace, trace.expensiveMissCount >= repeatedMissCount));
+        }
+
+        // The slowest types first
+
+        Collections.sort(types, new Comparator<TypeStatistics>() {
+            @Override
+            public int compare(final TypeStatistics statistics1, final TypeStatistics statistics2) {
+                final long nanos1 = statistics1.getTotalNanos();
+                final long nanos2 = statistics2.getTotalNanos();
+                return (nanos1 < nanos2) ? 1 : ((nanos1 == nanos2) ? 0 : -1);
+            }
+        });
+        return new Snapshot(counts, types);
+    }
+
+    /**
+     * Removes all the collected statistics.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < tierCounts.length; i++) {
+            tierCounts[i] = 0;
+        }
+        typeTraces.clear();
+    }
+
+    /**
+     * Gets the index of the histogram bucket for the given time.
+     *
+     * @param nanos The time in nanoseconds.
+     * @return The index as an {@code int}.
+     */
+    private static int getBucket(final long nanos) {
+        final int bucket = (nanos > 0) ? 64 - Long.numberOfLeadingZeros(nanos) : 0;
+        return Math.min(bucket, HISTOGRAM_SIZE - 1);
+    }
+
+    /**
+     * {@link TypeTrace} holds the mutable statistics of a dependency type.
+     */
+    private static final class TypeTrace {
+
+        final Class<?> dependencyType;
+        final long[] histogram;
+        long count;
+        long totalNanos;
+        long maxNanos;
+        long expensiveMissCount;
+
+        TypeTrace(final Class<?> dependencyType) {
+            this.dependencyType = dependencyType;
+            histogram = new long[HISTOGRAM_SIZE];
+        }
+    }
+
+    /**
+     * {@link TypeStatistics} is an immutable copy of the statistics of a dependency type.
+     */
+    public static final class TypeStatistics {
+
+        private final Class<?> dependencyType;
+        private final long[] histogram;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long expensiveMissCount;
+        private final boolean flagged;
+
+        TypeStatistics(final TypeTrace trace, final boolean flagged) {
+            dependencyType = trace.dependencyType;
+            histogram = trace.histogram.clone();
+            count = trace.count;
+            totalNanos = trace.totalNanos;
+            maxNanos = trace.maxNanos;
+            expensiveMissCount = trace.expensiveMissCount;
+            this.flagged = flagged;
+        }
+
+        public Class<?> getDependencyType() {
+            return dependencyType;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getExpensiveMissCount() {
+            return expensiveMissCount;
+        }
+
+        /**
+         * Tests if the expensive cache misses of this dependency type have repeated.
+         *
+         * @return A {@code boolean} value.
+         */
+        public boolean isFlagged() {
+            return flagged;
+        }
+
+        /**
+         * Gets the count of the given histogram bucket.
+         *
+         * @param bucket The index of the bucket.
+         * @return The count as a {@code long}.
+         * @see DependencyTracer#HISTOGRAM_SIZE
+         */
+        public long getHistogramCount(final int bucket) {
+            return histogram[bucket];
+        }
+
+        /**
+         * Gets an upper bound for the given percentile of the resolving times.
+         *
+         * @param percentile The percentile as a {@code double} between {@code 0} and {@code 100}.
+         * @return The upper bound in nanoseconds, or {@link Long#MAX_VALUE} if it falls into
+         * the last bucket.
+         */
+        public long getPercentileNanos(final double percentile) {
+            final long threshold = (long) Math.ceil(count * percentile / 100);
+            long cumulativeCount = 0;
+
+            for (int i = 0; i < HISTOGRAM_SIZE - 1; i++) {
+                cumulativeCount += histogram[i];
+
+                if (cumulativeCount >= threshold) {
+                    return 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return dependencyType.getName() + "[count=" + count + ", totalNanos=" + totalNanos
+                    + ", maxNanos=" + maxNanos + ", expensiveMisses=" + expensiveMissCount
+                    + (flagged ? ", flagged" : "") + "]";
+        }
+    }
+
+    /**
+     * {@link Snapshot} is an immutable copy of the statistics collected by a {@link DependencyTracer}.
+     */
+    public static final class Snapshot {
+
+        private final Map<Tier, Long> tierCounts;
+        private final List<TypeStatistics> types;
+
+        Snapshot(final Map<Tier, Long> tierCounts, final List<TypeStatistics> types) {
+            this.tierCounts = Collections.unmodifiableMap(tierCounts);
+            this.types = Collections.unmodifiableList(types);
+        }
+
+        /**
+         * Gets the count of the dependencies supplied by the given {@link Tier}.
+         *
+         * @param tier A {@link Tier}.
+         * @return The count as a {@code long}.
+         */
+        public long getCount(final Tier tier) {
+            return tierCounts.get(tier);
+        }
+
+        public Map<Tier, Long> getTierCounts() {
+            return tierCounts;
+        }
+
+        /**
+         * Gets the statistics of the dependency types ordered by the total time spent for
+         * resolving them, the slowest first.
+         *
+         * @return A {@link List} of {@link TypeStatistics}.
+         */
+        public List<TypeStatistics> getTypes() {
+            return types;
+        }
+
+        /**
+         * Gets the statistics of the dependency types whose expensive cache misses have repeated.
+         *
+         * @return A {@link List} of {@link TypeStatistics}.
+         */
+        public List<TypeStatistics> getFlaggedTypes() {
+            final ArrayList<TypeStatistics> flaggedTypes = new ArrayList<>();
+
+            for (final TypeStatistics statistics : types) {
+                if (statistics.isFlagged()) {
+                    flaggedTypes.add(statistics);
+                }
+            }
+            return flaggedTypes;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.robopupu.api.dependency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/*
+ * {@link Eager} is used to annotate methods, constructors or classes annotated with
+ * {@link Provides} whose dependencies are instantiated when the {@link DependencyScope}
+ * providing them is activated instead of on their first request. The eager dependencies
+ * are instantiated in parallel in the topological order of their dependencies.
+ */
+@Target({ElementType.CONSTRUCTOR, ElementType.METHOD, ElementType.TYPE})
+public @interface Eager {
+}
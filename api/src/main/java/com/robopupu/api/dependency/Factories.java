@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link Factories} provides a static API for instantiating objects of given types. An object is
+ * instantiated using the {@link InstanceFactory} registered for the package of its type, or
+ * the code generated {@link InstanceFactory} that knows the type. The generated
+ * {@link InstanceFactory}s are loaded as services from the {@link ClassLoader} of the type. If
+ * none of them knows the type, the object is instantiated using reflection. The types that cannot
+ * be instantiated, because they are abstract or lack an accessible constructor without parameters,
+ * are remembered, so that the failing reflective instantiation is attempted only once per type.
+ */
+public final class Factories {
+
+    /*
+     * A placeholder for a type that is not known by any {@link InstanceFactory}.
+     */
+    private static final InstanceFactory NO_FACTORY = new InstanceFactory() {
+        @Override
+        public <T> T newInstance(final Class<T> type) {
+            return null;
+        }
+    };
+
+    /*
+     * The registered {@link InstanceFactory}s indexed by package names.
+     */
+    private static final ConcurrentHashMap<String, InstanceFactory> factories = new ConcurrentHashMap<>();
+
+    /*
+     * The code generated {@link InstanceFactory}s indexed by the {@link ClassLoader}s they are
+     * loaded from.
+     */
+    private static final ConcurrentHashMap<ClassLoader, List<InstanceFactory>> generatedFactories = new ConcurrentHashMap<>();
+
+    /*
+     * The {@link InstanceFactory}s indexed by the types they have been looked up for.
+     */
+    private static final ConcurrentHashMap<Class<?>, InstanceFactory> typeFactories = new ConcurrentHashMap<>();
+
+    /*
+     * The types that cannot be instantiated.
+     */
+    private static final Set<Class<?>> nonInstantiableTypes = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+    private Factories() {
+    }
+
+    /**
+     * Creates a new instance of the specified type.
+     *
+     * @param type A {@link Class} specifying the type.
+     * @param <T>  A type parameter for casting the created instance to expected type.
+     * @return The created instance or {@code null} if the specified type cannot be instantiated.
+     */
+    public static <T> T newInstance(final Class<T> type) {
+        if (type == null || nonInstantiableTypes.contains(type)) {
+            return null;
+        }
+
+        final InstanceFactory factory = typeFactories.get(type);
+        T instance = (factory != null) ? factory.newInstance(type) : newInstanceByLookup(type);
+
+        if (instance == null) {
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isPrimitive() || type.isArray()) {
+                nonInstantiableTypes.add(type);
+                return null;
+            }
+
+            try {
+                instance = type.getDeclaredConstructor().newInstance();
+            } catch (NoSuchMethodException | IllegalAccessException | InstantiationException e) {
+                nonInstantiableTypes.add(type);
+            } catch (InvocationTargetException e) {
+                // A constructor that fails may succeed later, so the type is not remembered
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Registers the given {@link InstanceFactory} for the specified package. A registered
+     * {@link InstanceFactory} replaces the code generated ones.
+     *
+     * @param packageName The name of the package.
+     * @param factory     An {@link InstanceFactory}.
+     */
+    public static void register(final String packageName, final InstanceFactory factory) {
+        factories.put(packageName, factory);
+        typeFactories.clear();
+    }
+
+    /**
+     * Looks up the {@link InstanceFactory} for the specified type, and creates a new instance of
+     * the type using it. The found {@link InstanceFactory} is remembered for the type.
+     *
+     * @param type A {@link Class} specifying the type.
+     * @param <T>  A type parameter for casting the created instance to expected type.
+     * @return The created instance or {@code null} if the found {@link InstanceFactory} cannot
+     * instantiate the specified type.
+     */
+    private static <T> T newInstanceByLookup(final Class<T> type) {
+        final String typeName = type.getName();
+        final int index = typeName.lastIndexOf('.');
+        final String packageName = (index > 0) ? typeName.substring(0, index) : "";
+        final InstanceFactory registeredFactory = factories.get(packageName);
+
+        if (registeredFactory != null) {
+            typeFactories.put(type, registeredFactory);
+            return registeredFactory.newInstance(type);
+        }
+
+        for (final InstanceFactory factory : getGeneratedFactories(type.getClassLoader())) {
+            final T instance = factory.newInstance(type);
+
+            if (instance != null) {
+                typeFactories.put(type, factory);
+                return instance;
+            }
+        }
+        typeFactories.put(type, NO_FACTORY);
+        return null;
+    }
+
+    /**
+     * Gets the code generated {@link InstanceFactory}s registered as services for the given
+     * {@link ClassLoader}. The services of a {@link ClassLoader} are loaded only once.
+     *
+     * @param classLoader A {@link ClassLoader}. May be {@code null} for the bootstrap class loader.
+     * @return A {@link List} of {@link InstanceFactory}s. May not return {@code null}.
+     */
+    private static List<InstanceFactory> getGeneratedFactories(final ClassLoader classLoader) {
+        if (classLoader == null) {
+            return Collections.emptyList();
+        }
+
+        List<InstanceFactory> loadedFactories = generatedFactories.get(classLoader);
+
+        if (loadedFactories == null) {
+            loadedFactories = new ArrayList<>();
+
+            try {
+                for (final InstanceFactory factory : ServiceLoader.load(InstanceFactory.class, classLoader)) {
+                    loadedFactories.add(factory);
+                }
+            } catch (ServiceConfigurationError e) {
+                // The factories loaded so far are used
+            }
+
+            final List<InstanceFactory> existingFactories = generatedFactories.putIfAbsent(classLoader, loadedFactories);
+
+            if (existingFactories != null) {
+                loadedFactories = existingFactories;
+            }
+        }
+        return loadedFactories;
+    }
+}
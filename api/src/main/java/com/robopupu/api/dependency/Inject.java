@@ -0,0 +1,13 @@
+package com.robopupu.api.dependency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/*
+ * {@link Inject} is used to annotate fields that are injected with dependencies by a code generated
+ * {@link Injector}. The type of an annotated field may also be a {@link Lazy} or a {@link Provider}
+ * handle to a dependency. An annotated field may not be private or final.
+ */
+@Target(ElementType.FIELD)
+public @interface Inject {
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/**
+ * {@link Injector} defines an interface for code generated classes that inject the fields of
+ * a class annotated with {@link Inject}. A generated {@link Injector} resolves each distinct
+ * dependency type only once from the given {@link DependencyScope} and assigns the fields of
+ * the declaring class. The fields declared by the superclasses are injected by their own
+ * {@link Injector}s.
+ *
+ * @param <T> The type of the injected object.
+ */
+public interface Injector<T> {
+
+    String SUFFIX = "_Injector";
+
+    /**
+     * Injects the fields of the given target object.
+     *
+     * @param target The target object.
+     * @param scope  The {@link DependencyScope} the dependencies are resolved from.
+     */
+    void inject(T target, DependencyScope scope);
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link Injectors} provides a static API for injecting the fields annotated with {@link Inject}
+ * using the code generated {@link Injector}s. The {@link Injector}s of a class and its superclasses
+ * are instantiated using {@link Dependency#getScopeRegistry()} only once per class, and a class
+ * without any {@link Injector}s is remembered too.
+ */
+public final class Injectors {
+
+    /*
+     * The {@link Injector}s indexed by the classes they have been looked up for. The {@link Injector}s
+     * of the superclasses precede the {@link Injector} of the class itself.
+     */
+    private static final ConcurrentHashMap<Class<?>, Injector<?>[]> injectors = new ConcurrentHashMap<>();
+
+    private Injectors() {
+    }
+
+    /**
+     * Injects the fields of the given target object with dependencies resolved from the given
+     * {@link DependencyScope}.
+     *
+     * @param scope  A {@link DependencyScope}.
+     * @param target The target object.
+     * @return A {@code boolean} value indicating if the target had any fields to be injected.
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean inject(final DependencyScope scope, final Object target) {
+        final Injector<?>[] targetInjectors = getInjectors(target.getClass());
+
+        for (final Injector<?> injector : targetInjectors) {
+            ((Injector<Object>) injector).inject(target, scope);
+        }
+        return targetInjectors.length > 0;
+    }
+
+    private static Injector<?>[] getInjectors(final Class<?> targetClass) {
+        Injector<?>[] targetInjectors = injectors.get(targetClass);
+
+        if (targetInjectors == null) {
+            final ScopeRegistry registry = Dependency.getScopeRegistry();
+            final ArrayList<Injector<?>> foundInjectors = new ArrayList<>();
+            Class<?> type = targetClass;
+
+            while (type != null && type != Object.class) {
+                final Injector<?> injector = registry.newInjector(type);
+
+                if (injector != null) {
+                    foundInjectors.add(0, injector);
+                }
+                type = type.getSuperclass();
+            }
+
+            targetInjectors = foundInjectors.toArray(new Injector<?>[foundInjectors.size()]);
+            injectors.put(targetClass, targetInjectors);
+        }
+        return targetInjectors;
+    }
+}
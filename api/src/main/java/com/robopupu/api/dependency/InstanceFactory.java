@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/*
+ * {@link InstanceFactory} defines an interface for factories that instantiate objects of given
+ * types without reflection. The annotation processor of Robopupu Compiler generates an implementation
+ * of {@link InstanceFactory} for each package that contains injectable classes, and registers it as
+ * a service. A generated {@link InstanceFactory} is named after the first class it instantiates, so
+ * that the {@link InstanceFactory}s generated by different modules for a shared package do not collide.
+ */
+public interface InstanceFactory {
+
+    String SUFFIX = "_InstanceFactory";
+
+    /**
+     * Creates a new instance of the specified type.
+     *
+     * @param type A {@link Class} specifying the type.
+     * @param <T>  A type parameter for casting the created instance to expected type.
+     * @return The created instance or {@code null} if this {@link InstanceFactory} cannot
+     * instantiate the specified type.
+     */
+    <T> T newInstance(Class<T> type);
+}
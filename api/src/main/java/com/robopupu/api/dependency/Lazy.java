@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/**
+ * {@link Lazy} is a handle to a dependency that is resolved from a {@link DependencyScope} only
+ * when it is used for the first time. The resolved dependency is retained by the {@link Lazy},
+ * so that the subsequent invocations of {@link Lazy#get()} only read a volatile field.
+ *
+ * @param <T> The type of the dependency.
+ */
+public final class Lazy<T> {
+
+    private final Class<T> dependencyType;
+    private final DependencyScope scope;
+
+    private volatile T dependency;
+
+    /**
+     * Constructs a new instance of {@link Lazy}.
+     *
+     * @param scope          The {@link DependencyScope} the dependency is resolved from.
+     * @param dependencyType A {@link Class} specifying the type of the dependency.
+     */
+    Lazy(final DependencyScope scope, final Class<T> dependencyType) {
+        this.scope = scope;
+        this.dependencyType = dependencyType;
+    }
+
+    /**
+     * Gets the type of the dependency.
+     *
+     * @return A {@link Class}.
+     */
+    public Class<T> getDependencyType() {
+        return dependencyType;
+    }
+
+    /**
+     * Tests if the dependency has already been resolved.
+     *
+     * @return A {@code boolean} value.
+     */
+    public boolean isResolved() {
+        return dependency != null;
+    }
+
+    /**
+     * Gets the dependency. The dependency is resolved on the first invocation.
+     *
+     * @return The dependency. If {@code null} is returned, it indicates an error in
+     * an {@link DependencyScope} implementation.
+     */
+    public T get() {
+        T result = dependency;
+
+        if (result == null) {
+            synchronized (this) {
+                result = dependency;
+
+                if (result == null) {
+                    result = scope.getDependency(dependencyType, null, false);
+                    dependency = result;
+                }
+            }
+        }
+        return result;
+    }
+}
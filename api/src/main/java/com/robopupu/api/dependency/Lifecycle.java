@@ -0,0 +1,25 @@
+package com.robopupu.api.dependency;
+
+/*
+ * {@link Lifecycle} defines the lifecycles of the dependencies provided by methods, constructors,
+ * and classes annotated with {@link Provides}.
+ */
+public enum Lifecycle {
+
+    /*
+     * A single dependency is created for each instance of the {@link DependencyScope}. This is
+     * the default lifecycle.
+     */
+    SCOPED,
+
+    /*
+     * A single dependency is created for all the instances of the {@link DependencyScope}. The
+     * dependency outlives the disposed {@link DependencyScope}s.
+     */
+    SINGLETON,
+
+    /*
+     * A new dependency is created for every request. The dependency is not cached.
+     */
+    PROTOTYPE
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ObjectPool} is a bounded pool of dependencies of a single type provided by a method,
+ * a constructor, or a class annotated with {@link Pooled}. There is one {@link ObjectPool} for
+ * each pooled dependency type of a {@link DependencyScope} class, so that the dependencies leased
+ * by a disposed {@link DependencyScope} can be reused by the next {@link DependencyScope} of the
+ * same class.
+ *
+ * @param <T> The type of the pooled dependencies.
+ */
+public final class ObjectPool<T> {
+
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    /*
+     * The {@link ObjectPool}s indexed by {@link DependencyScope} classes and dependency types.
+     */
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, ObjectPool<?>>> pools = new ConcurrentHashMap<>();
+
+    private final ArrayDeque<T> dependencies;
+    private final int maxSize;
+
+    private ObjectPool(final int maxSize) {
+        this.maxSize = maxSize;
+        dependencies = new ArrayDeque<>();
+    }
+
+    /**
+     * Gets the {@link ObjectPool} for the specified {@link DependencyScope} class and dependency type.
+     * The {@link ObjectPool} is created if it does not exist.
+     *
+     * @param scopeClass     A {@link Class} specifying the {@link DependencyScope} class.
+     * @param dependencyType A {@link Class} specifying the dependency type.
+     * @param maxSize        The maximum number of retained dependencies for a created {@link ObjectPool}.
+     * @param <T>            A type parameter for casting the {@link ObjectPool} to expected type.
+     * @return An {@link ObjectPool}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ObjectPool<T> getPool(final Class<? extends DependencyScope> scopeClass, final Class<T> dependencyType, final int maxSize) {
+        ConcurrentHashMap<Class<?>, ObjectPool<?>> scopePools = pools.get(scopeClass);
+
+        if (scopePools == null) {
+            scopePools = new ConcurrentHashMap<>();
+            final ConcurrentHashMap<Class<?>, ObjectPool<?>> existingPools = pools.putIfAbsent(scopeClass, scopePools);
+
+            if (existingPools != null) {
+                scopePools = existingPools;
+            }
+        }
+
+        ObjectPool<?> pool = scopePools.get(dependencyType);
+
+        if (pool == null) {
+            pool = new ObjectPool<T>(maxSize);
+            final ObjectPool<?> existingPool = scopePools.putIfAbsent(dependencyType, pool);
+
+            if (existingPool != null) {
+                pool = existingPool;
+            }
+        }
+        return (ObjectPool<T>) pool;
+    }
+
+    /**
+     * Gets the maximum number of dependencies retained by this {@link ObjectPool}.
+     *
+     * @return The maximum number as an {@code int}.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of dependencies currently available in this {@link ObjectPool}.
+     *
+     * @return The number as an {@code int}.
+     */
+    public synchronized int size() {
+        return dependencies.size();
+    }
+
+    /**
+     * Takes a dependency from this {@link ObjectPool}.
+     *
+     * @return A dependency or {@code null} if this {@link ObjectPool} is empty.
+     */
+    public synchronized T acquire() {
+        return dependencies.pollLast();
+    }
+
+    /**
+     * Returns the given dependency to this {@link ObjectPool}. A {@link Poolable} dependency is reset
+     * before it is returned. The dependency is discarded if this {@link ObjectPool} is full or if
+     * resetting the dependency fails.
+     *
+     * @param dependency The dependency to be returned.
+     * @return A {@code boolean} value indicating if the dependency was retained.
+     */
+    public boolean release(final T dependency) {
+        if (dependency instanceof Poolable) {
+            try {
+                ((Poolable) dependency).reset();
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        synchronized (this) {
+            if (dependencies.size() < maxSize) {
+                dependencies.addLast(dependency);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Discards all the dependencies retained by this {@link ObjectPool}.
+     */
+    public synchronized void clear() {
+        dependencies.clear();
+    }
+}
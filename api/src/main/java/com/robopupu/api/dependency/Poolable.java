@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/**
+ * {@link Poolable} defines an interface for pooled dependencies that need to be reset before they
+ * can be leased again from an {@link ObjectPool}.
+ */
+public interface Poolable {
+
+    /**
+     * Invoked when this {@link Poolable} is returned to an {@link ObjectPool}. The implementation
+     * should clear the state of this object, so that it can be reused as a new dependency.
+     */
+    void reset();
+}
@@ -0,0 +1,17 @@
+package com.robopupu.api.dependency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/*
+ * {@link Pooled} is used to annotate methods, constructors, and classes annotated with {@link Provides}
+ * to specify that the provided dependencies are leased from an {@link ObjectPool} of the
+ * {@link DependencyScope} class. A leased dependency is returned to the pool when the leasing
+ * {@link DependencyScope} is disposed. A dependency implementing {@link Poolable} is reset when
+ * it is returned. {@link Pooled} annotation can have a parameter that specifies the maximum number
+ * of dependencies retained by the pool.
+ */
+@Target({ElementType.CONSTRUCTOR, ElementType.METHOD, ElementType.TYPE})
+public @interface Pooled {
+    int maxSize() default ObjectPool.DEFAULT_MAX_SIZE;
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/**
+ * {@link Provider} is a handle to a dependency that is resolved from a {@link DependencyScope}
+ * on each invocation of {@link Provider#get()}. A {@link Provider} remembers the
+ * {@link DependencyScope} that supplied the dependency, so that the subsequent resolutions look
+ * up the dependency directly from its cache instead of searching the chain of scopes. If the
+ * dependency is no longer cached there, or if the routing of the original {@link DependencyScope}
+ * has changed since, the dependency is resolved again from the original {@link DependencyScope}.
+ *
+ * @param <T> The type of the dependency.
+ */
+public final class Provider<T> {
+
+    private final Class<T> dependencyType;
+    private final DependencyScope scope;
+
+    private volatile Route route;
+
+    /**
+     * Constructs a new instance of {@link Provider}.
+     *
+     * @param scope          The {@link DependencyScope} the dependency is resolved from.
+     * @param dependencyType A {@link Class} specifying the type of the dependency.
+     */
+    Provider(final DependencyScope scope, final Class<T> dependencyType) {
+        this.scope = scope;
+        this.dependencyType = dependencyType;
+    }
+
+    /**
+     * Gets the type of the dependency.
+     *
+     * @return A {@link Class}.
+     */
+    public Class<T> getDependencyType() {
+        return dependencyType;
+    }
+
+    /**
+     * Gets the dependency.
+     *
+     * @return The dependency. If {@code null} is returned, it indicates an error in
+     * an {@link DependencyScope} implementation.
+     */
+    public T get() {
+        final Route route = this.route;
+        final int routingVersion = scope.getRoutingVersion();
+
+        if (route != null && route.routingVersion == routingVersion) {
+            final T dependency = route.supplier.getCachedDependency(dependencyType);
+
+            if (dependency != null) {
+                return dependency;
+            }
+        }
+
+        final T dependency = scope.getDependency(dependencyType, null, false);
+
+        if (dependency != null) {
+            final DependencyScope supplier = scope.getSupplier(dependencyType, dependency);
+            this.route = (supplier != null) ? new Route(supplier, routingVersion) : null;
+        }
+        return dependency;
+    }
+
+    /**
+     * {@link Route} records the {@link DependencyScope} that supplied the dependency and
+     * the routing version of the original {@link DependencyScope} the supplier is valid for.
+     */
+    private static final class Route {
+
+        final DependencyScope supplier;
+        final int routingVersion;
+
+        Route(final DependencyScope supplier, final int routingVersion) {
+            this.supplier = supplier;
+            this.routingVersion = routingVersion;
+        }
+    }
+}
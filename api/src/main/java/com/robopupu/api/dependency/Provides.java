@@ -6,9 +6,11 @@ import java.lang.annotation.Target;
 /*
  * {@link Provides} is used to annotate methods or constructors that provide dependencies for
  * injection. {@link Provides} annotation can have one annotation parameter of type {@link Class}
- * that declares the type of the provided dependency.
+ * that declares the type of the provided dependency, and a {@link Lifecycle} that declares how
+ * the provided dependency is cached.
  */
 @Target({ElementType.CONSTRUCTOR, ElementType.METHOD, ElementType.TYPE})
 public @interface Provides {
     Class<?> value() default Object.class;
+    Lifecycle lifecycle() default Lifecycle.SCOPED;
 }
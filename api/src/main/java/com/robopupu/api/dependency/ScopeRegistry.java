@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2014 - 2015 Marko Salmela, http://robopupu.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ScopeRegistry} is used by {@link Dependency} and {@link DependencyScope} to look up
+ * {@link DependencyScope} classes by their names, and to instantiate {@link DependencyScope}s,
+ * their {@link DependencyProvider}s, and the {@link Injector}s used by {@link Injectors}.
+ * The annotation processor of Robopupu Compiler generates an extended {@link ScopeRegistry} for each
+ * compiled module and processing round that lists the {@link DependencyScope} classes annotated with
+ * {@link Scope} and the classes with fields annotated with {@link Inject}, so that they can be looked
+ * up and instantiated without reflection. A generated {@link ScopeRegistry} is named after the first
+ * class it lists, so that the generated {@link ScopeRegistry}s of different modules that share
+ * a package do not collide. The generated {@link ScopeRegistry}s are registered as services and
+ * chained by {@link ScopeRegistry#load()}, each of them delegating the classes it does not know to
+ * the next one. The last {@link ScopeRegistry} of the chain uses reflection and remembers
+ * the results, including the failed lookups.
+ */
+public class ScopeRegistry {
+
+    /**
+     * The suffix of the names of the generated {@link ScopeRegistry} classes.
+     */
+    public static final String SUFFIX = "_ScopeRegistry";
+
+    /*
+     * A placeholder for a failed lookup.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    /*
+     * The {@link DependencyScope} classes looked up using reflection indexed by their names.
+     */
+    private final ConcurrentHashMap<String, Object> scopeClasses;
+
+    /*
+     * The {@link DependencyProvider} classes looked up using reflection indexed by
+     * the {@link DependencyScope} classes.
+     */
+    private final ConcurrentHashMap<Class<?>, Object> dependencyProviderClasses;
+
+    /*
+     * The {@link Injector} classes looked up using reflection indexed by the target classes.
+     */
+    private final ConcurrentHashMap<Class<?>, Object> injectorClasses;
+
+    /*
+     * The next {@link ScopeRegistry} of the chain or {@code null} for the last one.
+     */
+    private ScopeRegistry next;
+
+    public ScopeRegistry() {
+        scopeClasses = new ConcurrentHashMap<>();
+        dependencyProviderClasses = new ConcurrentHashMap<>();
+        injectorClasses = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Loads the generated {@link ScopeRegistry}s registered as services and chains them in
+     * the order they are found.
+     *
+     * @return The first {@link ScopeRegistry} of the chain, or a new {@link ScopeRegistry} if
+     * no generated {@link ScopeRegistry}s are found.
+     */
+    static ScopeRegistry load() {
+        ScopeRegistry first = null;
+        ScopeRegistry last = null;
+
+        try {
+            for (final ScopeRegistry registry : ServiceLoader.load(ScopeRegistry.class, ScopeRegistry.class.getClassLoader())) {
+                if (last == null) {
+                    first = registry;
+                } else {
+                    last.next = registry;
+                }
+                last = registry;
+            }
+        } catch (ServiceConfigurationError e) {
+            // The registries loaded so far are used
+        }
+        return (first != null) ? first : new ScopeRegistry();
+    }
+
+    /**
+     * Gets the {@link DependencyScope} class specified by the given canonical class name.
+     *
+     * @param scopeClassName The canonical name of the {@link DependencyScope} class.
+     * @return A {@link Class}. May return {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public Class<? extends DependencyScope> getScopeClass(final String scopeClassName) {
+        if (next != null) {
+            return next.getScopeClass(scopeClassName);
+        }
+
+        Object scopeClass = scopeClasses.get(scopeClassName);
+
+        if (scopeClass == null) {
+            try {
+                final Class<?> foundClass = Class.forName(scopeClassName);
+                scopeClass = DependencyScope.class.isAssignableFrom(foundClass) ? foundClass : NOT_FOUND;
+            } catch (ClassNotFoundException e) {
+                scopeClass = NOT_FOUND;
+            }
+            scopeClasses.put(scopeClassName, scopeClass);
+        }
+        return (scopeClass != NOT_FOUND) ? (Class<? extends DependencyScope>) scopeClass : null;
+    }
+
+    /**
+     * Creates a new instance of the specified {@link DependencyScope} class.
+     *
+     * @param scopeClass A {@link Class} specifying the {@link DependencyScope}.
+     * @param <T>        A type parameter for casting the created instance to expected type.
+     * @return The created {@link DependencyScope} or {@code null} if it cannot be instantiated.
+     */
+    public <T extends DependencyScope> T newScope(final Class<T> scopeClass) {
+        if (next != null) {
+            return next.newScope(scopeClass);
+        }
+        return Factories.newInstance(scopeClass);
+    }
+
+    /**
+     * Creates a new instance of the {@link DependencyProvider} generated for the specified
+     * {@link DependencyScope} class.
+     *
+     * @param scopeClass A {@link Class} specifying the {@link DependencyScope}.
+     * @return The created {@link DependencyProvider} or {@code null} if there is no
+     * {@link DependencyProvider} for the {@link DependencyScope}.
+     */
+    public DependencyProvider newDependencyProvider(final Class<? extends DependencyScope> scopeClass) {
+        if (next != null) {
+            return next.newDependencyProvider(scopeClass);
+        }
+
+        Object dependencyProviderClass = dependencyProviderClasses.get(scopeClass);
+
+        if (dependencyProviderClass == null) {
+            try {
+                dependencyProviderClass = Class.forName(scopeClass.getName() + DependencyProvider.SUFFIX);
+            } catch (ClassNotFoundException e) {
+                dependencyProviderClass = NOT_FOUND;
+            }
+            dependencyProviderClasses.put(scopeClass, dependencyProviderClass);
+        }
+
+        if (dependencyProviderClass != NOT_FOUND) {
+            try {
+                return (DependencyProvider) ((Class<?>) dependencyProviderClass).newInstance();
+            } catch (Exception e) {
+                dependencyProviderClasses.put(scopeClass, NOT_FOUND);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new instance of the {@link Injector} generated for the specified class.
+     *
+     * @param targetClass A {@link Class} specifying the class declaring the injected fields.
+     * @return The created {@link Injector} or {@code null} if there is no {@link Injector} for
+     * the class.
+     */
+    public Injector<?> newInjector(final Class<?> targetClass) {
+        if (next != null) {
+            return next.newInjector(targetClass);
+        }
+
+        Object injectorClass = injectorClasses.get(targetClass);
+
+        if (injectorClass == null) {
+            try {
+                // The names of the enclosing classes of a nested class are joined with underscores
+
+                final String className = targetClass.getName();
+                final int index = className.lastIndexOf('.') + 1;
+                final String injectorClassName = className.substring(0, index) + className.substring(index).replace('$', '_') + Injector.SUFFIX;
+                injectorClass = Class.forName(injectorClassName, true, targetClass.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                injectorClass = NOT_FOUND;
+            }
+            injectorClasses.put(targetClass, injectorClass);
+        }
+
+        if (injectorClass != NOT_FOUND) {
+            try {
+                return (Injector<?>) ((Class<?>) injectorClass).newInstance();
+            } catch (Exception e) {
+                injectorClasses.put(targetClass, NOT_FOUND);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+/**
+ * {@link AsyncEvents} is the base class of the code generated {@code State.Async} proxies. A proxy
+ * implements the event interfaces of a {@link StateMachine} by posting each invoked event with its
+ * id and arguments to the shard of the {@link StateMachine} in a {@link StateMachineExecutor}, or
+ * to a {@link StateMachineExecutor.Batch}. The event methods of a proxy return without waiting for
+ * the events to be dispatched. Constructing a proxy attaches the {@link StateMachine} to
+ * the {@link StateMachineExecutor}, so that the events fired by its {@link Timeout}s are
+ * dispatched by the same shard. See {@link StateMachineExecutor#attach(StateMachine)}.
+ */
+public abstract class AsyncEvents {
+
+    private final StateMachineExecutor executor;
+    private final StateMachineExecutor.Batch batch;
+    private final StateMachine stateMachine;
+
+    /**
+     * Constructs a new instance of {@link AsyncEvents} that posts the events to the given
+     * {@link StateMachineExecutor}.
+     *
+     * @param executor     A {@link StateMachineExecutor}.
+     * @param stateMachine The {@link StateMachine} receiving the events.
+     */
+    protected AsyncEvents(final StateMachineExecutor executor, final StateMachine stateMachine) {
+        this.executor = executor;
+        this.stateMachine = stateMachine;
+        batch = null;
+        executor.attach(stateMachine);
+    }
+
+    /**
+     * Constructs a new instance of {@link AsyncEvents} that adds the events to the given
+     * {@link StateMachineExecutor.Batch}.
+     *
+     * @param batch        A {@link StateMachineExecutor.Batch}.
+     * @param stateMachine The {@link StateMachine} receiving the events.
+     */
+    protected AsyncEvents(final StateMachineExecutor.Batch batch, final StateMachine stateMachine) {
+        this.batch = batch;
+        this.stateMachine = stateMachine;
+        executor = null;
+        batch.getExecutor().attach(stateMachine);
+    }
+
+    public StateMachine getStateMachine() {
+        return stateMachine;
+    }
+
+    /**
+     * Posts the specified event. Invoked by the code generated event methods.
+     *
+     * @param eventId The id of the event.
+     * @param args    The arguments of the event. May be {@code null} for an event without
+     *                arguments.
+     */
+    protected final void post(final int eventId, final Object[] args) {
+        if (batch != null) {
+            batch.post(stateMachine, eventId, args);
+        } else {
+            executor.post(stateMachine, eventId, args);
+        }
+    }
+}
@@ -0,0 +1,745 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * {@link EventJournal} is an append-only journal of the events dispatched by a {@link StateEngine}
+ * in the journaled mode. See {@link StateMachine#setJournal(EventJournal)}. Each event is recorded
+ * with the event id assigned by the annotation processor and the arguments of the event method.
+ * The journal is stored in a directory as a sequence of fixed size segment files that are mapped
+ * into memory, so that appending an event is a copy into a {@link MappedByteBuffer}. Each segment
+ * starts with a header that contains the fingerprint of the {@link StateHierarchy} of
+ * the journaled {@link StateEngine}, and a journal of a different {@link StateHierarchy} is
+ * rejected. See {@link StateHierarchy#getFingerprint()}. A record consists of the length of
+ * the payload as a variable-length integer, the payload, and a CRC32 checksum of the payload.
+ * A zero length marks the end of the journal. The records written before a crash of the process
+ * are in the page cache of the operating system and survive the crash.
+ * {@link EventJournal#flush()} writes the records to the storage.
+ * <p>
+ * Every {@link EventJournal#getSnapshotInterval()} events the {@link StateEngine} saves
+ * a snapshot of its configuration to the journal. Replaying the journal using
+ * {@link StateMachine#replay(EventJournal)} restores the latest snapshot and dispatches only
+ * the events recorded after it, which bounds the time taken by the replay. The events can be read
+ * for debugging using {@link EventJournal#read()}.
+ * <p>
+ * The supported types of the event arguments are the primitive types and their wrappers,
+ * {@link String}, {@code byte[]} and {@link Serializable}.
+ * <p>
+ * An {@link EventJournal} has to be closed using {@link EventJournal#close()} when it is no longer
+ * used, which writes the appended events to the storage.
+ */
+public final class EventJournal implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 100000;
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String SNAPSHOT_FILE_NAME = "snapshot";
+    private static final String TEMP_SNAPSHOT_FILE_NAME = "snapshot.tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /*
+     * The magic number and the size of the header of a segment. The header consists of the magic
+     * number and the fingerprint of the {@link StateHierarchy}.
+     */
+    private static final int MAGIC = 0x524A524E;
+    private static final int HEADER_SIZE = 8;
+
+    /*
+     * The size of the checksum of a record.
+     */
+    private static final int CHECKSUM_SIZE = 4;
+
+    /*
+     * The type tags of the encoded event arguments.
+     */
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALSE = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_BYTE = 3;
+    private static final byte TAG_SHORT = 4;
+    private static final byte TAG_CHAR = 5;
+    private static final byte TAG_INT = 6;
+    private static final byte TAG_LONG = 7;
+    private static final byte TAG_FLOAT = 8;
+    private static final byte TAG_DOUBLE = 9;
+    private static final byte TAG_STRING = 10;
+    private static final byte TAG_BYTES = 11;
+    private static final byte TAG_SERIALIZABLE = 12;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int snapshotInterval;
+    private final CRC32 checksum;
+
+    /*
+     * The buffer for encoding the payload of a record.
+     */
+    private ByteBuffer payload;
+
+    /*
+     * The index and the mapped buffer of the segment the events are appended to.
+     */
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+
+    /*
+     * The number of the events appended since the latest snapshot.
+     */
+    private int eventsSinceSnapshot;
+
+    /*
+     * The fingerprint of the {@link StateHierarchy} the journal has been bound to, and whether
+     * the journal has been bound to one. A new journal is bound when the first
+     * {@link StateEngine} is set to use it. A closed journal cannot be used.
+     */
+    private int fingerprint;
+    private boolean bound;
+    private boolean closed;
+
+    /**
+     * Constructs a new instance of {@link EventJournal} with the default segment size and snapshot
+     * interval.
+     *
+     * @param directory The directory of the journal. The directory is created if it does not exist.
+     * @throws IOException If the journal cannot be opened.
+     */
+    public EventJournal(final File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Constructs a new instance of {@link EventJournal}. If the directory already contains
+     * a journal, the events are appended after the last valid record of it.
+     *
+     * @param directory        The directory of the journal. The directory is created if it does
+     *                         not exist.
+     * @param segmentSize      The size of a segment file in bytes. An encoded event has to fit into
+     *                         a single segment.
+     * @param snapshotInterval The number of the events between the snapshots.
+     * @throws IOException If the journal cannot be opened.
+     */
+    public EventJournal(final File directory, final int segmentSize, final int snapshotInterval) throws IOException {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("Parameter segmentSize must be at least 64");
+        } else if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Parameter snapshotInterval must be positive");
+        } else if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create journal directory: " + directory);
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.snapshotInterval = snapshotInterval;
+        checksum = new CRC32();
+        payload = ByteBuffer.allocate(256);
+
+        // The events are appended after the last valid record of the last segment, which is
+        // searched for starting from the latest snapshot if it refers to the last segment
+
+        segmentIndex = Math.max(getLastSegmentIndex(), 0);
+        segment = mapSegment(segmentIndex, FileChannel.MapMode.READ_WRITE);
+
+        if (segment.getInt(0) == MAGIC) {
+            fingerprint = segment.getInt(4);
+            bound = true;
+        } else if (segment.getInt(0) != 0) {
+            throw new IOException("Malformed journal segment: " + getSegmentFileName(segmentIndex));
+        }
+
+        final byte[] snapshot = readSnapshotFile();
+        int position = HEADER_SIZE;
+
+        if (snapshot != null && ByteBuffer.wrap(snapshot).getInt() == segmentIndex) {
+            position = ByteBuffer.wrap(snapshot).getInt(4);
+        }
+
+        final Reader reader = new Reader(segmentIndex, position);
+
+        while (reader.skip()) {
+            eventsSinceSnapshot++;
+        }
+
+        segment.position(reader.segment.position());
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Binds this {@link EventJournal} to the {@link StateHierarchy} of the given fingerprint.
+     * Invoked when a {@link StateEngine} is set to use this {@link EventJournal}. A new journal
+     * records the fingerprint, and an existing journal has to have been written using
+     * a {@link StateHierarchy} of the same fingerprint.
+     *
+     * @param fingerprint The fingerprint. See {@link StateHierarchy#getFingerprint()}.
+     * @throws IllegalArgumentException If the journal was written using a different
+     *                                  {@link StateHierarchy}.
+     */
+    synchronized void bind(final int fingerprint) {
+        checkOpen();
+
+        if (!bound) {
+            segment.putInt(0, MAGIC);
+            segment.putInt(4, fingerprint);
+            this.fingerprint = fingerprint;
+            bound = true;
+        } else if (this.fingerprint != fingerprint) {
+            throw new IllegalArgumentException("EventJournal does not match the StateHierarchy");
+        }
+    }
+
+    /**
+     * Appends the given event to this {@link EventJournal}.
+     *
+     * @param eventId The id of the event.
+     * @param args    The arguments of the event. May be {@code null} for an event without
+     *                arguments.
+     * @throws IllegalArgumentException If an argument is of unsupported type.
+     */
+    synchronized void append(final int eventId, final Object[] args) {
+        checkOpen();
+
+        if (!bound) {
+            throw new IllegalStateException("EventJournal has not been bound to a StateHierarchy");
+        }
+
+        final ByteBuffer payload = encode(eventId, args);
+        final int length = payload.remaining();
+        final int size = VarInts.sizeOf(length) + length + CHECKSUM_SIZE;
+
+        if (size > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("Event does not fit into a journal segment: " + size + " bytes");
+        } else if (size > segment.remaining()) {
+            nextSegment();
+        }
+
+        checksum.reset();
+        checksum.update(payload.array(), 0, length);
+        VarInts.put(segment, length);
+        segment.put(payload);
+        segment.putInt((int) checksum.getValue());
+        eventsSinceSnapshot++;
+    }
+
+    /**
+     * Tests if a snapshot should be saved because {@link EventJournal#getSnapshotInterval()}
+     * events have been appended since the latest snapshot.
+     *
+     * @return A {@code boolean} value.
+     */
+    synchronized boolean isSnapshotDue() {
+        return eventsSinceSnapshot >= snapshotInterval;
+    }
+
+    /**
+     * Saves the given snapshot of a {@link StateEngine} taken after dispatching all the appended
+     * events. The snapshot replaces the previous snapshot.
+     *
+     * @param snapshot The snapshot as a {@code byte} array. See {@link StateEngine#saveSnapshot()}.
+     */
+    synchronized void writeSnapshot(final byte[] snapshot) {
+        checkOpen();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(8 + snapshot.length);
+        buffer.putInt(segmentIndex);
+        buffer.putInt(segment.position());
+        buffer.put(snapshot);
+
+        final File tempFile = new File(directory, TEMP_SNAPSHOT_FILE_NAME);
+
+        try {
+            // The segment is flushed first, so that the snapshot never refers to a lost record
+
+            segment.force();
+
+            try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw")) {
+                file.setLength(0);
+                file.write(buffer.array());
+                file.getFD().sync();
+            }
+
+            if (!tempFile.renameTo(new File(directory, SNAPSHOT_FILE_NAME))) {
+                throw new IOException("Failed to rename " + tempFile);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write journal snapshot", e);
+        }
+        eventsSinceSnapshot = 0;
+    }
+
+    /**
+     * Gets the latest snapshot saved to this {@link EventJournal}.
+     *
+     * @return The snapshot as a {@code byte} array, or {@code null} if no snapshot has been saved.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public synchronized byte[] getSnapshot() throws IOException {
+        checkOpen();
+
+        final byte[] bytes = readSnapshotFile();
+        return (bytes != null) ? Arrays.copyOfRange(bytes, 8, bytes.length) : null;
+    }
+
+    /**
+     * Writes the appended events to the storage.
+     */
+    public synchronized void flush() {
+        checkOpen();
+        segment.force();
+    }
+
+    /**
+     * Closes this {@link EventJournal} after writing the appended events to the storage. Closing
+     * a closed {@link EventJournal} has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            segment.force();
+            closed = true;
+
+            // The segment is unmapped when the buffer has been garbage collected
+
+            segment = null;
+            payload = null;
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("EventJournal has been closed");
+        }
+    }
+
+    /**
+     * Creates a {@link Reader} for reading all the events of this {@link EventJournal} starting from
+     * the first segment.
+     *
+     * @return A {@link Reader}.
+     * @throws IOException If the journal cannot be read.
+     */
+    public synchronized Reader read() throws IOException {
+        checkOpen();
+
+        final File[] files = getSegmentFiles();
+        int firstIndex = segmentIndex;
+
+        for (final File file : files) {
+            firstIndex = Math.min(firstIndex, getSegmentIndex(file));
+        }
+        return new Reader(firstIndex, HEADER_SIZE);
+    }
+
+    /**
+     * Creates a {@link Reader} for reading the events of this {@link EventJournal} appended after
+     * the latest snapshot.
+     *
+     * @return A {@link Reader}.
+     * @throws IOException If the journal cannot be read.
+     */
+    public synchronized Reader readFromSnapshot() throws IOException {
+        checkOpen();
+
+        final byte[] bytes = readSnapshotFile();
+
+        if (bytes == null) {
+            return read();
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new Reader(buffer.getInt(), buffer.getInt());
+    }
+
+    /**
+     * Deletes the segment files that precede the segment referred to by the latest snapshot. The
+     * events in those segments are not needed for replaying the journal.
+     *
+     * @return The number of the deleted segment files as an {@code int}.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public synchronized int deleteObsoleteSegments() throws IOException {
+        checkOpen();
+
+        final byte[] bytes = readSnapshotFile();
+        int count = 0;
+
+        if (bytes != null) {
+            final int snapshotSegmentIndex = ByteBuffer.wrap(bytes).getInt();
+
+            for (final File file : getSegmentFiles()) {
+                if (getSegmentIndex(file) < snapshotSegmentIndex && file.delete()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void nextSegment() {
+        segment.force();
+
+        try {
+            segment = mapSegment(segmentIndex + 1, FileChannel.MapMode.READ_WRITE);
+            segment.putInt(MAGIC);
+            segment.putInt(fingerprint);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create journal segment", e);
+        }
+        segmentIndex++;
+    }
+
+    private MappedByteBuffer mapSegment(final int index, final FileChannel.MapMode mode) throws IOException {
+        final File file = new File(directory, getSegmentFileName(index));
+
+        try (RandomAccessFile segmentFile = new RandomAccessFile(file, (mode == FileChannel.MapMode.READ_ONLY) ? "r" : "rw")) {
+            if (mode != FileChannel.MapMode.READ_ONLY && segmentFile.length() < segmentSize) {
+                segmentFile.setLength(segmentSize);
+            }
+
+            // The mapping remains valid after the file has been closed
+
+            return segmentFile.getChannel().map(mode, 0, segmentFile.length());
+        }
+    }
+
+    private static String getSegmentFileName(final int index) {
+        return String.format("%010d%s", index, SEGMENT_SUFFIX);
+    }
+
+    private File[] getSegmentFiles() {
+        final File[] files = directory.listFiles();
+        int count = 0;
+
+        if (files == null) {
+            return new File[0];
+        }
+
+        for (final File file : files) {
+            if (file.getName().endsWith(SEGMENT_SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private int getLastSegmentIndex() {
+        int lastIndex = -1;
+
+        for (final File file : getSegmentFiles()) {
+            lastIndex = Math.max(lastIndex, getSegmentIndex(file));
+        }
+        return lastIndex;
+    }
+
+    private static int getSegmentIndex(final File file) {
+        final String name = file.getName();
+        return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private byte[] readSnapshotFile() throws IOException {
+        final File file = new File(directory, SNAPSHOT_FILE_NAME);
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (RandomAccessFile snapshotFile = new RandomAccessFile(file, "r")) {
+            final byte[] bytes = new byte[(int) snapshotFile.length()];
+            snapshotFile.readFully(bytes);
+
+            if (bytes.length < 8) {
+                throw new IOException("Malformed journal snapshot");
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Encodes the payload of a record for the given event.
+     *
+     * @param eventId The id of the event.
+     * @param args    The arguments of the event. May be {@code null}.
+     * @return The {@link ByteBuffer} containing the payload.
+     */
+    private ByteBuffer encode(final int eventId, final Object[] args) {
+        while (true) {
+            final ByteBuffer payload = this.payload;
+            payload.clear();
+
+            try {
+                VarInts.put(payload, eventId);
+
+                if (args == null) {
+                    VarInts.put(payload, 0);
+                } else {
+                    VarInts.put(payload, args.length);
+
+                    for (final Object arg : args) {
+                        putArg(payload, arg);
+                    }
+                }
+                payload.flip();
+                return payload;
+            } catch (BufferOverflowException e) {
+                this.payload = ByteBuffer.allocate(payload.capacity() * 2);
+            }
+        }
+    }
+
+    private static void putArg(final ByteBuffer buffer, final Object arg) {
+        if (arg == null) {
+            buffer.put(TAG_NULL);
+        } else if (arg instanceof Integer) {
+            buffer.put(TAG_INT).putInt((Integer) arg);
+        } else if (arg instanceof Long) {
+            buffer.put(TAG_LONG).putLong((Long) arg);
+        } else if (arg instanceof Boolean) {
+            buffer.put((Boolean) arg ? TAG_TRUE : TAG_FALSE);
+        } else if (arg instanceof String) {
+            putBytes(buffer.put(TAG_STRING), ((String) arg).getBytes(UTF_8));
+        } else if (arg instanceof Byte) {
+            buffer.put(TAG_BYTE).put((Byte) arg);
+        } else if (arg instanceof Short) {
+            buffer.put(TAG_SHORT).putShort((Short) arg);
+        } else if (arg instanceof Character) {
+            buffer.put(TAG_CHAR).putChar((Character) arg);
+        } else if (arg instanceof Float) {
+            buffer.put(TAG_FLOAT).putFloat((Float) arg);
+        } else if (arg instanceof Double) {
+            buffer.put(TAG_DOUBLE).putDouble((Double) arg);
+        } else if (arg instanceof byte[]) {
+            putBytes(buffer.put(TAG_BYTES), (byte[]) arg);
+        } else if (arg instanceof Serializable) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+                output.writeObject(arg);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Failed to serialize event argument: " + arg.getClass().getName(), e);
+            }
+            putBytes(buffer.put(TAG_SERIALIZABLE), bytes.toByteArray());
+        } else {
+            throw new IllegalArgumentException("Event argument of type " + arg.getClass().getName() + " cannot be journaled");
+        }
+    }
+
+    private static void putBytes(final ByteBuffer buffer, final byte[] bytes) {
+        VarInts.put(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static Object getArg(final ByteBuffer buffer) {
+        final byte tag = buffer.get();
+
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_BYTE:
+                return buffer.get();
+            case TAG_SHORT:
+                return buffer.getShort();
+            case TAG_CHAR:
+                return buffer.getChar();
+            case TAG_INT:
+                return buffer.getInt();
+            case TAG_LONG:
+                return buffer.getLong();
+            case TAG_FLOAT:
+                return buffer.getFloat();
+            case TAG_DOUBLE:
+                return buffer.getDouble();
+            case TAG_STRING:
+                return new String(getBytes(buffer), UTF_8);
+            case TAG_BYTES:
+                return getBytes(buffer);
+            case TAG_SERIALIZABLE:
+                try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(getBytes(buffer)))) {
+                    return input.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new IllegalStateException("Failed to deserialize event argument", e);
+                }
+            default:
+                throw new IllegalArgumentException("Invalid event argument tag: " + tag);
+        }
+    }
+
+    private static byte[] getBytes(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[VarInts.get(buffer)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * {@link Reader} reads the events of an {@link EventJournal} in the order they were appended.
+     * Reading stops at the end of the journal or at the first record that fails the checksum, such
+     * as a record partially written before a crash.
+     */
+    public final class Reader {
+
+        private final CRC32 checksum;
+        private int segmentIndex;
+        private ByteBuffer segment;
+        private ByteBuffer payload;
+        private int eventId;
+        private Object[] args;
+
+        Reader(final int segmentIndex, final int position) throws IOException {
+            checksum = new CRC32();
+            payload = ByteBuffer.allocate(256);
+            this.segmentIndex = segmentIndex;
+            segment = getSegment(segmentIndex);
+            segment.position(position);
+        }
+
+        /**
+         * Reads the next event.
+         *
+         * @return {@code true} if an event was read, or {@code false} at the end of the journal.
+         * @throws IOException If the journal cannot be read.
+         */
+        public boolean next() throws IOException {
+            if (!skip()) {
+                return false;
+            }
+
+            eventId = VarInts.get(payload);
+
+            final int argCount = VarInts.get(payload);
+
+            if (argCount == 0) {
+                args = null;
+            } else {
+                args = new Object[argCount];
+
+                for (int i = 0; i < argCount; i++) {
+                    args[i] = getArg(payload);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Gets the id of the event read by {@link Reader#next()}.
+         *
+         * @return The id as an {@code int}.
+         */
+        public int getEventId() {
+            return eventId;
+        }
+
+        /**
+         * Gets the arguments of the event read by {@link Reader#next()}.
+         *
+         * @return The arguments as an array of {@link Object}s, or {@code null} for an event without
+         * arguments.
+         */
+        public Object[] getArgs() {
+            return args;
+        }
+
+        /**
+         * Reads the payload of the next valid record without decoding it.
+         *
+         * @return {@code true} if a record was read, or {@code false} at the end of the journal.
+         * @throws IOException If the journal cannot be read.
+         */
+        boolean skip() throws IOException {
+            while (true) {
+                final int start = segment.position();
+                int length = 0;
+
+                try {
+                    length = segment.hasRemaining() ? VarInts.get(segment) : 0;
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    length = -1;
+                }
+
+                if (length > 0 && length + CHECKSUM_SIZE <= segment.remaining()) {
+                    if (payload.capacity() < length) {
+                        payload = ByteBuffer.allocate(Math.max(length, payload.capacity() * 2));
+                    }
+
+                    payload.clear();
+                    segment.get(payload.array(), 0, length);
+                    payload.limit(length);
+                    checksum.reset();
+                    checksum.update(payload.array(), 0, length);
+
+                    if ((int) checksum.getValue() == segment.getInt()) {
+                        return true;
+                    }
+                }
+
+                segment.position(start);
+
+                // The events continue in the next segment only if this one ended cleanly
+
+                if (length != 0 || !new File(directory, getSegmentFileName(segmentIndex + 1)).exists()) {
+                    return false;
+                }
+                segment = getSegment(++segmentIndex);
+                segment.position(HEADER_SIZE);
+            }
+        }
+
+        private ByteBuffer getSegment(final int index) throws IOException {
+            if (index == EventJournal.this.segmentIndex) {
+                final ByteBuffer buffer = EventJournal.this.segment.duplicate();
+                buffer.position(0);
+                return buffer;
+            }
+
+            final ByteBuffer buffer = mapSegment(index, FileChannel.MapMode.READ_ONLY);
+
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != fingerprint) {
+                throw new IOException("Journal segment does not match the StateHierarchy: " + getSegmentFileName(index));
+            }
+            return buffer;
+        }
+    }
+}
@@ -15,8 +15,18 @@
  */
 package com.robopupu.api.fsm;
 
+import com.robopupu.api.dependency.Factories;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@link StateEngine} is an abstract class that is used in code generation by annotation processor
@@ -36,7 +46,8 @@ public abstract class StateEngine<T_State extends StateEngine> {
         ERROR_UNHANDLED_EVENT("Unhandled event: %s received while in State: %s"),
         ERROR_UNHANDLED_ENTRY_POINT("Unhandled entry point: %s in State: %s"),
         ERROR_UNHANDLED_DEEP_HISTORY("Unhandled deep history in State: %s"),
-        ERROR_UNHANDLED_SHALLOW_HISTORY("Unhandled shallow history in State: %s");
+        ERROR_UNHANDLED_SHALLOW_HISTORY("Unhandled shallow history in State: %s"),
+        ERROR_REPLAYED_EVENT_FAILED("Replayed event: %s failed while in State: %s");
 
         private final String mDescription;
 
@@ -49,6 +60,14 @@ public abstract class StateEngine<T_State extends StateEngine> {
         }
     }
 
+    private static final StateEngineTracer[] NO_TRACERS = new StateEngineTracer[0];
+
+    /**
+     * The {@link StateEngine} for which the shared states are executed in the current thread in
+     * the flyweight mode.
+     */
+    private static final ThreadLocal<StateEngine<?>> boundStateEngine = new ThreadLocal<>();
+
     /**
      * A {@link HashMap} containing either 1) the substates of a state if this instance of {@link StateEngine}
      * represents a state or 2) the top-level states if this instance of {@link StateEngine}
@@ -68,7 +87,8 @@ public abstract class StateEngine<T_State extends StateEngine> {
 
     /**
      * A {@link HashMap} used for caching state instances. The {@link Class}es of states can be used
-     * as keys to the {@link HashMap}, because each state object has its own {@link Class}.
+     * as keys to the {@link HashMap}, because each state object has its own {@link Class}. The states
+     * that are part of the {@link StateHierarchy} are cached in {@link StateEngine#states} instead.
      */
     protected HashMap<Class<?>, T_State> stateCache;
 
@@ -92,16 +112,108 @@ public abstract class StateEngine<T_State extends StateEngine> {
      */
     protected T_State superState;
 
+    /**
+     * The {@link StateHierarchy} of the code generated {@link StateEngine} implementation. Only
+     * the instance of {@link StateEngine} that represents a state machine has a reference to it.
+     */
+    protected StateHierarchy stateHierarchy;
+
+    /**
+     * The instantiated states indexed by their ids in the {@link StateHierarchy}.
+     */
+    protected T_State[] states;
+
+    /**
+     * The id of the state represented by this instance of {@link StateEngine} in
+     * the {@link StateHierarchy}.
+     */
+    protected int stateId;
+
     /**
      * The {@link StateEngineObserver} that receives events from this {@link StateEngine}.
      */
     private StateEngineObserver observer;
 
+    /**
+     * The {@link StateEngineTracer}s added for observing the transitions and the events.
+     */
+    private volatile StateEngineTracer[] tracers = NO_TRACERS;
+
+    /**
+     * A flag telling if tracing has been enabled, and a flag telling if the transitions and
+     * the events are observed either because tracing has been enabled or a tracer has been
+     * added. The flags are written while holding the lock of the {@link StateEngine}, but read
+     * without locking when dispatching the events, so a tracer added by another thread is
+     * observed by the next event.
+     */
+    private volatile boolean tracingEnabled;
+    private volatile boolean tracing;
+
+    /**
+     * The time in nanoseconds when the current state was entered. Recorded only when tracing.
+     */
+    private long stateEnteredTime;
+
+    /**
+     * The {@link EventQueue} of the run-to-completion mode. The queue is {@code null} if the mode is
+     * not enabled.
+     */
+    private volatile EventQueue eventQueue;
+
+    /**
+     * A flag telling if this {@link StateEngine} uses the states shared by all the instances of
+     * the same code generated {@link StateEngine} implementation.
+     */
+    private boolean flyweightEnabled;
+
+    /**
+     * The ids of the history states of the composite states indexed by the ids of the composite
+     * states in the flyweight mode. The value {@link StateHierarchy#ROOT_ID} means that a composite
+     * state has no history state. The array is created when the first history state is recorded.
+     */
+    private int[] historyStateIds;
+
+    /**
+     * The {@link TimingWheel} used for scheduling the {@link Timeout}s of the states. If
+     * {@code null}, the default {@link TimingWheel} is used.
+     */
+    private TimingWheel timingWheel;
+
+    /**
+     * The {@link Executor} that dispatches the events fired by the expired {@link Timeout}s. If
+     * {@code null}, the events are posted from the worker thread of the {@link TimingWheel}.
+     */
+    private volatile Executor timeoutExecutor;
+
+    /**
+     * The scheduled {@link Timeout}s of the entered states indexed by the state ids. The array is
+     * created when the first {@link Timeout} is scheduled.
+     */
+    private StateTimer[] stateTimers;
+
+    /**
+     * The {@link EventJournal} of the journaled mode. The journal is {@code null} if the mode is
+     * not enabled.
+     */
+    private EventJournal journal;
+
+    /**
+     * The thread dispatching an event in the journaled mode. An event posted by the dispatching
+     * thread is caused by the dispatched event, and therefore it is not journaled.
+     */
+    private Thread dispatchingThread;
+
+    /**
+     * A flag telling if the events of the {@link EventJournal} are being replayed.
+     */
+    private boolean replaying;
+
     /**
      * Private default constructor.
      */
     private StateEngine() {
         subStates = new HashSet<>();
+        stateId = StateHierarchy.UNKNOWN_ID;
     }
 
     /**
@@ -110,16 +222,34 @@ public abstract class StateEngine<T_State extends StateEngine> {
      * @param initialStateClass The {@link Class} of a state that is the initial state to be entered
      *                          at top-level when the represented state machine is started.
      */
-    @SuppressWarnings("unchecked")
     protected StateEngine(final Class<? extends T_State> initialStateClass) {
+        this(initialStateClass, (StateHierarchy) null);
+    }
+
+    /**
+     * This constructor is to be used by a concrete implementation of {@link StateEngine}.
+     *
+     * @param initialStateClass The {@link Class} of a state that is the initial state to be entered
+     *                          at top-level when the represented state machine is started.
+     * @param stateHierarchy    The {@link StateHierarchy} of the states. May be {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    protected StateEngine(final Class<? extends T_State> initialStateClass, final StateHierarchy stateHierarchy) {
         this();
 
         this.initialStateClass = initialStateClass;
 
-        // The following two field are initialised only in this constructor
+        // The following fields are initialised only in this constructor
         stateEngine = (T_State) this;
         stateCache = new HashMap<>();
 
+        if (stateHierarchy != null) {
+            this.stateHierarchy = stateHierarchy;
+            states = (T_State[]) new StateEngine<?>[stateHierarchy.getStateCount()];
+            stateId = StateHierarchy.ROOT_ID;
+            states[stateId] = (T_State) this;
+        }
+
         // Store this state engine state to cache of state instances
         stateCache.put(getClass(), (T_State) this);
     }
@@ -160,6 +290,502 @@ public abstract class StateEngine<T_State extends StateEngine> {
         this.observer = observer;
     }
 
+    /**
+     * Adds a {@link StateEngineTracer} for observing the transitions and the events. Adding
+     * a tracer enables the tracing. See {@link StateEngine#setTracingEnabled(boolean)}.
+     *
+     * @param tracer A {@link StateEngineTracer}.
+     */
+    public final void addTracer(final StateEngineTracer tracer) {
+        final StateEngine<?> stateEngine = getStateEngine();
+
+        synchronized (stateEngine) {
+            final StateEngineTracer[] tracers = Arrays.copyOf(stateEngine.tracers, stateEngine.tracers.length + 1);
+            tracers[tracers.length - 1] = tracer;
+            stateEngine.tracers = tracers;
+            stateEngine.updateTracing();
+        }
+    }
+
+    /**
+     * Removes a {@link StateEngineTracer} added using
+     * {@link StateEngine#addTracer(StateEngineTracer)}.
+     *
+     * @param tracer A {@link StateEngineTracer}.
+     */
+    public final void removeTracer(final StateEngineTracer tracer) {
+        final StateEngine<?> stateEngine = getStateEngine();
+
+        synchronized (stateEngine) {
+            final StateEngineTracer[] tracers = stateEngine.tracers;
+
+            for (int i = 0; i < tracers.length; i++) {
+                if (tracers[i] == tracer) {
+                    final StateEngineTracer[] remainingTracers = new StateEngineTracer[tracers.length - 1];
+                    System.arraycopy(tracers, 0, remainingTracers, 0, i);
+                    System.arraycopy(tracers, i + 1, remainingTracers, i, remainingTracers.length - i);
+                    stateEngine.tracers = remainingTracers;
+                    stateEngine.updateTracing();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests if the transitions and the events are observed.
+     *
+     * @return A {@code boolean} value.
+     */
+    public final boolean isTracingEnabled() {
+        final StateEngine<?> stateEngine = getStateEngine();
+        return stateEngine.tracing;
+    }
+
+    /**
+     * Sets the observing of the transitions and the events on or off. When tracing,
+     * the {@link StateEngineTracer}s receive {@link StateEngineTracer#onTransition} for each
+     * transition and {@link StateEngineTracer#onEventHandled} for each handled event, and
+     * the event methods are dispatched via {@link StateEngine#postEvent(int, Object[])} to measure
+     * the time spent for handling the events. When not tracing, a transition only tests a flag.
+     * If tracing has been enabled using this method, the assigned {@link StateEngineObserver}
+     * receives the callbacks too if it is a {@link StateEngineTracer}. Tracing is always on while
+     * a tracer added using {@link StateEngine#addTracer(StateEngineTracer)} exists.
+     *
+     * @param enabled A {@code boolean} value.
+     */
+    public final void setTracingEnabled(final boolean enabled) {
+        final StateEngine<?> stateEngine = getStateEngine();
+
+        synchronized (stateEngine) {
+            stateEngine.tracingEnabled = enabled;
+            stateEngine.updateTracing();
+        }
+    }
+
+    private void updateTracing() {
+        final boolean tracing = tracingEnabled || tracers.length > 0;
+
+        if (tracing && !this.tracing) {
+            stateEnteredTime = System.nanoTime();
+        }
+        this.tracing = tracing;
+    }
+
+    /**
+     * Tests if the events are dispatched in the run-to-completion mode.
+     *
+     * @return A {@code boolean} value.
+     */
+    public final boolean isEventQueueEnabled() {
+        final StateEngine<?> stateEngine = getStateEngine();
+        return stateEngine.eventQueue != null;
+    }
+
+    /**
+     * Sets the run-to-completion mode in which the events received from any thread are posted to
+     * a lock-free queue and dispatched one at a time. The thread that posts an event to an empty
+     * queue dispatches the queued events until the queue is empty, so that an event is never
+     * dispatched before the dispatching of the previous event has completed. This also applies to
+     * the events fired while dispatching an event, e.g. in {@link StateEngine#onEnter()}.
+     *
+     * @param enabled A {@code boolean} value.
+     */
+    public final void setEventQueueEnabled(final boolean enabled) {
+        final StateEngine<?> stateEngine = getStateEngine();
+
+        if (enabled) {
+            if (stateEngine.eventQueue == null) {
+                stateEngine.eventQueue = new EventQueue();
+            }
+        } else {
+            stateEngine.eventQueue = null;
+        }
+    }
+
+    /**
+     * Tests if this {@link StateEngine} uses the flyweight states.
+     *
+     * @return A {@code boolean} value.
+     */
+    public final boolean isFlyweightEnabled() {
+        final StateEngine<?> stateEngine = getStateEngine();
+        return stateEngine.flyweightEnabled;
+    }
+
+    /**
+     * Sets the flyweight mode in which the state objects are shared by all the instances of
+     * the same code generated {@link StateEngine} implementation instead of being instantiated for
+     * each instance. An instance then only records its current state, the history states of
+     * the composite states by their ids, and the context references. While an event is dispatched,
+     * the shared states access the instance through {@link StateEngine#getStateEngine()}. Hence
+     * the state classes may not have instance fields of their own, and
+     * {@link StateEngine#onDisposeState()} is not invoked for the shared states. The mode has to be
+     * set before the {@link StateEngine} is started, and it requires a {@link StateHierarchy}.
+     *
+     * @param enabled A {@code boolean} value.
+     */
+    @SuppressWarnings("unchecked")
+    public final void setFlyweightEnabled(final boolean enabled) {
+        final StateEngine<T_State> stateEngine = getStateEngine();
+
+        if (stateEngine.flyweightEnabled == enabled) {
+            return;
+        } else if (stateEngine.stateHierarchy == null) {
+            throw new IllegalStateException("Flyweight mode requires a StateHierarchy");
+        } else if (stateEngine.currentState != null) {
+            throw new IllegalStateException("Flyweight mode cannot be changed for a started StateEngine");
+        }
+
+        stateEngine.flyweightEnabled = enabled;
+        stateEngine.historyStateIds = null;
+
+        if (enabled) {
+            stateEngine.states = null;
+        } else {
+            stateEngine.states = (T_State[]) new StateEngine<?>[stateEngine.stateHierarchy.getStateCount()];
+            stateEngine.states[StateHierarchy.ROOT_ID] = (T_State) stateEngine;
+        }
+    }
+
+    /**
+     * Gets the {@link TimingWheel} used for scheduling the {@link Timeout}s of the states.
+     *
+     * @return A {@link TimingWheel}.
+     */
+    public final TimingWheel getTimingWheel() {
+        final StateEngine<?> stateEngine = getStateEngine();
+        return (stateEngine.timingWheel != null) ? stateEngine.timingWheel : TimingWheel.getDefault();
+    }
+
+    /**
+     * Sets the {@link TimingWheel} used for scheduling the {@link Timeout}s of the states. By
+     * default the {@link Timeout}s of all {@link StateEngine}s are scheduled using the shared
+     * {@link TimingWheel#getDefault()}. When a {@link Timeout} expires, its event is posted from
+     * the worker thread of the {@link TimingWheel}, unless a timeout {@link Executor} has been set
+     * using {@link StateEngine#setTimeoutExecutor(Executor)}.
+     *
+     * @param timingWheel A {@link TimingWheel}. May be {@code null}.
+     */
+    public final void setTimingWheel(final TimingWheel timingWheel) {
+        final StateEngine<?> stateEngine = getStateEngine();
+        stateEngine.timingWheel = timingWheel;
+    }
+
+    /**
+     * Gets the {@link Executor} that dispatches the events fired by the expired {@link Timeout}s.
+     *
+     * @return An {@link Executor}, or {@code null} if the events are posted from the worker thread
+     * of the {@link TimingWheel}.
+     */
+    public final Executor getTimeoutExecutor() {
+        final StateEngine<?> stateEngine = getStateEngine();
+        return stateEngine.timeoutExecutor;
+    }
+
+    /**
+     * Sets the {@link Executor} that dispatches the events fired by the expired {@link Timeout}s,
+     * for instance the thread that dispatches all the other events of this {@link StateEngine}.
+     * Without a timeout {@link Executor} the events are posted from the worker thread of
+     * the {@link TimingWheel}, and a {@link StateEngine} whose states have {@link Timeout}s can
+     * be started only in the run-to-completion mode.
+     *
+     * @param executor An {@link Executor}. May be {@code null}.
+     */
+    public final void setTimeoutExecutor(final Executor executor) {
+        final StateEngine<?> stateEngine = getStateEngine();
+        stateEngine.timeoutExecutor = executor;
+    }
+
+    /**
+     * Checks that the events fired by the {@link Timeout}s of the states cannot be dispatched
+     * concurrently with the other events. This is the case if the states do not have
+     * {@link Timeout}s, if the run-to-completion mode is enabled, or if a timeout {@link Executor}
+     * has been set.
+     *
+     * @throws IllegalStateException If the events fired by the {@link Timeout}s would be
+     * dispatched by the worker thread of the {@link TimingWheel} without the run-to-completion mode.
+     */
+    private void checkTimeoutDispatching() {
+        final StateEngine<?> stateEngine = getStateEngine();
+
+        if (stateEngine.stateHierarchy != null && stateEngine.stateHierarchy.hasTimeouts()
+                && stateEngine.eventQueue == null && stateEngine.timeoutExecutor == null) {
+            throw new IllegalStateException("Timeouts require the run-to-completion mode or a timeout Executor");
+        }
+    }
+
+    /**
+     * Gets the {@link EventJournal} of the journaled mode.
+     *
+     * @return An {@link EventJournal}, or {@code null} if the mode is not enabled.
+     */
+    public final EventJournal getJournal() {
+        final StateEngine<?> stateEngine = getStateEngine();
+        return stateEngine.journal;
+    }
+
+    /**
+     * Sets the journaled mode on or off. In the journaled mode each event received by an event
+     * method, or fired by a {@link Timeout}, is appended to the given {@link EventJournal} before it
+     * is dispatched, and a snapshot of the configuration is saved to the {@link EventJournal}
+     * periodically. The events posted by the state while handling a journaled event are not
+     * journaled, because replaying the journaled event posts them again. The journaled mode
+     * requires a {@link StateHierarchy}, and the {@link EventJournal} has to be empty or written
+     * using a {@link StateHierarchy} of the same fingerprint. See {@link StateEngine#replay()}.
+     *
+     * @param journal An {@link EventJournal}. May be {@code null} to set the mode off.
+     * @throws IllegalArgumentException If the {@link EventJournal} was written using a different
+     *                                  {@link StateHierarchy}.
+     */
+    public final void setJournal(final EventJournal journal) {
+        final StateEngine<?> stateEngine = getStateEngine();
+
+        if (journal != null) {
+            if (stateEngine.stateHierarchy == null) {
+                throw new IllegalStateException("Journaled mode requires a StateHierarchy");
+            }
+            journal.bind(stateEngine.stateHierarchy.getFingerprint());
+        }
+        stateEngine.journal = journal;
+    }
+
+    /**
+     * Starts this {@link StateEngine} by replaying its {@link EventJournal}. The configuration is
+     * restored from the latest snapshot of the journal, or the initial state is entered if there
+     * is no snapshot, and then the events journaled after the snapshot are dispatched in order.
+     * The replayed events are not journaled again. The {@link Timeout}s of the states are not
+     * scheduled until the replay has completed. An exception thrown by the state handling
+     * a replayed event is reported as {@link Error#ERROR_REPLAYED_EVENT_FAILED} to
+     * the {@link StateEngineObserver}, and the replay continues with the next event like
+     * the dispatching of the event did when it was journaled.
+     *
+     * @return The number of the replayed events as an {@code int}.
+     * @throws IllegalStateException If the {@link EventJournal} cannot be read.
+     */
+    public synchronized final int replay() {
+        if (!isStateEngine()) {
+            return getStateEngine().replay();
+        } else if (journal == null) {
+            throw new IllegalStateException("Journaled mode has not been enabled");
+        }
+
+        int count = 0;
+
+        replaying = true;
+
+        try {
+            final byte[] snapshot = journal.getSnapshot();
+            final EventJournal.Reader reader = journal.readFromSnapshot();
+
+            if (snapshot != null) {
+                restoreSnapshot(snapshot);
+            } else {
+                start();
+            }
+
+            while (reader.next()) {
+                try {
+                    postEvent(reader.getEventId(), reader.getArgs());
+                } catch (RuntimeException e) {
+                    onError(currentState, Error.ERROR_REPLAYED_EVENT_FAILED, "#" + reader.getEventId() + " (" + e + ")");
+                }
+                count++;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read EventJournal", e);
+        } finally {
+            replaying = false;
+        }
+
+        // The timeouts of the states entered by the replay are scheduled anew
+
+        cancelTimers();
+
+        for (int id = (currentState != null) ? currentState.stateId : StateHierarchy.ROOT_ID; id > StateHierarchy.ROOT_ID; id = stateHierarchy.getSuperStateId(id)) {
+            scheduleTimer(id);
+        }
+        return count;
+    }
+
+    /**
+     * Tests if the code generated event methods have to post the events using
+     * {@link StateEngine#postEvent(int, Object[])} instead of dispatching them directly. This is
+     * the case in the run-to-completion mode, in the flyweight mode, in the journaled mode, and
+     * when tracing.
+     *
+     * @return A {@code boolean} value.
+     */
+    protected final boolean isEventPosted() {
+        return eventQueue != null || flyweightEnabled || tracing || journal != null;
+    }
+
+    /**
+     * Posts the specified event to the queue of the run-to-completion mode. Invoked by the code
+     * generated event methods. If no other thread is dispatching the queued events, the events
+     * are dispatched by the invoking thread before this method returns. Without the queue
+     * the event is dispatched directly.
+     *
+     * @param eventId The id of the event.
+     * @param args    The arguments of the event. May be {@code null} for an event without
+     *                arguments.
+     */
+    protected final void postEvent(final int eventId, final Object[] args) {
+        postEvent(eventId, args, null);
+    }
+
+    /**
+     * Posts the specified event. An event fired by an expired {@link StateTimer} is dispatched
+     * only if the {@link StateTimer} has not been cancelled by exiting the state before
+     * the dispatching.
+     *
+     * @param eventId The id of the event.
+     * @param args    The arguments of the event. May be {@code null}.
+     * @param timer   The {@link StateTimer} that fired the event. May be {@code null}.
+     */
+    private void postEvent(final int eventId, final Object[] args, final StateTimer timer) {
+        final EventQueue eventQueue = this.eventQueue;
+        final boolean external = journal == null || dispatchingThread != Thread.currentThread();
+
+        if (eventQueue == null) {
+            final StateEngine<?> previousStateEngine = bind();
+
+            try {
+                dispatchEvent(eventId, args, timer, external);
+            } finally {
+                unbind(previousStateEngine);
+            }
+            return;
+        }
+
+        final AtomicInteger pendingEventCount = eventQueue.pendingEventCount;
+        eventQueue.events.offer(new QueuedEvent(eventId, args, timer, external));
+
+        if (pendingEventCount.getAndIncrement() == 0) {
+            final StateEngine<?> previousStateEngine = bind();
+            RuntimeException exception = null;
+            boolean dispatching = true;
+
+            try {
+                do {
+                    final QueuedEvent event = eventQueue.events.poll();
+
+                    // An exception does not stop dispatching the events posted by other threads
+
+                    try {
+                        dispatchEvent(event.eventId, event.args, event.timer, event.external);
+                    } catch (RuntimeException e) {
+                        if (exception == null) {
+                            exception = e;
+                        }
+                    }
+                } while (pendingEventCount.decrementAndGet() != 0);
+
+                dispatching = false;
+            } finally {
+
+                // An Error discards the queued events, so that the next posted event is dispatched
+                // instead of being left to the queue without a dispatching thread
+
+                if (dispatching) {
+                    while (pendingEventCount.decrementAndGet() != 0) {
+                        eventQueue.events.poll();
+                    }
+                }
+                unbind(previousStateEngine);
+            }
+
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Dispatches the specified event unless it was fired by a {@link StateTimer} that is no longer
+     * scheduled for the state. In the journaled mode an event not caused by another event is
+     * journaled before it is dispatched.
+     *
+     * @param eventId  The id of the event.
+     * @param args     The arguments of the event. May be {@code null}.
+     * @param timer    The {@link StateTimer} that fired the event. May be {@code null}.
+     * @param external A {@code boolean} value telling if the event was not posted by the thread
+     *                 dispatching another event.
+     */
+    private void dispatchEvent(final int eventId, final Object[] args, final StateTimer timer, final boolean external) {
+        if (timer != null) {
+            if (stateTimers == null || stateTimers[timer.stateId] != timer) {
+                return; // The state has been exited
+            }
+            stateTimers[timer.stateId] = null;
+        }
+
+        final EventJournal journal = this.journal;
+
+        if (journal == null) {
+            handleEvent(eventId, args);
+            return;
+        }
+
+        final boolean journaled = external && !replaying;
+
+        if (journaled) {
+            journal.append(eventId, args);
+        }
+
+        final Thread previousThread = dispatchingThread;
+        dispatchingThread = Thread.currentThread();
+
+        try {
+            handleEvent(eventId, args);
+        } finally {
+            dispatchingThread = previousThread;
+        }
+
+        // A snapshot is saved only when no event caused by the journaled events is pending
+
+        if (journaled && (eventQueue == null || eventQueue.events.isEmpty()) && journal.isSnapshotDue()) {
+            journal.writeSnapshot(saveSnapshot());
+        }
+    }
+
+    /**
+     * Dispatches the specified event and notifies the {@link StateEngineTracer}s about the time
+     * spent for handling it when tracing.
+     *
+     * @param eventId The id of the event.
+     * @param args    The arguments of the event. May be {@code null}.
+     */
+    private void handleEvent(final int eventId, final Object[] args) {
+        if (tracing) {
+            final long startTime = System.nanoTime();
+            dispatchEvent(eventId, args);
+            final long nanos = System.nanoTime() - startTime;
+
+            if (tracingEnabled && observer instanceof StateEngineTracer) {
+                ((StateEngineTracer) observer).onEventHandled(this, eventId, nanos);
+            }
+
+            for (final StateEngineTracer tracer : tracers) {
+                tracer.onEventHandled(this, eventId, nanos);
+            }
+        } else {
+            dispatchEvent(eventId, args);
+        }
+    }
+
+    /**
+     * Dispatches the specified event to the current state. The code generated implementation of
+     * {@link StateEngine} overrides this method to invoke the event method of the handling state.
+     *
+     * @param eventId The id of the event.
+     * @param args    The arguments of the event. May be {@code null} for an event without
+     *                arguments.
+     */
+    protected void dispatchEvent(final int eventId, final Object[] args) {
+        throw new IllegalArgumentException("Unknown event: " + eventId);
+    }
+
     /**
      * Gets the super state of this state.
      *
@@ -168,6 +794,9 @@ public abstract class StateEngine<T_State extends StateEngine> {
      */
     @SuppressWarnings("unchecked")
     protected final <T extends T_State> T getSuperState() {
+        if (superState == null && stateEngine == null) {
+            return (T) getStateEngine(); // A shared top-level state
+        }
         return (T) superState;
     }
 
@@ -179,6 +808,10 @@ public abstract class StateEngine<T_State extends StateEngine> {
      */
     @SuppressWarnings("unchecked")
     public final <T extends StateEngine> T getCurrentState() {
+        if (stateEngine == null) {
+            final StateEngine<?> stateEngine = boundStateEngine.get();
+            return (stateEngine != null) ? (T) stateEngine.getHistoryState(stateId) : null;
+        }
         return (T) currentState;
     }
 
@@ -188,16 +821,84 @@ public abstract class StateEngine<T_State extends StateEngine> {
      * @param state A state object representing the new current state.
      */
     protected final void setCurrentState(final T_State state) {
-        currentState = state;
+        if (stateEngine == null) {
+            final StateEngine<?> stateEngine = getStateEngine();
+            stateEngine.setHistoryState(stateId, state.stateId);
+        } else {
+            currentState = state;
+        }
     }
 
     /**
-     * Gets the reference to a {@link StateEngine}.
+     * Gets the reference to a {@link StateEngine}. For a shared state in the flyweight mode this is
+     * the {@link StateEngine} for which the state is executed in the current thread.
      *
      * @return A {@link StateEngine}.
      */
+    @SuppressWarnings("unchecked")
     protected final T_State getStateEngine() {
-        return stateEngine;
+        return (stateEngine != null) ? stateEngine : (T_State) boundStateEngine.get();
+    }
+
+    /**
+     * Gets the history state of the given composite state in the flyweight mode.
+     *
+     * @param stateId The id of the composite state.
+     * @return A state object or {@code null} if there is no history state.
+     */
+    private T_State getHistoryState(final int stateId) {
+        final int[] historyStateIds = this.historyStateIds;
+
+        if (historyStateIds == null || historyStateIds[stateId] == StateHierarchy.ROOT_ID) {
+            return null;
+        }
+        return getState(historyStateIds[stateId]);
+    }
+
+    /**
+     * Records the history state of the given composite state in the flyweight mode.
+     *
+     * @param stateId        The id of the composite state.
+     * @param historyStateId The id of the history state.
+     */
+    private void setHistoryState(final int stateId, final int historyStateId) {
+        if (historyStateIds == null) {
+            historyStateIds = new int[stateHierarchy.getStateCount()];
+        }
+        historyStateIds[stateId] = historyStateId;
+    }
+
+    /**
+     * Binds this {@link StateEngine} to the current thread for executing the shared states in
+     * the flyweight mode.
+     *
+     * @return The previously bound {@link StateEngine} to be restored by
+     * {@link StateEngine#unbind(StateEngine)}.
+     */
+    private StateEngine<?> bind() {
+        if (!flyweightEnabled) {
+            return null;
+        }
+
+        final StateEngine<?> previousStateEngine = boundStateEngine.get();
+        boundStateEngine.set(this);
+        return previousStateEngine;
+    }
+
+    /**
+     * Restores the {@link StateEngine} that was bound to the current thread before invoking
+     * {@link StateEngine#bind()}.
+     *
+     * @param previousStateEngine The previously bound {@link StateEngine}. May be {@code null}.
+     */
+    private void unbind(final StateEngine<?> previousStateEngine) {
+        if (flyweightEnabled) {
+            if (previousStateEngine != null) {
+                boundStateEngine.set(previousStateEngine);
+            } else {
+                boundStateEngine.remove();
+            }
+        }
     }
 
     /**
@@ -211,35 +912,147 @@ public abstract class StateEngine<T_State extends StateEngine> {
     }
 
     /**
-     * Gets an instance of the specified state.
+     * Gets an instance of the specified state.
+     *
+     * @param stateClass A state object {@link Class}.
+     * @return A state object. May not return {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    protected final T_State getState(final Class<? extends T_State> stateClass) {
+
+        if (isStateEngine()) {
+            if (stateHierarchy != null) {
+                final int id = stateHierarchy.getStateId(stateClass);
+
+                if (id != StateHierarchy.UNKNOWN_ID) {
+                    return getState(id);
+                }
+            }
+
+            if (flyweightEnabled) {
+                throw new IllegalStateException("State: " + stateClass.getName() + " is not part of the StateHierarchy");
+            }
+
+            T_State state = stateCache.get(stateClass);
+
+            if (state == null) {
+                state = Factories.newInstance(stateClass);
+
+                if (state != null) {
+                    state.stateEngine = this.stateEngine;
+                    state.superState = getState(state.superStateClass);
+                    state.superState.subStates.add(state);
+
+                    stateCache.put(stateClass, state);
+                }
+            }
+            return state;
+        } else {
+            return (T_State) getStateEngine().getState(stateClass);
+        }
+    }
+
+    /**
+     * Gets an instance of the state specified by its id in the {@link StateHierarchy}. A state
+     * that is not cached is created using {@link StateEngine#createState(int)}.
      *
-     * @param stateClass A state object {@link Class}.
+     * @param stateId The id of the state.
      * @return A state object. May not return {@code null}.
      */
     @SuppressWarnings("unchecked")
-    protected final T_State getState(final Class<? extends T_State> stateClass) {
+    protected final T_State getState(final int stateId) {
 
         if (isStateEngine()) {
-            T_State state = stateCache.get(stateClass);
+            if (flyweightEnabled) {
+                return (stateId == StateHierarchy.ROOT_ID) ? (T_State) this : getSharedState(stateId);
+            }
+
+            T_State state = states[stateId];
 
             if (state == null) {
-                try {
-                    state = stateClass.newInstance();
+                state = createState(stateId);
+
+                if (state == null) {
+                    state = (T_State) Factories.newInstance(stateHierarchy.getStateClass(stateId));
+                }
 
+                if (state != null) {
                     state.stateEngine = this.stateEngine;
                     state.superState = getState(state.superStateClass);
                     state.superState.subStates.add(state);
 
-                    stateCache.put(stateClass, state);
+                    // A state with a super state other than the one in the StateHierarchy is
+                    // handled without the StateHierarchy
 
-                } catch (Exception e) {
-                    // Do nothing
+                    if (state.superState.stateId != StateHierarchy.UNKNOWN_ID
+                            && state.superState.stateId == stateHierarchy.getSuperStateId(stateId)) {
+                        state.stateId = stateId;
+                    }
+
+                    states[stateId] = state;
                 }
             }
             return state;
         } else {
-            return (T_State) getStateEngine().getState(stateClass);
+            return (T_State) getStateEngine().getState(stateId);
+        }
+    }
+
+    /**
+     * Gets the shared instance of the state specified by its id in the {@link StateHierarchy}.
+     * A shared state has no reference to a {@link StateEngine}, and a shared top-level state has
+     * no reference to its super state.
+     *
+     * @param stateId The id of the state.
+     * @return A state object. May not return {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    private T_State getSharedState(final int stateId) {
+        T_State state = (T_State) stateHierarchy.getSharedState(stateId);
+
+        if (state == null) {
+            synchronized (stateHierarchy) {
+                state = (T_State) stateHierarchy.getSharedState(stateId);
+
+                if (state == null) {
+                    state = createState(stateId);
+
+                    if (state == null) {
+                        state = (T_State) Factories.newInstance(stateHierarchy.getStateClass(stateId));
+
+                        if (state == null) {
+                            throw new IllegalStateException("Failed to instantiate State: " + stateHierarchy.getStateClass(stateId).getName());
+                        }
+                    }
+
+                    final int superStateId = stateHierarchy.getSuperStateId(stateId);
+
+                    if (stateHierarchy.getStateId(state.superStateClass) != superStateId) {
+                        throw new IllegalStateException("State: " + state.superStateClass.getName() + " is not the super state of "
+                                + stateHierarchy.getStateClass(stateId).getName() + " in the StateHierarchy");
+                    } else if (superStateId != StateHierarchy.ROOT_ID) {
+                        state.superState = getSharedState(superStateId);
+                        state.superState.subStates.add(state);
+                    }
+
+                    state.stateId = stateId;
+                    stateHierarchy.setSharedState(stateId, state);
+                }
+            }
         }
+        return state;
+    }
+
+    /**
+     * Creates an instance of the state specified by its id in the {@link StateHierarchy}. The code
+     * generated implementation of {@link StateEngine} overrides this method to create the states
+     * without reflection.
+     *
+     * @param stateId The id of the state.
+     * @return A state object or {@code null} if the state has to be created using reflection.
+     */
+    protected T_State createState(final int stateId) {
+        return null;
     }
 
     /**
@@ -273,19 +1086,93 @@ public abstract class StateEngine<T_State extends StateEngine> {
                     return currentState;
                 }
             }
+            return transitTo(currentState, getState(stateClass), entryPoint);
+        } else {
+            return (T_State) getStateEngine().transitTo(stateClass, entryPoint);
+        }
+    }
+
+    /**
+     * Causes transition from the current state to the state specified by its id in
+     * the {@link StateHierarchy}.
+     *
+     * @param stateId The id of the target state for the state transition.
+     * @return The current state.
+     */
+    protected final T_State transitTo(final int stateId) {
+        return transitTo(stateId, 0);
+    }
 
-            T_State newState = getState(stateClass);
-            setCurrentState(newState);
+    /**
+     * Causes transition from the current state to the state specified by its id in
+     * the {@link StateHierarchy} optionally via an entry point.
+     *
+     * @param stateId    The id of the target state for the state transition.
+     * @param entryPoint A {@code int} value specifying if the optional entry point. Value zero
+     *                   represents a non entry point.
+     * @return The current state.
+     */
+    @SuppressWarnings("unchecked")
+    protected final T_State transitTo(final int stateId, final int entryPoint) {
 
-            if (currentState != null && !newState.isSuperState(currentState)) {
-                currentState.exit(newState);
-            }
+        if (isStateEngine()) {
+            final T_State currentState = getCurrentState();
 
-            // newState.onEnter();
+            if (currentState != null) {
 
-            return (T_State) newState.enter(entryPoint);
+                if (currentState.stateId == stateId) {
+                    onError(currentState, Error.ERROR_STATE_REENTERED);
+                    return currentState;
+                }
+            }
+            return transitTo(currentState, getState(stateId), entryPoint);
         } else {
-            return (T_State) getStateEngine().transitTo(stateClass, entryPoint);
+            return (T_State) getStateEngine().transitTo(stateId, entryPoint);
+        }
+    }
+
+    /**
+     * Exits the given current state and enters the given new state.
+     *
+     * @param currentState The current state. May be {@code null}.
+     * @param newState     The target state for the state transition.
+     * @param entryPoint   A {@code int} value specifying if the optional entry point.
+     * @return The current state.
+     */
+    @SuppressWarnings("unchecked")
+    private T_State transitTo(final T_State currentState, final T_State newState, final int entryPoint) {
+        setCurrentState(newState);
+
+        if (currentState != null) {
+            exitStates(currentState, newState);
+        }
+
+        if (tracing) {
+            notifyTransition(currentState, newState);
+        }
+
+        // newState.onEnter();
+
+        return (T_State) newState.enter(entryPoint);
+    }
+
+    /**
+     * Notifies the {@link StateEngineTracer}s about a transition when tracing.
+     *
+     * @param source The source state. May be {@code null}.
+     * @param target The target state.
+     */
+    private void notifyTransition(final T_State source, final T_State target) {
+        final long time = System.nanoTime();
+        final long dwellNanos = (source != null) ? time - stateEnteredTime : 0;
+        stateEnteredTime = time;
+
+        if (tracingEnabled && observer instanceof StateEngineTracer) {
+            ((StateEngineTracer) observer).onTransition(this, source, target, dwellNanos);
+        }
+
+        for (final StateEngineTracer tracer : tracers) {
+            tracer.onTransition(this, source, target, dwellNanos);
         }
     }
 
@@ -314,10 +1201,11 @@ public abstract class StateEngine<T_State extends StateEngine> {
 
             T_State newCurrentState = getState(stateClass);
 
-            if (oldCurrentState != null && !newCurrentState.isSuperState(oldCurrentState)) {
-                oldCurrentState.exit(newCurrentState);
+            if (oldCurrentState != null) {
+                exitStates(oldCurrentState, newCurrentState);
             }
 
+            scheduleTimer(newCurrentState.stateId);
             newCurrentState.onEnter();
 
             if (deepHistory) {
@@ -327,6 +1215,12 @@ public abstract class StateEngine<T_State extends StateEngine> {
             }
 
             currentState = newCurrentState;
+
+            if (tracing) {
+                notifyTransition(oldCurrentState, currentState);
+            }
+
+            scheduleTimer(currentState.stateId);
             currentState.onEnter();
             return currentState;
         } else {
@@ -344,6 +1238,8 @@ public abstract class StateEngine<T_State extends StateEngine> {
      */
     @SuppressWarnings("unchecked")
     protected final T_State enter(final int entryPoint) {
+        final StateEngine<?> stateEngine = getStateEngine();
+        stateEngine.scheduleTimer(stateId);
         onEnter();
 
         if (entryPoint == 0) {
@@ -389,6 +1285,8 @@ public abstract class StateEngine<T_State extends StateEngine> {
      */
     @SuppressWarnings("unchecked")
     protected final T_State enterDeepHistory() {
+        final T_State currentState = getCurrentState();
+
         if (currentState != null) {
             return (T_State) currentState.enterDeepHistory();
         } else {
@@ -407,6 +1305,8 @@ public abstract class StateEngine<T_State extends StateEngine> {
      */
     @SuppressWarnings("unchecked")
     protected final T_State enterShallowHistory() {
+        final T_State currentState = getCurrentState();
+
         if (currentState != null) {
             return currentState;
         } else {
@@ -418,6 +1318,114 @@ public abstract class StateEngine<T_State extends StateEngine> {
         }
     }
 
+    /**
+     * Gets the state that handles the specified event in the current state. Invoked by the code
+     * generated event methods to dispatch an event directly to the handling state.
+     *
+     * @param eventId The id of the event.
+     * @return The handling state or {@code null} if the handling state is not known.
+     */
+    protected final T_State getEventHandler(final int eventId) {
+        final T_State currentState = this.currentState;
+
+        if (stateHierarchy != null && currentState != null && currentState.stateId != StateHierarchy.UNKNOWN_ID) {
+            final int handlerId = stateHierarchy.getEventHandlerId(currentState.stateId, eventId);
+
+            if (handlerId != StateHierarchy.UNKNOWN_ID) {
+                return getState(handlerId);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Schedules the {@link Timeout} of the given state if the state has one.
+     *
+     * @param stateId The id of the state.
+     */
+    private void scheduleTimer(final int stateId) {
+        if (stateHierarchy == null || stateId == StateHierarchy.UNKNOWN_ID || replaying) {
+            return;
+        }
+
+        final long delay = stateHierarchy.getTimeoutDelay(stateId);
+
+        if (delay > 0) {
+            if (stateTimers == null) {
+                stateTimers = new StateTimer[stateHierarchy.getStateCount()];
+            }
+
+            cancelTimer(stateId);
+
+            final StateTimer timer = new StateTimer(this, stateId, stateHierarchy.getTimeoutEventId(stateId));
+            stateTimers[stateId] = timer;
+            getTimingWheel().schedule(timer, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels the scheduled {@link Timeout} of the given state.
+     *
+     * @param stateId The id of the state.
+     */
+    private void cancelTimer(final int stateId) {
+        final StateTimer[] stateTimers = this.stateTimers;
+
+        if (stateTimers != null && stateId != StateHierarchy.UNKNOWN_ID && stateTimers[stateId] != null) {
+            stateTimers[stateId].cancel();
+            stateTimers[stateId] = null;
+        }
+    }
+
+    /**
+     * Cancels all the scheduled {@link Timeout}s.
+     */
+    private void cancelTimers() {
+        final StateTimer[] stateTimers = this.stateTimers;
+
+        if (stateTimers != null) {
+            for (final StateTimer timer : stateTimers) {
+                if (timer != null) {
+                    timer.cancel();
+                }
+            }
+            this.stateTimers = null;
+        }
+    }
+
+    /**
+     * Exits the states from the given current state up to the least common ancestor of the current
+     * state and the given new target state. The exited states are looked up from
+     * the {@link StateHierarchy} if both states are part of it.
+     *
+     * @param currentState The current state.
+     * @param newState     A new target state.
+     */
+    @SuppressWarnings("unchecked")
+    private void exitStates(final T_State currentState, final T_State newState) {
+        if (stateHierarchy != null && currentState.stateId != StateHierarchy.UNKNOWN_ID && newState.stateId != StateHierarchy.UNKNOWN_ID) {
+            final int leastCommonAncestorId = stateHierarchy.getLeastCommonAncestorId(currentState.stateId, newState.stateId);
+
+            for (int id = currentState.stateId; id != leastCommonAncestorId; id = stateHierarchy.getSuperStateId(id)) {
+                final T_State state = getState(id);
+                cancelTimer(id);
+                state.onExit();
+
+                final int superStateId = stateHierarchy.getSuperStateId(id);
+
+                if (superStateId != StateHierarchy.ROOT_ID) {
+                    if (flyweightEnabled) {
+                        setHistoryState(superStateId, id);
+                    } else {
+                        state.superState.currentState = state;
+                    }
+                }
+            }
+        } else if (!newState.isSuperState(currentState)) {
+            currentState.exit(newState);
+        }
+    }
+
     /**
      * Invoked to exit the state  represented by this instance of {@link StateEngine}. The state
      * machine will enter the given new target state.
@@ -428,6 +1436,8 @@ public abstract class StateEngine<T_State extends StateEngine> {
     protected final void exit(final T_State newState) {
 
         if (!isStateEngine()) {
+            final StateEngine<?> stateEngine = getStateEngine();
+            stateEngine.cancelTimer(stateId);
             onExit();
 
             if (superState != null && superState != getStateEngine()) {
@@ -491,6 +1501,7 @@ public abstract class StateEngine<T_State extends StateEngine> {
     protected final void dispose() {
 
         if (isStateEngine()) {
+            cancelTimers();
             getObserver().onDispose(this);
             onDisposeStateEngine();
         } else {
@@ -506,13 +1517,26 @@ public abstract class StateEngine<T_State extends StateEngine> {
         if (stateCache != null) {
             stateCache.clear();
         }
+
+        if (states != null) {
+            Arrays.fill(states, null);
+        }
+        historyStateIds = null;
     }
 
     /**
      * Starts this {@link StateEngine}. When started, the top-level initial state is entered.
      */
     public synchronized final void start() {
-        currentState = transitTo(initialStateClass);
+        checkTimeoutDispatching();
+
+        final StateEngine<?> previousStateEngine = bind();
+
+        try {
+            currentState = transitTo(initialStateClass);
+        } finally {
+            unbind(previousStateEngine);
+        }
         getObserver().onStart(this);
     }
 
@@ -526,6 +1550,13 @@ public abstract class StateEngine<T_State extends StateEngine> {
         if (isStateEngine()) {
             stateCache.clear();
             stateCache.put(stateEngine.getClass(), stateEngine);
+
+            if (states != null) {
+                Arrays.fill(states, null);
+                states[StateHierarchy.ROOT_ID] = stateEngine;
+            }
+            historyStateIds = null;
+            cancelTimers();
             getObserver().onReset(this);
         } else {
             stateEngine.reset();
@@ -541,6 +1572,200 @@ public abstract class StateEngine<T_State extends StateEngine> {
         dispose();
     }
 
+    /**
+     * Saves the configuration of this {@link StateEngine} as a compact binary snapshot that can be
+     * restored using {@link StateEngine#restoreSnapshot(byte[])}. The snapshot contains the ids of
+     * the states on the active state path and the ids of the history states of the composite
+     * states, each encoded as a variable-length integer. The fingerprint of
+     * the {@link StateHierarchy} and the number of its states are included for detecting
+     * a snapshot of a different version of the state machine. See
+     * {@link StateHierarchy#getFingerprint()}.
+     *
+     * @return The snapshot as a {@code byte} array.
+     * @throws IllegalStateException If a state is not part of the {@link StateHierarchy}.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized final byte[] saveSnapshot() {
+        if (!isStateEngine()) {
+            return getStateEngine().saveSnapshot();
+        } else if (stateHierarchy == null || (currentState != null && currentState.stateId == StateHierarchy.UNKNOWN_ID)) {
+            throw new IllegalStateException("Snapshot requires a StateHierarchy");
+        }
+
+        final int stateCount = stateHierarchy.getStateCount();
+        final int pathLength = (currentState != null) ? stateHierarchy.getDepth(currentState.stateId) : 0;
+        final int[] path = new int[pathLength];
+        final int[] historyStateIds = new int[stateCount];
+        int historyCount = 0;
+
+        if (currentState != null) {
+            int id = currentState.stateId;
+
+            for (int i = pathLength - 1; i >= 0; i--) {
+                path[i] = id;
+                id = stateHierarchy.getSuperStateId(id);
+            }
+        }
+
+        for (int id = 1; id < stateCount; id++) {
+            final T_State historyState;
+
+            if (flyweightEnabled) {
+                historyState = getHistoryState(id);
+            } else {
+                historyState = (states[id] != null) ? (T_State) states[id].currentState : null;
+            }
+
+            if (historyState != null) {
+                if (historyState.stateId == StateHierarchy.UNKNOWN_ID) {
+                    throw new IllegalStateException("Snapshot requires a StateHierarchy");
+                }
+                historyStateIds[id] = historyState.stateId;
+                historyCount++;
+            }
+        }
+
+        int size = 4 + VarInts.sizeOf(stateCount) + VarInts.sizeOf(pathLength) + VarInts.sizeOf(historyCount);
+
+        for (final int id : path) {
+            size += VarInts.sizeOf(id);
+        }
+
+        for (int id = 1; id < stateCount; id++) {
+            if (historyStateIds[id] != StateHierarchy.ROOT_ID) {
+                size += VarInts.sizeOf(id) + VarInts.sizeOf(historyStateIds[id]);
+            }
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(stateHierarchy.getFingerprint());
+        VarInts.put(buffer, stateCount);
+        VarInts.put(buffer, pathLength);
+
+        for (final int id : path) {
+            VarInts.put(buffer, id);
+        }
+
+        VarInts.put(buffer, historyCount);
+
+        for (int id = 1; id < stateCount; id++) {
+            if (historyStateIds[id] != StateHierarchy.ROOT_ID) {
+                VarInts.put(buffer, id);
+                VarInts.put(buffer, historyStateIds[id]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Restores the configuration of this {@link StateEngine} from a snapshot saved using
+     * {@link StateEngine#saveSnapshot()}. The states on the active state path are instantiated and
+     * the history states are recorded, but neither {@link StateEngine#onExit()} nor
+     * {@link StateEngine#onEnter()} is invoked. The snapshot is validated, including its
+     * {@link StateHierarchy#getFingerprint()}, before the configuration of this
+     * {@link StateEngine} is changed.
+     *
+     * @param snapshot The snapshot as a {@code byte} array.
+     * @throws IllegalArgumentException If the snapshot is not valid for this {@link StateEngine}.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized final void restoreSnapshot(final byte[] snapshot) {
+        if (!isStateEngine()) {
+            getStateEngine().restoreSnapshot(snapshot);
+            return;
+        } else if (stateHierarchy == null) {
+            throw new IllegalStateException("Snapshot requires a StateHierarchy");
+        }
+
+        checkTimeoutDispatching();
+
+        final int stateCount = stateHierarchy.getStateCount();
+        final int[] path;
+        final int[] historyStateIds = new int[stateCount];
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+
+            if (buffer.getInt() != stateHierarchy.getFingerprint() || VarInts.get(buffer) != stateCount) {
+                throw new IllegalArgumentException("Snapshot does not match the StateHierarchy");
+            }
+
+            path = new int[VarInts.get(buffer)];
+
+            for (int i = 0; i < path.length; i++) {
+                path[i] = getSnapshotStateId(buffer, (i > 0) ? path[i - 1] : StateHierarchy.ROOT_ID);
+            }
+
+            final int historyCount = VarInts.get(buffer);
+
+            for (int i = 0; i < historyCount; i++) {
+                final int id = getSnapshotStateId(buffer, StateHierarchy.UNKNOWN_ID);
+                historyStateIds[id] = getSnapshotStateId(buffer, id);
+            }
+
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Malformed snapshot");
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed snapshot");
+        }
+
+        // The snapshot is valid, so the configuration can be replaced
+
+        if (flyweightEnabled) {
+            this.historyStateIds = null;
+        } else {
+            for (final T_State state : states) {
+                if (state != null && state != this) {
+                    state.currentState = null;
+                }
+            }
+        }
+
+        for (int id = 1; id < stateCount; id++) {
+            if (historyStateIds[id] != StateHierarchy.ROOT_ID) {
+                if (flyweightEnabled) {
+                    setHistoryState(id, historyStateIds[id]);
+                } else {
+                    getState(id).currentState = getState(historyStateIds[id]);
+                }
+            }
+        }
+
+        currentState = (path.length > 0) ? getState(path[path.length - 1]) : null;
+
+        // The timeouts of the restored states are scheduled anew
+
+        cancelTimers();
+
+        for (final int id : path) {
+            scheduleTimer(id);
+        }
+    }
+
+    /**
+     * Reads a state id from a snapshot and instantiates the state.
+     *
+     * @param buffer       A {@link ByteBuffer} containing the snapshot.
+     * @param superStateId The id of the required super state of the state, or
+     *                     {@link StateHierarchy#UNKNOWN_ID} if any super state is accepted.
+     * @return The state id as an {@code int}.
+     */
+    private int getSnapshotStateId(final ByteBuffer buffer, final int superStateId) {
+        final int id = VarInts.get(buffer);
+
+        if (id <= StateHierarchy.ROOT_ID || id >= stateHierarchy.getStateCount()) {
+            throw new IllegalArgumentException("Invalid state id in snapshot: " + id);
+        }
+
+        getState(id);
+
+        if (superStateId != StateHierarchy.UNKNOWN_ID && stateHierarchy.getSuperStateId(id) != superStateId) {
+            throw new IllegalArgumentException("Snapshot does not match the StateHierarchy");
+        }
+        return id;
+    }
+
     /**
      * Tests if the given state object is a direct or an indirect super state of the state
      * represented by this instance of {@link StateEngine}.
@@ -579,6 +1804,72 @@ public abstract class StateEngine<T_State extends StateEngine> {
     }
 
 
+    /**
+     * {@link EventQueue} holds the events posted in the run-to-completion mode.
+     */
+    private static final class EventQueue {
+
+        final ConcurrentLinkedQueue<QueuedEvent> events = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The number of the events posted and not yet dispatched. The thread that increments
+         * the number from zero dispatches the queued events until the number is zero again.
+         */
+        final AtomicInteger pendingEventCount = new AtomicInteger();
+    }
+
+    /**
+     * {@link QueuedEvent} holds an event posted to the queue of the run-to-completion mode.
+     */
+    private static final class QueuedEvent {
+
+        final int eventId;
+        final Object[] args;
+        final StateTimer timer;
+        final boolean external;
+
+        QueuedEvent(final int eventId, final Object[] args, final StateTimer timer, final boolean external) {
+            this.eventId = eventId;
+            this.args = args;
+            this.timer = timer;
+            this.external = external;
+        }
+    }
+
+    /**
+     * {@link StateTimer} is a {@link TimingWheel.Timer} for the {@link Timeout} of an entered state.
+     * An expired {@link StateTimer} posts the event of the {@link Timeout}, either directly or by
+     * executing itself using the timeout {@link Executor} of the {@link StateEngine}.
+     */
+    private static final class StateTimer extends TimingWheel.Timer implements Runnable {
+
+        final StateEngine<?> stateEngine;
+        final int stateId;
+        final int eventId;
+
+        StateTimer(final StateEngine<?> stateEngine, final int stateId, final int eventId) {
+            this.stateEngine = stateEngine;
+            this.stateId = stateId;
+            this.eventId = eventId;
+        }
+
+        @Override
+        protected void onExpired() {
+            final Executor executor = stateEngine.getTimeoutExecutor();
+
+            if (executor != null) {
+                executor.execute(this);
+            } else {
+                stateEngine.postEvent(eventId, null, this);
+            }
+        }
+
+        @Override
+        public void run() {
+            stateEngine.postEvent(eventId, null, this);
+        }
+    }
+
     /**
      * A {@link String} representation of this {@link StateEngine} is simply the name of the class
      * implementing abstract class {@link StateEngine}.
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+/**
+ * {@link StateEngineTracer} defines an interface for observing the transitions and the events of
+ * a {@link StateEngine}. A {@link StateEngineTracer} is added using
+ * {@link StateEngine#addTracer(StateEngineTracer)} or
+ * {@link StateMachine#addTracer(StateEngineTracer)}. The callbacks are invoked by the thread that
+ * dispatches the events of the traced {@link StateEngine}.
+ */
+public interface StateEngineTracer {
+
+    /**
+     * Invoked when the traced {@link StateEngine} makes a transition from the given source state
+     * to the given target state.
+     *
+     * @param stateEngine The traced {@link StateEngine}.
+     * @param source      The source state. May be {@code null} for the first transition.
+     * @param target      The target state.
+     * @param dwellNanos  The time in nanoseconds the source state was the current state.
+     */
+    void onTransition(StateEngine<?> stateEngine, StateEngine<?> source, StateEngine<?> target, long dwellNanos);
+
+    /**
+     * Invoked when the traced {@link StateEngine} has handled the specified event.
+     *
+     * @param stateEngine The traced {@link StateEngine}.
+     * @param eventId     The id of the event.
+     * @param nanos       The time in nanoseconds spent for handling the event.
+     */
+    void onEventHandled(StateEngine<?> stateEngine, int eventId, long nanos);
+}
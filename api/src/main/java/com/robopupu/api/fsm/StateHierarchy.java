@@ -0,0 +1,464 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import java.nio.charset.Charset;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+
+/**
+ * {@link StateHierarchy} describes the hierarchy of the states of a code generated
+ * {@link StateEngine} implementation. The annotation processor assigns a dense integer id for each
+ * state class, the id {@link StateHierarchy#ROOT_ID} being the {@link StateEngine} itself, and
+ * creates a {@link StateHierarchy} as static data shared by all the instances of the generated
+ * {@link StateEngine}. The annotation processor reads the super state of each state from its
+ * {@link SuperState} annotation, so the state tables are immutable after construction, and the least common ancestor of each pair
+ * of source and target states is computed once when the {@link StateHierarchy} is constructed.
+ * A transition then exits the states by walking up the super states to the precomputed least
+ * common ancestor instead of recursively searching for it. Similarly, the state that handles an
+ * event received in a state is resolved for each pair of state and event when
+ * the {@link StateHierarchy} is constructed, so that the event can be dispatched directly to
+ * the handling state instead of delegating it through the super states.
+ * In the flyweight mode the {@link StateHierarchy} also holds the state objects shared by all
+ * the instances of the {@link StateEngine}.
+ * <p>
+ * The fingerprint of a {@link StateHierarchy} is a checksum of its state and event tables. It is
+ * recorded in the snapshots and in the {@link EventJournal}s, so that a snapshot or a journal
+ * written by a different version of the state machine is rejected instead of being misread.
+ */
+public final class StateHierarchy {
+
+    /**
+     * The id of the {@link StateEngine} that is the root of the hierarchy.
+     */
+    public static final int ROOT_ID = 0;
+
+    /**
+     * The id of a state class that is not part of a {@link StateHierarchy}.
+     */
+    public static final int UNKNOWN_ID = -1;
+
+    private static final int[][] NO_EVENT_HANDLERS = new int[0][];
+
+    private final Class<?>[] stateClasses;
+    private final IdentityHashMap<Class<?>, Integer> stateIds;
+
+    /*
+     * The ids of the super states and the depths of the states indexed by the state ids.
+     */
+    private final int[] superStateIds;
+    private final int[] depths;
+
+    /*
+     * The ids of the least common ancestors of the states indexed by
+     * {@code sourceId * stateCount + targetId}. The table is computed from the super state ids
+     * instead of being generated, because a generated table of stateCount * stateCount entries
+     * would exceed the code size limit of a static initializer in a large state machine.
+     */
+    private final int[] leastCommonAncestorIds;
+
+    /*
+     * The number of events, and the flags telling which states handle which events indexed by
+     * {@code stateId * eventCount + eventId}.
+     */
+    private final int eventCount;
+    private final boolean[] handledEvents;
+
+    /*
+     * The ids of the states handling the events indexed by {@code stateId * eventCount + eventId}
+     * resolved when the {@link StateHierarchy} is constructed.
+     */
+    private final int[] eventHandlerIds;
+
+    /*
+     * The delays in milliseconds and the event ids of the {@link Timeout}s of the states indexed
+     * by the state ids. A state without a {@link Timeout} has zero delay.
+     */
+    private final long[] timeoutDelays;
+    private final int[] timeoutEventIds;
+    private final boolean timeouts;
+
+    /*
+     * The checksum of the state and event tables.
+     */
+    private final int fingerprint;
+
+    /*
+     * The state objects shared by the instances of {@link StateEngine} in the flyweight mode
+     * indexed by the state ids.
+     */
+    private final AtomicReferenceArray<StateEngine<?>> sharedStates;
+
+    /**
+     * Constructs a new instance of {@link StateHierarchy}.
+     *
+     * @param stateClasses  The state {@link Class}es indexed by the state ids. The first one has to
+     *                      be the {@link Class} of the {@link StateEngine}.
+     * @param superStateIds The ids of the super states indexed by the state ids. The value for
+     *                      the {@link StateEngine} itself is ignored.
+     */
+    public StateHierarchy(final Class<?>[] stateClasses, final int[] superStateIds) {
+        this(stateClasses, superStateIds, 0, NO_EVENT_HANDLERS);
+    }
+
+    /**
+     * Constructs a new instance of {@link StateHierarchy}.
+     *
+     * @param stateClasses  The state {@link Class}es indexed by the state ids. The first one has to
+     *                      be the {@link Class} of the {@link StateEngine}.
+     * @param superStateIds The ids of the super states indexed by the state ids. The value for
+     *                      the {@link StateEngine} itself is ignored.
+     * @param eventCount    The number of the event methods.
+     * @param eventHandlers The ids of the events handled by the states indexed by the state ids.
+     *                      A state handles an event if its class overrides the event method.
+     */
+    public StateHierarchy(final Class<?>[] stateClasses, final int[] superStateIds, final int eventCount, final int[][] eventHandlers) {
+        this(stateClasses, superStateIds, eventCount, eventHandlers, new long[stateClasses.length], new int[stateClasses.length]);
+    }
+
+    /**
+     * Constructs a new instance of {@link StateHierarchy}.
+     *
+     * @param stateClasses    The state {@link Class}es indexed by the state ids. The first one has
+     *                        to be the {@link Class} of the {@link StateEngine}.
+     * @param superStateIds   The ids of the super states indexed by the state ids. The value for
+     *                        the {@link StateEngine} itself is ignored.
+     * @param eventCount      The number of the event methods.
+     * @param eventHandlers   The ids of the events handled by the states indexed by the state ids.
+     *                        A state handles an event if its class overrides the event method.
+     * @param timeoutDelays   The delays in milliseconds of the {@link Timeout}s of the states
+     *                        indexed by the state ids. Zero for a state without a {@link Timeout}.
+     * @param timeoutEventIds The ids of the events fired by the {@link Timeout}s of the states
+     *                        indexed by the state ids.
+     * @throws IllegalArgumentException If the super state ids do not form a tree rooted at
+     *                                  the {@link StateEngine}.
+     */
+    public StateHierarchy(final Class<?>[] stateClasses, final int[] superStateIds, final int eventCount, final int[][] eventHandlers,
+                          final long[] timeoutDelays, final int[] timeoutEventIds) {
+        final int stateCount = stateClasses.length;
+
+        if (superStateIds.length != stateCount) {
+            throw new IllegalArgumentException("Parameter superStateIds has to contain an id for each state");
+        }
+
+        this.stateClasses = stateClasses.clone();
+        this.superStateIds = superStateIds.clone();
+        this.superStateIds[ROOT_ID] = UNKNOWN_ID;
+        stateIds = new IdentityHashMap<>(stateCount);
+        depths = new int[stateCount];
+        leastCommonAncestorIds = new int[stateCount * stateCount];
+        sharedStates = new AtomicReferenceArray<>(stateCount);
+
+        for (int id = 0; id < stateCount; id++) {
+            stateIds.put(stateClasses[id], id);
+            depths[id] = computeDepth(id);
+        }
+
+        for (int sourceId = 0; sourceId < stateCount; sourceId++) {
+            for (int targetId = 0; targetId < stateCount; targetId++) {
+                leastCommonAncestorIds[sourceId * stateCount + targetId] = computeLeastCommonAncestorId(sourceId, targetId);
+            }
+        }
+
+        this.eventCount = eventCount;
+        handledEvents = new boolean[stateCount * eventCount];
+        eventHandlerIds = new int[stateCount * eventCount];
+
+        for (int id = 0; id < eventHandlers.length; id++) {
+            for (final int eventId : eventHandlers[id]) {
+                handledEvents[id * eventCount + eventId] = true;
+            }
+        }
+
+        for (int id = 0; id < stateCount; id++) {
+            for (int eventId = 0; eventId < eventCount; eventId++) {
+                eventHandlerIds[id * eventCount + eventId] = resolveEventHandlerId(id, eventId);
+            }
+        }
+
+        this.timeoutDelays = timeoutDelays.clone();
+        this.timeoutEventIds = timeoutEventIds.clone();
+
+        boolean timeouts = false;
+
+        for (final long delay : timeoutDelays) {
+            timeouts |= delay > 0;
+        }
+        this.timeouts = timeouts;
+        fingerprint = computeFingerprint();
+    }
+
+    /**
+     * Gets the fingerprint of this {@link StateHierarchy}. Two {@link StateHierarchy}s have
+     * the same fingerprint if they have the same state classes, super states, event handlers and
+     * {@link Timeout}s.
+     *
+     * @return The fingerprint as an {@code int}.
+     */
+    public int getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Gets the number of the event methods.
+     *
+     * @return The number as an {@code int}.
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Tests if any of the states has a {@link Timeout}.
+     *
+     * @return A {@code boolean} value.
+     */
+    public boolean hasTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Gets the delay of the {@link Timeout} of the given state.
+     *
+     * @param stateId The id of a state.
+     * @return The delay in milliseconds as a {@code long}, or zero if the state has no
+     * {@link Timeout}.
+     */
+    public long getTimeoutDelay(final int stateId) {
+        return timeoutDelays[stateId];
+    }
+
+    /**
+     * Gets the id of the event fired by the {@link Timeout} of the given state.
+     *
+     * @param stateId The id of a state.
+     * @return The id as an {@code int}.
+     */
+    public int getTimeoutEventId(final int stateId) {
+        return timeoutEventIds[stateId];
+    }
+
+    /**
+     * Gets the number of states including the {@link StateEngine}.
+     *
+     * @return The number as an {@code int}.
+     */
+    public int getStateCount() {
+        return stateClasses.length;
+    }
+
+    /**
+     * Gets the state {@link Class} of the given id.
+     *
+     * @param stateId The id of a state.
+     * @return A {@link Class}.
+     */
+    public Class<?> getStateClass(final int stateId) {
+        return stateClasses[stateId];
+    }
+
+    /**
+     * Gets the id of the given state {@link Class}.
+     *
+     * @param stateClass A state {@link Class}.
+     * @return The id as an {@code int} or {@link StateHierarchy#UNKNOWN_ID}.
+     */
+    public int getStateId(final Class<?> stateClass) {
+        final Integer stateId = stateIds.get(stateClass);
+        return (stateId != null) ? stateId : UNKNOWN_ID;
+    }
+
+    /**
+     * Gets the id of the super state of the given state.
+     *
+     * @param stateId The id of a state.
+     * @return The id as an {@code int} or {@link StateHierarchy#UNKNOWN_ID} for
+     * the {@link StateEngine} itself.
+     */
+    public int getSuperStateId(final int stateId) {
+        return superStateIds[stateId];
+    }
+
+    /**
+     * Gets the depth of the given state. The top-level states have depth one.
+     *
+     * @param stateId The id of a state.
+     * @return The depth as an {@code int}.
+     */
+    public int getDepth(final int stateId) {
+        return depths[stateId];
+    }
+
+    /**
+     * Gets the shared state object of the given id used in the flyweight mode.
+     *
+     * @param stateId The id of a state.
+     * @return A state object or {@code null} if the state has not been instantiated yet.
+     */
+    StateEngine<?> getSharedState(final int stateId) {
+        return sharedStates.get(stateId);
+    }
+
+    /**
+     * Records the shared state object of the given id. Invoked by {@link StateEngine} when it
+     * instantiates the state in the flyweight mode.
+     *
+     * @param stateId The id of the state.
+     * @param state   The state object.
+     */
+    void setSharedState(final int stateId, final StateEngine<?> state) {
+        sharedStates.set(stateId, state);
+    }
+
+    /**
+     * Gets the id of the least common ancestor of the given source and target states of
+     * a transition. The transition exits the states starting from the source state up to, but
+     * excluding, the least common ancestor. A state is the least common ancestor of itself and its
+     * sub states, so no state is exited if the source state is a super state of the target state.
+     *
+     * @param sourceId The id of the current state.
+     * @param targetId The id of the target state.
+     * @return The id as an {@code int}.
+     */
+    int getLeastCommonAncestorId(final int sourceId, final int targetId) {
+        return leastCommonAncestorIds[sourceId * stateClasses.length + targetId];
+    }
+
+    /**
+     * Gets the id of the state that handles the given event received in the given state. The
+     * handling state is either the given state or the closest of its super states that handles
+     * the event.
+     *
+     * @param stateId The id of the current state.
+     * @param eventId The id of the event.
+     * @return The id as an {@code int} or {@link StateHierarchy#UNKNOWN_ID} if the event is not
+     * handled.
+     */
+    int getEventHandlerId(final int stateId, final int eventId) {
+        return eventHandlerIds[stateId * eventCount + eventId];
+    }
+
+    /**
+     * Resolves the id of the state that handles the given event received in the given state by
+     * walking up the super states.
+     *
+     * @param stateId The id of the current state.
+     * @param eventId The id of the event.
+     * @return The id as an {@code int} or {@link StateHierarchy#UNKNOWN_ID} if the event is not
+     * handled.
+     */
+    private int resolveEventHandlerId(final int stateId, final int eventId) {
+        int handlerId = stateId;
+
+        while (handlerId != ROOT_ID && !handledEvents[handlerId * eventCount + eventId]) {
+            handlerId = superStateIds[handlerId];
+        }
+        return (handlerId != ROOT_ID) ? handlerId : UNKNOWN_ID;
+    }
+
+    /**
+     * Computes the depth of the given state by counting its super states.
+     *
+     * @param stateId The id of a state.
+     * @return The depth as an {@code int}.
+     * @throws IllegalArgumentException If a super state id is not valid or the super states form
+     *                                  a cycle.
+     */
+    private int computeDepth(final int stateId) {
+        int depth = 0;
+
+        for (int id = stateId; id != ROOT_ID; id = superStateIds[id]) {
+            if (id < 0 || id >= superStateIds.length || depth >= superStateIds.length) {
+                throw new IllegalArgumentException("Invalid super state for State: " + stateClasses[stateId].getName());
+            }
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Computes the least common ancestor of the given states by walking up the super states of
+     * the deeper state to the depth of the other state, and then walking up the super states of
+     * both states until they meet.
+     *
+     * @param stateId      The id of a state.
+     * @param otherStateId The id of the other state.
+     * @return The id as an {@code int}.
+     */
+    private int computeLeastCommonAncestorId(final int stateId, final int otherStateId) {
+        int id = stateId;
+        int otherId = otherStateId;
+
+        while (depths[id] > depths[otherId]) {
+            id = superStateIds[id];
+        }
+
+        while (depths[otherId] > depths[id]) {
+            otherId = superStateIds[otherId];
+        }
+
+        while (id != otherId) {
+            id = superStateIds[id];
+            otherId = superStateIds[otherId];
+        }
+        return id;
+    }
+
+    /**
+     * Tests if the given state is a direct or an indirect super state of the other given state.
+     *
+     * @param superStateId The id of the possible super state.
+     * @param stateId      The id of the state.
+     * @return A {@code boolean} value.
+     */
+    public boolean isSuperState(final int superStateId, final int stateId) {
+        int id = stateId;
+
+        while (depths[id] > depths[superStateId]) {
+            id = superStateIds[id];
+        }
+        return id == superStateId && id != stateId;
+    }
+
+    /**
+     * Computes the fingerprint as a CRC32 checksum of a textual description of the state and
+     * event tables. The description of each state consists of the name of the state class,
+     * the id of its super state, the ids of the events handled by the state, and the delay and
+     * the event id of its {@link Timeout}.
+     *
+     * @return The fingerprint as an {@code int}.
+     */
+    private int computeFingerprint() {
+        final StringBuilder tables = new StringBuilder();
+        tables.append(eventCount).append('\n');
+
+        for (int id = 0; id < stateClasses.length; id++) {
+            tables.append(stateClasses[id].getName()).append(':').append(superStateIds[id]).append(':');
+
+            for (int eventId = 0; eventId < eventCount; eventId++) {
+                if (handledEvents[id * eventCount + eventId]) {
+                    tables.append(eventId).append(',');
+                }
+            }
+            tables.append(':').append(timeoutDelays[id]).append(':').append(timeoutEventIds[id]).append('\n');
+        }
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(tables.toString().getBytes(Charset.forName("UTF-8")));
+        return (int) checksum.getValue();
+    }
+}
@@ -18,21 +18,32 @@ package com.robopupu.api.fsm;
 import com.robopupu.api.util.LifecycleState;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 /*
  * {@link StateMachine} provides an abstract base class for implementing a Finite State Machine
  * (FMS). An instance of concrete {@link StateMachine} uses a code generated concrete implementation
  * of {@link StateEngine} to implement and execute the state machine.
  */
-public abstract class StateMachine implements StateEngineObserver {
+public abstract class StateMachine implements StateEngineObserver, StateEngineTracer {
 
     private LifecycleState lifecycleState;
     private boolean isResetted;
     private StateEngine<? extends StateEngine> stateEngine;
+    private boolean eventQueueEnabled;
+    private boolean flyweightEnabled;
+    private boolean tracingEnabled;
+    private Executor timeoutExecutor;
+    private final ArrayList<StateEngineTracer> tracers;
+    private byte[] restoredSnapshot;
+    private EventJournal journal;
+    private boolean journalReplayed;
 
     protected StateMachine() {
         lifecycleState = LifecycleState.DORMANT;
         isResetted = false;
+        tracers = new ArrayList<>();
     }
 
     /*
@@ -94,12 +105,129 @@ public abstract class StateMachine implements StateEngineObserver {
             }
         }
 
+        if (eventQueueEnabled) {
+            stateEngine.setEventQueueEnabled(true);
+        }
+
+        if (flyweightEnabled) {
+            stateEngine.setFlyweightEnabled(true);
+        }
+
+        if (tracingEnabled) {
+            stateEngine.setTracingEnabled(true);
+        }
+
+        for (final StateEngineTracer tracer : tracers) {
+            stateEngine.addTracer(tracer);
+        }
+
+        if (timeoutExecutor != null) {
+            stateEngine.setTimeoutExecutor(timeoutExecutor);
+        }
+
+        if (journal != null) {
+            stateEngine.setJournal(journal);
+        }
+
         onStateEngineCreated(stateEngine);
 
         lifecycleState = LifecycleState.CREATED;
         stateEngine.setObserver(this);
     }
 
+    /*
+     * Sets the run-to-completion mode in which the events received from any thread are queued and
+     * dispatched one at a time. See {@link StateEngine#setEventQueueEnabled(boolean)}.
+     * @param enabled A {@code boolean} value.
+     */
+    public final void setEventQueueEnabled(final boolean enabled) {
+        eventQueueEnabled = enabled;
+
+        if (stateEngine != null) {
+            stateEngine.setEventQueueEnabled(enabled);
+        }
+    }
+
+    /*
+     * Sets the flyweight mode in which the state objects are shared by all the instances of
+     * the same {@link StateMachine}. See {@link StateEngine#setFlyweightEnabled(boolean)}. The mode
+     * has to be set before this {@link StateMachine} is started.
+     * @param enabled A {@code boolean} value.
+     */
+    public final void setFlyweightEnabled(final boolean enabled) {
+        flyweightEnabled = enabled;
+
+        if (stateEngine != null) {
+            stateEngine.setFlyweightEnabled(enabled);
+        }
+    }
+
+    /*
+     * Sets the {@link Executor} that dispatches the events fired by the {@link Timeout}s. See
+     * {@link StateEngine#setTimeoutExecutor(Executor)}.
+     * @param executor An {@link Executor}. May be {@code null}.
+     */
+    public final void setTimeoutExecutor(final Executor executor) {
+        timeoutExecutor = executor;
+
+        if (stateEngine != null) {
+            stateEngine.setTimeoutExecutor(executor);
+        }
+    }
+
+    /*
+     * Sets the observing of the transitions and the events on or off. When tracing, this
+     * {@link StateMachine} receives {@link StateMachine#onTransition} and
+     * {@link StateMachine#onEventHandled}. See {@link StateEngine#setTracingEnabled(boolean)}.
+     * @param enabled A {@code boolean} value.
+     */
+    public final void setTracingEnabled(final boolean enabled) {
+        tracingEnabled = enabled;
+
+        if (stateEngine != null) {
+            stateEngine.setTracingEnabled(enabled);
+        }
+    }
+
+    /*
+     * Adds a {@link StateEngineTracer}, such as a {@link StateMachineMetrics}, for observing
+     * this {@link StateMachine}. See {@link StateEngine#addTracer(StateEngineTracer)}.
+     * @param tracer A {@link StateEngineTracer}.
+     */
+    public final void addTracer(final StateEngineTracer tracer) {
+        tracers.add(tracer);
+
+        if (stateEngine != null) {
+            stateEngine.addTracer(tracer);
+        }
+    }
+
+    /*
+     * Removes a {@link StateEngineTracer} added using
+     * {@link StateMachine#addTracer(StateEngineTracer)}.
+     * @param tracer A {@link StateEngineTracer}.
+     */
+    public final void removeTracer(final StateEngineTracer tracer) {
+        tracers.remove(tracer);
+
+        if (stateEngine != null) {
+            stateEngine.removeTracer(tracer);
+        }
+    }
+
+    /*
+     * Sets the journaled mode in which the events are appended to the given {@link EventJournal}.
+     * See {@link StateEngine#setJournal(EventJournal)}.
+     * @param journal An {@link EventJournal}. May be {@code null} to set the mode off.
+     */
+    public final void setJournal(final EventJournal journal) {
+        this.journal = journal;
+
+        if (stateEngine != null) {
+            stateEngine.setJournal(journal);
+        }
+    }
+
     protected void onStateEngineCreated(final StateEngine stateEngine) {
         // By default do nothing
     }
@@ -126,7 +254,13 @@ public abstract class StateMachine implements StateEngineObserver {
         }
 
         if (lifecycleState.isCreated() || lifecycleState.isStopped() && isResetted) {
-            stateEngine.start();
+            if (restoredSnapshot != null) {
+                stateEngine.restoreSnapshot(restoredSnapshot);
+            } else if (journalReplayed) {
+                stateEngine.replay();
+            } else {
+                stateEngine.start();
+            }
             isResetted = false;
             lifecycleState = LifecycleState.STARTED;
             return getCurrentState();
@@ -142,6 +276,53 @@ public abstract class StateMachine implements StateEngineObserver {
      */
     public abstract void start();
 
+    /*
+     * Saves the configuration of this {@link StateMachine} as a compact binary snapshot. See
+     * {@link StateEngine#saveSnapshot()}.
+     * @return The snapshot as a {@code byte} array.
+     */
+    public final byte[] saveSnapshot() {
+        if (stateEngine == null) {
+            throw new IllegalStateException("StateMachine has not been started");
+        }
+        return stateEngine.saveSnapshot();
+    }
+
+    /*
+     * Starts this {@link StateMachine} by restoring the configuration from a snapshot saved using
+     * {@link StateMachine#saveSnapshot()} instead of entering the initial state. The method invokes
+     * {@link StateMachine#start()}, but the states are not entered. See
+     * {@link StateEngine#restoreSnapshot(byte[])}.
+     * @param snapshot The snapshot as a {@code byte} array.
+     */
+    public final void restore(final byte[] snapshot) {
+        restoredSnapshot = snapshot;
+
+        try {
+            start();
+        } finally {
+            restoredSnapshot = null;
+        }
+    }
+
+    /*
+     * Starts this {@link StateMachine} in the journaled mode by replaying the given
+     * {@link EventJournal} instead of entering the initial state. The method invokes
+     * {@link StateMachine#start()}, and the events appended after the replay are journaled to
+     * the same {@link EventJournal}. See {@link StateEngine#replay()}.
+     * @param journal An {@link EventJournal}.
+     */
+    public final void replay(final EventJournal journal) {
+        setJournal(journal);
+        journalReplayed = true;
+
+        try {
+            start();
+        } finally {
+            journalReplayed = false;
+        }
+    }
+
     /*
      * Stops this {@link StateMachine}. A stopped {@link StateMachine} can be restarted after resetting
      * it.
@@ -186,4 +367,14 @@ public abstract class StateMachine implements StateEngineObserver {
     public void onStop(final StateEngine stateEngine) {
         // By default do nothing
     }
+
+    @Override
+    public void onTransition(final StateEngine<?> stateEngine, final StateEngine<?> source, final StateEngine<?> target, final long dwellNanos) {
+        // By default do nothing
+    }
+
+    @Override
+    public void onEventHandled(final StateEngine<?> stateEngine, final int eventId, final long nanos) {
+        // By default do nothing
+    }
 }
@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link StateMachineExecutor} runs a large number of {@link StateMachine}s using a fixed number of
+ * worker threads, the shards. Each {@link StateMachine} is pinned to one shard by its identity hash
+ * code, and all the events of the {@link StateMachine} are dispatched by the worker thread of that
+ * shard in the order they were posted. Hence a {@link StateMachine} executed by
+ * a {@link StateMachineExecutor} is always accessed by a single thread, and it does not need
+ * the run-to-completion mode, while the population of the {@link StateMachine}s is spread over all
+ * the cores. The events are posted using the code generated {@code State.Async} proxies that
+ * implement the event interfaces of a {@link StateMachine}, or using
+ * {@link StateMachineExecutor#post(StateMachine, int, Object[])}.
+ * <p>
+ * Each shard has a lock-free multiple-producer single-consumer queue whose nodes are the posted
+ * tasks, so posting an event allocates a single object and a worker thread is woken up only if it
+ * has run out of tasks. A worker thread dispatches the queued tasks in batches of at most
+ * {@link StateMachineExecutor#getBatchSize()} tasks between checking for stopping. A {@link Batch}
+ * collects the events posted by a single thread and submits them to each shard with a single
+ * atomic operation.
+ * <p>
+ * A {@link StateMachine} using {@link Timeout}s has to be attached using
+ * {@link StateMachineExecutor#attach(StateMachine)} before it is started. The events fired by its
+ * {@link Timeout}s are then dispatched by the worker thread of its shard like the posted events,
+ * instead of the worker thread of the {@link TimingWheel}. A {@code State.Async} proxy attaches
+ * its {@link StateMachine} when constructed.
+ */
+public final class StateMachineExecutor {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final Shard[] shards;
+    private final int batchSize;
+
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a new instance of {@link StateMachineExecutor} with a shard for each available
+     * processor.
+     */
+    public StateMachineExecutor() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs a new instance of {@link StateMachineExecutor}. The worker threads are started
+     * immediately.
+     *
+     * @param shardCount The number of the shards, i.e. the worker threads.
+     * @param batchSize  The maximum number of the tasks dispatched by a worker thread between
+     *                   checking for stopping.
+     */
+    public StateMachineExecutor(final int shardCount, final int batchSize) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Parameter shardCount must be positive");
+        } else if (batchSize <= 0) {
+            throw new IllegalArgumentException("Parameter batchSize must be positive");
+        }
+
+        this.batchSize = batchSize;
+        shards = new Shard[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(this, i);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets the index of the shard the given {@link StateMachine} is pinned to.
+     *
+     * @param stateMachine A {@link StateMachine}.
+     * @return The index as an {@code int}.
+     */
+    public int getShardIndex(final StateMachine stateMachine) {
+        final int hash = System.identityHashCode(stateMachine);
+        return ((hash ^ (hash >>> 16)) & 0x7FFFFFFF) % shards.length;
+    }
+
+    /**
+     * Attaches the given {@link StateMachine} to this {@link StateMachineExecutor} by setting
+     * the shard of the {@link StateMachine} as its timeout {@link Executor}. See
+     * {@link StateMachine#setTimeoutExecutor(Executor)}.
+     *
+     * @param stateMachine A {@link StateMachine}.
+     */
+    public void attach(final StateMachine stateMachine) {
+        stateMachine.setTimeoutExecutor(shards[getShardIndex(stateMachine)]);
+    }
+
+    /**
+     * Posts the specified event to the shard of the given {@link StateMachine}. The event is
+     * dispatched by the worker thread of the shard using
+     * {@link StateEngine#postEvent(int, Object[])}. Invoked by the code generated
+     * {@code State.Async} proxies.
+     *
+     * @param stateMachine A started {@link StateMachine}.
+     * @param eventId      The id of the event.
+     * @param args         The arguments of the event. May be {@code null} for an event without
+     *                     arguments.
+     */
+    public void post(final StateMachine stateMachine, final int eventId, final Object[] args) {
+        final Task task = new EventTask(stateMachine, eventId, args);
+        shards[getShardIndex(stateMachine)].offer(task, task);
+    }
+
+    /**
+     * Executes the given {@link Runnable} by the worker thread of the shard of the given
+     * {@link StateMachine}, for instance to start the {@link StateMachine}.
+     *
+     * @param stateMachine A {@link StateMachine}.
+     * @param runnable     A {@link Runnable}.
+     */
+    public void execute(final StateMachine stateMachine, final Runnable runnable) {
+        shards[getShardIndex(stateMachine)].execute(runnable);
+    }
+
+    /**
+     * Creates a new {@link Batch} for posting events to this {@link StateMachineExecutor}.
+     *
+     * @return A {@link Batch}.
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Stops the worker threads of this {@link StateMachineExecutor}. The tasks posted before
+     * stopping are dispatched before the worker threads terminate.
+     */
+    public void stop() {
+        stopped = true;
+
+        for (final Shard shard : shards) {
+            shard.wakeUp();
+        }
+    }
+
+    /**
+     * Stops the worker threads and waits until they have terminated.
+     *
+     * @throws InterruptedException If the waiting thread was interrupted.
+     */
+    public void stopAndWait() throws InterruptedException {
+        stop();
+
+        for (final Shard shard : shards) {
+            shard.workerThread.join();
+        }
+    }
+
+    /**
+     * {@link Task} is a task posted to a {@link Shard}. A {@link Task} is also the node of
+     * the queue of the {@link Shard}.
+     */
+    private abstract static class Task {
+
+        volatile Task next;
+
+        abstract void run();
+    }
+
+    private static final class EventTask extends Task {
+
+        final StateMachine stateMachine;
+        final int eventId;
+        final Object[] args;
+
+        EventTask(final StateMachine stateMachine, final int eventId, final Object[] args) {
+            this.stateMachine = stateMachine;
+            this.eventId = eventId;
+            this.args = args;
+        }
+
+        @Override
+        void run() {
+            final StateEngine<?> stateEngine = stateMachine.getStateEngine();
+            stateEngine.postEvent(eventId, args);
+        }
+    }
+
+    private static final class RunnableTask extends Task {
+
+        final Runnable runnable;
+
+        RunnableTask(final Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        void run() {
+            runnable.run();
+        }
+    }
+
+    /**
+     * {@link Shard} has a worker thread and a multiple-producer single-consumer queue of
+     * {@link Task}s. A producer appends a chain of {@link Task}s by swapping the tail of the queue
+     * and then linking the previous tail to the chain. The worker thread follows the links from
+     * a stub node that is always the head of the queue. A {@link Shard} is also the timeout
+     * {@link Executor} of the attached {@link StateMachine}s.
+     */
+    private static final class Shard implements Executor {
+
+        private static final int STATE_RUNNING = 0;
+        private static final int STATE_PARKED = 1;
+
+        private static final AtomicReferenceFieldUpdater<Shard, Task> TAIL_UPDATER = AtomicReferenceFieldUpdater.newUpdater(Shard.class, Task.class, "tail");
+        private static final AtomicIntegerFieldUpdater<Shard> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Shard.class, "state");
+
+        private final StateMachineExecutor executor;
+        private final Thread workerThread;
+        private volatile Task tail;
+        private volatile int state;
+
+        /*
+         * The head of the queue. Accessed only by the worker thread.
+         */
+        private Task head;
+
+        Shard(final StateMachineExecutor executor, final int index) {
+            this.executor = executor;
+            head = new RunnableTask(null);
+            tail = head;
+            workerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWorker();
+                }
+            }, StateMachineExecutor.class.getSimpleName() + "-" + index);
+            workerThread.setDaemon(true);
+            workerThread.start();
+        }
+
+        /**
+         * Appends a chain of linked {@link Task}s to the queue.
+         *
+         * @param first The first {@link Task} of the chain.
+         * @param last  The last {@link Task} of the chain.
+         */
+        void offer(final Task first, final Task last) {
+            if (executor.stopped) {
+                throw new IllegalStateException("StateMachineExecutor has been stopped");
+            }
+
+            final Task previous = TAIL_UPDATER.getAndSet(this, last);
+            previous.next = first;
+
+            if (state == STATE_PARKED) {
+                wakeUp();
+            }
+        }
+
+        @Override
+        public void execute(final Runnable runnable) {
+            final Task task = new RunnableTask(runnable);
+            offer(task, task);
+        }
+
+        void wakeUp() {
+            if (STATE_UPDATER.compareAndSet(this, STATE_PARKED, STATE_RUNNING)) {
+                LockSupport.unpark(workerThread);
+            }
+        }
+
+        private void runWorker() {
+            final int batchSize = executor.batchSize;
+
+            while (true) {
+                int count = 0;
+                Task task;
+
+                while (count < batchSize && (task = head.next) != null) {
+                    head = task;
+                    count++;
+
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        final Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+
+                if (count == 0) {
+                    if (executor.stopped && tail == head) {
+                        return;
+                    }
+
+                    // The queue is checked again after announcing the parking, so that a task
+                    // offered concurrently either is seen or wakes up the worker thread
+
+                    state = STATE_PARKED;
+
+                    if (head.next == null && !executor.stopped) {
+                        LockSupport.park(this);
+                    }
+                    state = STATE_RUNNING;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link Batch} collects the events posted by a single thread, and submits them to
+     * the shards when flushed. The events of each shard are linked into a chain that is appended to
+     * the queue of the shard with a single atomic operation. A {@link Batch} is not thread-safe.
+     */
+    public final class Batch {
+
+        private final Task[] firstTasks;
+        private final Task[] lastTasks;
+
+        Batch() {
+            firstTasks = new Task[shards.length];
+            lastTasks = new Task[shards.length];
+        }
+
+        public StateMachineExecutor getExecutor() {
+            return StateMachineExecutor.this;
+        }
+
+        /**
+         * Adds the specified event to this {@link Batch}. See
+         * {@link StateMachineExecutor#post(StateMachine, int, Object[])}.
+         *
+         * @param stateMachine A started {@link StateMachine}.
+         * @param eventId      The id of the event.
+         * @param args         The arguments of the event. May be {@code null} for an event without
+         *                     arguments.
+         */
+        public void post(final StateMachine stateMachine, final int eventId, final Object[] args) {
+            final Task task = new EventTask(stateMachine, eventId, args);
+            final int index = getShardIndex(stateMachine);
+
+            if (lastTasks[index] == null) {
+                firstTasks[index] = task;
+            } else {
+                lastTasks[index].next = task;
+            }
+            lastTasks[index] = task;
+        }
+
+        /**
+         * Submits the events added to this {@link Batch} to the shards.
+         */
+        public void flush() {
+            for (int i = 0; i < shards.length; i++) {
+                if (lastTasks[i] != null) {
+                    shards[i].offer(firstTasks[i], lastTasks[i]);
+                    firstTasks[i] = null;
+                    lastTasks[i] = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link StateMachineMetrics} is a {@link StateEngineTracer} that collects statistics about
+ * the transitions and the events of the {@link StateEngine}s it is added to using
+ * {@link StateEngine#addTracer(StateEngineTracer)} or
+ * {@link StateMachine#addTracer(StateEngineTracer)}. It counts the transitions per pair of source
+ * and target state, measures the time spent in each state, and records a latency histogram for
+ * each handled event. The collected statistics can be read as a {@link Snapshot}.
+ * <p>
+ * The statistics are collected into arrays indexed by the state ids and the event ids of
+ * the {@link StateHierarchy} of the first traced {@link StateEngine}, so the same
+ * {@link StateMachineMetrics} can be shared by all the instances of a {@link StateMachine}. The
+ * callbacks from a {@link StateEngine} with another {@link StateHierarchy}, or without one, are
+ * ignored. The counters are striped by the recording thread and updated without locking, so
+ * the {@link StateMachine}s executed by different threads do not contend for the same counters.
+ * A {@link Snapshot} sums up the stripes, and it is not atomic with respect to the concurrent
+ * recording.
+ */
+public class StateMachineMetrics implements StateEngineTracer {
+
+    /**
+     * The number of buckets in a histogram. Bucket {@code i} counts the times {@code t} in
+     * nanoseconds for which {@code 2^(i-1) <= t < 2^i}, and the last bucket counts all the longer
+     * times.
+     */
+    public static final int HISTOGRAM_SIZE = 32;
+
+    /*
+     * The layout of the statistics of a state or an event in the arrays of a {@link Stripe}.
+     */
+    private static final int INDEX_COUNT = 0;
+    private static final int INDEX_TOTAL_NANOS = 1;
+    private static final int INDEX_MAX_NANOS = 2;
+    private static final int INDEX_HISTOGRAM = 3;
+    private static final int TRACE_SIZE = INDEX_HISTOGRAM + HISTOGRAM_SIZE;
+
+    private final int stripeCount;
+
+    /*
+     * The {@link Counters} bound to a {@link StateHierarchy}, or {@code null} if no transition or
+     * event has been recorded since constructing or clearing.
+     */
+    private final AtomicReference<Counters> counters;
+
+    /**
+     * Constructs a new instance of {@link StateMachineMetrics} with a stripe of counters for each
+     * available processor.
+     */
+    public StateMachineMetrics() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new instance of {@link StateMachineMetrics}.
+     *
+     * @param concurrency The estimated number of the threads recording concurrently. The number of
+     *                    the stripes is the next power of two.
+     */
+    public StateMachineMetrics(final int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Parameter concurrency must be positive");
+        }
+
+        stripeCount = (concurrency == 1) ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+        counters = new AtomicReference<>();
+    }
+
+    @Override
+    public void onTransition(final StateEngine<?> stateEngine, final StateEngine<?> source, final StateEngine<?> target, final long dwellNanos) {
+        final Counters counters = getCounters(stateEngine);
+        final int sourceId = (source != null) ? source.stateId : StateHierarchy.ROOT_ID;
+        final int targetId = target.stateId;
+
+        if (counters != null && sourceId >= 0 && targetId >= 0) {
+            final Stripe stripe = counters.getStripe();
+            stripe.transitionCounts.incrementAndGet(sourceId * counters.stateCount + targetId);
+
+            if (source != null) {
+                record(stripe.dwellTimes, sourceId * TRACE_SIZE, dwellNanos);
+            }
+        }
+    }
+
+    @Override
+    public void onEventHandled(final StateEngine<?> stateEngine, final int eventId, final long nanos) {
+        final Counters counters = getCounters(stateEngine);
+
+        if (counters != null && eventId >= 0 && eventId < counters.eventCount) {
+            record(counters.getStripe().eventLatencies, eventId * TRACE_SIZE, nanos);
+        }
+    }
+
+    /**
+     * Gets the {@link Counters} for recording the statistics of the given {@link StateEngine}.
+     * The {@link Counters} are created for the {@link StateHierarchy} of the first traced
+     * {@link StateEngine}.
+     *
+     * @param stateEngine A traced {@link StateEngine}.
+     * @return The {@link Counters}, or {@code null} if the {@link StateEngine} does not have
+     * the bound {@link StateHierarchy}.
+     */
+    private Counters getCounters(final StateEngine<?> stateEngine) {
+        final StateHierarchy stateHierarchy = stateEngine.stateHierarchy;
+        Counters counters = this.counters.get();
+
+        if (counters == null && stateHierarchy != null) {
+            counters = new Counters(stateHierarchy, stripeCount);
+
+            if (!this.counters.compareAndSet(null, counters)) {
+                counters = this.counters.get();
+            }
+        }
+        return (counters != null && counters.stateHierarchy == stateHierarchy) ? counters : null;
+    }
+
+    /**
+     * Records the given time to the statistics starting from the given offset.
+     *
+     * @param traces The {@link AtomicLongArray} of the statistics.
+     * @param offset The offset of the statistics of a state or an event.
+     * @param nanos  The time in nanoseconds.
+     */
+    private static void record(final AtomicLongArray traces, final int offset, final long nanos) {
+        traces.incrementAndGet(offset + INDEX_COUNT);
+        traces.addAndGet(offset + INDEX_TOTAL_NANOS, nanos);
+        traces.incrementAndGet(offset + INDEX_HISTOGRAM + getBucket(nanos));
+
+        long maxNanos = traces.get(offset + INDEX_MAX_NANOS);
+
+        while (nanos > maxNanos && !traces.compareAndSet(offset + INDEX_MAX_NANOS, maxNanos, nanos)) {
+            maxNanos = traces.get(offset + INDEX_MAX_NANOS);
+        }
+    }
+
+    /**
+     * Takes a {@link Snapshot} of the collected statistics.
+     *
+     * @return A {@link Snapshot}.
+     */
+    public Snapshot getSnapshot() {
+        final ArrayList<TransitionCount> transitions = new ArrayList<>();
+        final HashMap<Class<?>, Statistics> dwellTimes = new HashMap<>();
+        final HashMap<Integer, Statistics> eventLatencies = new HashMap<>();
+        final Counters counters = this.counters.get();
+
+        if (counters != null) {
+            final StateHierarchy stateHierarchy = counters.stateHierarchy;
+            final int stateCount = counters.stateCount;
+
+            for (int sourceId = 0; sourceId < stateCount; sourceId++) {
+                for (int targetId = 0; targetId < stateCount; targetId++) {
+                    long count = 0;
+
+                    for (final Stripe stripe : counters.stripes) {
+                        count += stripe.transitionCounts.get(sourceId * stateCount + targetId);
+                    }
+
+                    if (count > 0) {
+                        final Class<?> sourceClass = (sourceId != StateHierarchy.ROOT_ID) ? stateHierarchy.getStateClass(sourceId) : null;
+                        transitions.add(new TransitionCount(sourceClass, stateHierarchy.getStateClass(targetId), count));
+                    }
+                }
+            }
+
+            for (int stateId = 0; stateId < stateCount; stateId++) {
+                final Statistics statistics = counters.getStatistics(false, stateId);
+
+                if (statistics.getCount() > 0) {
+                    dwellTimes.put(stateHierarchy.getStateClass(stateId), statistics);
+                }
+            }
+
+            for (int eventId = 0; eventId < counters.eventCount; eventId++) {
+                final Statistics statistics = counters.getStatistics(true, eventId);
+
+                if (statistics.getCount() > 0) {
+                    eventLatencies.put(eventId, statistics);
+                }
+            }
+        }
+        return new Snapshot(transitions, dwellTimes, eventLatencies);
+    }
+
+    /**
+     * Removes all the collected statistics. The {@link StateMachineMetrics} is bound again to
+     * the {@link StateHierarchy} of the next traced {@link StateEngine}.
+     */
+    public void clear() {
+        counters.set(null);
+    }
+
+    /**
+     * Gets the index of the histogram bucket for the given time.
+     *
+     * @param nanos The time in nanoseconds.
+     * @return The index as an {@code int}.
+     */
+    private static int getBucket(final long nanos) {
+        final int bucket = (nanos > 0) ? 64 - Long.numberOfLeadingZeros(nanos) : 0;
+        return Math.min(bucket, HISTOGRAM_SIZE - 1);
+    }
+
+    /**
+     * {@link Counters} holds the striped counters for the states and the events of
+     * a {@link StateHierarchy}.
+     */
+    private static final class Counters {
+
+        final StateHierarchy stateHierarchy;
+        final int stateCount;
+        final int eventCount;
+        final Stripe[] stripes;
+
+        Counters(final StateHierarchy stateHierarchy, final int stripeCount) {
+            this.stateHierarchy = stateHierarchy;
+            stateCount = stateHierarchy.getStateCount();
+            eventCount = stateHierarchy.getEventCount();
+            stripes = new Stripe[stripeCount];
+
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe(stateCount, eventCount);
+            }
+        }
+
+        /**
+         * Gets the {@link Stripe} of the current thread.
+         *
+         * @return A {@link Stripe}.
+         */
+        Stripe getStripe() {
+            return stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        }
+
+        /**
+         * Sums up the statistics of the given state or event over the stripes.
+         *
+         * @param event A {@code boolean} value telling if the index is an event id.
+         * @param index The id of a state or an event.
+         * @return A {@link Statistics}.
+         */
+        Statistics getStatistics(final boolean event, final int index) {
+            final long[] trace = new long[TRACE_SIZE];
+            final int offset = index * TRACE_SIZE;
+
+            for (final Stripe stripe : stripes) {
+                final AtomicLongArray traces = event ? stripe.eventLatencies : stripe.dwellTimes;
+
+                for (int i = 0; i < TRACE_SIZE; i++) {
+                    final long value = traces.get(offset + i);
+
+                    if (i == INDEX_MAX_NANOS) {
+                        trace[i] = Math.max(trace[i], value);
+                    } else {
+                        trace[i] += value;
+                    }
+                }
+            }
+            return new Statistics(trace);
+        }
+    }
+
+    /**
+     * {@link Stripe} holds the counters updated by a subset of the recording threads.
+     */
+    private static final class Stripe {
+
+        /*
+         * The transition counts indexed by the source state id times the state count plus
+         * the target state id. The source of the initial transition is {@link StateHierarchy#ROOT_ID}.
+         */
+        final AtomicLongArray transitionCounts;
+
+        /*
+         * The statistics of the dwell times and the event handling times, {@code TRACE_SIZE}
+         * values for each state id and event id.
+         */
+        final AtomicLongArray dwellTimes;
+        final AtomicLongArray eventLatencies;
+
+        Stripe(final int stateCount, final int eventCount) {
+            transitionCounts = new AtomicLongArray(stateCount * stateCount);
+            dwellTimes = new AtomicLongArray(stateCount * TRACE_SIZE);
+            eventLatencies = new AtomicLongArray(eventCount * TRACE_SIZE);
+        }
+    }
+
+    /**
+     * {@link Statistics} is an immutable copy of the statistics of the times spent in a state or
+     * for handling an event.
+     */
+    public static final class Statistics {
+
+        private final long[] histogram;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Statistics(final long[] trace) {
+            histogram = Arrays.copyOfRange(trace, INDEX_HISTOGRAM, TRACE_SIZE);
+            count = trace[INDEX_COUNT];
+            totalNanos = trace[INDEX_TOTAL_NANOS];
+            maxNanos = trace[INDEX_MAX_NANOS];
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Gets the mean of the times.
+         *
+         * @return The mean in nanoseconds as a {@code long}.
+         */
+        public long getMeanNanos() {
+            return (count > 0) ? totalNanos / count : 0;
+        }
+
+        /**
+         * Gets the count of the given histogram bucket.
+         *
+         * @param bucket The index of the bucket.
+         * @return The count as a {@code long}.
+         * @see StateMachineMetrics#HISTOGRAM_SIZE
+         */
+        public long getHistogramCount(final int bucket) {
+            return histogram[bucket];
+        }
+
+        /**
+         * Gets an upper bound for the given percentile of the times.
+         *
+         * @param percentile The percentile as a {@code double} between {@code 0} and {@code 100}.
+         * @return The upper bound in nanoseconds, or {@link Long#MAX_VALUE} if it falls into
+         * the last bucket.
+         */
+        public long getPercentileNanos(final double percentile) {
+            final long threshold = (long) Math.ceil(count * percentile / 100);
+            long cumulativeCount = 0;
+
+            for (int i = 0; i < HISTOGRAM_SIZE - 1; i++) {
+                cumulativeCount += histogram[i];
+
+                if (cumulativeCount >= threshold) {
+                    return 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return "[count=" + count + ", totalNanos=" + totalNanos + ", maxNanos=" + maxNanos + "]";
+        }
+    }
+
+    /**
+     * {@link TransitionCount} is the number of transitions from a source state to a target state.
+     */
+    public static final class TransitionCount {
+
+        private final Class<?> sourceClass;
+        private final Class<?> targetClass;
+        private final long count;
+
+        TransitionCount(final Class<?> sourceClass, final Class<?> targetClass, final long count) {
+            this.sourceClass = sourceClass;
+            this.targetClass = targetClass;
+            this.count = count;
+        }
+
+        /**
+         * Gets the {@link Class} of the source state.
+         *
+         * @return A {@link Class}, or {@code null} for the transitions to the initial state.
+         */
+        public Class<?> getSourceClass() {
+            return sourceClass;
+        }
+
+        public Class<?> getTargetClass() {
+            return targetClass;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            final String source = (sourceClass != null) ? sourceClass.getSimpleName() : "null";
+            return source + " -> " + targetClass.getSimpleName() + ": " + count;
+        }
+    }
+
+    /**
+     * {@link Snapshot} is an immutable copy of the statistics collected by
+     * a {@link StateMachineMetrics}.
+     */
+    public static final class Snapshot {
+
+        private final List<TransitionCount> transitions;
+        private final Map<Class<?>, Statistics> dwellTimes;
+        private final Map<Integer, Statistics> eventLatencies;
+
+        Snapshot(final List<TransitionCount> transitions, final Map<Class<?>, Statistics> dwellTimes,
+                 final Map<Integer, Statistics> eventLatencies) {
+            this.transitions = Collections.unmodifiableList(transitions);
+            this.dwellTimes = Collections.unmodifiableMap(dwellTimes);
+            this.eventLatencies = Collections.unmodifiableMap(eventLatencies);
+        }
+
+        public List<TransitionCount> getTransitions() {
+            return transitions;
+        }
+
+        /**
+         * Gets the number of transitions from the given source state to the given target state.
+         *
+         * @param sourceClass The {@link Class} of the source state. May be {@code null} for
+         *                    the transitions to the initial state.
+         * @param targetClass The {@link Class} of the target state.
+         * @return The count as a {@code long}.
+         */
+        public long getTransitionCount(final Class<?> sourceClass, final Class<?> targetClass) {
+            for (final TransitionCount transition : transitions) {
+                if (transition.getSourceClass() == sourceClass && transition.getTargetClass() == targetClass) {
+                    return transition.getCount();
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Gets the statistics of the times spent in the states indexed by the state classes.
+         *
+         * @return A {@link Map} of {@link Statistics}.
+         */
+        public Map<Class<?>, Statistics> getDwellTimes() {
+            return dwellTimes;
+        }
+
+        /**
+         * Gets the statistics of the times spent for handling the events indexed by the event ids.
+         * The event ids are assigned to the event methods in the order of their signatures.
+         *
+         * @return A {@link Map} of {@link Statistics}.
+         */
+        public Map<Integer, Statistics> getEventLatencies() {
+            return eventLatencies;
+        }
+    }
+}
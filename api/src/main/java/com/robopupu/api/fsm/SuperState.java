@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Target;
+
+/*
+ * {@link SuperState} is used to annotate a state class that is a sub state of another state. The
+ * annotation processor reads the super states from the annotations to generate
+ * the {@link StateHierarchy} of the code generated {@link StateEngine} implementation, and a state
+ * class without the annotation is a top-level state. The annotated super state has to be the same
+ * state class that the state passes to the constructor of {@link StateEngine}. Otherwise the state
+ * is handled without the {@link StateHierarchy}, and it cannot be used in the flyweight mode.
+ */
+@Inherited
+@Target(ElementType.TYPE)
+public @interface SuperState {
+
+    /*
+     * The {@link Class} of the super state. The type is not bounded, because the state classes
+     * extend the code generated {@link StateEngine} implementation that does not exist when
+     * the annotations are processed.
+     */
+    Class<?> value();
+}
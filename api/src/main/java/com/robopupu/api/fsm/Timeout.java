@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * {@link Timeout} is used to annotate a state class that fires an event if the state machine stays
+ * in the state for the given time. The event is fired by invoking the named event method of
+ * the code generated {@link StateEngine} implementation, and the event method may not have any
+ * parameters. The timeout is scheduled when the state is entered, and cancelled when the state is
+ * exited. The timeouts of all state machines are scheduled using a shared {@link TimingWheel}.
+ */
+@Target(ElementType.TYPE)
+public @interface Timeout {
+
+    /*
+     * The time after which the event is fired. The time is converted to milliseconds when the code
+     * is generated, and it has to be at least one millisecond.
+     */
+    long value();
+
+    /*
+     * The {@link TimeUnit} of the time.
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+    /*
+     * The name of the event method that is invoked when the time has elapsed.
+     */
+    String event();
+}
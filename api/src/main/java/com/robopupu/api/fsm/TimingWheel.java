@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * {@link TimingWheel} implements a hashed timing wheel for scheduling a large number of
+ * {@link Timer}s, such as the {@link Timeout}s of the states of the {@link StateEngine}s, using
+ * a single worker thread. The wheel is an array of buckets, each bucket holding a doubly linked
+ * list of the {@link Timer}s whose deadline falls on the same tick modulo the size of the wheel,
+ * and the number of full rotations of the wheel left before the deadline. Scheduling and
+ * cancelling a {@link Timer} are O(1) operations: the invoking thread only adds the {@link Timer}
+ * to a lock-free queue, from which the worker thread moves it to its bucket, or unlinks it from
+ * its bucket, on the next tick. On each tick the worker thread visits a single bucket and expires
+ * the {@link Timer}s that have no rotations left. Hence a {@link Timer} expires at most one tick
+ * after its deadline.
+ */
+public final class TimingWheel {
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /*
+     * The maximum number of the scheduled {@link Timer}s moved to the buckets on a single tick.
+     */
+    private static final int MAX_TRANSFERRED_TIMERS = 100000;
+
+    private static TimingWheel defaultTimingWheel;
+
+    private final long tickNanos;
+    private final Timer[] buckets;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timer> scheduledTimers;
+    private final ConcurrentLinkedQueue<Timer> cancelledTimers;
+
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private volatile long startTime;
+    private Thread workerThread;
+
+    /*
+     * The number of the ticks elapsed since the worker thread was started. Accessed only by
+     * the worker thread.
+     */
+    private long tick;
+
+    /**
+     * Constructs a new instance of {@link TimingWheel}.
+     *
+     * @param tickDuration The duration of a tick.
+     * @param unit         The {@link TimeUnit} of the duration.
+     * @param wheelSize    The number of the buckets. The number is rounded up to a power of two.
+     */
+    public TimingWheel(final long tickDuration, final TimeUnit unit, final int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Parameter tickDuration must be positive");
+        } else if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Parameter wheelSize must be positive");
+        }
+
+        int size = 1;
+
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        tickNanos = unit.toNanos(tickDuration);
+        buckets = new Timer[size];
+        mask = buckets.length - 1;
+        scheduledTimers = new ConcurrentLinkedQueue<>();
+        cancelledTimers = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Gets the shared {@link TimingWheel} used by default by all the {@link StateEngine}s. It has
+     * a tick of {@link TimingWheel#DEFAULT_TICK_MILLIS} milliseconds and
+     * {@link TimingWheel#DEFAULT_WHEEL_SIZE} buckets.
+     *
+     * @return A {@link TimingWheel}.
+     */
+    public static synchronized TimingWheel getDefault() {
+        if (defaultTimingWheel == null) {
+            defaultTimingWheel = new TimingWheel(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+        }
+        return defaultTimingWheel;
+    }
+
+    /**
+     * Schedules the given {@link Timer} to expire after the given delay. The worker thread of this
+     * {@link TimingWheel} is started on demand. A {@link Timer} can be scheduled only once.
+     *
+     * @param timer A {@link Timer}.
+     * @param delay The delay.
+     * @param unit  The {@link TimeUnit} of the delay.
+     */
+    public void schedule(final Timer timer, final long delay, final TimeUnit unit) {
+        if (timer.state != Timer.STATE_INITIAL) {
+            throw new IllegalStateException("Timer has already been scheduled");
+        } else if (stopped) {
+            throw new IllegalStateException("TimingWheel has been stopped");
+        }
+
+        if (!started) {
+            start();
+        }
+
+        timer.timingWheel = this;
+        timer.deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+
+        if (!Timer.STATE_UPDATER.compareAndSet(timer, Timer.STATE_INITIAL, Timer.STATE_PENDING)) {
+            throw new IllegalStateException("Timer has already been scheduled");
+        }
+        scheduledTimers.offer(timer);
+    }
+
+    /**
+     * Stops the worker thread of this {@link TimingWheel}. The pending {@link Timer}s do not
+     * expire, and no {@link Timer} can be scheduled after stopping.
+     */
+    public synchronized void stop() {
+        stopped = true;
+
+        if (workerThread != null) {
+            workerThread.interrupt();
+        }
+    }
+
+    private synchronized void start() {
+        if (!started) {
+            startTime = System.nanoTime();
+            workerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWorker();
+                }
+            }, TimingWheel.class.getSimpleName());
+            workerThread.setDaemon(true);
+            workerThread.start();
+            started = true;
+        }
+    }
+
+    private void runWorker() {
+        while (!stopped) {
+            final long sleepNanos = tickNanos * (tick + 1) - (System.nanoTime() - startTime);
+
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+                } catch (InterruptedException e) {
+                    // Stopped
+                }
+                continue;
+            }
+
+            removeCancelledTimers();
+            transferScheduledTimers();
+            expireTimers((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    private void removeCancelledTimers() {
+        Timer timer;
+
+        while ((timer = cancelledTimers.poll()) != null) {
+            if (timer.bucket != Timer.NO_BUCKET) {
+                unlink(timer);
+            }
+        }
+    }
+
+    private void transferScheduledTimers() {
+        for (int i = 0; i < MAX_TRANSFERRED_TIMERS; i++) {
+            final Timer timer = scheduledTimers.poll();
+
+            if (timer == null) {
+                return;
+            } else if (timer.state != Timer.STATE_PENDING) {
+                continue; // Cancelled before transferred
+            }
+
+            final long deadlineTick = timer.deadline / tickNanos;
+            timer.remainingRounds = (deadlineTick - tick) / buckets.length;
+
+            final int bucket = (int) (Math.max(deadlineTick, tick) & mask);
+            final Timer head = buckets[bucket];
+
+            timer.bucket = bucket;
+            timer.next = head;
+
+            if (head != null) {
+                head.previous = timer;
+            }
+            buckets[bucket] = timer;
+        }
+    }
+
+    private void expireTimers(final int bucket) {
+        Timer timer = buckets[bucket];
+
+        while (timer != null) {
+            final Timer next = timer.next;
+
+            if (timer.remainingRounds <= 0) {
+                unlink(timer);
+
+                if (Timer.STATE_UPDATER.compareAndSet(timer, Timer.STATE_PENDING, Timer.STATE_EXPIRED)) {
+                    try {
+                        timer.onExpired();
+                    } catch (RuntimeException e) {
+                        final Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+            } else {
+                timer.remainingRounds--;
+            }
+            timer = next;
+        }
+    }
+
+    private void unlink(final Timer timer) {
+        if (timer.previous != null) {
+            timer.previous.next = timer.next;
+        } else {
+            buckets[timer.bucket] = timer.next;
+        }
+
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+
+        timer.bucket = Timer.NO_BUCKET;
+        timer.previous = null;
+        timer.next = null;
+    }
+
+    /**
+     * {@link Timer} is an abstract base class for the timers scheduled using a {@link TimingWheel}.
+     * A concrete {@link Timer} implements {@link Timer#onExpired()} that is invoked by the worker
+     * thread of the {@link TimingWheel}.
+     */
+    public abstract static class Timer {
+
+        private static final int STATE_INITIAL = 0;
+        private static final int STATE_PENDING = 1;
+        private static final int STATE_CANCELLED = 2;
+        private static final int STATE_EXPIRED = 3;
+
+        private static final int NO_BUCKET = -1;
+
+        private static final AtomicIntegerFieldUpdater<Timer> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Timer.class, "state");
+
+        private volatile int state;
+        private TimingWheel timingWheel;
+        private long deadline;
+
+        /*
+         * The fields accessed only by the worker thread of the {@link TimingWheel}.
+         */
+        private long remainingRounds;
+        private int bucket = NO_BUCKET;
+        private Timer previous;
+        private Timer next;
+
+        /**
+         * Invoked by the worker thread of the {@link TimingWheel} when this {@link Timer} expires.
+         */
+        protected abstract void onExpired();
+
+        /**
+         * Cancels this {@link Timer} if it has not expired yet.
+         *
+         * @return {@code true} if this {@link Timer} was cancelled.
+         */
+        public final boolean cancel() {
+            if (STATE_UPDATER.compareAndSet(this, STATE_PENDING, STATE_CANCELLED)) {
+                timingWheel.cancelledTimers.offer(this);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Tests if this {@link Timer} has been cancelled.
+         *
+         * @return A {@code boolean} value.
+         */
+        public final boolean isCancelled() {
+            return state == STATE_CANCELLED;
+        }
+
+        /**
+         * Tests if this {@link Timer} has expired.
+         *
+         * @return A {@code boolean} value.
+         */
+        public final boolean isExpired() {
+            return state == STATE_EXPIRED;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link VarInts} provides methods for encoding non-negative {@code int} values as variable-length
+ * integers. A value is written seven bits at a time starting from the least significant bits, and
+ * the highest bit of each byte tells if more bytes follow. Hence the values below 128 take a single
+ * byte.
+ */
+final class VarInts {
+
+    private VarInts() {
+    }
+
+    /**
+     * Gets the number of bytes needed for encoding the given value.
+     *
+     * @param value A non-negative {@code int} value.
+     * @return The number of bytes as an {@code int}.
+     */
+    static int sizeOf(final int value) {
+        int size = 1;
+        int remaining = value >>> 7;
+
+        while (remaining != 0) {
+            remaining >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the given value to the given {@link ByteBuffer}.
+     *
+     * @param buffer A {@link ByteBuffer}.
+     * @param value  A non-negative {@code int} value.
+     */
+    static void put(final ByteBuffer buffer, final int value) {
+        int remaining = value;
+
+        while ((remaining & ~0x7F) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    /**
+     * Reads a value from the given {@link ByteBuffer}.
+     *
+     * @param buffer A {@link ByteBuffer}.
+     * @return The read value as an {@code int}.
+     * @throws IllegalArgumentException If the value is not a valid variable-length integer.
+     */
+    static int get(final ByteBuffer buffer) {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length integer");
+    }
+}
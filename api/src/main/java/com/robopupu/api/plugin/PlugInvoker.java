@@ -16,6 +16,9 @@
 package com.robopupu.api.plugin;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /*
  * {@link PlugInvoker} provides an abstract base class for implementing plugin interface specific
@@ -25,6 +28,12 @@ public abstract class PlugInvoker<T> {
 
     protected final ArrayList<T> plugins;
 
+    /*
+     * The plugins to be removed when a bulk removal started with {@link PlugInvoker#beginRemoval()}
+     * is completed. The value is {@code null} when there is no bulk removal in progress.
+     */
+    private Set<Object> removedPlugins;
+
     protected PlugInvoker() {
         plugins = new ArrayList<>();
     }
@@ -62,7 +71,9 @@ public abstract class PlugInvoker<T> {
 
     @SuppressWarnings("unchecked")
     public void removePlugin(final Object plugin) {
-        if (plugins.contains((T)plugin)) {
+        if (removedPlugins != null) {
+            removedPlugins.add(plugin);
+        } else if (plugins.contains((T)plugin)) {
             plugins.remove((T)plugin);
         } else {
 
@@ -86,6 +97,52 @@ public abstract class PlugInvoker<T> {
         }
     }
 
+    /*
+     * Starts a bulk removal. Until {@link PlugInvoker#endRemoval()} is invoked, the plugins given
+     * to {@link PlugInvoker#removePlugin(Object)} are only collected.
+     */
+    void beginRemoval() {
+        if (removedPlugins == null) {
+            removedPlugins = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        }
+    }
+
+    /*
+     * Completes a bulk removal by removing all the collected plugins, and the {@link HandlerInvoker}s
+     * delegating to them, in a single pass over the plugins.
+     */
+    void endRemoval() {
+        final Set<Object> removedPlugins = this.removedPlugins;
+        this.removedPlugins = null;
+
+        if (removedPlugins == null || removedPlugins.isEmpty()) {
+            return;
+        }
+
+        int index = 0;
+
+        for (final T plugin : plugins) {
+            boolean removed = removedPlugins.contains(plugin);
+
+            if (!removed && plugin instanceof HandlerInvoker) {
+                final HandlerInvoker<?> invoker = (HandlerInvoker<?>) plugin;
+
+                if (removedPlugins.contains(invoker.plugin)) {
+                    invoker.plugin = null;
+                    removed = true;
+                }
+            }
+
+            if (!removed) {
+                plugins.set(index++, plugin);
+            }
+        }
+
+        for (int i = plugins.size() - 1; i >= index; i--) {
+            plugins.remove(i);
+        }
+    }
+
     protected void handleInvocationTargetNotAvailable(final boolean returnsValue) {
         if (returnsValue) {
             throw new NullPointerException("Invocation target not available.");
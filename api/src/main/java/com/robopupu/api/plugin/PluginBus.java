@@ -22,7 +22,9 @@ import com.robopupu.api.dependency.DependencyScopeOwner;
 import com.robopupu.api.dependency.Scopeable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 public class PluginBus {
@@ -33,14 +35,14 @@ public class PluginBus {
 
     private final HashMap<Class<?>, PlugInvoker> invocationPlugs;
     private final HashMap<String, Plugger> pluggers;
-    private final ArrayList<Object> plugins;
+    private final HashSet<Object> plugins;
     private final ArrayList<PluginComponent> pluginComponents;
 
     private PluginBus() {
         invocationPlugs = new HashMap<>();
         pluggers = new HashMap<>();
         pluginComponents = new ArrayList<>();
-        plugins = new ArrayList<>();
+        plugins = new HashSet<>();
     }
 
     /*
@@ -280,6 +282,86 @@ public class PluginBus {
         }
     }
 
+    /*
+     * Unplugs all the given plugins from this {@link PluginBus} in a single pass. The plugins are
+     * removed from their {@link PlugInvoker}s and from the registered {@link PluginComponent}s first,
+     * and the {@link PluginComponent}s are notified only after all the plugins have been unplugged.
+     * @param plugins A {@link Collection} of plugin {@link Object}s. Objects that are not plugged
+     *                are ignored.
+     */
+    public static void unplugAll(final Collection<?> plugins) {
+        getInstance().doUnplugAll(plugins);
+    }
+
+    private void doUnplugAll(final Collection<?> candidates) {
+        final ArrayList<Object> unpluggedPlugins = new ArrayList<>();
+
+        for (final Object candidate : candidates) {
+            if (plugins.remove(candidate)) {
+                unpluggedPlugins.add(candidate);
+            }
+        }
+
+        if (unpluggedPlugins.isEmpty()) {
+            return;
+        }
+
+        for (final PlugInvoker<?> invoker : invocationPlugs.values()) {
+            invoker.beginRemoval();
+        }
+
+        final HashSet<PluginComponent> unpluggedComponents = new HashSet<>();
+
+        try {
+            for (final Object plugin : unpluggedPlugins) {
+                final String pluggerClassName = plugin.getClass().getName() + SUFFIX_PLUGGER;
+                pluggers.get(pluggerClassName).unplug(plugin, this);
+
+                if (plugin instanceof PluginComponent) {
+                    unpluggedComponents.add((PluginComponent) plugin);
+                }
+            }
+        } finally {
+            for (final PlugInvoker<?> invoker : invocationPlugs.values()) {
+                invoker.endRemoval();
+            }
+        }
+
+        if (!unpluggedComponents.isEmpty()) {
+            pluginComponents.removeAll(unpluggedComponents);
+        }
+
+        for (final Object plugin : unpluggedPlugins) {
+            if (plugin instanceof PluginComponent) {
+                final PluginComponent component = (PluginComponent) plugin;
+                component.onUnplugged(this);
+
+                for (final PluginComponent pluggedComponent : pluginComponents) {
+                    pluggedComponent.onPluginUnplugged(plugin);
+                }
+
+                if (plugin instanceof PluginStateComponent) {
+                    final PluginStateComponent stateComponent = (PluginStateComponent)component;
+                    stateComponent.stop();
+                }
+            }
+
+            if (plugin instanceof DependencyScopeOwner) {
+                final DependencyScopeOwner owner = (DependencyScopeOwner)plugin;
+                Dependency.disposeScope(owner);
+            }
+
+            if (plugin instanceof Scopeable) {
+                final Scopeable scopeable = (Scopeable) plugin;
+                final DependencyScope scope = scopeable.getScope();
+
+                if (scope != null) {
+                    scope.removeDependency(plugin);
+                }
+            }
+        }
+    }
+
     /*
      * Tests if the given {@link Object} is currently plugged as a plugin into this {@link PluginBus}.
      * @param object An {@link Object}.
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/**
+ * {@link ChildScope} is a {@link DependencyScope} that gets the dependencies of its
+ * {@link ChildService}s and {@link ServiceClient}s from its parent {@link DependencyScope}.
+ */
+@Scope
+public class ChildScope extends DependencyScope {
+
+    public static class ChildService {
+
+        private final ParentScope.Service service;
+
+        public ChildService(final ParentScope.Service service) {
+            this.service = service;
+        }
+
+        public ParentScope.Service getService() {
+            return service;
+        }
+    }
+
+    public static class ServiceClient {
+
+        private final Lazy<ParentScope.Service> service;
+        private final Provider<TestLogger> logger;
+
+        public ServiceClient(final Lazy<ParentScope.Service> service, final Provider<TestLogger> logger) {
+            this.service = service;
+            this.logger = logger;
+        }
+
+        public Lazy<ParentScope.Service> getService() {
+            return service;
+        }
+
+        public Provider<TestLogger> getLogger() {
+            return logger;
+        }
+    }
+
+    @Provides
+    public ChildService getChildService(final ParentScope.Service service) {
+        return new ChildService(service);
+    }
+
+    @Provides
+    public ServiceClient getServiceClient(final Lazy<ParentScope.Service> service, final Provider<TestLogger> logger) {
+        return new ServiceClient(service, logger);
+    }
+}
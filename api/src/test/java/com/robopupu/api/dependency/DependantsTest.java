@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependantsTest} tests the identity indexed and by default weakly referenced
+ * {@link Dependants} of a {@link DependencyScope}.
+ */
+public class DependantsTest {
+
+    private static final int GC_ATTEMPTS = 50;
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void dependantsAreTrackedByIdentity() {
+        final Dependants dependants = new Dependants();
+        final ParentScope.Service service = new ParentScope.Service();
+
+        assertTrue(dependants.add(service));
+        assertFalse(dependants.add(service));
+        assertEquals(1, dependants.size());
+
+        assertTrue(dependants.remove(service));
+        assertFalse(dependants.remove(service));
+        assertTrue(dependants.isEmpty());
+    }
+
+    @Test
+    public void mostRecentlyAddedDependantIsRemovedFirst() {
+        final Dependants dependants = new Dependants();
+        final TestPlugin plugin1 = new TestPlugin();
+        final TestPlugin plugin2 = new TestPlugin();
+
+        dependants.add(plugin1);
+        dependants.add(plugin2);
+        dependants.add(plugin1);
+
+        assertSame(plugin1, dependants.remove(Object.class));
+        assertSame(plugin2, dependants.remove(TestPlugin.class));
+        assertNull(dependants.remove(TestPlugin.class));
+    }
+
+    @Test
+    public void weakDependantsAreCollected() throws InterruptedException {
+        final Dependants dependants = new Dependants();
+        assertTrue(dependants.isWeak());
+
+        dependants.add(new ParentScope.Service());
+
+        for (int i = 0; i < GC_ATTEMPTS && !dependants.isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(dependants.isEmpty());
+        assertNull(dependants.remove(ParentScope.Service.class));
+    }
+
+    @Test
+    public void strongDependantsAreRetained() {
+        final Dependants dependants = new Dependants(false);
+
+        dependants.add(new ParentScope.Service());
+        System.gc();
+
+        assertNotNull(dependants.remove(ParentScope.Service.class));
+    }
+
+    @Test
+    public void dependantIsResolvedAsDependency() {
+        Dependency.setAppScope(new TestAppScope());
+
+        final ParentScope scope = new ParentScope();
+        final ParentScope.Service dependant = new ParentScope.Service();
+
+        assertSame(dependant, Dependency.get(scope, ParentScope.Service.class, dependant));
+        assertSame(dependant, Dependency.get(scope, ParentScope.Service.class));
+        assertTrue(scope.hasDependency(dependant));
+    }
+}
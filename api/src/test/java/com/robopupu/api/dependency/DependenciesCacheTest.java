@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependenciesCacheTest} tests evicting the least recently used {@link DependencyMap}s and
+ * saved {@link DependencyScope}s from a bounded {@link DependenciesCache}, and the collected
+ * {@link DependenciesCache.Statistics}.
+ */
+public class DependenciesCacheTest {
+
+    private List<String> evictedKeys;
+    private List<DependencyScope> evictedScopes;
+    private DependenciesCache.EvictionListener listener;
+
+    @Before
+    public void setUp() {
+        Dependency.setAppScope(new TestAppScope());
+        evictedKeys = new ArrayList<>();
+        evictedScopes = new ArrayList<>();
+        listener = new DependenciesCache.EvictionListener() {
+            @Override
+            public void onDependenciesEvicted(final String key, final DependencyMap dependencies) {
+                evictedKeys.add(key);
+            }
+
+            @Override
+            public void onDependencyScopeEvicted(final String key, final DependencyScope scope) {
+                evictedKeys.add(key);
+                evictedScopes.add(scope);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void leastRecentlyUsedDependencyMapIsEvicted() {
+        final DependenciesCache cache = new DependenciesCache(2, DependenciesCache.UNBOUNDED);
+        cache.setEvictionListener(listener);
+
+        final DependencyMap first = cache.addDependencies("first");
+        cache.addDependencies("second");
+
+        assertSame(first, cache.getDependencies("first"));
+        cache.addDependencies("third");
+
+        assertEquals(Arrays.asList("second"), evictedKeys);
+        assertNull(cache.getDependencies("second"));
+
+        final DependenciesCache.Statistics statistics = cache.getDependencyMapStatistics();
+        assertEquals(2, statistics.getSize());
+        assertEquals(2, statistics.getMaxSize());
+        assertEquals(1, statistics.getEvictionCount());
+
+        // Adding a new DependencyMap by its key is also a lookup that misses
+
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(4, statistics.getMissCount());
+        assertEquals(0.2, statistics.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void shrinkingCacheEvictsInAccessOrder() {
+        final DependenciesCache cache = new DependenciesCache();
+        cache.setEvictionListener(listener);
+
+        cache.addDependencies("first");
+        cache.addDependencies("second");
+        cache.addDependencies("third");
+        cache.getDependencies("first");
+        cache.setMaxDependencyMaps(1);
+
+        assertEquals(Arrays.asList("second", "third"), evictedKeys);
+        assertEquals(1, cache.getDependencyMapStatistics().getSize());
+    }
+
+    @Test
+    public void evictedScopeIsDisposed() {
+        final DependenciesCache cache = new DependenciesCache(DependenciesCache.UNBOUNDED, 1);
+        cache.setEvictionListener(listener);
+
+        final ParentScope scope = new ParentScope();
+        final TestScopeOwner owner = new TestScopeOwner(scope);
+        scope.initialize();
+        cache.saveDependencyScope(owner, scope);
+        cache.saveDependencyScope(new TestScopeOwner(new HandlerScope()), new HandlerScope());
+
+        assertTrue(scope.isDisposed());
+        assertFalse(cache.containsDependencyScope(owner));
+        assertEquals(Arrays.asList(ParentScope.class.getName()), evictedKeys);
+        assertEquals(Arrays.<DependencyScope>asList(scope), evictedScopes);
+        assertEquals(1, cache.getSavedScopeStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void activeScopeAndItsParentsAreNotEvicted() {
+        final DependenciesCache cache = new DependenciesCache(DependenciesCache.UNBOUNDED, 1);
+        final ParentScope parentScope = new ParentScope();
+        final ChildScope childScope = new ChildScope();
+        final TestScopeOwner parentOwner = new TestScopeOwner(parentScope);
+        final TestScopeOwner childOwner = new TestScopeOwner(childScope);
+        final HandlerScope otherScope = new HandlerScope();
+        cache.setEvictionListener(listener);
+        childScope.setParentScope(parentScope);
+        Dependency.activateScope(childOwner, childScope);
+
+        cache.saveDependencyScope(parentOwner, parentScope);
+        cache.saveDependencyScope(childOwner, childScope);
+
+        assertTrue(evictedScopes.isEmpty());
+        assertEquals(2, cache.getSavedScopeStatistics().getSize());
+
+        cache.saveDependencyScope(new TestScopeOwner(otherScope), otherScope);
+
+        assertEquals(Arrays.<DependencyScope>asList(otherScope), evictedScopes);
+        assertSame(parentScope, cache.getDependencyScope(parentOwner));
+        assertSame(childScope, cache.getDependencyScope(childOwner));
+        assertFalse(parentScope.isDisposed());
+        assertFalse(childScope.isDisposed());
+    }
+
+    @Test
+    public void scopeThatIsNotDisposedIsNotReported() {
+        final DependenciesCache cache = new DependenciesCache(DependenciesCache.UNBOUNDED, 1);
+        final DependencyScope scope = new DependencyScope() {
+            @Override
+            public boolean isDisposable() {
+                return false;
+            }
+        };
+        final TestScopeOwner owner = new TestScopeOwner(scope);
+        cache.setEvictionListener(listener);
+
+        cache.saveDependencyScope(owner, scope);
+        cache.saveDependencyScope(new TestScopeOwner(new ParentScope()), new ParentScope());
+
+        assertFalse(scope.isDisposed());
+        assertFalse(cache.containsDependencyScope(owner));
+        assertTrue(evictedScopes.isEmpty());
+        assertEquals(1, cache.getSavedScopeStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void statisticsAreReset() {
+        final DependenciesCache cache = new DependenciesCache(1, 1);
+
+        cache.addDependencies("first");
+        cache.addDependencies("second");
+        cache.getDependencies("first");
+        cache.getDependencies("second");
+        cache.resetStatistics();
+
+        final DependenciesCache.Statistics statistics = cache.getDependencyMapStatistics();
+        assertEquals(1, statistics.getSize());
+        assertEquals(0, statistics.getHitCount());
+        assertEquals(0, statistics.getMissCount());
+        assertEquals(0, statistics.getEvictionCount());
+        assertEquals(0, statistics.getHitRate(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxSizeMustBePositive() {
+        new DependenciesCache().setMaxSavedScopes(0);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependencyHandlesTest} tests the {@link Lazy} and {@link Provider} handles to
+ * dependencies, and the memoized supplier of a {@link Provider} that is revalidated against
+ * the routing version of its {@link DependencyScope}.
+ */
+public class DependencyHandlesTest {
+
+    private ParentScope parentScope;
+    private ChildScope childScope;
+
+    @Before
+    public void setUp() {
+        Dependency.setAppScope(new TestAppScope());
+        parentScope = new ParentScope();
+        childScope = new ChildScope();
+        childScope.setParentScope(parentScope);
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void generatedProviderPassesHandles() {
+        final ChildScope.ServiceClient client = Dependency.get(childScope, ChildScope.ServiceClient.class);
+        final Lazy<ParentScope.Service> service = client.getService();
+
+        assertFalse(service.isResolved());
+        assertSame(Dependency.get(parentScope, ParentScope.Service.class), service.get());
+        assertTrue(service.isResolved());
+        assertSame(Dependency.get(parentScope, TestLogger.class), client.getLogger().get());
+    }
+
+    @Test
+    public void lazyRetainsResolvedDependency() {
+        final Lazy<ParentScope.Service> lazy = Dependency.getLazy(childScope, ParentScope.Service.class);
+        final ParentScope.Service service = lazy.get();
+
+        childScope.setParentScope(new ParentScope());
+
+        assertSame(service, lazy.get());
+        assertSame(ParentScope.Service.class, lazy.getDependencyType());
+    }
+
+    @Test
+    public void providerReadsSupplierCache() {
+        final DependencyTracer tracer = new DependencyTracer();
+        childScope.setTracer(tracer);
+
+        final Provider<ParentScope.Service> provider = Dependency.getProvider(childScope, ParentScope.Service.class);
+        final ParentScope.Service service = provider.get();
+
+        assertSame(service, provider.get());
+        assertSame(service, provider.get());
+        assertEquals(1, tracer.getSnapshot().getCount(DependencyTracer.Tier.PARENT));
+        assertEquals(0, tracer.getSnapshot().getCount(DependencyTracer.Tier.ROUTE));
+    }
+
+    @Test
+    public void providerIsRevalidatedAfterReparenting() {
+        final Provider<ParentScope.Service> provider = Dependency.getProvider(childScope, ParentScope.Service.class);
+        final ParentScope.Service service = provider.get();
+        final ParentScope otherParentScope = new ParentScope();
+
+        childScope.setParentScope(otherParentScope);
+
+        final ParentScope.Service otherService = provider.get();
+        assertNotSame(service, otherService);
+        assertSame(Dependency.get(otherParentScope, ParentScope.Service.class), otherService);
+    }
+
+    @Test
+    public void providerResolvesRemovedDependencyAgain() {
+        final Provider<ParentScope.Service> provider = Dependency.getProvider(childScope, ParentScope.Service.class);
+        final ParentScope.Service service = provider.get();
+
+        parentScope.removeDependency(service);
+
+        final ParentScope.Service newService = provider.get();
+        assertNotSame(service, newService);
+        assertSame(newService, provider.get());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependencyIteratorTest} tests iterating all the dependencies of a type lazily scope by
+ * scope using {@link Dependency#iterateAll(DependencyScope, Class)}.
+ */
+public class DependencyIteratorTest {
+
+    private ParentScope parentScope;
+    private HandlerScope scope;
+
+    @Before
+    public void setUp() {
+        Dependency.setAppScope(new TestAppScope());
+        parentScope = new ParentScope();
+        scope = new HandlerScope();
+        scope.setParentScope(parentScope);
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void providedDependenciesAreCreatedWhenIterated() {
+        final Iterator<HandlerScope.Handler> iterator = Dependency.iterateAll(scope, HandlerScope.Handler.class).iterator();
+
+        assertTrue(scope.getCreatedTypes().isEmpty());
+
+        final HandlerScope.Handler handler = iterator.next();
+
+        assertEquals(1, scope.getCreatedTypes().size());
+        assertSame(handler.getClass(), scope.getCreatedTypes().get(0));
+        assertTrue(scope.hasDependency(handler));
+    }
+
+    @Test
+    public void scopesAreIteratedInOrder() {
+        final HandlerScope.BackHandler backHandler = new HandlerScope.BackHandler();
+        parentScope.cache(HandlerScope.Handler.class, backHandler);
+
+        final List<HandlerScope.Handler> handlers = toList(Dependency.iterateAll(scope, HandlerScope.Handler.class));
+
+        assertEquals(3, handlers.size());
+        assertEquals(scope.getCreatedTypes(), classesOf(handlers.subList(0, 2)));
+        assertSame(backHandler, handlers.get(2));
+    }
+
+    @Test
+    public void cachedDependencyIsIteratedFirstAndOnce() {
+        final HandlerScope.KeyHandler keyHandler = Dependency.get(scope, HandlerScope.KeyHandler.class);
+
+        final List<HandlerScope.Handler> handlers = toList(Dependency.iterateAll(scope, HandlerScope.Handler.class));
+
+        assertEquals(2, handlers.size());
+        assertSame(keyHandler, handlers.get(0));
+        assertTrue(handlers.get(1) instanceof HandlerScope.TouchHandler);
+        assertEquals(2, scope.getCreatedTypes().size());
+    }
+
+    @Test
+    public void dependantIsIterated() {
+        final HandlerScope.BackHandler dependant = new HandlerScope.BackHandler();
+
+        final List<HandlerScope.Handler> handlers = toList(Dependency.iterateAll(scope, HandlerScope.Handler.class, dependant));
+
+        assertEquals(3, handlers.size());
+        assertSame(dependant, handlers.get(0));
+    }
+
+    @Test
+    public void eachIteratorStartsNewSearch() {
+        final Iterable<HandlerScope.Handler> iterable = Dependency.iterateAll(scope, HandlerScope.Handler.class);
+
+        final List<HandlerScope.Handler> handlers = toList(iterable);
+
+        assertEquals(new HashSet<>(handlers), new HashSet<>(toList(iterable)));
+        assertEquals(2, scope.getCreatedTypes().size());
+        assertEquals(new HashSet<>(handlers), new HashSet<>(Dependency.getAll(scope, HandlerScope.Handler.class)));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void exhaustedIteratorThrows() {
+        final Iterator<HandlerScope.Handler> iterator = Dependency.iterateAll(scope, HandlerScope.Handler.class).iterator();
+
+        iterator.next();
+        iterator.next();
+        assertFalse(iterator.hasNext());
+        iterator.next();
+    }
+
+    private static <T> List<T> toList(final Iterable<T> iterable) {
+        final List<T> list = new ArrayList<>();
+
+        for (final T element : iterable) {
+            list.add(element);
+        }
+        return list;
+    }
+
+    private static List<Class<?>> classesOf(final List<?> objects) {
+        final List<Class<?>> classes = new ArrayList<>();
+
+        for (final Object object : objects) {
+            classes.add(object.getClass());
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependencyProfileTest} tests recording the order in which the dependencies are resolved
+ * to a {@link DependencyProfile}, and replaying it when a {@link DependencyScope} is activated.
+ */
+public class DependencyProfileTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private DependencyProfile profile;
+
+    @Before
+    public void setUp() {
+        profile = new DependencyProfile();
+        Dependency.setProfile(profile);
+        Dependency.setAppScope(new TestAppScope());
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.setProfile(null);
+        Dependency.setEagerExecutor(null);
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void resolvingOrderIsRecorded() {
+        final EagerScope scope = new EagerScope();
+
+        Dependency.get(scope, EagerScope.Widget.class);
+        Dependency.get(scope, EagerScope.Widget.class);
+
+        assertEquals(Arrays.<Class<?>>asList(EagerScope.Config.class, EagerScope.Repository.class,
+                EagerScope.Clock.class, EagerScope.Presenter.class, EagerScope.Widget.class),
+                profile.getDependencyTypes(new EagerScope()));
+        assertTrue(profile.getResolvingTime(scope, EagerScope.Widget.class) >= 0);
+        assertEquals(-1, profile.getResolvingTime(scope, TestAppScope.AppService.class));
+    }
+
+    @Test
+    public void profileIsWrittenAndRead() throws IOException {
+        final EagerScope scope = new EagerScope();
+        Dependency.get(scope, EagerScope.Presenter.class);
+
+        final File file = new File(folder.getRoot(), "dependencies.profile");
+        profile.write(file);
+
+        final DependencyProfile readProfile = DependencyProfile.read(file);
+        assertEquals(profile.getDependencyTypes(scope), readProfile.getDependencyTypes(scope));
+        assertEquals(profile.getResolvingTime(scope, EagerScope.Presenter.class),
+                readProfile.getResolvingTime(scope, EagerScope.Presenter.class));
+    }
+
+    @Test
+    public void invalidProfileIsReadEmpty() throws IOException {
+        final File file = folder.newFile("invalid.profile");
+        final FileOutputStream output = new FileOutputStream(file);
+
+        try {
+            output.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        } finally {
+            output.close();
+        }
+
+        assertEquals(Collections.emptyList(), DependencyProfile.read(file).getDependencyTypes(new EagerScope()));
+        assertEquals(Collections.emptyList(), DependencyProfile.read(new File(folder.getRoot(), "missing")).getDependencyTypes(new EagerScope()));
+    }
+
+    @Test
+    public void profileIsReplayedWhenScopeIsActivated() throws InterruptedException {
+        Dependency.get(new ParentScope(), ParentScope.Service.class);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        Dependency.setEagerExecutor(executor);
+
+        final ParentScope scope = new ParentScope();
+        assertFalse(scope.hasDependency(ParentScope.Service.class));
+
+        Dependency.activateScope(new TestScopeOwner(scope));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        assertTrue(scope.hasDependency(ParentScope.Service.class));
+    }
+
+    @Test
+    public void replayIsStoppedWhenScopeIsDisposed() {
+        final ParentScope scope = new ParentScope();
+        final List<Class<?>> dependencyTypes = Collections.<Class<?>>singletonList(ParentScope.Service.class);
+
+        scope.dispose();
+        scope.createDependencies(dependencyTypes);
+
+        assertFalse(scope.hasDependency(ParentScope.Service.class));
+    }
+}
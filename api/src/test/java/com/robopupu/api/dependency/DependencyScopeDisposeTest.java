@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import com.robopupu.api.plugin.PluginBus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependencyScopeDisposeTest} tests that disposing a {@link DependencyScope} unplugs its
+ * cached and provided dependencies from the {@link PluginBus} in one batch.
+ */
+public class DependencyScopeDisposeTest {
+
+    private PluginScope scope;
+    private TestPlugin observer;
+
+    @Before
+    public void setUp() {
+        Dependency.setAppScope(new TestAppScope());
+        scope = new PluginScope();
+        observer = new TestPlugin();
+        PluginBus.plug(observer);
+    }
+
+    @After
+    public void tearDown() {
+        PluginBus.unplug(observer);
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void disposeUnplugsProvidedAndCachedDependencies() {
+        final TestPlugin providedPlugin = Dependency.get(scope, TestPlugin.class);
+        final TestPlugin cachedPlugin = scope.cache(TestPlugin.class, new TestPlugin());
+        PluginBus.plug(providedPlugin);
+        PluginBus.plug(cachedPlugin);
+
+        scope.dispose();
+
+        assertTrue(scope.isDisposed());
+        assertFalse(PluginBus.isPlugged(providedPlugin));
+        assertFalse(PluginBus.isPlugged(cachedPlugin));
+        assertFalse(providedPlugin.isPlugged());
+        assertFalse(cachedPlugin.isPlugged());
+        assertEquals(new HashSet<Object>(Arrays.asList(providedPlugin, cachedPlugin)),
+                new HashSet<>(observer.getUnpluggedPlugins()));
+    }
+
+    @Test
+    public void disposeClearsCaches() {
+        final TestPlugin plugin = Dependency.get(scope, TestPlugin.class);
+
+        scope.dispose();
+
+        assertFalse(scope.hasDependency(plugin));
+        assertFalse(scope.hasDependency(TestPlugin.class));
+        assertNotSame(plugin, Dependency.get(scope, TestPlugin.class));
+    }
+
+    @Test
+    public void disposeIgnoresUnpluggedDependencies() {
+        final TestPlugin plugin = Dependency.get(scope, TestPlugin.class);
+
+        scope.dispose();
+
+        assertFalse(PluginBus.isPlugged(plugin));
+        assertTrue(observer.getUnpluggedPlugins().isEmpty());
+        assertTrue(PluginBus.isPlugged(observer));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import com.robopupu.api.plugin.PluginComponent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependencyScopeResolutionTest} tests resolving a single dependency from the cache of
+ * the resolved dependencies of a {@link DependencyScope}.
+ */
+public class DependencyScopeResolutionTest {
+
+    private PluginScope scope;
+    private DependencyTracer tracer;
+
+    @Before
+    public void setUp() {
+        Dependency.setAppScope(new TestAppScope());
+        scope = new PluginScope();
+        tracer = new DependencyTracer();
+        scope.setTracer(tracer);
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void providedDependencyIsResolvedFromCache() {
+        final TestPlugin plugin = Dependency.get(scope, TestPlugin.class);
+
+        assertSame(plugin, Dependency.get(scope, TestPlugin.class));
+        assertSame(plugin, Dependency.get(scope, PluginComponent.class));
+        assertSame(plugin, Dependency.get(scope, PluginComponent.class));
+        assertTrue(scope.hasDependency(TestPlugin.class));
+
+        // The scoped dependency is resolved for each requested type by the provider once
+
+        final DependencyTracer.Snapshot snapshot = tracer.getSnapshot();
+        assertEquals(2, snapshot.getCount(DependencyTracer.Tier.PROVIDER));
+        assertEquals(2, snapshot.getCount(DependencyTracer.Tier.CACHE));
+    }
+
+    @Test
+    public void supertypeIsResolvedByCachedSubtype() {
+        final TestPlugin plugin = scope.cache(TestPlugin.class, new TestPlugin());
+
+        assertSame(plugin, Dependency.get(scope, PluginComponent.class));
+        assertSame(plugin, Dependency.get(scope, PluginComponent.class));
+        assertEquals(2, tracer.getSnapshot().getCount(DependencyTracer.Tier.CACHE));
+    }
+
+    @Test
+    public void exactTypePrecedesResolvedSubtype() {
+        final TestPlugin plugin = scope.cache(TestPlugin.class, new TestPlugin());
+        assertSame(plugin, Dependency.get(scope, PluginComponent.class));
+
+        final PluginComponent component = scope.cache(PluginComponent.class, new TestPlugin());
+
+        assertSame(component, Dependency.get(scope, PluginComponent.class));
+        assertSame(plugin, Dependency.get(scope, TestPlugin.class));
+    }
+
+    @Test
+    public void removedDependencyIsNotResolved() {
+        final TestPlugin plugin = scope.cache(TestPlugin.class, new TestPlugin());
+        assertSame(plugin, Dependency.get(scope, PluginComponent.class));
+
+        assertEquals(1, scope.removeDependency(plugin).size());
+        assertFalse(scope.hasDependency(plugin));
+        assertNotSame(plugin, Dependency.get(scope, PluginComponent.class));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependencyScopeRoutingTest} tests the routing table of a {@link DependencyScope} that
+ * records the parent or application scope that has supplied a dependency type.
+ */
+public class DependencyScopeRoutingTest {
+
+    private TestAppScope appScope;
+    private ParentScope parentScope;
+    private ChildScope childScope;
+    private DependencyTracer tracer;
+
+    @Before
+    public void setUp() {
+        appScope = new TestAppScope();
+        Dependency.setAppScope(appScope);
+        parentScope = new ParentScope();
+        childScope = new ChildScope();
+        childScope.setParentScope(parentScope);
+        tracer = new DependencyTracer();
+        childScope.setTracer(tracer);
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void parentDependencyIsRouted() {
+        final ParentScope.Service service = Dependency.get(childScope, ParentScope.Service.class);
+
+        assertSame(parentScope, childScope.getSupplier(ParentScope.Service.class, service));
+        assertSame(service, Dependency.get(childScope, ParentScope.Service.class));
+
+        final DependencyTracer.Snapshot snapshot = tracer.getSnapshot();
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.PARENT));
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.ROUTE));
+    }
+
+    @Test
+    public void appDependencyIsRouted() {
+        final TestAppScope.AppService service = Dependency.get(childScope, TestAppScope.AppService.class);
+
+        assertSame(appScope, childScope.getSupplier(TestAppScope.AppService.class, service));
+        assertSame(service, Dependency.get(childScope, TestAppScope.AppService.class));
+        assertEquals(1, tracer.getSnapshot().getCount(DependencyTracer.Tier.ROUTE));
+    }
+
+    @Test
+    public void providerParametersAreResolvedFromParent() {
+        final ChildScope.ChildService childService = Dependency.get(childScope, ChildScope.ChildService.class);
+
+        assertSame(Dependency.get(parentScope, ParentScope.Service.class), childService.getService());
+    }
+
+    @Test
+    public void reparentingInvalidatesRoutes() {
+        final ParentScope.Service service = Dependency.get(childScope, ParentScope.Service.class);
+        final ParentScope otherParentScope = new ParentScope();
+
+        childScope.setParentScope(otherParentScope);
+
+        final ParentScope.Service otherService = Dependency.get(childScope, ParentScope.Service.class);
+        assertNotSame(service, otherService);
+        assertSame(Dependency.get(otherParentScope, ParentScope.Service.class), otherService);
+        assertEquals(0, tracer.getSnapshot().getCount(DependencyTracer.Tier.ROUTE));
+    }
+
+    @Test
+    public void mockingInvalidatesRoutes() {
+        final TestAppScope.AppService service = Dependency.get(childScope, TestAppScope.AppService.class);
+        final TestAppScope mockScope = new TestAppScope();
+
+        childScope.setMockedScope(mockScope);
+
+        final TestAppScope.AppService mockService = Dependency.get(childScope, TestAppScope.AppService.class);
+        assertNotSame(service, mockService);
+        assertSame(Dependency.get(mockScope, TestAppScope.AppService.class), mockService);
+    }
+
+    @Test
+    public void changingOtherScopeKeepsRoutes() {
+        final int version = childScope.getRoutingVersion();
+
+        new ParentScope().invalidateRoutes();
+        assertEquals(version, childScope.getRoutingVersion());
+
+        parentScope.invalidateRoutes();
+        assertTrue(childScope.getRoutingVersion() > version);
+
+        appScope.invalidateRoutes();
+        assertTrue(new ChildScope().getRoutingVersion() > version);
+    }
+}
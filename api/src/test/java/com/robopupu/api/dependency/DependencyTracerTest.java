@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DependencyTracerTest} tests counting the resolved dependencies per
+ * {@link DependencyTracer.Tier}, the latency histograms, and flagging the dependency types
+ * whose expensive cache misses repeat.
+ */
+public class DependencyTracerTest {
+
+    private TestAppScope appScope;
+    private ParentScope scope;
+    private DependencyTracer tracer;
+
+    @Before
+    public void setUp() {
+        appScope = new TestAppScope();
+        Dependency.setAppScope(appScope);
+        scope = new ParentScope();
+        tracer = new DependencyTracer();
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void resolvedDependenciesAreCountedPerTier() {
+        scope.setTracer(tracer);
+
+        Dependency.get(scope, ParentScope.Service.class);
+        Dependency.get(scope, ParentScope.Service.class);
+        Dependency.get(scope, TestAppScope.AppService.class);
+        Dependency.get(scope, Runnable.class);
+
+        final DependencyTracer.Snapshot snapshot = tracer.getSnapshot();
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.PROVIDER));
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.CACHE));
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.APP));
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.MISS));
+        assertEquals(0, snapshot.getCount(DependencyTracer.Tier.NEW_INSTANCE));
+        assertEquals(3, snapshot.getTypes().size());
+    }
+
+    @Test
+    public void newInstanceIsCounted() {
+        appScope.setTracer(tracer);
+
+        assertNotNull(appScope.getDependency(HandlerScope.KeyHandler.class, null, true));
+        appScope.getDependency(HandlerScope.KeyHandler.class, null, true);
+
+        final DependencyTracer.Snapshot snapshot = tracer.getSnapshot();
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.NEW_INSTANCE));
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.CACHE));
+    }
+
+    @Test
+    public void tracingIsDisabledByDefault() {
+        Dependency.get(scope, ParentScope.Service.class);
+        scope.setTracer(tracer);
+        scope.setTracer(null);
+        Dependency.get(scope, ParentScope.Service.class);
+
+        assertTrue(tracer.getSnapshot().getTypes().isEmpty());
+    }
+
+    @Test
+    public void resolvingTimesAreCollectedIntoHistogram() {
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 0);
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 1);
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 3);
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 1000);
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, Long.MAX_VALUE);
+
+        final DependencyTracer.TypeStatistics statistics = tracer.getSnapshot().getTypes().get(0);
+        assertSame(String.class, statistics.getDependencyType());
+        assertEquals(5, statistics.getCount());
+        assertEquals(Long.MAX_VALUE, statistics.getMaxNanos());
+        assertEquals(1, statistics.getHistogramCount(0));
+        assertEquals(1, statistics.getHistogramCount(1));
+        assertEquals(1, statistics.getHistogramCount(2));
+        assertEquals(1, statistics.getHistogramCount(10));
+        assertEquals(1, statistics.getHistogramCount(DependencyTracer.HISTOGRAM_SIZE - 1));
+        assertEquals(4, statistics.getPercentileNanos(60));
+        assertEquals(1024, statistics.getPercentileNanos(80));
+        assertEquals(Long.MAX_VALUE, statistics.getPercentileNanos(100));
+    }
+
+    @Test
+    public void repeatedExpensiveMissesAreFlagged() {
+        final DependencyTracer tracer = new DependencyTracer(100, 2);
+
+        tracer.record(scope, String.class, DependencyTracer.Tier.PROVIDER, 150);
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 150);
+        tracer.record(scope, String.class, DependencyTracer.Tier.PARENT, 99);
+        tracer.record(scope, Integer.class, DependencyTracer.Tier.NEW_INSTANCE, 100);
+        tracer.record(scope, Integer.class, DependencyTracer.Tier.MISS, 200);
+
+        final DependencyTracer.Snapshot snapshot = tracer.getSnapshot();
+        final List<DependencyTracer.TypeStatistics> flaggedTypes = snapshot.getFlaggedTypes();
+
+        assertEquals(1, flaggedTypes.size());
+        assertSame(Integer.class, flaggedTypes.get(0).getDependencyType());
+        assertEquals(2, flaggedTypes.get(0).getExpensiveMissCount());
+
+        final DependencyTracer.TypeStatistics statistics = snapshot.getTypes().get(0);
+        assertSame(String.class, statistics.getDependencyType());
+        assertEquals(1, statistics.getExpensiveMissCount());
+        assertFalse(statistics.isFlagged());
+    }
+
+    @Test
+    public void typesAreOrderedSlowestFirst() {
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 10);
+        tracer.record(scope, Integer.class, DependencyTracer.Tier.CACHE, 30);
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 10);
+
+        final List<DependencyTracer.TypeStatistics> types = tracer.getSnapshot().getTypes();
+        assertSame(Integer.class, types.get(0).getDependencyType());
+        assertSame(String.class, types.get(1).getDependencyType());
+        assertEquals(20, types.get(1).getTotalNanos());
+    }
+
+    @Test
+    public void snapshotIsNotAffectedByLaterRecords() {
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 10);
+
+        final DependencyTracer.Snapshot snapshot = tracer.getSnapshot();
+
+        tracer.record(scope, String.class, DependencyTracer.Tier.CACHE, 10);
+        tracer.clear();
+
+        assertEquals(1, snapshot.getCount(DependencyTracer.Tier.CACHE));
+        assertEquals(1, snapshot.getTypes().get(0).getCount());
+        assertEquals(0, tracer.getSnapshot().getCount(DependencyTracer.Tier.CACHE));
+        assertTrue(tracer.getSnapshot().getTypes().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void repeatedMissCountMustBePositive() {
+        new DependencyTracer(DependencyTracer.DEFAULT_EXPENSIVE_NANOS, 0);
+    }
+}
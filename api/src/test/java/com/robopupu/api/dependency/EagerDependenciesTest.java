@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link EagerDependenciesTest} tests instantiating the eager dependencies of an activated
+ * {@link DependencyScope} level by level in the background.
+ */
+public class EagerDependenciesTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private EagerScope scope;
+    private TestScopeOwner owner;
+    private QueueExecutor executor;
+
+    @Before
+    public void setUp() {
+        Dependency.setAppScope(new TestAppScope());
+        scope = new EagerScope();
+        owner = new TestScopeOwner(scope);
+        executor = new QueueExecutor();
+        Dependency.setEagerExecutor(executor);
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.setEagerExecutor(null);
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void eagerDependenciesAreGroupedByLevels() {
+        final Class<?>[][] levels = scope.getDependencyProvider().getEagerDependencies();
+
+        assertArrayEquals(new Class<?>[][] {
+                {EagerScope.Config.class, EagerScope.Clock.class},
+                {EagerScope.Repository.class},
+                {EagerScope.Presenter.class}}, levels);
+    }
+
+    @Test
+    public void levelIsSubmittedWhenPreviousLevelIsCreated() {
+        Dependency.activateScope(owner);
+
+        assertTrue(scope.getCreatedTypes().isEmpty());
+        assertEquals(2, executor.runPending());
+        assertEquals(Arrays.<Class<?>>asList(EagerScope.Config.class, EagerScope.Clock.class), scope.getCreatedTypes());
+
+        assertEquals(1, executor.runPending());
+        assertEquals(EagerScope.Repository.class, scope.getCreatedTypes().get(2));
+
+        assertEquals(1, executor.runPending());
+        assertEquals(EagerScope.Presenter.class, scope.getCreatedTypes().get(3));
+
+        assertEquals(0, executor.runPending());
+        assertFalse(scope.getCreatedTypes().contains(EagerScope.Widget.class));
+        assertTrue(scope.hasDependency(EagerScope.Presenter.class));
+    }
+
+    @Test
+    public void requestedEagerDependencyIsCreatedOnce() {
+        Dependency.activateScope(owner);
+
+        final EagerScope.Presenter presenter = Dependency.get(scope, EagerScope.Presenter.class);
+        assertEquals(4, scope.getCreatedTypes().size());
+
+        executor.runAll();
+
+        assertEquals(4, scope.getCreatedTypes().size());
+        assertSame(presenter, Dependency.get(scope, EagerScope.Presenter.class));
+    }
+
+    @Test
+    public void disposedScopeSkipsRemainingLevels() {
+        Dependency.activateScope(owner);
+        executor.runPending();
+
+        Dependency.disposeScope(owner);
+        executor.runAll();
+
+        assertEquals(Arrays.<Class<?>>asList(EagerScope.Config.class, EagerScope.Clock.class), scope.getCreatedTypes());
+    }
+
+    @Test
+    public void levelsAreCreatedInParallel() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        Dependency.setEagerExecutor(pool);
+
+        try {
+            Dependency.activateScope(owner);
+
+            final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+            while (!scope.getCreatedTypes().contains(EagerScope.Presenter.class) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+
+            final List<Class<?>> createdTypes = scope.getCreatedTypes();
+            assertEquals(4, createdTypes.size());
+            assertEquals(EagerScope.Repository.class, createdTypes.get(2));
+            assertEquals(EagerScope.Presenter.class, createdTypes.get(3));
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * {@link QueueExecutor} queues the submitted tasks until they are run by a test.
+     */
+    private static final class QueueExecutor extends AbstractExecutorService {
+
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        /**
+         * Runs the tasks queued before invoking this method.
+         *
+         * @return The number of the tasks run.
+         */
+        int runPending() {
+            final int count = tasks.size();
+
+            for (int i = 0; i < count; i++) {
+                tasks.poll().run();
+            }
+            return count;
+        }
+
+        void runAll() {
+            while (runPending() > 0) {
+                // Run the tasks submitted by the run tasks
+            }
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            tasks.add(task);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+            return false;
+        }
+    }
+}
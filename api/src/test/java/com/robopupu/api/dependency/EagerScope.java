@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link EagerScope} is a {@link DependencyScope} that provides eager dependencies on three levels
+ * and records the order in which its dependencies are created.
+ */
+@Scope
+public class EagerScope extends DependencyScope {
+
+    public static class Config {
+    }
+
+    public static class Clock {
+    }
+
+    public static class Repository {
+    }
+
+    public static class Presenter {
+    }
+
+    public static class Widget {
+    }
+
+    private final List<Class<?>> createdTypes = Collections.synchronizedList(new ArrayList<Class<?>>());
+
+    public List<Class<?>> getCreatedTypes() {
+        synchronized (createdTypes) {
+            return new ArrayList<>(createdTypes);
+        }
+    }
+
+    @Eager
+    @Provides
+    public Config getConfig() {
+        return created(new Config());
+    }
+
+    @Eager
+    @Provides
+    public Clock getClock() {
+        return created(new Clock());
+    }
+
+    @Eager
+    @Provides
+    public Repository getRepository(final Config config) {
+        return created(new Repository());
+    }
+
+    @Eager
+    @Provides
+    public Presenter getPresenter(final Repository repository, final Clock clock) {
+        return created(new Presenter());
+    }
+
+    @Provides
+    public Widget getWidget(final Presenter presenter) {
+        return created(new Widget());
+    }
+
+    private <T> T created(final T dependency) {
+        createdTypes.add(dependency.getClass());
+        return dependency;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link FactoriesTest} tests instantiating objects using the generated {@link InstanceFactory}s
+ * and the reflective fallback of {@link Factories}.
+ */
+public class FactoriesTest {
+
+    private static final String PACKAGE_NAME = "java.util";
+
+    @After
+    public void tearDown() {
+        Factories.register(PACKAGE_NAME, new InstanceFactory() {
+            @Override
+            public <T> T newInstance(final Class<T> type) {
+                return null;
+            }
+        });
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void generatedFactoryCreatesScopesAndProvidedClasses() {
+        final InstanceFactory factory = ServiceLoader.load(InstanceFactory.class).iterator().next();
+
+        assertTrue(factory.getClass().getName().endsWith(InstanceFactory.SUFFIX));
+        assertTrue(factory.newInstance(ParentScope.class) instanceof ParentScope);
+        assertTrue(factory.newInstance(TestLogger.class) instanceof TestLogger);
+        assertNull(factory.newInstance(TestPlugin.class));
+    }
+
+    @Test
+    public void typesAreCreatedByFactoryOrReflection() {
+        assertTrue(Factories.newInstance(EagerScope.class) instanceof EagerScope);
+        assertTrue(Factories.newInstance(TestPlugin.class) instanceof TestPlugin);
+    }
+
+    @Test
+    public void nonInstantiableTypesAreNotCreated() {
+        assertNull(Factories.newInstance(DependencyScopeOwner.class));
+        assertNull(Factories.newInstance(DependencyScope.class));
+        assertNull(Factories.newInstance(ChildScope.ChildService.class));
+        assertNull(Factories.newInstance(ChildScope.ChildService.class));
+        assertNull(Factories.newInstance(null));
+    }
+
+    @Test
+    public void failingConstructorIsRetried() {
+        FailingService.failures.set(1);
+
+        assertNull(Factories.newInstance(FailingService.class));
+        assertTrue(Factories.newInstance(FailingService.class) instanceof FailingService);
+    }
+
+    @Test
+    public void registeredFactoryReplacesReflection() {
+        final AtomicInteger count = new AtomicInteger();
+        final ArrayList<Object> list = new ArrayList<>();
+
+        Factories.register(PACKAGE_NAME, new InstanceFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T newInstance(final Class<T> type) {
+                count.incrementAndGet();
+                return (type == ArrayList.class) ? (T) list : null;
+            }
+        });
+
+        assertSame(list, Factories.newInstance(ArrayList.class));
+        assertNull(Factories.newInstance(RandomAccess.class));
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void missingDependencyIsCreatedOnRequest() {
+        Dependency.setAppScope(new TestAppScope());
+
+        final ParentScope scope = new ParentScope();
+        assertNull(Dependency.get(scope, TestPlugin.class));
+
+        final TestPlugin plugin = scope.getDependency(TestPlugin.class, null, true);
+
+        assertNotNull(plugin);
+        assertSame(plugin, Dependency.get(scope, TestPlugin.class));
+        assertNull(scope.getDependency(List.class, null, true));
+    }
+
+    /**
+     * {@link FailingService} is a class with a constructor that fails as many times as specified
+     * by {@link FailingService#failures}.
+     */
+    public static class FailingService {
+
+        static final AtomicInteger failures = new AtomicInteger();
+
+        public FailingService() {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+}
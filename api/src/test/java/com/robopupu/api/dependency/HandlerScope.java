@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link HandlerScope} is a {@link DependencyScope} that provides several dependencies of
+ * the same interface type and records which of them have been created.
+ */
+@Scope
+public class HandlerScope extends DependencyScope {
+
+    public interface Handler {
+    }
+
+    public static class KeyHandler implements Handler {
+    }
+
+    public static class TouchHandler implements Handler {
+    }
+
+    public static class BackHandler implements Handler {
+    }
+
+    private final List<Class<?>> createdTypes = new ArrayList<>();
+
+    public List<Class<?>> getCreatedTypes() {
+        return createdTypes;
+    }
+
+    @Provides
+    public KeyHandler getKeyHandler() {
+        return created(new KeyHandler());
+    }
+
+    @Provides
+    public TouchHandler getTouchHandler() {
+        return created(new TouchHandler());
+    }
+
+    private <T> T created(final T dependency) {
+        createdTypes.add(dependency.getClass());
+        return dependency;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link InjectorsTest} tests injecting the fields annotated with {@link Inject} using
+ * the generated {@link Injector}s.
+ */
+public class InjectorsTest {
+
+    private TestAppScope appScope;
+    private ParentScope scope;
+
+    @Before
+    public void setUp() {
+        appScope = new TestAppScope();
+        Dependency.setAppScope(appScope);
+        scope = new ParentScope();
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void fieldsOfClassAndSuperclassAreInjected() {
+        final Presenter presenter = new Presenter();
+
+        assertTrue(Dependency.inject(scope, presenter));
+
+        final ParentScope.Service service = Dependency.get(scope, ParentScope.Service.class);
+        assertSame(service, presenter.service);
+        assertSame(service, presenter.sameService);
+        assertSame(Dependency.get(scope, TestLogger.class), presenter.logger.get());
+        assertFalse(presenter.appService.isResolved());
+        assertSame(Dependency.get(appScope, TestAppScope.AppService.class), presenter.appService.get());
+    }
+
+    @Test
+    public void fieldsAreInjectedFromActiveScope() {
+        Dependency.activateScope(new TestScopeOwner(scope));
+
+        final View view = new View();
+
+        assertTrue(Dependency.inject(view));
+        assertSame(Dependency.get(scope, ParentScope.Service.class), view.service);
+    }
+
+    @Test
+    public void classWithoutInjectedFieldsIsNotInjected() {
+        assertFalse(Dependency.inject(scope, new Object()));
+        assertFalse(Dependency.inject(scope, new TestPlugin()));
+        assertFalse(Dependency.inject(scope, new TestPlugin()));
+    }
+
+    @Test
+    public void injectorsAreLookedUpFromRegistry() {
+        final ScopeRegistry registry = Dependency.getScopeRegistry();
+
+        assertNotNull(registry.newInjector(View.class));
+        assertNotNull(registry.newInjector(Presenter.class));
+        assertNull(registry.newInjector(TestPlugin.class));
+    }
+
+    @Test
+    public void nestedClassNamesAreFlattened() {
+        final Injector<?> injector = new ScopeRegistry().newInjector(Presenter.class);
+
+        assertNotNull(injector);
+        assertEquals("InjectorsTest_Presenter" + Injector.SUFFIX, injector.getClass().getSimpleName());
+    }
+
+    /**
+     * {@link View} is a class with injected fields.
+     */
+    public static class View {
+
+        @Inject
+        ParentScope.Service service;
+
+        @Inject
+        ParentScope.Service sameService;
+    }
+
+    /**
+     * {@link Presenter} is a class with injected fields that extends a class with injected fields.
+     */
+    public static class Presenter extends View {
+
+        @Inject
+        Provider<TestLogger> logger;
+
+        @Inject
+        Lazy<TestAppScope.AppService> appService;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link LifecycleScope} is a {@link DependencyScope} that provides dependencies with each of
+ * the {@link Lifecycle}s. It counts the created singletons.
+ */
+@Scope
+public class LifecycleScope extends DependencyScope {
+
+    private static final AtomicInteger createdRegistryCount = new AtomicInteger();
+
+    public static class Session extends ScopedObject {
+    }
+
+    public static class Registry extends ScopedObject {
+    }
+
+    public static class Request extends ScopedObject {
+    }
+
+    public static int getCreatedRegistryCount() {
+        return createdRegistryCount.get();
+    }
+
+    @Provides
+    public Session getSession() {
+        return new Session();
+    }
+
+    @Provides(lifecycle = Lifecycle.SINGLETON)
+    public Registry getRegistry() {
+        createdRegistryCount.incrementAndGet();
+        return new Registry();
+    }
+
+    @Provides(lifecycle = Lifecycle.PROTOTYPE)
+    public Request getRequest() {
+        return new Request();
+    }
+}
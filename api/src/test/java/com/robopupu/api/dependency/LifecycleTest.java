@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link LifecycleTest} tests the {@link Lifecycle}s of the dependencies provided by
+ * a generated {@link DependencyProvider}. The singleton of {@link LifecycleScope} is requested
+ * only by {@link LifecycleTest#singletonIsCreatedOnce()}, because it lives as long as the class
+ * of the generated {@link DependencyProvider}.
+ */
+public class LifecycleTest {
+
+    private static final int THREAD_COUNT = 8;
+
+    private TestAppScope appScope;
+
+    @Before
+    public void setUp() {
+        appScope = new TestAppScope();
+        Dependency.setAppScope(appScope);
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void scopedDependencyIsCreatedOncePerScope() {
+        final LifecycleScope scope = new LifecycleScope();
+        final LifecycleScope.Session session = Dependency.get(scope, LifecycleScope.Session.class);
+
+        assertSame(session, Dependency.get(scope, LifecycleScope.Session.class));
+        assertSame(scope, session.getScope());
+        assertTrue(scope.hasDependency(session));
+        assertNotSame(session, Dependency.get(new LifecycleScope(), LifecycleScope.Session.class));
+    }
+
+    @Test
+    public void prototypeIsCreatedOnEachRequest() {
+        final LifecycleScope scope = new LifecycleScope();
+        final LifecycleScope.Request request = Dependency.get(scope, LifecycleScope.Request.class);
+
+        assertNotSame(request, Dependency.get(scope, LifecycleScope.Request.class));
+        assertFalse(scope.hasDependency(request));
+        assertNull(request.getScope());
+    }
+
+    @Test
+    public void singletonIsCreatedOnce() throws Exception {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        final List<Future<LifecycleScope.Registry>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(new Callable<LifecycleScope.Registry>() {
+                    @Override
+                    public LifecycleScope.Registry call() throws InterruptedException {
+                        final LifecycleScope scope = new LifecycleScope();
+                        startSignal.await();
+                        return Dependency.get(scope, LifecycleScope.Registry.class);
+                    }
+                }));
+            }
+            startSignal.countDown();
+
+            final LifecycleScope.Registry registry = futures.get(0).get();
+
+            for (final Future<LifecycleScope.Registry> future : futures) {
+                assertSame(registry, future.get());
+            }
+
+            assertEquals(1, LifecycleScope.getCreatedRegistryCount());
+            assertSame(appScope, registry.getScope());
+
+            final LifecycleScope scope = new LifecycleScope();
+            assertSame(registry, Dependency.get(scope, LifecycleScope.Registry.class));
+            scope.dispose();
+            assertSame(registry, Dependency.get(new LifecycleScope(), LifecycleScope.Registry.class));
+            assertEquals(1, LifecycleScope.getCreatedRegistryCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
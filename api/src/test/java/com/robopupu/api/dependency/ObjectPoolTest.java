@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link ObjectPoolTest} tests leasing the dependencies provided with {@link Pooled} from
+ * the {@link ObjectPool}s of a {@link DependencyScope} class and returning them when
+ * the {@link DependencyScope} is disposed.
+ */
+public class ObjectPoolTest {
+
+    private ObjectPool<PoolScope.Buffer> bufferPool;
+    private ObjectPool<PoolScope.Token> tokenPool;
+    private ObjectPool<PoolScope.Parser> parserPool;
+
+    @Before
+    public void setUp() {
+        Dependency.setAppScope(new TestAppScope());
+        bufferPool = ObjectPool.getPool(PoolScope.class, PoolScope.Buffer.class, ObjectPool.DEFAULT_MAX_SIZE);
+        tokenPool = ObjectPool.getPool(PoolScope.class, PoolScope.Token.class, PoolScope.MAX_POOL_SIZE);
+        parserPool = ObjectPool.getPool(PoolScope.class, PoolScope.Parser.class, ObjectPool.DEFAULT_MAX_SIZE);
+        bufferPool.clear();
+        tokenPool.clear();
+        parserPool.clear();
+    }
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void leasedDependencyIsReusedByNextScope() {
+        final PoolScope scope = new PoolScope();
+        final PoolScope.Buffer buffer = Dependency.get(scope, PoolScope.Buffer.class);
+
+        assertEquals(0, bufferPool.size());
+        scope.dispose();
+
+        assertEquals(1, bufferPool.size());
+        assertEquals(1, buffer.getResetCount());
+        assertSame(buffer, Dependency.get(new PoolScope(), PoolScope.Buffer.class));
+        assertEquals(0, bufferPool.size());
+    }
+
+    @Test
+    public void poolRetainsAtMostMaxSize() {
+        final PoolScope scope = new PoolScope();
+        final PoolScope.Token token = Dependency.get(scope, PoolScope.Token.class);
+
+        assertNotSame(token, Dependency.get(scope, PoolScope.Token.class));
+        Dependency.get(scope, PoolScope.Token.class);
+        scope.dispose();
+
+        assertEquals(PoolScope.MAX_POOL_SIZE, tokenPool.getMaxSize());
+        assertEquals(PoolScope.MAX_POOL_SIZE, tokenPool.size());
+    }
+
+    @Test
+    public void dependencyFailingToResetIsDiscarded() {
+        final PoolScope scope = new PoolScope();
+        Dependency.get(scope, PoolScope.Parser.class);
+
+        scope.dispose();
+
+        assertEquals(0, parserPool.size());
+    }
+
+    @Test
+    public void poolsAreSeparatePerScopeClass() {
+        assertSame(bufferPool, ObjectPool.getPool(PoolScope.class, PoolScope.Buffer.class, 1));
+        assertNotSame(bufferPool, ObjectPool.getPool(ParentScope.class, PoolScope.Buffer.class, 1));
+    }
+}
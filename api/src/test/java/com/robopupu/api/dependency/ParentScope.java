@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/**
+ * {@link ParentScope} is a {@link DependencyScope} used as the parent of a {@link ChildScope}.
+ */
+@Scope
+public class ParentScope extends DependencyScope {
+
+    public static class Service {
+    }
+
+    @Provides
+    public Service getService() {
+        return new Service();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/**
+ * {@link PoolScope} is a {@link DependencyScope} that provides pooled dependencies.
+ */
+@Scope
+public class PoolScope extends DependencyScope {
+
+    public static final int MAX_POOL_SIZE = 2;
+
+    public static class Buffer implements Poolable {
+
+        private int resetCount;
+
+        public int getResetCount() {
+            return resetCount;
+        }
+
+        @Override
+        public void reset() {
+            resetCount++;
+        }
+    }
+
+    public static class Token {
+    }
+
+    public static class Parser implements Poolable {
+
+        @Override
+        public void reset() {
+            throw new IllegalStateException("A Parser cannot be reset");
+        }
+    }
+
+    @Pooled
+    @Provides
+    public Buffer getBuffer() {
+        return new Buffer();
+    }
+
+    @Pooled(maxSize = MAX_POOL_SIZE)
+    @Provides(lifecycle = Lifecycle.PROTOTYPE)
+    public Token getToken() {
+        return new Token();
+    }
+
+    @Pooled
+    @Provides(lifecycle = Lifecycle.PROTOTYPE)
+    public Parser getParser() {
+        return new Parser();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ScopeRegistryTest} tests looking up and instantiating {@link DependencyScope}s and their
+ * {@link DependencyProvider}s using the {@link ScopeRegistry} generated for the test sources.
+ */
+public class ScopeRegistryTest {
+
+    @After
+    public void tearDown() {
+        Dependency.disposeScopes();
+        Dependency.resetAppScope();
+    }
+
+    @Test
+    public void generatedRegistryIsLoaded() {
+        final Class<?> registryClass = ScopeRegistry.load().getClass();
+
+        assertTrue(registryClass.getName().endsWith(ScopeRegistry.SUFFIX));
+        assertSame(registryClass, Dependency.getScopeRegistry().getClass());
+    }
+
+    @Test
+    public void generatedRegistryInstantiatesScopes() {
+        final ScopeRegistry registry = ScopeRegistry.load();
+
+        assertSame(ParentScope.class, registry.getScopeClass(ParentScope.class.getCanonicalName()));
+        assertTrue(registry.newScope(ParentScope.class) instanceof ParentScope);
+        assertTrue(registry.newDependencyProvider(ParentScope.class) instanceof ParentScope_DependencyProvider);
+    }
+
+    @Test
+    public void unknownClassesAreNotFound() {
+        final ScopeRegistry registry = ScopeRegistry.load();
+
+        for (int i = 0; i < 2; i++) {
+            assertNull(registry.getScopeClass("com.robopupu.api.dependency.MissingScope"));
+            assertNull(registry.getScopeClass(String.class.getName()));
+            assertNull(registry.newDependencyProvider(PlainScope.class));
+            assertNull(registry.newInjector(ParentScope.class));
+        }
+    }
+
+    @Test
+    public void scopeIsCreatedByName() {
+        Dependency.setAppScope(new TestAppScope());
+
+        final ParentScope scope = Dependency.getScope(ParentScope.class.getCanonicalName(), true);
+
+        assertTrue(scope instanceof ParentScope);
+        assertSame(scope, Dependency.getScope(ParentScope.class));
+        assertTrue(Dependency.get(ParentScope.class, TestLogger.class, null) instanceof TestLogger);
+    }
+
+    /**
+     * {@link PlainScope} is a {@link DependencyScope} that does not have a generated
+     * {@link DependencyProvider}.
+     */
+    public static class PlainScope extends DependencyScope {
+    }
+}
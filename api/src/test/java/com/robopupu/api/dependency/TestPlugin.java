@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+import com.robopupu.api.plugin.Plugin;
+import com.robopupu.api.plugin.PluginBus;
+import com.robopupu.api.plugin.PluginComponent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link TestPlugin} is a {@link PluginComponent} that records the plugins unplugged from
+ * the {@link PluginBus}.
+ */
+@Plugin
+public class TestPlugin implements PluginComponent {
+
+    private final List<Object> unpluggedPlugins = new ArrayList<>();
+    private boolean plugged;
+
+    public boolean isPlugged() {
+        return plugged;
+    }
+
+    public List<Object> getUnpluggedPlugins() {
+        return unpluggedPlugins;
+    }
+
+    @Override
+    public void onPlugged(final PluginBus bus) {
+        plugged = true;
+    }
+
+    @Override
+    public void onUnplugged(final PluginBus bus) {
+        plugged = false;
+    }
+
+    @Override
+    public void onPluginPlugged(final Object plugin) {
+    }
+
+    @Override
+    public void onPluginUnplugged(final Object plugin) {
+        unpluggedPlugins.add(plugin);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.dependency;
+
+/**
+ * {@link TestScopeOwner} is a {@link DependencyScopeOwner} that owns a given {@link DependencyScope}.
+ */
+public class TestScopeOwner implements DependencyScopeOwner {
+
+    private final DependencyScope scope;
+
+    public TestScopeOwner(final DependencyScope scope) {
+        this.scope = scope;
+    }
+
+    @Override
+    public DependencyScope getOwnedScope() {
+        return scope;
+    }
+
+    @Override
+    public Class<? extends DependencyScope> getScopeClass() {
+        return scope.getClass();
+    }
+}
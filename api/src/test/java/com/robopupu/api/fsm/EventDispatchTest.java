@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.player.PlayerMachine;
+import com.robopupu.api.fsm.player.State;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link EventDispatchTest} tests dispatching the events directly to the handling states resolved
+ * by the {@link StateHierarchy}.
+ */
+public class EventDispatchTest {
+
+    // The events of PlayerEvents are assigned ids in the order of their signatures
+
+    private static final int EVENT_EJECT = 0;
+    private static final int EVENT_PAUSE = 1;
+    private static final int EVENT_PLAY = 2;
+    private static final int EVENT_POWER_OFF = 3;
+    private static final int EVENT_SEEK = 5;
+
+    private PlayerMachine machine;
+    private State player;
+    private StateHierarchy stateHierarchy;
+
+    @Before
+    public void setUp() {
+        machine = new PlayerMachine();
+        machine.start();
+        player = machine.getPlayer();
+        stateHierarchy = player.stateHierarchy;
+    }
+
+    @Test
+    public void handlerTableResolvesHandlingSuperState() {
+        assertEquals(6, stateHierarchy.getEventCount());
+        assertEquals(State.ID_PLAYER_MACHINE_POWERED, stateHierarchy.getEventHandlerId(State.ID_PLAYER_MACHINE_PLAYING, EVENT_SEEK));
+        assertEquals(State.ID_PLAYER_MACHINE_ACTIVE, stateHierarchy.getEventHandlerId(State.ID_PLAYER_MACHINE_PAUSED, EVENT_EJECT));
+        assertEquals(State.ID_PLAYER_MACHINE_PLAYING, stateHierarchy.getEventHandlerId(State.ID_PLAYER_MACHINE_PLAYING, EVENT_PAUSE));
+        assertEquals(State.ID_PLAYER_MACHINE_POWERED, stateHierarchy.getEventHandlerId(State.ID_PLAYER_MACHINE_STOPPED, EVENT_POWER_OFF));
+        assertEquals(StateHierarchy.UNKNOWN_ID, stateHierarchy.getEventHandlerId(State.ID_PLAYER_MACHINE_OFF, EVENT_PLAY));
+        assertEquals(StateHierarchy.UNKNOWN_ID, stateHierarchy.getEventHandlerId(StateHierarchy.ROOT_ID, EVENT_PLAY));
+    }
+
+    @Test
+    public void eventIsDispatchedToHandlingSuperState() {
+        player.play();
+
+        assertSame(player.getState(State.ID_PLAYER_MACHINE_POWERED), player.getEventHandler(EVENT_SEEK));
+        assertSame(player.getState(State.ID_PLAYER_MACHINE_ACTIVE), player.getEventHandler(EVENT_EJECT));
+
+        machine.getLog().clear();
+        player.seek(42);
+        player.eject();
+
+        assertEquals(Arrays.asList("seek 42 in Powered", "exit Playing", "exit Active", "enter Stopped"), machine.getLog());
+        assertSame(PlayerMachine.Stopped.class, machine.getCurrentState().getClass());
+    }
+
+    @Test
+    public void unhandledEventIsReported() {
+        player.powerOff();
+
+        assertNull(player.getEventHandler(EVENT_PLAY));
+
+        machine.getLog().clear();
+        player.play();
+
+        assertEquals(Arrays.asList("error " + StateEngine.Error.ERROR_UNHANDLED_EVENT.name()), machine.getLog());
+        assertSame(PlayerMachine.Off.class, machine.getCurrentState().getClass());
+    }
+
+    @Test
+    public void processorGeneratesHandlerTableOfDoorMachine() {
+        final DoorMachine doorMachine = new DoorMachine();
+        doorMachine.setEventQueueEnabled(true);
+        doorMachine.start();
+
+        final StateHierarchy doorHierarchy = doorMachine.getDoor().stateHierarchy;
+        final int closed = doorHierarchy.getStateId(DoorMachine.Closed.class);
+        final int locked = doorHierarchy.getStateId(DoorMachine.Locked.class);
+        final int opened = doorHierarchy.getStateId(DoorMachine.Opened.class);
+        final int unlocked = doorHierarchy.getStateId(DoorMachine.Unlocked.class);
+
+        assertEquals(locked, doorHierarchy.getEventHandlerId(locked, DoorMachine.EVENT_OPEN));
+        assertEquals(closed, doorHierarchy.getEventHandlerId(locked, DoorMachine.EVENT_PING));
+        assertEquals(opened, doorHierarchy.getEventHandlerId(opened, DoorMachine.EVENT_CLOSE));
+        assertEquals(StateHierarchy.UNKNOWN_ID, doorHierarchy.getEventHandlerId(unlocked, DoorMachine.EVENT_CLOSE));
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorEvents;
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.door.State;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link EventJournalTest} tests journaling the events of a {@link DoorMachine} to
+ * an {@link EventJournal} and replaying them. The event ids and the fingerprint of
+ * the {@link StateHierarchy} come from the {@link State} generated for {@link DoorMachine}. A journaled {@link DoorEvents#ping(int)} event is
+ * a record of 12 bytes: the length of the payload, a payload of 7 bytes, and a checksum of 4 bytes.
+ * Each segment starts with a header of 8 bytes.
+ */
+public class EventJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int SNAPSHOT_INTERVAL = 1000;
+    private static final int HEADER_SIZE = 8;
+    private static final int PING_RECORD_SIZE = 12;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("journal");
+    }
+
+    @Test
+    public void replayRestoresConfiguration() throws IOException {
+        final DoorMachine machine = startMachine(openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL));
+        final State door = machine.getDoor();
+        door.ping(3);
+        door.lock();
+        door.unlock();
+        door.ping(4);
+        door.lock();
+
+        final byte[] snapshot = machine.saveSnapshot();
+        machine.getStateEngine().getJournal().close();
+
+        final DoorMachine replayed = replayMachine(openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL));
+
+        assertEquals(DoorMachine.Locked.class, replayed.getCurrentState().getClass());
+        assertEquals(7, replayed.getPingCount());
+        assertArrayEquals(snapshot, replayed.saveSnapshot());
+    }
+
+    @Test
+    public void rollsOverToNextSegment() throws IOException {
+        final int segmentSize = 64;
+        final int recordsPerSegment = (segmentSize - HEADER_SIZE) / PING_RECORD_SIZE;
+        final int eventCount = 5 * recordsPerSegment;
+        final DoorMachine machine = startMachine(openJournal(segmentSize, SNAPSHOT_INTERVAL));
+        final List<Integer> eventIds = new ArrayList<>();
+
+        machine.addTracer(new StateEngineTracer() {
+            @Override
+            public void onTransition(final StateEngine<?> stateEngine, final StateEngine<?> source, final StateEngine<?> target, final long dwellNanos) {
+                // Not needed
+            }
+
+            @Override
+            public void onEventHandled(final StateEngine<?> stateEngine, final int eventId, final long nanos) {
+                eventIds.add(eventId);
+            }
+        });
+
+        for (int i = 1; i <= eventCount; i++) {
+            machine.getDoor().ping(i);
+        }
+        machine.getStateEngine().getJournal().close();
+
+        assertEquals(5, countSegmentFiles());
+
+        final EventJournal journal = openJournal(segmentSize, SNAPSHOT_INTERVAL);
+        final EventJournal.Reader reader = journal.read();
+
+        // The events are journaled by the ids dispatched by the generated event methods
+
+        for (int i = 1; i <= eventCount; i++) {
+            assertTrue(reader.next());
+            assertEquals(DoorMachine.EVENT_PING, reader.getEventId());
+            assertEquals(eventIds.get(i - 1).intValue(), reader.getEventId());
+            assertArrayEquals(new Object[]{i}, reader.getArgs());
+        }
+        assertFalse(reader.next());
+
+        final DoorMachine replayed = replayMachine(journal);
+        assertEquals(eventCount * (eventCount + 1) / 2, replayed.getPingCount());
+    }
+
+    @Test
+    public void stopsAtTornRecordAndAppendsAfterLastValidRecord() throws IOException {
+        final DoorMachine machine = startMachine(openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL));
+
+        for (int i = 1; i <= 5; i++) {
+            machine.getDoor().ping(i);
+        }
+        machine.getStateEngine().getJournal().close();
+
+        // The checksum of the last record is damaged as if the record had been partially written
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "0000000000.journal"), "rw")) {
+            final long position = HEADER_SIZE + 5 * PING_RECORD_SIZE - 1;
+            file.seek(position);
+            final int lastByte = file.read();
+            file.seek(position);
+            file.write(lastByte ^ 0xFF);
+        }
+
+        final DoorMachine replayed = replayMachine(openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL));
+        assertEquals(1 + 2 + 3 + 4, replayed.getPingCount());
+
+        replayed.getDoor().ping(100);
+        replayed.getStateEngine().getJournal().close();
+
+        final List<Object> args = readArgs(openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL));
+        assertEquals("[1, 2, 3, 4, 100]", args.toString());
+    }
+
+    @Test
+    public void replaysOnlyEventsAfterSnapshot() throws IOException {
+        final DoorMachine machine = startMachine(openJournal(SEGMENT_SIZE, 4));
+
+        for (int i = 1; i <= 10; i++) {
+            machine.getDoor().ping(i);
+        }
+        machine.getStateEngine().getJournal().close();
+
+        final EventJournal journal = openJournal(SEGMENT_SIZE, 4);
+        final EventJournal.Reader reader = journal.readFromSnapshot();
+        int count = 0;
+
+        while (reader.next()) {
+            count++;
+        }
+        assertEquals(2, count);
+        assertEquals(DoorMachine.Unlocked.class, replayMachine(journal).getCurrentState().getClass());
+    }
+
+    @Test
+    public void replayReportsFailedEventAndContinues() throws IOException {
+        final DoorMachine machine = startMachine(openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL));
+        machine.getDoor().ping(2);
+
+        try {
+            machine.getDoor().ping(-1);
+            fail("Expected the handler to throw");
+        } catch (IllegalArgumentException e) {
+            // The failed event has been journaled
+        }
+
+        machine.getDoor().ping(3);
+        machine.getStateEngine().getJournal().close();
+
+        final List<StateEngine.Error> errors = new ArrayList<>();
+        final DoorMachine replayed = new DoorMachine() {
+            @SuppressWarnings("rawtypes")
+            @Override
+            public void onError(final StateEngine stateEngine, final StateEngine.Error error, final String message) {
+                errors.add(error);
+            }
+        };
+        replayed.setEventQueueEnabled(true);
+        replayed.replay(openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL));
+
+        assertEquals(5, replayed.getPingCount());
+        assertEquals(1, errors.size());
+        assertEquals(StateEngine.Error.ERROR_REPLAYED_EVENT_FAILED, errors.get(0));
+    }
+
+    @Test
+    public void rejectsJournalOfDifferentStateHierarchy() throws IOException {
+        final DoorMachine machine = startMachine(openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL));
+        machine.getDoor().ping(1);
+        machine.getStateEngine().getJournal().close();
+
+        final EventJournal journal = openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL);
+
+        try {
+            journal.bind(machine.getDoor().stateHierarchy.getFingerprint() + 1);
+            fail("Expected the journal to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("EventJournal does not match the StateHierarchy", e.getMessage());
+        }
+
+        journal.bind(machine.getDoor().stateHierarchy.getFingerprint());
+    }
+
+    @Test
+    public void closedJournalCannotBeUsed() throws IOException {
+        final EventJournal journal = openJournal(SEGMENT_SIZE, SNAPSHOT_INTERVAL);
+        journal.close();
+        journal.close();
+
+        try {
+            journal.read();
+            fail("Expected the closed journal to be rejected");
+        } catch (IllegalStateException e) {
+            assertEquals("EventJournal has been closed", e.getMessage());
+        }
+    }
+
+    private EventJournal openJournal(final int segmentSize, final int snapshotInterval) throws IOException {
+        return new EventJournal(directory, segmentSize, snapshotInterval);
+    }
+
+    private static DoorMachine startMachine(final EventJournal journal) {
+        final DoorMachine machine = new DoorMachine();
+        machine.setEventQueueEnabled(true);
+        machine.setJournal(journal);
+        machine.start();
+        return machine;
+    }
+
+    private static DoorMachine replayMachine(final EventJournal journal) {
+        final DoorMachine machine = new DoorMachine();
+        machine.setEventQueueEnabled(true);
+        machine.replay(journal);
+        return machine;
+    }
+
+    private static List<Object> readArgs(final EventJournal journal) throws IOException {
+        final List<Object> args = new ArrayList<>();
+        final EventJournal.Reader reader = journal.read();
+
+        while (reader.next()) {
+            args.add(reader.getArgs()[0]);
+        }
+        return args;
+    }
+
+    private int countSegmentFiles() {
+        int count = 0;
+
+        for (final String name : directory.list()) {
+            if (name.endsWith(".journal")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.player.PlayerMachine;
+import com.robopupu.api.fsm.player.State;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link FlyweightStateTest} tests sharing the state objects of the generated {@link State} by
+ * the instances of {@link PlayerMachine} in the flyweight mode, while each instance keeps its own
+ * history states and context references.
+ */
+public class FlyweightStateTest {
+
+    @Test
+    public void statesAreSharedByMachines() {
+        final StateEngine<?> stateEngine = startMachine(true).getPlayer();
+        final StateEngine<?> otherStateEngine = startMachine(true).getPlayer();
+        final StateEngine<?> ownStateEngine = startMachine(false).getPlayer();
+
+        for (int id = StateHierarchy.ROOT_ID + 1; id < stateEngine.stateHierarchy.getStateCount(); id++) {
+            final StateEngine<?> state = stateEngine.getState(id);
+
+            assertSame(state, otherStateEngine.getState(id));
+            assertSame(state, stateEngine.stateHierarchy.getSharedState(id));
+            assertNotSame(state, ownStateEngine.getState(id));
+        }
+        assertTrue(stateEngine.isFlyweightEnabled());
+        assertFalse(ownStateEngine.isFlyweightEnabled());
+    }
+
+    @Test
+    public void historyStatesAreIsolated() {
+        final PlayerMachine machine = startMachine(true);
+        final PlayerMachine otherMachine = startMachine(true);
+
+        machine.getPlayer().play();
+        machine.getPlayer().pause();
+        machine.getPlayer().powerOff();
+        otherMachine.getPlayer().powerOff();
+
+        machine.getPlayer().powerOn();
+        otherMachine.getPlayer().powerOn();
+
+        assertSame(PlayerMachine.Paused.class, machine.getCurrentState().getClass());
+        assertSame(PlayerMachine.Stopped.class, otherMachine.getCurrentState().getClass());
+
+        otherMachine.getPlayer().play();
+        otherMachine.getPlayer().powerOff();
+        machine.getPlayer().powerOff();
+        otherMachine.getPlayer().powerOn();
+        machine.getPlayer().powerOn();
+
+        assertSame(PlayerMachine.Paused.class, machine.getCurrentState().getClass());
+        assertSame(PlayerMachine.Playing.class, otherMachine.getCurrentState().getClass());
+    }
+
+    @Test
+    public void flyweightMachineBehavesLikeMachineWithOwnStates() {
+        final PlayerMachine machine = startMachine(true);
+        final PlayerMachine ownMachine = startMachine(false);
+
+        for (final PlayerMachine playerMachine : Arrays.asList(machine, ownMachine)) {
+            final State player = playerMachine.getPlayer();
+            player.play();
+            player.seek(7);
+            player.pause();
+            player.powerOff();
+            player.powerOn();
+            player.play();
+            player.eject();
+        }
+
+        assertEquals(ownMachine.getLog(), machine.getLog());
+        assertArrayEquals(ownMachine.saveSnapshot(), machine.saveSnapshot());
+    }
+
+    @Test
+    public void contextReferencesAreNotShared() {
+        final PlayerMachine machine = startMachine(true);
+        final PlayerMachine otherMachine = startMachine(true);
+
+        machine.getLog().clear();
+        otherMachine.getLog().clear();
+        machine.getPlayer().play();
+
+        assertEquals(Arrays.asList("exit Stopped", "enter Playing"), machine.getLog());
+        assertTrue(otherMachine.getLog().isEmpty());
+    }
+
+    @Test
+    public void modeCannotBeChangedForStartedMachine() {
+        final PlayerMachine machine = startMachine(false);
+
+        try {
+            machine.getPlayer().setFlyweightEnabled(true);
+            fail("Expected the flyweight mode to be rejected");
+        } catch (IllegalStateException e) {
+            assertEquals("Flyweight mode cannot be changed for a started StateEngine", e.getMessage());
+        }
+    }
+
+    private static PlayerMachine startMachine(final boolean flyweight) {
+        final PlayerMachine machine = new PlayerMachine();
+        machine.setFlyweightEnabled(flyweight);
+        machine.start();
+        return machine;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.player.PlayerMachine;
+import com.robopupu.api.fsm.player.State;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link StateCreationTest} tests creating the states by their ids using the factory method
+ * generated by the annotation processor, and caching them by their ids.
+ */
+public class StateCreationTest {
+
+    private PlayerMachine machine;
+    private StateEngine<?> stateEngine;
+    private StateHierarchy stateHierarchy;
+
+    @Before
+    public void setUp() {
+        machine = new PlayerMachine();
+        machine.start();
+        stateEngine = machine.getPlayer();
+        stateHierarchy = stateEngine.stateHierarchy;
+    }
+
+    @Test
+    public void generatedIdsMatchStateHierarchy() {
+        assertEquals(State.ID_PLAYER_MACHINE_ACTIVE, stateHierarchy.getStateId(PlayerMachine.Active.class));
+        assertEquals(State.ID_PLAYER_MACHINE_OFF, stateHierarchy.getStateId(PlayerMachine.Off.class));
+        assertEquals(State.ID_PLAYER_MACHINE_PAUSED, stateHierarchy.getStateId(PlayerMachine.Paused.class));
+        assertEquals(State.ID_PLAYER_MACHINE_PLAYING, stateHierarchy.getStateId(PlayerMachine.Playing.class));
+        assertEquals(State.ID_PLAYER_MACHINE_POWERED, stateHierarchy.getStateId(PlayerMachine.Powered.class));
+        assertEquals(State.ID_PLAYER_MACHINE_STOPPED, stateHierarchy.getStateId(PlayerMachine.Stopped.class));
+    }
+
+    @Test
+    public void generatedFactoryCreatesEachState() {
+        for (int id = StateHierarchy.ROOT_ID + 1; id < stateHierarchy.getStateCount(); id++) {
+            final StateEngine<?> state = stateEngine.createState(id);
+
+            assertSame(stateHierarchy.getStateClass(id), state.getClass());
+            assertNotSame(state, stateEngine.createState(id));
+        }
+
+        assertNull(stateEngine.createState(StateHierarchy.ROOT_ID));
+        assertNull(stateEngine.createState(stateHierarchy.getStateCount()));
+    }
+
+    @Test
+    public void statesAreCachedByIds() {
+        for (int id = StateHierarchy.ROOT_ID + 1; id < stateHierarchy.getStateCount(); id++) {
+            final StateEngine<?> state = stateEngine.getState(id);
+
+            assertSame(state, stateEngine.getState(id));
+            assertEquals(id, state.stateId);
+            assertSame(stateEngine, state.getStateEngine());
+        }
+
+        assertSame(stateEngine, stateEngine.getState(StateHierarchy.ROOT_ID));
+        assertSame(machine.getCurrentState(), stateEngine.getState(State.ID_PLAYER_MACHINE_STOPPED));
+    }
+
+    @Test
+    public void statesAreLookedUpByClassesFromCacheByIds() {
+        final State player = machine.getPlayer();
+
+        assertSame(player.getState(State.ID_PLAYER_MACHINE_PAUSED), player.getState(PlayerMachine.Paused.class));
+        assertSame(player.getState(State.ID_PLAYER_MACHINE_ACTIVE), player.getState(PlayerMachine.Paused.class).getSuperState());
+    }
+
+    @Test
+    public void statesAreNotSharedByMachines() {
+        final PlayerMachine otherMachine = new PlayerMachine();
+        otherMachine.start();
+
+        final StateEngine<?> otherStateEngine = otherMachine.getPlayer();
+
+        assertNotSame(stateEngine.getState(State.ID_PLAYER_MACHINE_STOPPED), otherStateEngine.getState(State.ID_PLAYER_MACHINE_STOPPED));
+        assertSame(stateHierarchy, otherStateEngine.stateHierarchy);
+    }
+}
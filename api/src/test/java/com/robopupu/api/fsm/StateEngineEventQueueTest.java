@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.door.State;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link StateEngineEventQueueTest} tests the run-to-completion mode of {@link StateEngine}, in
+ * which the events posted by any thread are queued and dispatched one at a time. The events are
+ * posted through the event methods of the {@link State} generated for {@link DoorMachine}.
+ */
+public class StateEngineEventQueueTest {
+
+    private static final int THREAD_COUNT = 4;
+    private static final int EVENTS_PER_THREAD = 25000;
+
+    private DoorMachine machine;
+
+    @Before
+    public void setUp() {
+        machine = new DoorMachine();
+        machine.setEventQueueEnabled(true);
+        machine.start();
+    }
+
+    @Test
+    public void dispatchesEventsPostedConcurrentlyOneAtATime() throws InterruptedException {
+        final State door = machine.getDoor();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final Thread[] threads = new Thread[THREAD_COUNT];
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    for (int j = 0; j < EVENTS_PER_THREAD; j++) {
+                        door.ping(1);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        startLatch.countDown();
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // The ping count is not updated atomically, so a concurrent dispatch would lose updates
+
+        assertEquals(THREAD_COUNT * EVENTS_PER_THREAD, machine.getPingCount());
+        assertEquals(DoorMachine.Unlocked.class, machine.getCurrentState().getClass());
+    }
+
+    @Test
+    public void dispatchesEventPostedByHandlerAfterCurrentEvent() {
+        final State door = machine.getDoor();
+        final int[] pingCounts = new int[1];
+
+        machine.addTracer(new StateEngineTracer() {
+            @Override
+            public void onTransition(final StateEngine<?> stateEngine, final StateEngine<?> source, final StateEngine<?> target, final long dwellNanos) {
+                if (target instanceof DoorMachine.Opened) {
+                    door.ping(5);
+                    pingCounts[0] = machine.getPingCount();
+                }
+            }
+
+            @Override
+            public void onEventHandled(final StateEngine<?> stateEngine, final int eventId, final long nanos) {
+                // Not needed
+            }
+        });
+
+        door.open();
+
+        assertEquals(0, pingCounts[0]);
+        assertEquals(5, machine.getPingCount());
+        assertEquals(DoorMachine.Opened.class, machine.getCurrentState().getClass());
+    }
+
+    @Test
+    public void continuesDispatchingAfterFailedEvent() {
+        final State door = machine.getDoor();
+
+        try {
+            door.ping(-1);
+            fail("Expected the handler to throw");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("-1"));
+        }
+
+        door.ping(2);
+        door.lock();
+
+        assertEquals(2, machine.getPingCount());
+        assertEquals(DoorMachine.Locked.class, machine.getCurrentState().getClass());
+    }
+}
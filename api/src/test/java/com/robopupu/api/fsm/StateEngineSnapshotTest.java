@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.door.State;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link StateEngineSnapshotTest} tests saving and restoring the configuration of
+ * a {@link StateEngine} as a binary snapshot using the {@link State} generated for
+ * {@link DoorMachine}.
+ */
+public class StateEngineSnapshotTest {
+
+    @Test
+    public void restoresSavedConfiguration() {
+        final DoorMachine machine = startMachine(false);
+        machine.getDoor().lock();
+
+        final byte[] snapshot = machine.saveSnapshot();
+        final DoorMachine restored = createMachine(false);
+        restored.restore(snapshot);
+
+        assertEquals(DoorMachine.Locked.class, restored.getCurrentState().getClass());
+        assertArrayEquals(snapshot, restored.saveSnapshot());
+
+        restored.getDoor().unlock();
+        assertEquals(DoorMachine.Unlocked.class, restored.getCurrentState().getClass());
+    }
+
+    @Test
+    public void snapshotRecordsGeneratedStateIds() {
+        final DoorMachine machine = startMachine(false);
+        machine.getDoor().lock();
+
+        final StateHierarchy stateHierarchy = machine.getDoor().stateHierarchy;
+        final ByteBuffer snapshot = ByteBuffer.wrap(machine.saveSnapshot());
+
+        assertEquals(stateHierarchy.getFingerprint(), snapshot.getInt());
+        assertEquals(stateHierarchy.getStateCount(), snapshot.get());
+        assertEquals(2, snapshot.get());
+        assertEquals(State.ID_DOOR_MACHINE_CLOSED, snapshot.get());
+        assertEquals(State.ID_DOOR_MACHINE_LOCKED, snapshot.get());
+    }
+
+    @Test
+    public void restoresSnapshotAcrossFlyweightMode() {
+        final DoorMachine machine = startMachine(false);
+        machine.getDoor().open();
+
+        final byte[] snapshot = machine.saveSnapshot();
+        final DoorMachine restored = createMachine(true);
+        restored.restore(snapshot);
+
+        assertEquals(DoorMachine.Opened.class, restored.getCurrentState().getClass());
+        assertArrayEquals(snapshot, restored.saveSnapshot());
+
+        restored.getDoor().close();
+        machine.getDoor().close();
+        assertArrayEquals(machine.saveSnapshot(), restored.saveSnapshot());
+    }
+
+    @Test
+    public void rejectsSnapshotOfDifferentStateHierarchy() {
+        final byte[] snapshot = startMachine(false).saveSnapshot();
+        snapshot[0] ^= 1;
+
+        assertRejected(snapshot, "Snapshot does not match the StateHierarchy");
+    }
+
+    @Test
+    public void rejectsMalformedSnapshot() {
+        final byte[] snapshot = startMachine(false).saveSnapshot();
+
+        assertRejected(Arrays.copyOf(snapshot, snapshot.length - 1), "Malformed snapshot");
+        assertRejected(Arrays.copyOf(snapshot, snapshot.length + 1), "Malformed snapshot");
+    }
+
+    @Test
+    public void rejectedSnapshotDoesNotChangeConfiguration() {
+        final DoorMachine machine = startMachine(false);
+        machine.getDoor().lock();
+
+        final byte[] snapshot = machine.saveSnapshot();
+        snapshot[0] ^= 1;
+
+        try {
+            machine.getStateEngine().restoreSnapshot(snapshot);
+            fail("Expected the snapshot to be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertEquals(DoorMachine.Locked.class, machine.getCurrentState().getClass());
+    }
+
+    private static DoorMachine createMachine(final boolean flyweight) {
+        final DoorMachine machine = new DoorMachine();
+        machine.setEventQueueEnabled(true);
+        machine.setFlyweightEnabled(flyweight);
+        return machine;
+    }
+
+    private static DoorMachine startMachine(final boolean flyweight) {
+        final DoorMachine machine = createMachine(flyweight);
+        machine.start();
+        return machine;
+    }
+
+    private static void assertRejected(final byte[] snapshot, final String message) {
+        try {
+            createMachine(false).restore(snapshot);
+            fail("Expected the snapshot to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.door.State;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link StateEngineTimeoutTest} tests the {@link Timeout}s of the states of a {@link StateEngine}
+ * using the {@link DoorMachine.Opened} state that closes itself. The delay and the event of
+ * the {@link Timeout} are read from the {@link State} generated for {@link DoorMachine}.
+ */
+public class StateEngineTimeoutTest {
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    private TimingWheel timingWheel;
+
+    @Before
+    public void setUp() {
+        timingWheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 64);
+    }
+
+    @After
+    public void tearDown() {
+        timingWheel.stop();
+    }
+
+    @Test
+    public void processorGeneratesTimeoutInMilliseconds() {
+        final DoorMachine machine = new DoorMachine();
+        machine.setEventQueueEnabled(true);
+        machine.start();
+
+        final StateHierarchy stateHierarchy = machine.getDoor().stateHierarchy;
+
+        assertTrue(stateHierarchy.hasTimeouts());
+        assertEquals(DoorMachine.OPENED_TIMEOUT, stateHierarchy.getTimeoutDelay(State.ID_DOOR_MACHINE_OPENED));
+        assertEquals(DoorMachine.EVENT_CLOSE, stateHierarchy.getTimeoutEventId(State.ID_DOOR_MACHINE_OPENED));
+        assertEquals(0, stateHierarchy.getTimeoutDelay(State.ID_DOOR_MACHINE_CLOSED));
+        assertEquals(StateHierarchy.UNKNOWN_ID, stateHierarchy.getTimeoutEventId(State.ID_DOOR_MACHINE_CLOSED));
+    }
+
+    @Test
+    public void timeoutFiresEventInRunToCompletionMode() throws InterruptedException {
+        final DoorMachine machine = new DoorMachine();
+        machine.setEventQueueEnabled(true);
+        machine.start();
+        machine.getDoor().setTimingWheel(timingWheel);
+        machine.getDoor().open();
+
+        awaitState(machine, DoorMachine.Unlocked.class);
+    }
+
+    @Test
+    public void timeoutFiresEventUsingTimeoutExecutor() throws InterruptedException {
+        final AtomicInteger executedCount = new AtomicInteger();
+        final DoorMachine machine = new DoorMachine();
+
+        machine.setTimeoutExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                executedCount.incrementAndGet();
+                runnable.run();
+            }
+        });
+        machine.start();
+        machine.getDoor().setTimingWheel(timingWheel);
+        machine.getDoor().open();
+
+        awaitState(machine, DoorMachine.Unlocked.class);
+        assertEquals(1, executedCount.get());
+    }
+
+    @Test
+    public void exitedStateDoesNotTimeOut() throws InterruptedException {
+        final AtomicInteger executedCount = new AtomicInteger();
+        final DoorMachine machine = new DoorMachine();
+        machine.setEventQueueEnabled(true);
+
+        machine.setTimeoutExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                executedCount.incrementAndGet();
+            }
+        });
+        machine.start();
+
+        final State door = machine.getDoor();
+        door.setTimingWheel(timingWheel);
+        door.open();
+        door.close();
+        door.lock();
+
+        Thread.sleep(3 * DoorMachine.OPENED_TIMEOUT);
+        assertEquals(0, executedCount.get());
+        assertEquals(DoorMachine.Locked.class, machine.getCurrentState().getClass());
+    }
+
+    @Test
+    public void timeoutsRequireEventQueueOrTimeoutExecutor() {
+        final DoorMachine machine = new DoorMachine();
+
+        try {
+            machine.start();
+            fail("Expected the start to be rejected");
+        } catch (IllegalStateException e) {
+            assertEquals("Timeouts require the run-to-completion mode or a timeout Executor", e.getMessage());
+        }
+    }
+
+    private static void awaitState(final DoorMachine machine, final Class<?> stateClass) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+
+        while (machine.getCurrentState().getClass() != stateClass) {
+            assertTrue("Timed out waiting for " + stateClass.getSimpleName(), System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
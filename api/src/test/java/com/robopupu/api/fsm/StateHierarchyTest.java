@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.player.PlayerMachine;
+import com.robopupu.api.fsm.player.State;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link StateHierarchyTest} tests the {@link StateHierarchy} generated by the annotation processor
+ * for {@link PlayerMachine} from the {@link SuperState} annotations, and exiting the states up to
+ * the precomputed least common ancestors.
+ */
+public class StateHierarchyTest {
+
+    private static final List<Integer> NO_STATES = Collections.emptyList();
+
+    private PlayerMachine machine;
+    private StateHierarchy stateHierarchy;
+
+    @Before
+    public void setUp() {
+        machine = new PlayerMachine();
+        machine.start();
+        stateHierarchy = machine.getPlayer().stateHierarchy;
+    }
+
+    @Test
+    public void processorGeneratesSuperStatesAndDepths() {
+        assertEquals(7, stateHierarchy.getStateCount());
+        assertSame(State.class, stateHierarchy.getStateClass(StateHierarchy.ROOT_ID));
+        assertEquals(State.ID_PLAYER_MACHINE_PLAYING, id(PlayerMachine.Playing.class));
+        assertEquals(StateHierarchy.UNKNOWN_ID, stateHierarchy.getStateId(DoorMachine.Closed.class));
+
+        assertEquals(StateHierarchy.UNKNOWN_ID, stateHierarchy.getSuperStateId(StateHierarchy.ROOT_ID));
+        assertEquals(StateHierarchy.ROOT_ID, superStateId(PlayerMachine.Off.class));
+        assertEquals(StateHierarchy.ROOT_ID, superStateId(PlayerMachine.Powered.class));
+        assertEquals(id(PlayerMachine.Powered.class), superStateId(PlayerMachine.Stopped.class));
+        assertEquals(id(PlayerMachine.Powered.class), superStateId(PlayerMachine.Active.class));
+        assertEquals(id(PlayerMachine.Active.class), superStateId(PlayerMachine.Playing.class));
+        assertEquals(id(PlayerMachine.Active.class), superStateId(PlayerMachine.Paused.class));
+
+        assertEquals(0, stateHierarchy.getDepth(StateHierarchy.ROOT_ID));
+        assertEquals(1, stateHierarchy.getDepth(id(PlayerMachine.Off.class)));
+        assertEquals(2, stateHierarchy.getDepth(id(PlayerMachine.Stopped.class)));
+        assertEquals(3, stateHierarchy.getDepth(id(PlayerMachine.Paused.class)));
+    }
+
+    @Test
+    public void leastCommonAncestorsArePrecomputed() {
+        final int powered = id(PlayerMachine.Powered.class);
+        final int active = id(PlayerMachine.Active.class);
+
+        assertEquals(powered, leastCommonAncestorId(PlayerMachine.Playing.class, PlayerMachine.Stopped.class));
+        assertEquals(powered, leastCommonAncestorId(PlayerMachine.Stopped.class, PlayerMachine.Paused.class));
+        assertEquals(StateHierarchy.ROOT_ID, leastCommonAncestorId(PlayerMachine.Playing.class, PlayerMachine.Off.class));
+        assertEquals(active, leastCommonAncestorId(PlayerMachine.Paused.class, PlayerMachine.Playing.class));
+        assertEquals(active, leastCommonAncestorId(PlayerMachine.Playing.class, PlayerMachine.Active.class));
+        assertEquals(powered, leastCommonAncestorId(PlayerMachine.Powered.class, PlayerMachine.Playing.class));
+        assertEquals(StateHierarchy.ROOT_ID, stateHierarchy.getLeastCommonAncestorId(StateHierarchy.ROOT_ID, powered));
+    }
+
+    @Test
+    public void exitPathEndsBelowLeastCommonAncestor() {
+        final int powered = id(PlayerMachine.Powered.class);
+        final int active = id(PlayerMachine.Active.class);
+        final int playing = id(PlayerMachine.Playing.class);
+
+        assertEquals(Arrays.asList(playing, active), exitPath(PlayerMachine.Playing.class, PlayerMachine.Stopped.class));
+        assertEquals(Arrays.asList(playing, active, powered), exitPath(PlayerMachine.Playing.class, PlayerMachine.Off.class));
+        assertEquals(Arrays.asList(id(PlayerMachine.Paused.class)), exitPath(PlayerMachine.Paused.class, PlayerMachine.Playing.class));
+        assertEquals(Arrays.asList(playing), exitPath(PlayerMachine.Playing.class, PlayerMachine.Active.class));
+        assertEquals(NO_STATES, exitPath(PlayerMachine.Powered.class, PlayerMachine.Playing.class));
+    }
+
+    @Test
+    public void superStatesAreTestedByDepth() {
+        assertTrue(stateHierarchy.isSuperState(id(PlayerMachine.Powered.class), id(PlayerMachine.Playing.class)));
+        assertTrue(stateHierarchy.isSuperState(StateHierarchy.ROOT_ID, id(PlayerMachine.Off.class)));
+        assertFalse(stateHierarchy.isSuperState(id(PlayerMachine.Active.class), id(PlayerMachine.Stopped.class)));
+        assertFalse(stateHierarchy.isSuperState(id(PlayerMachine.Playing.class), id(PlayerMachine.Playing.class)));
+        assertFalse(stateHierarchy.isSuperState(id(PlayerMachine.Playing.class), id(PlayerMachine.Active.class)));
+    }
+
+    @Test
+    public void transitionsExitStatesUpToLeastCommonAncestor() {
+        assertEquals(Arrays.asList("enter Powered", "enter Stopped"), machine.getLog());
+
+        // Only the target state is entered, but all the states up to the least common ancestor are exited
+
+        machine.getLog().clear();
+        machine.getPlayer().play();
+        assertEquals(Arrays.asList("exit Stopped", "enter Playing"), machine.getLog());
+
+        machine.getLog().clear();
+        machine.getPlayer().pause();
+        assertEquals(Arrays.asList("exit Playing", "enter Paused"), machine.getLog());
+
+        machine.getLog().clear();
+        machine.getPlayer().powerOff();
+        assertEquals(Arrays.asList("exit Paused", "exit Active", "exit Powered", "enter Off"), machine.getLog());
+        assertSame(PlayerMachine.Off.class, machine.getCurrentState().getClass());
+    }
+
+    @Test
+    public void processorGeneratesHierarchyOfDoorMachine() {
+        final DoorMachine doorMachine = new DoorMachine();
+        doorMachine.setEventQueueEnabled(true);
+        doorMachine.start();
+
+        final StateHierarchy doorHierarchy = doorMachine.getDoor().stateHierarchy;
+        final int closed = doorHierarchy.getStateId(DoorMachine.Closed.class);
+        final int locked = doorHierarchy.getStateId(DoorMachine.Locked.class);
+        final int opened = doorHierarchy.getStateId(DoorMachine.Opened.class);
+
+        assertEquals(closed, doorHierarchy.getSuperStateId(locked));
+        assertEquals(StateHierarchy.ROOT_ID, doorHierarchy.getSuperStateId(opened));
+        assertEquals(StateHierarchy.ROOT_ID, doorHierarchy.getLeastCommonAncestorId(locked, opened));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cyclicSuperStatesAreRejected() {
+        new StateHierarchy(new Class<?>[]{State.class, PlayerMachine.Active.class, PlayerMachine.Playing.class}, new int[]{StateHierarchy.UNKNOWN_ID, 2, 1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSuperStateIsRejected() {
+        new StateHierarchy(new Class<?>[]{State.class, PlayerMachine.Off.class}, new int[]{StateHierarchy.UNKNOWN_ID, 2});
+    }
+
+    private int id(final Class<?> stateClass) {
+        return stateHierarchy.getStateId(stateClass);
+    }
+
+    private int superStateId(final Class<?> stateClass) {
+        return stateHierarchy.getSuperStateId(id(stateClass));
+    }
+
+    private int leastCommonAncestorId(final Class<?> sourceClass, final Class<?> targetClass) {
+        return stateHierarchy.getLeastCommonAncestorId(id(sourceClass), id(targetClass));
+    }
+
+    private List<Integer> exitPath(final Class<?> sourceClass, final Class<?> targetClass) {
+        final int leastCommonAncestorId = leastCommonAncestorId(sourceClass, targetClass);
+        final List<Integer> exitPath = new ArrayList<>();
+
+        for (int id = id(sourceClass); id != leastCommonAncestorId; id = stateHierarchy.getSuperStateId(id)) {
+            exitPath.add(id);
+        }
+        return exitPath;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.door.State;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link StateMachineExecutorTest} tests dispatching the events of {@link DoorMachine}s using
+ * a {@link StateMachineExecutor}. The events are posted either by their ids or using
+ * the {@link State.Async} proxies generated for {@link DoorMachine}.
+ */
+public class StateMachineExecutorTest {
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    private StateMachineExecutor executor;
+    private TimingWheel timingWheel;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (timingWheel != null) {
+            timingWheel.stop();
+        }
+
+        if (executor != null) {
+            executor.stopAndWait();
+        }
+    }
+
+    @Test
+    public void dispatchesEventsPostedByConcurrentProducers() throws InterruptedException {
+        executor = new StateMachineExecutor(2, 16);
+
+        final int producerCount = 4;
+        final int eventsPerMachine = 1000;
+        final DoorMachine[] machines = startMachines(8);
+        final Thread[] producers = new Thread[producerCount];
+
+        for (int i = 0; i < producerCount; i++) {
+            producers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventsPerMachine; j++) {
+                        for (final DoorMachine machine : machines) {
+                            executor.post(machine, DoorMachine.EVENT_PING, new Object[]{1});
+                        }
+                    }
+                }
+            });
+            producers[i].start();
+        }
+
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+        executor.stopAndWait();
+
+        // The ping count is not updated atomically, so a concurrent dispatch would lose updates
+
+        for (final DoorMachine machine : machines) {
+            assertEquals(producerCount * eventsPerMachine, machine.getPingCount());
+        }
+    }
+
+    @Test
+    public void dispatchesEventsOfMachineInPostingOrder() throws InterruptedException {
+        executor = new StateMachineExecutor(2, 4);
+
+        final DoorMachine[] machines = startMachines(16);
+        final StateMachineExecutor.Batch batch = executor.newBatch();
+
+        // The timeouts of the opened doors do not expire during the test
+
+        timingWheel = new TimingWheel(1, TimeUnit.HOURS, 4);
+
+        // Opening a locked door is ignored, so only the posting order leaves the doors opened
+
+        for (final DoorMachine machine : machines) {
+            machine.getDoor().setTimingWheel(timingWheel);
+
+            final State.Async door = new State.Async(executor, machine);
+            final State.Async batchedDoor = new State.Async(batch, machine);
+            door.lock();
+            door.open();
+            door.unlock();
+            batchedDoor.ping(2);
+            batchedDoor.open();
+        }
+        batch.flush();
+        executor.stopAndWait();
+
+        for (final DoorMachine machine : machines) {
+            assertEquals(DoorMachine.Opened.class, machine.getCurrentState().getClass());
+            assertEquals(2, machine.getPingCount());
+        }
+    }
+
+    @Test
+    public void wakesUpParkedWorkerThread() throws InterruptedException {
+        executor = new StateMachineExecutor(1, StateMachineExecutor.DEFAULT_BATCH_SIZE);
+
+        final DoorMachine machine = startMachines(1)[0];
+
+        // Each task is offered after the worker thread has run out of tasks, so a lost wake-up
+        // leaves the task undispatched
+
+        for (int i = 0; i < 1000; i++) {
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            if (i % 100 == 0) {
+                Thread.sleep(2);
+            }
+
+            executor.execute(machine, new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            assertTrue("Task " + i + " was not dispatched", latch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void dispatchesTimeoutsByShard() throws InterruptedException {
+        executor = new StateMachineExecutor(2, StateMachineExecutor.DEFAULT_BATCH_SIZE);
+
+        final DoorMachine machine = new DoorMachine();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] threadNames = new String[1];
+
+        machine.addTracer(new StateEngineTracer() {
+            @Override
+            public void onTransition(final StateEngine<?> stateEngine, final StateEngine<?> source, final StateEngine<?> target, final long dwellNanos) {
+                if (source instanceof DoorMachine.Opened) {
+                    threadNames[0] = Thread.currentThread().getName();
+                    latch.countDown();
+                }
+            }
+
+            @Override
+            public void onEventHandled(final StateEngine<?> stateEngine, final int eventId, final long nanos) {
+                // Not needed
+            }
+        });
+
+        final State.Async door = new State.Async(executor, machine);
+        machine.start();
+        door.open();
+
+        assertTrue(latch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(StateMachineExecutor.class.getSimpleName() + "-" + executor.getShardIndex(machine), threadNames[0]);
+    }
+
+    @Test
+    public void stoppedExecutorRejectsEvents() throws InterruptedException {
+        executor = new StateMachineExecutor(1, StateMachineExecutor.DEFAULT_BATCH_SIZE);
+
+        final DoorMachine machine = startMachines(1)[0];
+        executor.stopAndWait();
+
+        try {
+            executor.post(machine, DoorMachine.EVENT_LOCK, null);
+            fail("Expected the event to be rejected");
+        } catch (IllegalStateException e) {
+            assertEquals("StateMachineExecutor has been stopped", e.getMessage());
+        }
+    }
+
+    private DoorMachine[] startMachines(final int count) {
+        final DoorMachine[] machines = new DoorMachine[count];
+
+        for (int i = 0; i < count; i++) {
+            machines[i] = new DoorMachine();
+            executor.attach(machines[i]);
+            machines[i].start();
+        }
+        return machines;
+    }
+}
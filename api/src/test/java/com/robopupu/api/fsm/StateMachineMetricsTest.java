@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import com.robopupu.api.fsm.door.DoorMachine;
+import com.robopupu.api.fsm.player.PlayerMachine;
+import com.robopupu.api.fsm.player.State;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link StateMachineMetricsTest} tests observing the transitions and the events of
+ * {@link StateEngine}s with {@link StateEngineTracer}s, and collecting the statistics with
+ * {@link StateMachineMetrics}.
+ */
+public class StateMachineMetricsTest {
+
+    // The events of PlayerEvents are assigned ids in the order of their signatures
+
+    private static final int EVENT_EJECT = 0;
+    private static final int EVENT_PAUSE = 1;
+    private static final int EVENT_PLAY = 2;
+
+    private StateMachineMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new StateMachineMetrics(1);
+    }
+
+    @Test
+    public void transitionsAreCountedPerSourceAndTarget() {
+        final PlayerMachine machine = new PlayerMachine();
+        machine.addTracer(metrics);
+        machine.start();
+
+        final State player = machine.getPlayer();
+        player.play();
+        player.pause();
+        player.play();
+        player.eject();
+
+        final StateMachineMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(6, snapshot.getTransitions().size());
+        assertEquals(1, snapshot.getTransitionCount(null, PlayerMachine.Powered.class));
+        assertEquals(1, snapshot.getTransitionCount(PlayerMachine.Powered.class, PlayerMachine.Stopped.class));
+        assertEquals(1, snapshot.getTransitionCount(PlayerMachine.Stopped.class, PlayerMachine.Playing.class));
+        assertEquals(1, snapshot.getTransitionCount(PlayerMachine.Playing.class, PlayerMachine.Paused.class));
+        assertEquals(1, snapshot.getTransitionCount(PlayerMachine.Paused.class, PlayerMachine.Playing.class));
+        assertEquals(1, snapshot.getTransitionCount(PlayerMachine.Playing.class, PlayerMachine.Stopped.class));
+
+        assertEquals(4, snapshot.getDwellTimes().size());
+        assertEquals(2, snapshot.getDwellTimes().get(PlayerMachine.Playing.class).getCount());
+        assertEquals(1, snapshot.getDwellTimes().get(PlayerMachine.Paused.class).getCount());
+
+        assertEquals(3, snapshot.getEventLatencies().size());
+        assertEquals(2, snapshot.getEventLatencies().get(EVENT_PLAY).getCount());
+        assertEquals(1, snapshot.getEventLatencies().get(EVENT_PAUSE).getCount());
+        assertEquals(1, snapshot.getEventLatencies().get(EVENT_EJECT).getCount());
+    }
+
+    @Test
+    public void metricsAreSharedByMachines() {
+        final PlayerMachine machine = startMachine(false);
+        final PlayerMachine flyweightMachine = startMachine(true);
+
+        machine.getPlayer().play();
+        flyweightMachine.getPlayer().play();
+
+        final StateMachineMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(2, snapshot.getTransitionCount(PlayerMachine.Stopped.class, PlayerMachine.Playing.class));
+        assertEquals(2, snapshot.getEventLatencies().get(EVENT_PLAY).getCount());
+    }
+
+    @Test
+    public void machineWithOtherStateHierarchyIsIgnored() {
+        startMachine(false).getPlayer().play();
+
+        final DoorMachine doorMachine = new DoorMachine();
+        doorMachine.setEventQueueEnabled(true);
+        doorMachine.addTracer(metrics);
+        doorMachine.start();
+        doorMachine.getDoor().open();
+
+        assertEquals(0, metrics.getSnapshot().getTransitionCount(DoorMachine.Unlocked.class, DoorMachine.Opened.class));
+
+        metrics.clear();
+        doorMachine.getDoor().close();
+
+        final StateMachineMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(1, snapshot.getTransitionCount(DoorMachine.Opened.class, DoorMachine.Closed.class));
+        assertEquals(1, snapshot.getTransitionCount(DoorMachine.Closed.class, DoorMachine.Unlocked.class));
+        assertEquals(0, snapshot.getTransitionCount(PlayerMachine.Stopped.class, PlayerMachine.Playing.class));
+    }
+
+    @Test
+    public void addedTracerReceivesCallbacks() {
+        final List<String> transitions = new ArrayList<>();
+        final List<Integer> eventIds = new ArrayList<>();
+        final StateEngineTracer tracer = new StateEngineTracer() {
+            @Override
+            public void onTransition(final StateEngine<?> stateEngine, final StateEngine<?> source, final StateEngine<?> target, final long dwellNanos) {
+                transitions.add(source.getClass().getSimpleName() + " -> " + target.getClass().getSimpleName());
+            }
+
+            @Override
+            public void onEventHandled(final StateEngine<?> stateEngine, final int eventId, final long nanos) {
+                eventIds.add(eventId);
+            }
+        };
+        final PlayerMachine machine = startMachine(false);
+        final State player = machine.getPlayer();
+
+        assertTrue(player.isTracingEnabled());
+        player.removeTracer(metrics);
+        assertFalse(player.isTracingEnabled());
+
+        player.addTracer(tracer);
+        player.play();
+        player.removeTracer(tracer);
+        player.pause();
+
+        assertFalse(player.isTracingEnabled());
+        assertEquals(Arrays.asList("Stopped -> Playing"), transitions);
+        assertEquals(Arrays.asList(EVENT_PLAY), eventIds);
+    }
+
+    @Test
+    public void observerReceivesCallbacksWhenTracingIsEnabled() {
+        final List<String> transitions = new ArrayList<>();
+        final PlayerMachine machine = new PlayerMachine() {
+            @Override
+            public void onTransition(final StateEngine<?> stateEngine, final StateEngine<?> source, final StateEngine<?> target, final long dwellNanos) {
+                transitions.add(target.getClass().getSimpleName());
+            }
+        };
+        machine.start();
+        machine.getPlayer().play();
+
+        assertTrue(transitions.isEmpty());
+
+        machine.setTracingEnabled(true);
+        machine.getPlayer().pause();
+
+        assertEquals(Arrays.asList("Paused"), transitions);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void concurrencyMustBePositive() {
+        new StateMachineMetrics(0);
+    }
+
+    private PlayerMachine startMachine(final boolean flyweight) {
+        final PlayerMachine machine = new PlayerMachine();
+        machine.setFlyweightEnabled(flyweight);
+        machine.addTracer(metrics);
+        machine.start();
+        return machine;
+    }
+}
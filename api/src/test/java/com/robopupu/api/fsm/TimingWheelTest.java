@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link TimingWheelTest} tests scheduling, expiring and cancelling {@link TimingWheel.Timer}s.
+ * The wheel has a tick of one millisecond and only four buckets, the requested size of three
+ * being rounded up to a power of two, so that the delays used span several rotations of
+ * the wheel and the timers share buckets.
+ */
+public class TimingWheelTest {
+
+    private static final long TICK_MILLIS = 1;
+    private static final int WHEEL_SIZE = 3;
+    private static final long AWAIT_MILLIS = 5000;
+
+    private TimingWheel timingWheel;
+
+    @Before
+    public void setUp() {
+        timingWheel = new TimingWheel(TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        timingWheel.stop();
+    }
+
+    @Test
+    public void expiresTimerAfterSeveralRotations() throws InterruptedException {
+        final TestTimer timer = new TestTimer(null);
+        final long startTime = System.nanoTime();
+        timingWheel.schedule(timer, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(timer.latch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(timer.isExpired());
+
+        // The timer expires on the tick its deadline falls on
+
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(timer.expiryTime - startTime);
+        assertTrue("Expired after " + elapsedMillis + " ms", elapsedMillis >= 30 - TICK_MILLIS);
+    }
+
+    @Test
+    public void expiresTimersSharingBucketInDeadlineOrder() throws InterruptedException {
+        final List<Long> expiredDelays = new ArrayList<>();
+        final long[] delays = {29, 5, 21, 13};
+        final TestTimer[] timers = new TestTimer[delays.length];
+
+        // The delays differ by a multiple of the size of the wheel, so the timers are in
+        // the same bucket with different numbers of rotations left
+
+        for (int i = 0; i < delays.length; i++) {
+            timers[i] = new TestTimer(expiredDelays, delays[i]);
+            timingWheel.schedule(timers[i], delays[i], TimeUnit.MILLISECONDS);
+        }
+
+        for (final TestTimer timer : timers) {
+            assertTrue(timer.latch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+
+        synchronized (expiredDelays) {
+            assertEquals("[5, 13, 21, 29]", expiredDelays.toString());
+        }
+    }
+
+    @Test
+    public void cancelledTimerDoesNotExpire() throws InterruptedException {
+        final TestTimer cancelledTimer = new TestTimer(null);
+        final TestTimer timer = new TestTimer(null);
+        timingWheel.schedule(cancelledTimer, 20, TimeUnit.MILLISECONDS);
+        timingWheel.schedule(timer, 40, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelledTimer.cancel());
+        assertTrue(cancelledTimer.isCancelled());
+        assertFalse(cancelledTimer.cancel());
+
+        assertTrue(timer.latch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertFalse(cancelledTimer.isExpired());
+        assertEquals(1, cancelledTimer.latch.getCount());
+    }
+
+    @Test
+    public void expiredTimerCannotBeCancelled() throws InterruptedException {
+        final TestTimer timer = new TestTimer(null);
+        timingWheel.schedule(timer, 1, TimeUnit.MILLISECONDS);
+
+        assertTrue(timer.latch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertFalse(timer.cancel());
+        assertFalse(timer.isCancelled());
+    }
+
+    @Test
+    public void timerCanBeScheduledOnlyOnce() {
+        final TestTimer timer = new TestTimer(null);
+        timingWheel.schedule(timer, 1000, TimeUnit.MILLISECONDS);
+
+        try {
+            timingWheel.schedule(timer, 1000, TimeUnit.MILLISECONDS);
+            fail("Expected the timer to be rejected");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void stoppedWheelRejectsTimers() {
+        timingWheel.stop();
+
+        try {
+            timingWheel.schedule(new TestTimer(null), 1, TimeUnit.MILLISECONDS);
+            fail("Expected the timer to be rejected");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * {@link TestTimer} records its expiry time and, optionally, adds its delay to a shared list
+     * of the delays of the expired timers.
+     */
+    private static final class TestTimer extends TimingWheel.Timer {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Long> expiredDelays;
+        final long delay;
+        volatile long expiryTime;
+
+        TestTimer(final List<Long> expiredDelays) {
+            this(expiredDelays, 0);
+        }
+
+        TestTimer(final List<Long> expiredDelays, final long delay) {
+            this.expiredDelays = expiredDelays;
+            this.delay = delay;
+        }
+
+        @Override
+        protected void onExpired() {
+            expiryTime = System.nanoTime();
+
+            if (expiredDelays != null) {
+                synchronized (expiredDelays) {
+                    expiredDelays.add(delay);
+                }
+            }
+            latch.countDown();
+        }
+    }
+}
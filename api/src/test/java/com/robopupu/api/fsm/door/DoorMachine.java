@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm.door;
+
+import com.robopupu.api.fsm.StateEngine;
+import com.robopupu.api.fsm.StateMachine;
+import com.robopupu.api.fsm.SuperState;
+import com.robopupu.api.fsm.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DoorMachine} is a {@link StateMachine} used for testing {@link StateEngine}. Its
+ * {@link State} implementation is generated by the annotation processor from {@link DoorEvents}
+ * and {@link DoorContext}. A {@link Closed} door is either {@link Unlocked} or {@link Locked}, and
+ * an {@link Opened} door closes itself when its {@link Timeout} expires. The
+ * {@link DoorEvents#ping(int)} events are summed up to {@link DoorMachine#getPingCount()}, and
+ * a negative count makes the handler throw an exception.
+ * <p>
+ * The generated {@link State} has constants for the ids of the states, but not for the ids of
+ * the events, so the event ids assigned in the order of the signatures are listed here.
+ */
+public class DoorMachine extends StateMachine {
+
+    public static final int EVENT_CLOSE = 0;
+    public static final int EVENT_LOCK = 1;
+    public static final int EVENT_OPEN = 2;
+    public static final int EVENT_PING = 3;
+    public static final int EVENT_UNLOCK = 4;
+
+    public static final long OPENED_TIMEOUT = 50;
+
+    private int pingCount;
+
+    @Override
+    protected State createStateEngine() {
+        return State.create(Closed.class);
+    }
+
+    @Override
+    public void start() {
+        start(Closed.class);
+    }
+
+    @Override
+    protected void onStateEngineCreated(final StateEngine stateEngine) {
+        ((State) stateEngine).setMachine(this);
+    }
+
+    public State getDoor() {
+        return getStateEngine();
+    }
+
+    public int getPingCount() {
+        return pingCount;
+    }
+
+    /**
+     * Adds the given count to the ping count of the door.
+     *
+     * @param count The count.
+     */
+    private void addPings(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative ping count: " + count);
+        }
+        pingCount += count;
+    }
+
+    public static class Closed extends State {
+
+        public Closed() {
+            super(State.class, Unlocked.class);
+        }
+
+        @Override
+        public void open() {
+            transitTo(Opened.class);
+        }
+
+        @Override
+        public void ping(final int count) {
+            getMachine().addPings(count);
+        }
+    }
+
+    @SuperState(Closed.class)
+    public static class Locked extends State {
+
+        public Locked() {
+            super(Closed.class, null);
+        }
+
+        @Override
+        public void open() {
+            // A locked door cannot be opened
+        }
+
+        @Override
+        public void unlock() {
+            transitTo(Unlocked.class);
+        }
+    }
+
+    // The timeout is given in microseconds to test the conversion of the generated delay
+
+    @Timeout(value = OPENED_TIMEOUT * 1000, unit = TimeUnit.MICROSECONDS, event = "close")
+    public static class Opened extends State {
+
+        public Opened() {
+            super(State.class, null);
+        }
+
+        @Override
+        public void close() {
+            transitTo(Closed.class);
+        }
+
+        @Override
+        public void ping(final int count) {
+            getMachine().addPings(count);
+        }
+    }
+
+    @SuperState(Closed.class)
+    public static class Unlocked extends State {
+
+        public Unlocked() {
+            super(Closed.class, null);
+        }
+
+        @Override
+        public void lock() {
+            transitTo(Locked.class);
+        }
+    }
+}
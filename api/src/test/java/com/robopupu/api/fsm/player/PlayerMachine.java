@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2016 Marko Salmela.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.api.fsm.player;
+
+import com.robopupu.api.fsm.StateEngine;
+import com.robopupu.api.fsm.StateMachine;
+import com.robopupu.api.fsm.SuperState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link PlayerMachine} is a {@link StateMachine} whose {@link State} implementation is generated
+ * by the annotation processor from {@link PlayerEvents} and {@link PlayerContext}. The states
+ * record their entering and exiting, and the handled events, to the log of the machine:
+ * <pre>
+ * Off
+ * Powered
+ *   Stopped
+ *   Active
+ *     Playing
+ *     Paused
+ * </pre>
+ * The sub states declare their super states using {@link SuperState} annotations. Powering on
+ * resumes the deep history of {@link Powered}. The states do not have instance fields, so they can
+ * be shared in the flyweight mode.
+ */
+public class PlayerMachine extends StateMachine {
+
+    private final List<String> log;
+
+    public PlayerMachine() {
+        log = new ArrayList<>();
+    }
+
+    public List<String> getLog() {
+        return log;
+    }
+
+    public State getPlayer() {
+        return getStateEngine();
+    }
+
+    @Override
+    protected State createStateEngine() {
+        return State.create(Powered.class);
+    }
+
+    @Override
+    public void start() {
+        start(Powered.class);
+    }
+
+    @Override
+    protected void onStateEngineCreated(final StateEngine stateEngine) {
+        ((State) stateEngine).setLog(log);
+    }
+
+    @Override
+    public void onError(final StateEngine stateEngine, final StateEngine.Error error, final String message) {
+        log.add("error " + error.name());
+    }
+
+    private static void record(final State state, final String action) {
+        state.getLog().add(action + " " + state.getClass().getSimpleName());
+    }
+
+    public static class Off extends State {
+
+        public Off() {
+            super(State.class, null);
+        }
+
+        @Override
+        protected void onEnter() {
+            record(this, "enter");
+        }
+
+        @Override
+        protected void onExit() {
+            record(this, "exit");
+        }
+
+        @Override
+        public void powerOn() {
+            toHistoryState(Powered.class, true);
+        }
+    }
+
+    public static class Powered extends State {
+
+        public Powered() {
+            super(State.class, Stopped.class);
+        }
+
+        @Override
+        protected void onEnter() {
+            record(this, "enter");
+        }
+
+        @Override
+        protected void onExit() {
+            record(this, "exit");
+        }
+
+        @Override
+        public void powerOff() {
+            transitTo(Off.class);
+        }
+
+        @Override
+        public void seek(final int position) {
+            getLog().add("seek " + position + " in " + getClass().getSimpleName());
+        }
+    }
+
+    @SuperState(Powered.class)
+    public static class Stopped extends State {
+
+        public Stopped() {
+            super(Powered.class, null);
+        }
+
+        @Override
+        protected void onEnter() {
+            record(this, "enter");
+        }
+
+        @Override
+        protected void onExit() {
+            record(this, "exit");
+        }
+
+        @Override
+        public void play() {
+            transitTo(Playing.class);
+        }
+    }
+
+    @SuperState(Powered.class)
+    public static class Active extends State {
+
+        public Active() {
+            super(Powered.class, Playing.class);
+        }
+
+        @Override
+        protected void onEnter() {
+            record(this, "enter");
+        }
+
+        @Override
+        protected void onExit() {
+            record(this, "exit");
+        }
+
+        @Override
+        public void eject() {
+            transitTo(Stopped.class);
+        }
+    }
+
+    @SuperState(Active.class)
+    public static class Playing extends State {
+
+        public Playing() {
+            super(Active.class, null);
+        }
+
+        @Override
+        protected void onEnter() {
+            record(this, "enter");
+        }
+
+        @Override
+        protected void onExit() {
+            record(this, "exit");
+        }
+
+        @Override
+        public void pause() {
+            transitTo(Paused.class);
+        }
+    }
+
+    @SuperState(Active.class)
+    public static class Paused extends State {
+
+        public Paused() {
+            super(Active.class, null);
+        }
+
+        @Override
+        protected void onEnter() {
+            record(this, "enter");
+        }
+
+        @Override
+        protected void onExit() {
+            record(this, "exit");
+        }
+
+        @Override
+        public void play() {
+            transitTo(Playing.class);
+        }
+    }
+}
@@ -3,17 +3,25 @@ package com.robopupu.compiler.dependency;
 import com.google.auto.service.AutoService;
 
 import com.robopupu.api.dependency.DependencyScope;
+import com.robopupu.api.dependency.Eager;
+import com.robopupu.api.dependency.Inject;
+import com.robopupu.api.dependency.InstanceFactory;
+import com.robopupu.api.dependency.Pooled;
 import com.robopupu.api.dependency.Provides;
 import com.robopupu.api.dependency.Scope;
+import com.robopupu.api.dependency.ScopeRegistry;
+import com.robopupu.compiler.util.AnnotationToolkit;
 import com.robopupu.compiler.util.ProcessorException;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -28,6 +36,7 @@ import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
@@ -35,6 +44,8 @@ import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 
 /**
  * {@link DependencyAnnotationProcessor} implements {@link AbstractProcessor}
@@ -72,8 +83,13 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
 
 
     private HashMap<String, DependencyProviderClass> dependencyProviderClasses;
+    private ArrayList<String> scopeRegistryClassNames;
     private Elements elementUtils;
     private Filer filer;
+    private HashSet<String> instantiableTypes;
+    private ArrayList<String> instanceFactoryClassNames;
+    private HashMap<String, InjectorClass> injectorClasses;
+    private HashMap<String, InstanceFactoryClass> instanceFactoryClasses;
     private Messager messager;
     private HashMap<String, Element> providedTypes;
     private ArrayList<ProviderMethod> providesMethods;
@@ -90,11 +106,19 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
         providesMethods = new ArrayList<>();
         providedTypes = new HashMap<>();
         dependencyProviderClasses = new HashMap<>();
+        injectorClasses = new HashMap<>();
+        instanceFactoryClasses = new HashMap<>();
+        instantiableTypes = new HashSet<>();
+        instanceFactoryClassNames = new ArrayList<>();
+        scopeRegistryClassNames = new ArrayList<>();
     }
 
     @Override
     public Set<String> getSupportedAnnotationTypes() {
         final Set<String> annotations = new LinkedHashSet<>();
+        annotations.add(Eager.class.getCanonicalName());
+        annotations.add(Inject.class.getCanonicalName());
+        annotations.add(Pooled.class.getCanonicalName());
         annotations.add(Provides.class.getCanonicalName());
         annotations.add(Scope.class.getCanonicalName());
         return annotations;
@@ -147,6 +171,7 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
                     if (valuesCount == 0) {
                         final DependencyProviderClass dependencyProviderClass = new DependencyProviderClass(classElement);
                         dependencyProviderClasses.put(className, dependencyProviderClass);
+                        addInstantiableType(classElement);
                     }
                 }
             }
@@ -186,19 +211,11 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
                     }
                 }
 
-                Map<? extends ExecutableElement, ? extends AnnotationValue> elementValues = null;
+                // Only the value element of Provides declares the provided type
 
-                if (providesAnnotationMirror != null) {
-                    elementValues = providesAnnotationMirror.getElementValues();
-                }
-
-                Collection<? extends AnnotationValue> values = null;
-                int valuesCount = 0;
-
-                if (elementValues != null) {
-                    values = elementValues.values();
-                    valuesCount = values.size();
-                }
+                final AnnotationValue providesValue = AnnotationToolkit.getValue(providesAnnotationMirror, AnnotationToolkit.VALUE);
+                Collection<? extends AnnotationValue> values = (providesValue != null) ? Collections.singletonList(providesValue) : null;
+                int valuesCount = (providesValue != null) ? 1 : 0;
 
                 if (isMethodElement) {
                     final ExecutableElement executableElement = (ExecutableElement)annotatedElement;
@@ -210,10 +227,15 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
                     providerConstructor = new ProviderConstructor(executableElement, valuesCount == 1 ? providesAnnotationMirror : null);
                     providerConstructors.add(providerConstructor);
                     providedType = providerConstructor.getProvidedType();
+
+                    if (!providerConstructor.hasParameters()) {
+                        addInstantiableType((TypeElement) executableElement.getEnclosingElement());
+                    }
                 } else {
                     final TypeElement typeElement = (TypeElement)annotatedElement;
                     providerClass = new ProviderClass(typeElement, valuesCount == 1 ? providesAnnotationMirror : null);
                     providedType = providerClass.getProvidedType();
+                    addInstantiableType(typeElement);
                 }
 
                 if (valuesCount == 1) {
@@ -302,6 +324,29 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
             handleError(e.getElement(), e.getMessage());
         }
 
+        // Process all fields annotated with Inject
+        try {
+
+            for (final Element annotatedElement : roundEnvironment.getElementsAnnotatedWith(Inject.class)) {
+
+                if (annotatedElement.getKind() != ElementKind.FIELD) {
+                    throw new ProcessorException(annotatedElement, "Only fields can be annotated with @%s",
+                            Inject.class.getSimpleName());
+                }
+
+                final TypeElement classElement = (TypeElement) annotatedElement.getEnclosingElement();
+                final String className = classElement.getQualifiedName().toString();
+                InjectorClass injectorClass = injectorClasses.get(className);
+
+                if (injectorClass == null) {
+                    injectorClass = new InjectorClass(classElement);
+                    injectorClasses.put(className, injectorClass);
+                }
+                injectorClass.addField((VariableElement) annotatedElement);
+            }
+        } catch (com.robopupu.compiler.util.ProcessorException e) {
+            handleError(e.getElement(), e.getMessage());
+        }
 
         // Generate DependencyProvider implementations for all classes annotated with Scope
         try {
@@ -314,12 +359,46 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
                 validateProvidesConstructorElement(constructor);
             }
 
+            final ScopeRegistryClass scopeRegistryClass = new ScopeRegistryClass();
+
             for (final DependencyProviderClass dependencyProviderClass : dependencyProviderClasses.values()) {
                 validateScopeClass(dependencyProviderClass);
                 dependencyProviderClass.generateCode(elementUtils, filer);
+                scopeRegistryClass.addScopeClass(elementUtils, dependencyProviderClass);
             }
             dependencyProviderClasses.clear();
 
+            for (final InjectorClass injectorClass : injectorClasses.values()) {
+                scopeRegistryClass.addInjectorClass(elementUtils, injectorClass);
+            }
+
+            // A ScopeRegistry is generated for each round, and they are all registered as services
+            // for chaining them at runtime when the processing is over
+
+            if (!scopeRegistryClass.isEmpty()) {
+                scopeRegistryClassNames.add(scopeRegistryClass.generateCode(filer));
+            }
+
+            if (roundEnvironment.processingOver() && !scopeRegistryClassNames.isEmpty()) {
+                writeServices(ScopeRegistry.class, scopeRegistryClassNames);
+            }
+
+            for (final InstanceFactoryClass instanceFactoryClass : instanceFactoryClasses.values()) {
+                if (!instanceFactoryClass.isEmpty()) {
+                    instanceFactoryClassNames.add(instanceFactoryClass.generateCode(filer));
+                }
+            }
+            instanceFactoryClasses.clear();
+
+            if (roundEnvironment.processingOver() && !instanceFactoryClassNames.isEmpty()) {
+                writeServices(InstanceFactory.class, instanceFactoryClassNames);
+            }
+
+            for (final InjectorClass injectorClass : injectorClasses.values()) {
+                injectorClass.generateCode(elementUtils, filer);
+            }
+            injectorClasses.clear();
+
         } catch (com.robopupu.compiler.util.ProcessorException e) {
             handleError(e.getElement(), e.getMessage());
         } catch (IOException e) {
@@ -329,6 +408,45 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
         return true;
     }
 
+    /**
+     * Writes the service configuration file that lists the generated implementations of the given
+     * service class of the compiled module.
+     * @param serviceClass The {@link Class} of the service.
+     * @param classNames The qualified names of the generated implementations.
+     * @throws IOException If the file cannot be written.
+     */
+    private void writeServices(final Class<?> serviceClass, final List<String> classNames) throws IOException {
+        final String fileName = "META-INF/services/" + serviceClass.getName();
+        final FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", fileName);
+
+        try (final Writer writer = file.openWriter()) {
+            for (final String className : classNames) {
+                writer.write(className);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Adds the given class to the {@link InstanceFactoryClass} of its package for the current
+     * round. A class is added only once, even if it is processed again in a later round.
+     * @param typeElement A {@link TypeElement} representing the class.
+     */
+    private void addInstantiableType(final TypeElement typeElement) {
+        final PackageElement packageElement = elementUtils.getPackageOf(typeElement);
+        final String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+
+        if (instantiableTypes.add(typeElement.getQualifiedName().toString())) {
+            InstanceFactoryClass instanceFactoryClass = instanceFactoryClasses.get(packageName);
+
+            if (instanceFactoryClass == null) {
+                instanceFactoryClass = new InstanceFactoryClass(packageName);
+                instanceFactoryClasses.put(packageName, instanceFactoryClass);
+            }
+            instanceFactoryClass.addType(typeElement);
+        }
+    }
+
     private DependencyProviderClass getImplicitScopeClass(final String enclosingClass) {
 
         for (final DependencyProviderClass dependencyProviderClass : dependencyProviderClasses.values()) {
@@ -386,7 +504,7 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
                     throw new ProcessorException(element, "Provides method cannot have primitive type parameters.");
                 }
 
-                final String parameterTypeName = parameterType.toString();
+                final String parameterTypeName = new DependencyParameter(parameter).getDependencyType();
 
                 if (!isProvidedType(parameterTypeName)) {
                     throw new ProcessorException(element, "Provides method has a parameter whose type is not provided: " + parameterTypeName);
@@ -408,7 +526,7 @@ public class DependencyAnnotationProcessor extends AbstractProcessor {
                     throw new ProcessorException(element, "Provides constructor cannot have primitive type parameters.");
                 }
 
-                final String parameterTypeName = parameterType.toString();
+                final String parameterTypeName = new DependencyParameter(parameter).getDependencyType();
 
                 if (!isProvidedType(parameterTypeName)) {
                     throw new ProcessorException(element, "Provides constructor has a parameter whose type is not provided: " + parameterTypeName);
@@ -0,0 +1,103 @@
+package com.robopupu.compiler.dependency;
+
+import com.robopupu.api.dependency.Lazy;
+import com.robopupu.api.dependency.Provider;
+
+import java.util.List;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * {@link DependencyParameter} is a model class used for storing information about a parameter of
+ * a method or a constructor annotated with {@link com.robopupu.api.dependency.Provides}, or about
+ * a field annotated with {@link com.robopupu.api.dependency.Inject}. A parameter is either
+ * a dependency or a {@link Lazy} or {@link Provider} handle to a dependency.
+ */
+public class DependencyParameter {
+
+    private static final String METHOD_GET = "get";
+    private static final String METHOD_GET_LAZY = "getLazy";
+    private static final String METHOD_GET_PROVIDER = "getProvider";
+
+    private final VariableElement parameter;
+    private final String dependencyType;
+    private final String resolvingMethod;
+
+    public DependencyParameter(final VariableElement parameter) {
+        this.parameter = parameter;
+
+        final TypeMirror type = parameter.asType();
+        String handleType = null;
+        TypeMirror handledType = null;
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            final DeclaredType declaredType = (DeclaredType) type;
+            final List<? extends TypeMirror> typeArguments = declaredType.getTypeArguments();
+
+            if (typeArguments.size() == 1) {
+                handleType = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+                handledType = typeArguments.get(0);
+            }
+        }
+
+        if (Lazy.class.getName().equals(handleType)) {
+            resolvingMethod = METHOD_GET_LAZY;
+            dependencyType = getErasedType(handledType);
+        } else if (Provider.class.getName().equals(handleType)) {
+            resolvingMethod = METHOD_GET_PROVIDER;
+            dependencyType = getErasedType(handledType);
+        } else {
+            resolvingMethod = METHOD_GET;
+            dependencyType = type.toString();
+        }
+    }
+
+    private static String getErasedType(final TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    public String getName() {
+        return parameter.getSimpleName().toString();
+    }
+
+    /**
+     * Gets the declared type of the parameter.
+     * @return The type as a {@link String}.
+     */
+    public String getType() {
+        return parameter.asType().toString();
+    }
+
+    /**
+     * Gets the type of the dependency. For a {@link Lazy} or {@link Provider} parameter this is
+     * the type of the handled dependency.
+     * @return The type as a {@link String}.
+     */
+    public String getDependencyType() {
+        return dependencyType;
+    }
+
+    /**
+     * Gets the name of the method of {@link com.robopupu.api.dependency.D} used for resolving
+     * the parameter.
+     * @return The method name as a {@link String}.
+     */
+    public String getResolvingMethod() {
+        return resolvingMethod;
+    }
+
+    /**
+     * Tests if the parameter is a {@link Lazy} or {@link Provider} handle to a dependency.
+     * @return A {@code boolean} value.
+     */
+    public boolean isHandle() {
+        return !METHOD_GET.equals(resolvingMethod);
+    }
+}
@@ -2,21 +2,31 @@ package com.robopupu.compiler.dependency;
 
 import com.robopupu.api.dependency.DependencyQuery;
 import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
 
 import com.robopupu.api.dependency.D;
 import com.robopupu.api.dependency.DependencyProvider;
+import com.robopupu.api.dependency.Lifecycle;
+import com.robopupu.api.dependency.Pooled;
 import com.robopupu.compiler.util.JavaWriter;
 import com.robopupu.compiler.util.Keyword;
 import com.robopupu.compiler.util.ProcessorException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import javax.annotation.processing.Filer;
@@ -34,6 +44,9 @@ public class DependencyProviderClass {
     private static final String SUFFIX_DEPENDENCY_PROVIDER = "_DependencyProvider";
     private static final ClassName CLASS_DEPENDENCY_PROVIDER = ClassName.get(DependencyProvider.class);
     private static final ClassName CLASS_DEPENDENCY_QUERY = ClassName.get(DependencyQuery.class);
+    private static final String FIELD_SINGLETON = "singleton";
+    private static final String FIELD_SINGLETON_LOCK = "singletonLock";
+    private static final String VARIABLE_DEPENDENCY = "providedDependency";
 
     private final String className;
     private final TypeElement classElement;
@@ -66,15 +79,30 @@ public class DependencyProviderClass {
      * @param elementUtils An {@link Elements} providing type utilities.
      * @param filer A {@link Filer} to write generated code to a file.
      * @throws IOException
+     * @throws ProcessorException
      */
-    public void generateCode(final Elements elementUtils, final Filer filer) throws IOException {
+    public void generateCode(final Elements elementUtils, final Filer filer) throws IOException, ProcessorException {
 
         // Check if there is need to generate code for a DependencyProvider implementation
 
-        if (providerClasses.isEmpty() && providerConstructors.isEmpty() && providerMethods.isEmpty()) {
+        if (!hasProviders()) {
             return;
         }
 
+        for (final ProviderExecutable providerExecutable : getProviderExecutables()) {
+            if (providerExecutable.getLifecycle() == Lifecycle.SINGLETON && providerExecutable.getMaxPoolSize() > 0) {
+                throw new ProcessorException(providerExecutable.getExecutableElement(), "Singleton dependencies cannot be @%s.",
+                        Pooled.class.getSimpleName());
+            }
+        }
+
+        for (final ProviderClass providerClass : providerClasses) {
+            if (providerClass.getLifecycle() == Lifecycle.SINGLETON && providerClass.getMaxPoolSize() > 0) {
+                throw new ProcessorException(providerClass.getTypeElement(), "Singleton dependencies cannot be @%s.",
+                        Pooled.class.getSimpleName());
+            }
+        }
+
         // Generate code for a DependencyProvider implementation
 
         final PackageElement packageElement = elementUtils.getPackageOf(classElement);
@@ -84,133 +112,397 @@ public class DependencyProviderClass {
 
         classBuilder.superclass(CLASS_DEPENDENCY_PROVIDER);
         classBuilder.addModifiers(Modifier.PUBLIC);
+
+        // Singletons are stored to static fields guarded by their own locks and scoped
+        // dependencies to preallocated slots
+
+        int scopedCount = 0;
+
+        for (final Provision provision : getProvisions()) {
+            if (provision.lifecycle == Lifecycle.SINGLETON) {
+                final FieldSpec.Builder fieldBuilder = FieldSpec.builder(ClassName.bestGuess(provision.providedType), FIELD_SINGLETON + provision.index);
+                fieldBuilder.addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.VOLATILE);
+                classBuilder.addField(fieldBuilder.build());
+
+                final FieldSpec.Builder lockBuilder = FieldSpec.builder(Object.class, FIELD_SINGLETON_LOCK + provision.index);
+                lockBuilder.addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+                lockBuilder.initializer("new Object()");
+                classBuilder.addField(lockBuilder.build());
+            } else if (provision.lifecycle == Lifecycle.SCOPED) {
+                scopedCount++;
+            }
+        }
+
+        if (scopedCount > 0) {
+            final MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder();
+            constructorBuilder.addModifiers(Modifier.PUBLIC);
+            constructorBuilder.addStatement("super($L)", scopedCount);
+            classBuilder.addMethod(constructorBuilder.build());
+        }
+
+        classBuilder.addMethod(buildIsCachingMethod());
         classBuilder.addMethod(buildGetDependencyMethod());
+        classBuilder.addMethod(buildGetDependenciesMethod());
+
+        final List<List<String>> eagerLevels = resolveEagerLevels();
+
+        if (!eagerLevels.isEmpty()) {
+            classBuilder.addMethod(buildGetEagerDependenciesMethod(eagerLevels));
+        }
 
         final TypeSpec typeSpec = classBuilder.build();
         JavaFile.builder(packageName, typeSpec).build().writeTo(filer);
     }
 
+    private MethodSpec buildIsCachingMethod() {
+
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("isCaching");
+        methodBuilder.addModifiers(Modifier.PROTECTED);
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.returns(boolean.class);
+        methodBuilder.addStatement("return true");
+        return methodBuilder.build();
+    }
+
+    /**
+     * Builds the method {@link DependencyProvider#getDependency(Class)} that returns a single
+     * dependency without allocating a {@link DependencyQuery}.
+     * @return A {@link MethodSpec}.
+     */
     private MethodSpec buildGetDependencyMethod() {
 
         final AnnotationSpec.Builder annotationBuilder = AnnotationSpec.builder(SuppressWarnings.class);
         annotationBuilder.addMember("value", "\"unchecked\"");
 
-        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("getDependencies");
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("getDependency");
         methodBuilder.addModifiers(Modifier.PROTECTED);
         methodBuilder.addAnnotation(Override.class);
         methodBuilder.addAnnotation(annotationBuilder.build());
 
-        final ParameterizedTypeName parameterizedType = ParameterizedTypeName.get(CLASS_DEPENDENCY_QUERY, TypeVariableName.get("T"));
-        methodBuilder.addParameter(parameterizedType, "query", Modifier.FINAL);
-        methodBuilder.returns(TypeVariableName.get("<T> void"));
+        final ParameterizedTypeName parameterizedType = ParameterizedTypeName.get(ClassName.get(Class.class), TypeVariableName.get("T"));
+        methodBuilder.addParameter(parameterizedType, "dependencyType", Modifier.FINAL);
+        methodBuilder.returns(TypeVariableName.get("<T> T"));
 
-        for (final ProviderClass providerClass : providerClasses) {
+        for (final Provision provision : getProvisions()) {
+            methodBuilder.beginControlFlow(String.format("if (dependencyType.isAssignableFrom(%1$s.class))", provision.providedType));
+            addProvisionStatements(methodBuilder, provision);
+
+            if (provision.lifecycle == Lifecycle.PROTOTYPE) {
+                methodBuilder.addStatement(String.format("return (T) %1$s", VARIABLE_DEPENDENCY));
+            } else {
+                methodBuilder.addStatement(String.format("return (T) resolved(dependencyType, %1$s)", VARIABLE_DEPENDENCY));
+            }
+            methodBuilder.endControlFlow();
+        }
 
-            final String providedType = providerClass.getProvidedType();
-            final String implementationType = providerClass.getType();
+        methodBuilder.addStatement("return null");
+        return methodBuilder.build();
+    }
 
-            methodBuilder.beginControlFlow(String.format("if (query.matches(%1$s.class, %2$s.class))", providedType, implementationType));
+    /**
+     * Adds the statements that request the dependencies given as parameters for a provider method
+     * or constructor. A {@link com.robopupu.api.dependency.Lazy} or
+     * {@link com.robopupu.api.dependency.Provider} parameter is requested as a handle to its
+     * dependency. The parameters are requested from the {@link com.robopupu.api.dependency.DependencyScope}
+     * of the {@link DependencyProvider} instead of the active one, because the dependencies may be
+     * provided in the background while another {@link com.robopupu.api.dependency.DependencyScope}
+     * is activated.
+     * @param methodBuilder A {@link MethodSpec.Builder} for adding the statements.
+     * @param writer A {@link JavaWriter} used for writing the statements.
+     * @param parameters A {@link List} of parameters as {@link VariableElement}s.
+     */
+    private void addParameterStatements(final MethodSpec.Builder methodBuilder, final JavaWriter writer,
+                                        final List<? extends VariableElement> parameters) {
+        for (final VariableElement parameter : parameters) {
+            final DependencyParameter dependencyParameter = new DependencyParameter(parameter);
+            writer.c().k(Keyword.FINAL).append(dependencyParameter.getType()).s().a(dependencyParameter.getName());
+            writer.a(" = $T.").a(dependencyParameter.getResolvingMethod()).a("(scope, ");
+            writer.a(dependencyParameter.getDependencyType()).a(".class)");
+            methodBuilder.addStatement(writer.getCode(), D.class);
+        }
+    }
 
-            final JavaWriter writer = new JavaWriter();
+    /**
+     * Writes the given parameters as a comma separated list of arguments.
+     * @param writer A {@link JavaWriter} used for writing the arguments.
+     * @param parameters A {@link List} of parameters as {@link VariableElement}s.
+     */
+    private void writeArguments(final JavaWriter writer, final List<? extends VariableElement> parameters) {
+        int index = 0;
 
-            writer.a("if (query.add((T) new ");
+        for (final VariableElement parameter : parameters) {
 
-            final String providerType = providerClass.getTypeElement().toString();
+            if (index++ > 0) {
+                writer.a(", ");
+            }
+            writer.a(parameter.getSimpleName().toString());
+        }
+    }
 
-            writer.a(providerType).a("()))");
+    /**
+     * Adds the statements that assign the dependency provided by the given {@link Provision} to
+     * a local variable. A singleton dependency is stored to a static field. It is created holding
+     * a lock of its own, so that the provider is invoked exactly once even if the dependency is
+     * requested concurrently, e.g. by the eager dependencies instantiated in the background. The
+     * lock is not shared with the other singletons, so creating a singleton may resolve other
+     * singletons of the same {@link DependencyProvider}. A scoped dependency is stored to its slot in
+     * the {@link DependencyProvider}. A prototype dependency is not cached at all.
+     * @param methodBuilder A {@link MethodSpec.Builder} for adding the statements.
+     * @param provision A {@link Provision}.
+     */
+    private void addProvisionStatements(final MethodSpec.Builder methodBuilder, final Provision provision) {
+
+        final String providedType = provision.providedType;
+
+        switch (provision.lifecycle) {
+            case SINGLETON: {
+                final String field = FIELD_SINGLETON + provision.index;
+                methodBuilder.addStatement(String.format("%1$s %2$s = %3$s", providedType, VARIABLE_DEPENDENCY, field));
+                methodBuilder.beginControlFlow(String.format("if (%1$s == null)", VARIABLE_DEPENDENCY));
+                methodBuilder.beginControlFlow(String.format("synchronized (%1$s)", FIELD_SINGLETON_LOCK + provision.index));
+                methodBuilder.addStatement(String.format("%1$s = %2$s", VARIABLE_DEPENDENCY, field));
+                methodBuilder.beginControlFlow(String.format("if (%1$s == null)", VARIABLE_DEPENDENCY));
+                addParameterStatements(methodBuilder, new JavaWriter(), provision.parameters);
+                methodBuilder.addStatement(String.format("%1$s = attached(%2$s)", VARIABLE_DEPENDENCY, getCreation(provision)));
+                methodBuilder.addStatement(String.format("%1$s = %2$s", field, VARIABLE_DEPENDENCY));
+                methodBuilder.endControlFlow();
+                methodBuilder.endControlFlow();
+                methodBuilder.endControlFlow();
+                break;
+            }
+            case SCOPED: {
+                methodBuilder.addStatement(String.format("%1$s %2$s = (%1$s) getScoped(%3$d)", providedType, VARIABLE_DEPENDENCY, provision.index));
+                methodBuilder.beginControlFlow(String.format("if (%1$s == null)", VARIABLE_DEPENDENCY));
+                addCreationStatements(methodBuilder, provision);
+                methodBuilder.addStatement(String.format("%1$s = setScoped(%2$d, %1$s)", VARIABLE_DEPENDENCY, provision.index));
+                methodBuilder.endControlFlow();
+                break;
+            }
+            default: {
+                methodBuilder.addStatement(String.format("%1$s %2$s", providedType, VARIABLE_DEPENDENCY));
+                addCreationStatements(methodBuilder, provision);
+                break;
+            }
+        }
+    }
 
-            methodBuilder.beginControlFlow(writer.getCode());
-            methodBuilder.addStatement(Keyword.RETURN.toString());
-            methodBuilder.endControlFlow();
+    /**
+     * Adds the statements that create a new dependency, or lease a pooled dependency from
+     * the {@link com.robopupu.api.dependency.ObjectPool}, and assign it to a local variable.
+     * @param methodBuilder A {@link MethodSpec.Builder} for adding the statements.
+     * @param provision A {@link Provision}.
+     */
+    private void addCreationStatements(final MethodSpec.Builder methodBuilder, final Provision provision) {
+
+        if (provision.maxPoolSize > 0) {
+            methodBuilder.addStatement(String.format("%1$s = lease(%2$s.class, %3$d)", VARIABLE_DEPENDENCY, provision.providedType, provision.maxPoolSize));
+            methodBuilder.beginControlFlow(String.format("if (%1$s == null)", VARIABLE_DEPENDENCY));
+            addParameterStatements(methodBuilder, new JavaWriter(), provision.parameters);
+            methodBuilder.addStatement(String.format("%1$s = leased(%2$s.class, %3$s, %4$d)", VARIABLE_DEPENDENCY,
+                    provision.providedType, getCreation(provision), provision.maxPoolSize));
             methodBuilder.endControlFlow();
+        } else {
+            addParameterStatements(methodBuilder, new JavaWriter(), provision.parameters);
+            methodBuilder.addStatement(String.format("%1$s = %2$s", VARIABLE_DEPENDENCY, getCreation(provision)));
+        }
+    }
+
+    /**
+     * Gets the expression that creates a new dependency using the given {@link Provision}.
+     * @param provision A {@link Provision}.
+     * @return The expression as a {@link String}.
+     */
+    private String getCreation(final Provision provision) {
+        final JavaWriter writer = new JavaWriter();
+        writer.a(provision.creation).a("(");
+        writeArguments(writer, provision.parameters);
+        writer.a(")");
+        return writer.getCode();
+    }
+
+    /**
+     * Gets the {@link Provision}s of the providers in the order the providers are matched against
+     * the requested dependency types. The scoped and singleton {@link Provision}s are indexed to
+     * their slots and static fields.
+     * @return A {@link List} of {@link Provision}s.
+     */
+    private List<Provision> getProvisions() {
+
+        final ArrayList<Provision> provisions = new ArrayList<>();
+        final List<VariableElement> noParameters = Collections.emptyList();
+
+        for (final ProviderClass providerClass : providerClasses) {
+            provisions.add(new Provision(providerClass.getProvidedType(), providerClass.getType(), providerClass.getLifecycle(),
+                    providerClass.getMaxPoolSize(), noParameters, "new " + providerClass.getTypeElement().toString()));
         }
 
         for (final ProviderMethod providerMethod : providerMethods) {
+            provisions.add(new Provision(providerMethod.getProvidedType(), providerMethod.getReturnType(), providerMethod.getLifecycle(),
+                    providerMethod.getMaxPoolSize(), providerMethod.getParameters(),
+                    "((" + providerMethod.getDependencyScopeType() + ")scope)." + providerMethod.getMethodName()));
+        }
 
-            final String providedType = providerMethod.getProvidedType();
-            final String implementationType = providerMethod.getReturnType(); // XXX
+        for (final ProviderConstructor providerConstructor : providerConstructors) {
+            provisions.add(new Provision(providerConstructor.getProvidedType(), providerConstructor.getType(), providerConstructor.getLifecycle(),
+                    providerConstructor.getMaxPoolSize(), providerConstructor.getParameters(), "new " + providerConstructor.getConstructorName()));
+        }
 
-            methodBuilder.beginControlFlow(String.format("if (query.matches(%1$s.class, %2$s.class))", providedType, implementationType));
+        int scopedIndex = 0;
+        int singletonIndex = 0;
 
-            final JavaWriter writer = new JavaWriter();
+        for (final Provision provision : provisions) {
+            if (provision.lifecycle == Lifecycle.SCOPED) {
+                provision.index = scopedIndex++;
+            } else if (provision.lifecycle == Lifecycle.SINGLETON) {
+                provision.index = singletonIndex++;
+            }
+        }
+        return provisions;
+    }
 
-            if (providerMethod.hasParameters()) {
-                final List<? extends VariableElement> parameters = providerMethod.getParameters();
+    /**
+     * Builds the method {@link DependencyProvider#getEagerDependencies()} that returns the types of
+     * the eager dependencies grouped by their levels.
+     * @param eagerLevels A {@link List} of levels containing the eager dependency types.
+     * @return A {@link MethodSpec}.
+     */
+    private MethodSpec buildGetEagerDependenciesMethod(final List<List<String>> eagerLevels) {
 
-                for (final VariableElement parameter : parameters) {
-                    final String parameterType = parameter.asType().toString();
-                    final String parameterName = parameter.getSimpleName().toString();
-                    writer.c().k(Keyword.FINAL).append(parameterType).s().a(parameterName);
-                    writer.a(" = $T.get(").a(parameterType).a(".class)");
-                    methodBuilder.addStatement(writer.getCode(), D.class);
-                }
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("getEagerDependencies");
+        methodBuilder.addModifiers(Modifier.PROTECTED);
+        methodBuilder.addAnnotation(Override.class);
 
-                writer.c().a("if (query.add((T) ((");
-                writer.a(providerMethod.getDependencyScopeType());
-                writer.a(")scope).").a(providerMethod.getMethodName()).a("(");
+        final TypeName classType = ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class));
+        methodBuilder.returns(ArrayTypeName.of(ArrayTypeName.of(classType)));
 
-                int index = 0;
+        final JavaWriter writer = new JavaWriter();
+        writer.a("return new Class<?>[][] {");
 
-                for (final VariableElement parameter : parameters) {
+        int levelIndex = 0;
 
-                    if (index++ > 0) {
-                        writer.a(", ");
-                    }
-                    writer.a(parameter.getSimpleName().toString());
-                }
-                writer.a(")))");
-            } else {
-                writer.c().a("if (query.add((T) ((");
+        for (final List<String> level : eagerLevels) {
 
-                writer.a(providerMethod.getDependencyScopeType());
-                writer.a(")scope).").a(providerMethod.getMethodName()).a("()))");
+            if (levelIndex++ > 0) {
+                writer.a(", ");
             }
+            writer.a("{");
 
-            methodBuilder.beginControlFlow(writer.getCode());
-            methodBuilder.addStatement(Keyword.RETURN.toString());
-            methodBuilder.endControlFlow();
-            methodBuilder.endControlFlow();
-        }
+            int index = 0;
 
-        for (final ProviderConstructor providerConstructor : providerConstructors) {
+            for (final String dependencyType : level) {
 
-            final String providedType = providerConstructor.getProvidedType();
-            final String implementationType = providerConstructor.getType();
+                if (index++ > 0) {
+                    writer.a(", ");
+                }
+                writer.a(dependencyType).a(".class");
+            }
+            writer.a("}");
+        }
+        writer.a("}");
 
-            methodBuilder.beginControlFlow(String.format("if (query.matches(%1$s.class, %2$s.class))", providedType, implementationType));
+        methodBuilder.addStatement(writer.getCode());
+        return methodBuilder.build();
+    }
 
-            final JavaWriter writer = new JavaWriter();
+    /**
+     * Resolves the levels of the eager dependencies. An eager dependency whose parameters do not
+     * depend on other eager dependencies is on the first level. Otherwise an eager dependency is
+     * on the level following the highest level of the eager dependencies it depends on.
+     * @return A {@link List} of levels containing the eager dependency types.
+     * @throws ProcessorException If the eager dependencies have a cyclic dependency.
+     */
+    private List<List<String>> resolveEagerLevels() throws ProcessorException {
 
-            if (providerConstructor.hasParameters()) {
-                final List<? extends VariableElement> parameters = providerConstructor.getParameters();
+        final LinkedHashMap<String, List<String>> eagerDependencies = new LinkedHashMap<>();
 
-                for (final VariableElement parameter : parameters) {
-                    final String parameterType = parameter.asType().toString();
-                    final String parameterName = parameter.getSimpleName().toString();
-                    writer.c().k(com.robopupu.compiler.util.Keyword.FINAL).append(parameterType).s().a(parameterName);
-                    writer.a(" = $T.get(").a(parameterType).a(".class)");
-                    methodBuilder.addStatement(writer.getCode(), D.class);
-                }
+        for (final ProviderClass providerClass : providerClasses) {
+            if (providerClass.isEager()) {
+                eagerDependencies.put(providerClass.getProvidedType(), new ArrayList<String>());
+            }
+        }
 
-                writer.c().a("if (query.add((T) new ");
-                writer.a(providerConstructor.getConstructorName()).a("(");
+        for (final ProviderExecutable providerExecutable : getProviderExecutables()) {
+            if (providerExecutable.isEager()) {
+                final ArrayList<String> parameterTypes = new ArrayList<>();
 
-                int index = 0;
+                for (final VariableElement parameter : providerExecutable.getParameters()) {
+                    final DependencyParameter dependencyParameter = new DependencyParameter(parameter);
 
-                for (final VariableElement parameter : parameters) {
+                    // A Lazy or Provider handle does not resolve its dependency when it is created
 
-                    if (index++ > 0) {
-                        writer.a(", ");
+                    if (!dependencyParameter.isHandle()) {
+                        parameterTypes.add(dependencyParameter.getDependencyType());
                     }
-                    writer.a(parameter.getSimpleName().toString());
                 }
-                writer.a(")))");
-            } else {
-                writer.c().a("if (query.add((T) new ");
-                writer.a(providerConstructor.getConstructorName()).a("()))");
+                eagerDependencies.put(providerExecutable.getProvidedType(), parameterTypes);
             }
+        }
+
+        final HashMap<String, Integer> levels = new HashMap<>();
+        final ArrayList<List<String>> eagerLevels = new ArrayList<>();
+
+        for (final String dependencyType : eagerDependencies.keySet()) {
+            final int level = resolveEagerLevel(dependencyType, eagerDependencies, levels, new HashSet<String>());
+
+            while (eagerLevels.size() <= level) {
+                eagerLevels.add(new ArrayList<String>());
+            }
+            eagerLevels.get(level).add(dependencyType);
+        }
+        return eagerLevels;
+    }
+
+    private List<ProviderExecutable> getProviderExecutables() {
+        final ArrayList<ProviderExecutable> providerExecutables = new ArrayList<>();
+        providerExecutables.addAll(providerMethods);
+        providerExecutables.addAll(providerConstructors);
+        return providerExecutables;
+    }
 
-            methodBuilder.beginControlFlow(writer.getCode());
+    private int resolveEagerLevel(final String dependencyType, final HashMap<String, List<String>> eagerDependencies,
+                                  final HashMap<String, Integer> levels, final HashSet<String> visitedTypes) throws ProcessorException {
+
+        final Integer resolvedLevel = levels.get(dependencyType);
+
+        if (resolvedLevel != null) {
+            return resolvedLevel;
+        }
+
+        if (!visitedTypes.add(dependencyType)) {
+            throw new ProcessorException(classElement, "Eager dependencies of %s have a cyclic dependency to %s.",
+                    className, dependencyType);
+        }
+
+        int level = 0;
+
+        for (final String parameterType : eagerDependencies.get(dependencyType)) {
+            if (eagerDependencies.containsKey(parameterType)) {
+                level = Math.max(level, resolveEagerLevel(parameterType, eagerDependencies, levels, visitedTypes) + 1);
+            }
+        }
+
+        levels.put(dependencyType, level);
+        return level;
+    }
+
+    private MethodSpec buildGetDependenciesMethod() {
+
+        final AnnotationSpec.Builder annotationBuilder = AnnotationSpec.builder(SuppressWarnings.class);
+        annotationBuilder.addMember("value", "\"unchecked\"");
+
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("getDependencies");
+        methodBuilder.addModifiers(Modifier.PROTECTED);
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addAnnotation(annotationBuilder.build());
+
+        final ParameterizedTypeName parameterizedType = ParameterizedTypeName.get(CLASS_DEPENDENCY_QUERY, TypeVariableName.get("T"));
+        methodBuilder.addParameter(parameterizedType, "query", Modifier.FINAL);
+        methodBuilder.returns(TypeVariableName.get("<T> void"));
+
+        for (final Provision provision : getProvisions()) {
+            methodBuilder.beginControlFlow(String.format("if (query.matches(%1$s.class, %2$s.class))", provision.providedType, provision.implementationType));
+            addProvisionStatements(methodBuilder, provision);
+            methodBuilder.beginControlFlow(String.format("if (query.add((T) %1$s))", VARIABLE_DEPENDENCY));
             methodBuilder.addStatement(Keyword.RETURN.toString());
             methodBuilder.endControlFlow();
             methodBuilder.endControlFlow();
@@ -218,8 +510,46 @@ public class DependencyProviderClass {
         return methodBuilder.build();
     }
 
+    /**
+     * Tests if there are any providers for which a {@link DependencyProvider} implementation is
+     * generated.
+     * @return A {@code boolean} value.
+     */
+    public boolean hasProviders() {
+        return !providerClasses.isEmpty() || !providerConstructors.isEmpty() || !providerMethods.isEmpty();
+    }
+
+    public TypeElement getClassElement() {
+        return classElement;
+    }
+
     public String getPackageName(final Elements elementUtils) {
         final PackageElement packageElement = elementUtils.getPackageOf(classElement);
         return packageElement.isUnnamed() ? null : packageElement.getQualifiedName().toString();
     }
+
+    /**
+     * {@link Provision} is a model class used for storing the information needed for generating
+     * the statements that provide a dependency using a provider class, method, or constructor.
+     */
+    private static final class Provision {
+
+        final String creation;
+        final String implementationType;
+        final Lifecycle lifecycle;
+        final int maxPoolSize;
+        final List<? extends VariableElement> parameters;
+        final String providedType;
+        int index;
+
+        Provision(final String providedType, final String implementationType, final Lifecycle lifecycle,
+                  final int maxPoolSize, final List<? extends VariableElement> parameters, final String creation) {
+            this.providedType = providedType;
+            this.implementationType = implementationType;
+            this.lifecycle = lifecycle;
+            this.maxPoolSize = maxPoolSize;
+            this.parameters = parameters;
+            this.creation = creation;
+        }
+    }
 }
@@ -0,0 +1,167 @@
+package com.robopupu.compiler.dependency;
+
+import com.robopupu.api.dependency.D;
+import com.robopupu.api.dependency.DependencyScope;
+import com.robopupu.api.dependency.Inject;
+import com.robopupu.api.dependency.Injector;
+import com.robopupu.compiler.util.ProcessorException;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * {@link InjectorClass} is a model class used for storing information about the fields of a class
+ * annotated with {@link Inject} for generating an {@link Injector} for the class. The generated
+ * {@link Injector} resolves each distinct dependency only once and assigns it to all the fields
+ * that require it.
+ */
+public class InjectorClass {
+
+    private static final ClassName CLASS_D = ClassName.get(D.class);
+    private static final ClassName CLASS_DEPENDENCY_SCOPE = ClassName.get(DependencyScope.class);
+    private static final ClassName CLASS_INJECTOR = ClassName.get(Injector.class);
+
+    private static final String PARAM_SCOPE = "scope";
+    private static final String PARAM_TARGET = "target";
+    private static final String VARIABLE_PREFIX = "dependency";
+
+    private final TypeElement classElement;
+    private final ArrayList<DependencyParameter> fields;
+
+    public InjectorClass(final TypeElement classElement) {
+        this.classElement = classElement;
+        fields = new ArrayList<>();
+    }
+
+    public TypeElement getClassElement() {
+        return classElement;
+    }
+
+    /**
+     * Gets the qualified name of the generated {@link Injector} class. The generated class is
+     * a top level class in the package of the class declaring the fields, and the names of
+     * the enclosing classes of a nested class are joined to its name with underscores.
+     * @param elementUtils An {@link Elements} providing type utilities.
+     * @return The qualified name as a {@link String}.
+     */
+    public String getInjectorClassName(final Elements elementUtils) {
+        final String packageName = getPackageName(elementUtils);
+        final String className = getInjectorSimpleName(packageName);
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+
+    private String getPackageName(final Elements elementUtils) {
+        final PackageElement packageElement = elementUtils.getPackageOf(classElement);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    private String getInjectorSimpleName(final String packageName) {
+        final String qualifiedName = classElement.getQualifiedName().toString();
+        final String className = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        return className.replace('.', '_') + Injector.SUFFIX;
+    }
+
+    /**
+     * Adds the given field annotated with {@link Inject}. The field has to be accessible from
+     * the generated {@link Injector} in the package of the class declaring it.
+     * @param fieldElement A {@link VariableElement} representing the field.
+     * @throws ProcessorException If the field cannot be injected.
+     */
+    public void addField(final VariableElement fieldElement) throws ProcessorException {
+        final Set<Modifier> modifiers = fieldElement.getModifiers();
+
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+            throw new ProcessorException(fieldElement, "Fields annotated with @%s may not be private, final, or static. Field %s is invalid.",
+                    Inject.class.getSimpleName(), fieldElement.getSimpleName());
+        }
+        fields.add(new DependencyParameter(fieldElement));
+    }
+
+    /**
+     * Generates code for the {@link Injector} implementation.
+     * @param elementUtils An {@link Elements} providing type utilities.
+     * @param filer A {@link Filer} to write generated code to a file.
+     * @throws IOException
+     * @throws ProcessorException If the class declaring the fields is not accessible.
+     */
+    public void generateCode(final Elements elementUtils, final Filer filer) throws IOException, ProcessorException {
+
+        Element element = classElement;
+
+        while (element instanceof TypeElement) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new ProcessorException(classElement, "Private class %s may not have fields annotated with @%s.",
+                        classElement.getQualifiedName(), Inject.class.getSimpleName());
+            }
+            element = element.getEnclosingElement();
+        }
+
+        final String packageName = getPackageName(elementUtils);
+        final String className = getInjectorSimpleName(packageName);
+        final TypeName targetType = ClassName.get(classElement);
+
+        final TypeSpec.Builder classBuilder = TypeSpec.classBuilder(className);
+        classBuilder.addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+        classBuilder.addSuperinterface(ParameterizedTypeName.get(CLASS_INJECTOR, targetType));
+        classBuilder.addMethod(buildInjectMethod(targetType));
+
+        final TypeSpec typeSpec = classBuilder.build();
+        JavaFile.builder(packageName, typeSpec).build().writeTo(filer);
+    }
+
+    private MethodSpec buildInjectMethod(final TypeName targetType) {
+
+        final AnnotationSpec.Builder annotationBuilder = AnnotationSpec.builder(SuppressWarnings.class);
+        annotationBuilder.addMember("value", "\"unchecked\"");
+
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("inject");
+        methodBuilder.addModifiers(Modifier.PUBLIC);
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addAnnotation(annotationBuilder.build());
+        methodBuilder.addParameter(targetType, PARAM_TARGET, Modifier.FINAL);
+        methodBuilder.addParameter(CLASS_DEPENDENCY_SCOPE, PARAM_SCOPE, Modifier.FINAL);
+
+        // Each distinct dependency or handle is resolved only once into a local variable
+
+        final LinkedHashMap<String, String> variables = new LinkedHashMap<>();
+
+        for (final DependencyParameter field : fields) {
+            String variable = variables.get(field.getType());
+
+            if (variable == null) {
+                variable = VARIABLE_PREFIX + variables.size();
+                variables.put(field.getType(), variable);
+                methodBuilder.addStatement(String.format("final %1$s %2$s = $T.%3$s(%4$s, %5$s.class)", field.getType(),
+                        variable, field.getResolvingMethod(), PARAM_SCOPE, getErasedType(field.getDependencyType())), CLASS_D);
+            }
+        }
+
+        for (final DependencyParameter field : fields) {
+            final String variable = variables.get(field.getType());
+            methodBuilder.addStatement(String.format("%1$s.%2$s = %3$s", PARAM_TARGET, field.getName(), variable));
+        }
+        return methodBuilder.build();
+    }
+
+    private static String getErasedType(final String type) {
+        final int index = type.indexOf('<');
+        return (index > 0) ? type.substring(0, index) : type;
+    }
+}
@@ -0,0 +1,150 @@
+package com.robopupu.compiler.dependency;
+
+import com.robopupu.api.dependency.InstanceFactory;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+
+/**
+ * {@link InstanceFactoryClass} is a model class used for storing information about the classes
+ * of a package that can be instantiated by a code generated {@link InstanceFactory}. The generated
+ * {@link InstanceFactory} is named after the first of the classes, so that the {@link InstanceFactory}s
+ * generated by different modules and processing rounds for a shared package do not collide.
+ */
+public class InstanceFactoryClass {
+
+    private static final ClassName CLASS_INSTANCE_FACTORY = ClassName.get(InstanceFactory.class);
+
+    private final String packageName;
+    private final TreeSet<String> types;
+
+    public InstanceFactoryClass(final String packageName) {
+        this.packageName = packageName;
+        types = new TreeSet<>();
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * Adds the given class if it can be instantiated using a constructor without parameters from
+     * the code generated {@link InstanceFactory}.
+     * @param typeElement A {@link TypeElement} representing the class.
+     */
+    public void addType(final TypeElement typeElement) {
+        if (isInstantiable(typeElement)) {
+            types.add(typeElement.getQualifiedName().toString());
+        }
+    }
+
+    /**
+     * Tests if the given class is a concrete class that has a non-private constructor without
+     * parameters and that is accessible from its package.
+     * @param typeElement A {@link TypeElement} representing the class.
+     * @return A {@code boolean} value.
+     */
+    public static boolean isInstantiable(final TypeElement typeElement) {
+        if (typeElement.getKind() != ElementKind.CLASS) {
+            return false;
+        }
+
+        Element element = typeElement;
+
+        while (element instanceof TypeElement) {
+            final Set<Modifier> modifiers = element.getModifiers();
+
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+
+            final Element enclosingElement = element.getEnclosingElement();
+
+            if (enclosingElement instanceof TypeElement && !modifiers.contains(Modifier.STATIC)) {
+                return false;
+            }
+            element = enclosingElement;
+        }
+
+        if (typeElement.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+
+        final List<ExecutableElement> constructors = ElementFilter.constructorsIn(typeElement.getEnclosedElements());
+
+        for (final ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return types.isEmpty();
+    }
+
+    /**
+     * Generates code for {@link InstanceFactory} implementation.
+     * @param filer A {@link Filer} to write generated code to a file.
+     * @return The qualified name of the generated {@link InstanceFactory} class as a {@link String}.
+     * @throws IOException
+     */
+    public String generateCode(final Filer filer) throws IOException {
+
+        final String firstType = types.first();
+        final String simpleName = packageName.isEmpty() ? firstType : firstType.substring(packageName.length() + 1);
+        final String className = simpleName.replace('.', '_') + InstanceFactory.SUFFIX;
+
+        final TypeSpec.Builder classBuilder = TypeSpec.classBuilder(className);
+        classBuilder.addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+        classBuilder.addSuperinterface(CLASS_INSTANCE_FACTORY);
+        classBuilder.addMethod(buildNewInstanceMethod());
+
+        final TypeSpec typeSpec = classBuilder.build();
+        JavaFile.builder(packageName, typeSpec).build().writeTo(filer);
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+
+    private MethodSpec buildNewInstanceMethod() {
+
+        final AnnotationSpec.Builder annotationBuilder = AnnotationSpec.builder(SuppressWarnings.class);
+        annotationBuilder.addMember("value", "\"unchecked\"");
+
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("newInstance");
+        methodBuilder.addModifiers(Modifier.PUBLIC);
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addAnnotation(annotationBuilder.build());
+
+        final TypeVariableName typeVariable = TypeVariableName.get("T");
+        methodBuilder.addTypeVariable(typeVariable);
+        methodBuilder.addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), typeVariable), "type", Modifier.FINAL);
+        methodBuilder.returns(typeVariable);
+
+        for (final String type : types) {
+            methodBuilder.beginControlFlow(String.format("if (type == %1$s.class)", type));
+            methodBuilder.addStatement(String.format("return (T) new %1$s()", type));
+            methodBuilder.endControlFlow();
+        }
+
+        methodBuilder.addStatement("return null");
+        return methodBuilder.build();
+    }
+}
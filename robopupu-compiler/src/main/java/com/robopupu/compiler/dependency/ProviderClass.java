@@ -1,6 +1,10 @@
 package com.robopupu.compiler.dependency;
 
-import java.util.Collection;
+import com.robopupu.api.dependency.Eager;
+import com.robopupu.api.dependency.Lifecycle;
+import com.robopupu.api.dependency.Pooled;
+import com.robopupu.api.dependency.Provides;
+import com.robopupu.compiler.util.AnnotationToolkit;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -32,12 +36,34 @@ public class ProviderClass  {
         if (providesAnnotation == null) {
             return typeElement.toString();
         } else {
-            Collection<? extends AnnotationValue> values = providesAnnotation.getElementValues().values();
-            final AnnotationValue value = values.iterator().next();
+            final AnnotationValue value = AnnotationToolkit.getValue(providesAnnotation, AnnotationToolkit.VALUE);
             return value.toString().replace(".class", "");
         }
     }
 
+    public boolean isEager() {
+        return typeElement.getAnnotation(Eager.class) != null;
+    }
+
+    /**
+     * Gets the {@link Lifecycle} declared by the {@link Provides} annotation.
+     * @return A {@link Lifecycle}.
+     */
+    public Lifecycle getLifecycle() {
+        final Provides provides = typeElement.getAnnotation(Provides.class);
+        return (provides != null) ? provides.lifecycle() : Lifecycle.SCOPED;
+    }
+
+    /**
+     * Gets the maximum size of the {@link com.robopupu.api.dependency.ObjectPool} for a provider
+     * annotated with {@link Pooled}.
+     * @return The maximum size as an {@code int}, or zero if the provider is not pooled.
+     */
+    public int getMaxPoolSize() {
+        final Pooled pooled = typeElement.getAnnotation(Pooled.class);
+        return (pooled != null) ? Math.max(pooled.maxSize(), 0) : 0;
+    }
+
     public String getType() {
         return typeElement.toString();
     }
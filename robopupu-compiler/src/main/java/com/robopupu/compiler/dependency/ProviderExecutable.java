@@ -1,5 +1,10 @@
 package com.robopupu.compiler.dependency;
 
+import com.robopupu.api.dependency.Eager;
+import com.robopupu.api.dependency.Lifecycle;
+import com.robopupu.api.dependency.Pooled;
+import com.robopupu.api.dependency.Provides;
+
 import java.util.List;
 
 import javax.lang.model.element.AnnotationMirror;
@@ -28,6 +33,29 @@ public abstract class ProviderExecutable {
         return executableElement.getParameters();
     }
 
+    public boolean isEager() {
+        return executableElement.getAnnotation(Eager.class) != null;
+    }
+
+    /**
+     * Gets the {@link Lifecycle} declared by the {@link Provides} annotation.
+     * @return A {@link Lifecycle}.
+     */
+    public Lifecycle getLifecycle() {
+        final Provides provides = executableElement.getAnnotation(Provides.class);
+        return (provides != null) ? provides.lifecycle() : Lifecycle.SCOPED;
+    }
+
+    /**
+     * Gets the maximum size of the {@link com.robopupu.api.dependency.ObjectPool} for a provider
+     * annotated with {@link Pooled}.
+     * @return The maximum size as an {@code int}, or zero if the provider is not pooled.
+     */
+    public int getMaxPoolSize() {
+        final Pooled pooled = executableElement.getAnnotation(Pooled.class);
+        return (pooled != null) ? Math.max(pooled.maxSize(), 0) : 0;
+    }
+
     public abstract String getProvidedType();
 
     public boolean hasParameters() {
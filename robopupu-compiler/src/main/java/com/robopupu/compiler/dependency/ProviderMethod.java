@@ -1,6 +1,6 @@
 package com.robopupu.compiler.dependency;
 
-import java.util.Collection;
+import com.robopupu.compiler.util.AnnotationToolkit;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -29,8 +29,7 @@ public class ProviderMethod extends ProviderExecutable  {
         if (providesAnnotation == null) {
             return executableElement.getReturnType().toString();
         } else {
-            Collection<? extends AnnotationValue> values = providesAnnotation.getElementValues().values();
-            final AnnotationValue value = values.iterator().next();
+            final AnnotationValue value = AnnotationToolkit.getValue(providesAnnotation, AnnotationToolkit.VALUE);
             return value.toString().replace(".class", "");
         }
     }
@@ -0,0 +1,240 @@
+package com.robopupu.compiler.dependency;
+
+import com.robopupu.api.dependency.DependencyProvider;
+import com.robopupu.api.dependency.DependencyScope;
+import com.robopupu.api.dependency.Injector;
+import com.robopupu.api.dependency.ScopeRegistry;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.TreeMap;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+
+/**
+ * {@link ScopeRegistryClass} is a model class used for storing information about the classes
+ * annotated with {@link com.robopupu.api.dependency.Scope} and the classes that have fields
+ * annotated with {@link com.robopupu.api.dependency.Inject} for generating a {@link ScopeRegistry}.
+ * A {@link ScopeRegistry} is generated for each processing round, and it is named after the first
+ * of the processed classes, so that the {@link ScopeRegistry}s of different modules and rounds do not
+ * collide. They are chained at runtime by {@link ScopeRegistry}.
+ */
+public class ScopeRegistryClass {
+
+    private static final ClassName CLASS_DEPENDENCY_PROVIDER = ClassName.get(DependencyProvider.class);
+    private static final ClassName CLASS_DEPENDENCY_SCOPE = ClassName.get(DependencyScope.class);
+    private static final ClassName CLASS_INJECTOR = ClassName.get(Injector.class);
+    private static final ClassName CLASS_SCOPE_REGISTRY = ClassName.get(ScopeRegistry.class);
+
+    private final TreeMap<String, String> dependencyProviderClasses;
+    private final TreeMap<String, String> injectorClasses;
+    private final TreeMap<String, String> packageNames;
+    private final TreeMap<String, Boolean> scopeClasses;
+
+    public ScopeRegistryClass() {
+        dependencyProviderClasses = new TreeMap<>();
+        injectorClasses = new TreeMap<>();
+        packageNames = new TreeMap<>();
+        scopeClasses = new TreeMap<>();
+    }
+
+    /**
+     * Adds the {@link DependencyScope} class represented by the given {@link DependencyProviderClass}.
+     * Only public classes can be accessed from the generated {@link ScopeRegistry}.
+     * @param elementUtils An {@link Elements} providing type utilities.
+     * @param dependencyProviderClass A {@link DependencyProviderClass}.
+     */
+    public void addScopeClass(final Elements elementUtils, final DependencyProviderClass dependencyProviderClass) {
+        final TypeElement classElement = dependencyProviderClass.getClassElement();
+
+        if (!isPublic(classElement)) {
+            return;
+        }
+
+        final String scopeClassName = classElement.getQualifiedName().toString();
+        final String packageName = getPackageName(elementUtils, classElement);
+        scopeClasses.put(scopeClassName, hasPublicConstructor(classElement));
+        packageNames.put(scopeClassName, packageName);
+
+        if (dependencyProviderClass.hasProviders()) {
+            final String prefix = packageName.isEmpty() ? "" : packageName + ".";
+            dependencyProviderClasses.put(scopeClassName, prefix + classElement.getSimpleName() + DependencyProvider.SUFFIX);
+        }
+    }
+
+    /**
+     * Adds the {@link Injector} class represented by the given {@link InjectorClass}. Only
+     * the {@link Injector}s of public classes can be accessed from the generated {@link ScopeRegistry}.
+     * @param elementUtils An {@link Elements} providing type utilities.
+     * @param injectorClass An {@link InjectorClass}.
+     */
+    public void addInjectorClass(final Elements elementUtils, final InjectorClass injectorClass) {
+        final TypeElement classElement = injectorClass.getClassElement();
+
+        if (isPublic(classElement)) {
+            final String className = classElement.getQualifiedName().toString();
+            injectorClasses.put(className, injectorClass.getInjectorClassName(elementUtils));
+            packageNames.put(className, getPackageName(elementUtils, classElement));
+        }
+    }
+
+    public boolean isEmpty() {
+        return scopeClasses.isEmpty() && injectorClasses.isEmpty();
+    }
+
+    private static String getPackageName(final Elements elementUtils, final TypeElement classElement) {
+        final PackageElement packageElement = elementUtils.getPackageOf(classElement);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    private static boolean isPublic(final TypeElement classElement) {
+        Element element = classElement;
+
+        while (element instanceof TypeElement) {
+            if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private static boolean hasPublicConstructor(final TypeElement classElement) {
+        if (classElement.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+
+        final List<ExecutableElement> constructors = ElementFilter.constructorsIn(classElement.getEnclosedElements());
+
+        for (final ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates code for {@link ScopeRegistry} implementation.
+     * @param filer A {@link Filer} to write generated code to a file.
+     * @return The qualified name of the generated {@link ScopeRegistry} class as a {@link String}.
+     * @throws IOException
+     */
+    public String generateCode(final Filer filer) throws IOException {
+
+        final String firstClassName = packageNames.firstKey();
+        final String packageName = packageNames.get(firstClassName);
+        final String simpleName = packageName.isEmpty() ? firstClassName : firstClassName.substring(packageName.length() + 1);
+        final String className = simpleName.replace('.', '_') + ScopeRegistry.SUFFIX;
+
+        final TypeSpec.Builder classBuilder = TypeSpec.classBuilder(className);
+        classBuilder.addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+        classBuilder.superclass(CLASS_SCOPE_REGISTRY);
+        classBuilder.addMethod(buildGetScopeClassMethod());
+        classBuilder.addMethod(buildNewScopeMethod());
+        classBuilder.addMethod(buildNewDependencyProviderMethod());
+        classBuilder.addMethod(buildNewInjectorMethod());
+
+        final TypeSpec typeSpec = classBuilder.build();
+        JavaFile.builder(packageName, typeSpec).build().writeTo(filer);
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+
+    private MethodSpec buildGetScopeClassMethod() {
+
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("getScopeClass");
+        methodBuilder.addModifiers(Modifier.PUBLIC);
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addParameter(String.class, "scopeClassName", Modifier.FINAL);
+        methodBuilder.returns(ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(CLASS_DEPENDENCY_SCOPE)));
+
+        methodBuilder.beginControlFlow("switch (scopeClassName)");
+
+        for (final String scopeClassName : scopeClasses.keySet()) {
+            methodBuilder.addCode("case $S:\n$>", scopeClassName);
+            methodBuilder.addStatement(String.format("return %1$s.class", scopeClassName));
+            methodBuilder.addCode("$<");
+        }
+
+        methodBuilder.endControlFlow();
+        methodBuilder.addStatement("return super.getScopeClass(scopeClassName)");
+        return methodBuilder.build();
+    }
+
+    private MethodSpec buildNewScopeMethod() {
+
+        final AnnotationSpec.Builder annotationBuilder = AnnotationSpec.builder(SuppressWarnings.class);
+        annotationBuilder.addMember("value", "\"unchecked\"");
+
+        final TypeVariableName typeVariable = TypeVariableName.get("T", CLASS_DEPENDENCY_SCOPE);
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("newScope");
+        methodBuilder.addModifiers(Modifier.PUBLIC);
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addAnnotation(annotationBuilder.build());
+        methodBuilder.addTypeVariable(typeVariable);
+        methodBuilder.addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), typeVariable), "scopeClass", Modifier.FINAL);
+        methodBuilder.returns(typeVariable);
+
+        for (final String scopeClassName : scopeClasses.keySet()) {
+            if (scopeClasses.get(scopeClassName)) {
+                methodBuilder.beginControlFlow(String.format("if (scopeClass == %1$s.class)", scopeClassName));
+                methodBuilder.addStatement(String.format("return (T) new %1$s()", scopeClassName));
+                methodBuilder.endControlFlow();
+            }
+        }
+
+        methodBuilder.addStatement("return super.newScope(scopeClass)");
+        return methodBuilder.build();
+    }
+
+    private MethodSpec buildNewDependencyProviderMethod() {
+
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("newDependencyProvider");
+        methodBuilder.addModifiers(Modifier.PUBLIC);
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(CLASS_DEPENDENCY_SCOPE)), "scopeClass", Modifier.FINAL);
+        methodBuilder.returns(CLASS_DEPENDENCY_PROVIDER);
+
+        for (final String scopeClassName : dependencyProviderClasses.keySet()) {
+            methodBuilder.beginControlFlow(String.format("if (scopeClass == %1$s.class)", scopeClassName));
+            methodBuilder.addStatement(String.format("return new %1$s()", dependencyProviderClasses.get(scopeClassName)));
+            methodBuilder.endControlFlow();
+        }
+
+        methodBuilder.addStatement("return super.newDependencyProvider(scopeClass)");
+        return methodBuilder.build();
+    }
+
+    private MethodSpec buildNewInjectorMethod() {
+
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("newInjector");
+        methodBuilder.addModifiers(Modifier.PUBLIC);
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)), "targetClass", Modifier.FINAL);
+        methodBuilder.returns(ParameterizedTypeName.get(CLASS_INJECTOR, WildcardTypeName.subtypeOf(Object.class)));
+
+        for (final String targetClassName : injectorClasses.keySet()) {
+            methodBuilder.beginControlFlow("if (targetClass == $L.class)", targetClassName);
+            methodBuilder.addStatement("return new $L()", injectorClasses.get(targetClassName));
+            methodBuilder.endControlFlow();
+        }
+
+        methodBuilder.addStatement("return super.newInjector(targetClass)");
+        return methodBuilder.build();
+    }
+}
@@ -4,7 +4,10 @@ import com.google.auto.service.AutoService;
 
 import com.robopupu.api.fsm.StateMachineContext;
 import com.robopupu.api.fsm.StateMachineEvents;
+import com.robopupu.api.fsm.SuperState;
+import com.robopupu.api.fsm.Timeout;
 import com.robopupu.compiler.util.ProcessorException;
+import com.robopupu.compiler.util.StringToolkit;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -26,10 +29,13 @@ import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 import javax.tools.Diagnostic;
 
@@ -61,6 +67,8 @@ public class FsmAnnotationProcessor extends AbstractProcessor {
         final Set<String> annotations = new LinkedHashSet<>();
         annotations.add(StateMachineEvents.class.getCanonicalName());
         annotations.add(StateMachineContext.class.getCanonicalName());
+        annotations.add(SuperState.class.getCanonicalName());
+        annotations.add(Timeout.class.getCanonicalName());
         return annotations;
     }
 
@@ -201,6 +209,16 @@ public class FsmAnnotationProcessor extends AbstractProcessor {
             handleError(e.getElement(), e.getMessage());
         }
 
+        // Find the state classes derived from the StateEngine implementations to be generated
+
+        try {
+            for (final StateEngineClass stateEngineClass : mStateEngineClasses.values()) {
+                addStateClasses(stateEngineClass, ElementFilter.typesIn(roundEnvironment.getRootElements()));
+            }
+        } catch (ProcessorException e) {
+            handleError(e.getElement(), e.getMessage());
+        }
+
         // Generate StateEngine implementations for all classes specified in StateMachineEvents
         // annotations
         try {
@@ -208,6 +226,8 @@ public class FsmAnnotationProcessor extends AbstractProcessor {
                 stateEngineClass.generateCode(elementUtils, filer);
             }
             mStateEngineClasses.clear();
+        } catch (ProcessorException e) {
+            handleError(e.getElement(), e.getMessage());
         } catch (IOException e) {
             handleError(null, e.getMessage());
         }
@@ -215,6 +235,106 @@ public class FsmAnnotationProcessor extends AbstractProcessor {
         return true;
     }
 
+    /**
+     * Adds the concrete classes among the given classes and their nested classes that are derived
+     * from the {@link StateEngineClass} to be generated. The super states of the added classes are
+     * added too, so that a super state compiled separately from its sub states is not left out of
+     * the state hierarchy.
+     *
+     * @param stateEngineClass A {@link StateEngineClass}.
+     * @param classElements A {@link Collection} of {@link TypeElement}s.
+     * @throws ProcessorException If a state class is not valid.
+     */
+    private void addStateClasses(final StateEngineClass stateEngineClass, final Collection<TypeElement> classElements) throws ProcessorException {
+        for (final TypeElement classElement : classElements) {
+            if (classElement.getKind() == ElementKind.CLASS && !classElement.getModifiers().contains(Modifier.ABSTRACT)
+                    && isStateClass(stateEngineClass, classElement)) {
+                TypeElement stateClass = classElement;
+
+                while (stateClass != null && !stateEngineClass.hasStateClass(stateClass)) {
+                    final TypeElement superStateClass = getSuperStateClass(stateEngineClass, stateClass);
+                    stateEngineClass.addStateClass(stateClass, superStateClass);
+                    stateClass = superStateClass;
+                }
+            }
+            addStateClasses(stateEngineClass, ElementFilter.typesIn(classElement.getEnclosedElements()));
+        }
+    }
+
+    /**
+     * Tests if the given class is derived from the {@link StateEngineClass}. The state classes are
+     * compiled in the same round as the annotated interfaces, so their super class chain ends to
+     * an unresolved type that refers to the not yet generated {@link StateEngineClass} either by
+     * its simple name from the same package or by its qualified name.
+     *
+     * @param stateEngineClass A {@link StateEngineClass}.
+     * @param classElement A {@link TypeElement} representing a class.
+     * @return A {@code boolean} value.
+     */
+    private boolean isStateClass(final StateEngineClass stateEngineClass, final TypeElement classElement) {
+        final String stateEngineClassName = stateEngineClass.getStateEngineClassName();
+        final String packageName = StringToolkit.getPackageName(stateEngineClassName);
+        TypeElement element = classElement;
+
+        while (true) {
+            final TypeMirror superClass = element.getSuperclass();
+            final String superClassName = superClass.toString();
+
+            if (superClass.getKind() == TypeKind.ERROR) {
+                return superClassName.equals(stateEngineClassName) || (superClassName.equals(StringToolkit.getClassName(stateEngineClassName))
+                        && elementUtils.getPackageOf(element).getQualifiedName().contentEquals(packageName));
+            } else if (superClass.getKind() != TypeKind.DECLARED) {
+                return false;
+            } else if (superClassName.equals(stateEngineClassName)) {
+                return true;
+            }
+            element = (TypeElement) ((DeclaredType) superClass).asElement();
+        }
+    }
+
+    /**
+     * Gets the super state class of the given state class from its {@link SuperState} annotation
+     * that may also be inherited from a super class of the state class.
+     *
+     * @param stateEngineClass A {@link StateEngineClass}.
+     * @param stateClass A {@link TypeElement} representing a state class.
+     * @return A {@link TypeElement} representing the super state class, or {@code null} if
+     * the state class is a top-level state.
+     * @throws ProcessorException If the super state class is not a concrete state class.
+     */
+    private TypeElement getSuperStateClass(final StateEngineClass stateEngineClass, final TypeElement stateClass) throws ProcessorException {
+        for (final AnnotationMirror annotationMirror : elementUtils.getAllAnnotationMirrors(stateClass)) {
+            if (annotationMirror.getAnnotationType().toString().contentEquals(SuperState.class.getName())) {
+                for (final AnnotationValue value : annotationMirror.getElementValues().values()) {
+
+                    // A class literal of a type that cannot be resolved yet has no TypeMirror. Only
+                    // the generated StateEngine implementation is missing, and any other unknown
+                    // type is reported by the compiler.
+
+                    if (!(value.getValue() instanceof TypeMirror)) {
+                        return null;
+                    }
+
+                    final TypeMirror superStateType = (TypeMirror) value.getValue();
+
+                    if (superStateType.getKind() == TypeKind.DECLARED) {
+                        final TypeElement superStateClass = (TypeElement) ((DeclaredType) superStateType).asElement();
+
+                        if (superStateClass.getQualifiedName().contentEquals(stateEngineClass.getStateEngineClassName())) {
+                            return null;
+                        } else if (superStateClass.getKind() == ElementKind.CLASS && !superStateClass.getModifiers().contains(Modifier.ABSTRACT)
+                                && isStateClass(stateEngineClass, superStateClass)) {
+                            return superStateClass;
+                        }
+                    }
+                    throw new ProcessorException(stateClass, "The super state %s of state %s is not a concrete state of %s",
+                            superStateType, stateClass.getQualifiedName(), stateEngineClass.getStateEngineClassName());
+                }
+            }
+        }
+        return null;
+    }
+
     private void validateEventMethod(final EventMethod method) throws ProcessorException {
         final ExecutableElement element = method.getExecutableElement();
         final TypeMirror returnType = element.getReturnType();
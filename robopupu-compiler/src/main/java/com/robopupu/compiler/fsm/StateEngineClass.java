@@ -1,5 +1,6 @@
 package com.robopupu.compiler.fsm;
 
+import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
@@ -11,19 +12,35 @@ import com.squareup.javapoet.TypeSpec;
 import com.squareup.javapoet.TypeVariableName;
 import com.squareup.javapoet.WildcardTypeName;
 
+import com.robopupu.api.fsm.AsyncEvents;
 import com.robopupu.api.fsm.StateEngine;
+import com.robopupu.api.fsm.StateHierarchy;
+import com.robopupu.api.fsm.StateMachine;
+import com.robopupu.api.fsm.StateMachineExecutor;
 import com.robopupu.api.fsm.StateMachineEvents;
+import com.robopupu.api.fsm.Timeout;
 import com.robopupu.compiler.util.ProcessorException;
 import com.robopupu.compiler.util.StringToolkit;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 
 /**
@@ -34,14 +51,22 @@ import javax.lang.model.util.Elements;
 public class StateEngineClass {
 
     private static final String STATE_ENGINE_CLASS_NAME = "State";
+    private static final String ASYNC_CLASS_NAME = "Async";
+    private static final String FIELD_STATE_HIERARCHY = "STATE_HIERARCHY";
+    private static final String FIELD_PREFIX_STATE_ID = "ID_";
 
     private static final ClassName CLASS_STATE_ENGINE = ClassName.get(StateEngine.class);
+    private static final ClassName CLASS_STATE_HIERARCHY = ClassName.get(StateHierarchy.class);
+    private static final ClassName CLASS_ASYNC_EVENTS = ClassName.get(AsyncEvents.class);
 
     private final String className;
     private final HashMap<String, TypeElement> contextInterfaces;
     private final HashMap<String, TypeElement> eventInterfaces;
     private final HashMap<String, EventMethod> eventMethods;
     private final HashMap<String, SetterMethod> setterMethods;
+    private final TreeMap<String, TypeElement> stateClasses;
+    private final HashMap<String, TypeElement> superStateClasses;
+    private final HashMap<String, Timeout> timeouts;
 
     public StateEngineClass(final String className) throws ProcessorException {
         this.className = className;
@@ -49,6 +74,57 @@ public class StateEngineClass {
         eventInterfaces = new HashMap<>();
         eventMethods = new HashMap<>();
         setterMethods = new HashMap<>();
+        stateClasses = new TreeMap<>();
+        superStateClasses = new HashMap<>();
+        timeouts = new HashMap<>();
+    }
+
+    /**
+     * Gets the qualified name of the generated {@link StateEngine} implementation.
+     * @return The name as a {@link String}.
+     */
+    public String getStateEngineClassName() {
+        final String packageName = StringToolkit.getPackageName(className);
+        return packageName.isEmpty() ? STATE_ENGINE_CLASS_NAME : packageName + "." + STATE_ENGINE_CLASS_NAME;
+    }
+
+    /**
+     * Adds a concrete state class derived from the generated {@link StateEngine} implementation.
+     * The states are assigned ids in the order of their qualified names, so that the ids do not
+     * depend on the order in which the classes are processed. The event methods have to be added
+     * before the state classes, because the event of a {@link Timeout} annotating a state class
+     * is validated when the state class is added.
+     * @param stateClass A {@link TypeElement} representing the state class.
+     * @param superStateClass A {@link TypeElement} representing the super state class, or
+     *                        {@code null} for a top-level state.
+     * @throws ProcessorException If the {@link Timeout} of the state class is not valid.
+     */
+    public void addStateClass(final TypeElement stateClass, final TypeElement superStateClass) throws ProcessorException {
+        final String stateClassName = stateClass.getQualifiedName().toString();
+        final Timeout timeout = stateClass.getAnnotation(Timeout.class);
+
+        if (timeout != null) {
+            // The delays are generated in milliseconds, and a zero delay is never scheduled
+
+            if (timeout.unit().toMillis(timeout.value()) <= 0) {
+                throw new ProcessorException(stateClass, "@%s has to specify a time of at least one millisecond", Timeout.class.getSimpleName());
+            } else if (!eventMethods.containsKey(timeout.event() + "()")) {
+                throw new ProcessorException(stateClass, "@%s event %s() is not an event method without parameters",
+                        Timeout.class.getSimpleName(), timeout.event());
+            }
+            timeouts.put(stateClassName, timeout);
+        }
+        stateClasses.put(stateClassName, stateClass);
+        superStateClasses.put(stateClassName, superStateClass);
+    }
+
+    /**
+     * Tests if the given state class has been added.
+     * @param stateClass A {@link TypeElement} representing the state class.
+     * @return A {@code boolean} value.
+     */
+    public boolean hasStateClass(final TypeElement stateClass) {
+        return stateClasses.containsKey(stateClass.getQualifiedName().toString());
     }
 
     public void addEventMethod(final EventMethod eventMethod) {
@@ -69,7 +145,7 @@ public class StateEngineClass {
         contextInterfaces.put(contextInterface.getQualifiedName().toString(), contextInterface);
     }
 
-    public void generateCode(final Elements elementUtils, final Filer filer) throws IOException {
+    public void generateCode(final Elements elementUtils, final Filer filer) throws IOException, ProcessorException {
         final String packageName  = StringToolkit.getPackageName(className);
         final TypeSpec.Builder classBuilder = TypeSpec.classBuilder(STATE_ENGINE_CLASS_NAME);
         final ParameterizedTypeName superType = ParameterizedTypeName.get(CLASS_STATE_ENGINE, TypeVariableName.get(STATE_ENGINE_CLASS_NAME));
@@ -85,19 +161,34 @@ public class StateEngineClass {
             classBuilder.addSuperinterface(TypeName.get(contextInterface.asType()));
         }
 
+        // The events are assigned ids in the order of their signatures
+
+        final HashMap<String, Integer> eventIds = new HashMap<>();
+
+        for (final String signature : new TreeSet<>(eventMethods.keySet())) {
+            eventIds.put(signature, eventIds.size());
+        }
+
+        buildStateHierarchyField(classBuilder, eventIds);
+        buildStateIdFields(classBuilder);
         buildPrivateConstructor(classBuilder);
         buildStateConstructor(classBuilder);
         buildCreateMethod(classBuilder);
+        buildCreateStateMethod(elementUtils, packageName, classBuilder);
 
         for (final EventMethod eventMethod : eventMethods.values()) {
-            buildEventDispatcherMethod(classBuilder, eventMethod);
+            buildEventDispatcherMethod(classBuilder, eventMethod, eventIds.get(eventMethod.getSignature()));
         }
 
+        buildDispatchEventMethod(classBuilder, eventIds);
+
         for (final SetterMethod setterMethod : setterMethods.values()) {
             buildContextGetterMethod(classBuilder, setterMethod);
             buildContextSetterMethod(classBuilder, setterMethod);
         }
 
+        buildAsyncClass(classBuilder, eventIds);
+
         final TypeSpec typeSpec = classBuilder.build();
         JavaFile.builder(packageName, typeSpec).build().writeTo(filer);
     }
@@ -125,10 +216,227 @@ public class StateEngineClass {
         final ParameterizedTypeName type = ParameterizedTypeName.get(ClassName.get(Class.class), bounds);
         final ParameterSpec.Builder parameterBuilder = ParameterSpec.builder(type, "initialStateClass", Modifier.FINAL);
         methodBuilder.addParameter(parameterBuilder.build());
-        methodBuilder.addStatement("super(initialStateClass)");
+        methodBuilder.addStatement(String.format("super(initialStateClass, %s)", FIELD_STATE_HIERARCHY));
+        classBuilder.addMethod(methodBuilder.build());
+    }
+
+    /**
+     * Create a static field for the {@link StateHierarchy} listing the state classes in the order
+     * of their ids, the ids of their super states, the ids of the events handled by each state,
+     * and the {@link Timeout}s of the states if any. The id zero is reserved for the generated
+     * {@link StateEngine} implementation.
+     * @param classBuilder A {@link TypeSpec.Builder} for adding the created field.
+     * @param eventIds The ids of the event methods indexed by their signatures.
+     */
+    private void buildStateHierarchyField(final TypeSpec.Builder classBuilder, final HashMap<String, Integer> eventIds) {
+        final HashMap<String, Integer> stateIds = new HashMap<>();
+        final StringBuilder initializer = new StringBuilder("new $T($>$>\nnew Class<?>[] {$>\n");
+        initializer.append(STATE_ENGINE_CLASS_NAME).append(".class");
+        stateIds.put(getStateEngineClassName(), StateHierarchy.ROOT_ID);
+
+        for (final String stateClassName : stateClasses.keySet()) {
+            initializer.append(",\n").append(stateClassName).append(".class");
+            stateIds.put(stateClassName, stateIds.size());
+        }
+
+        initializer.append("$<},\nnew int[] {").append(StateHierarchy.UNKNOWN_ID);
+
+        for (final String stateClassName : stateClasses.keySet()) {
+            final TypeElement superStateClass = superStateClasses.get(stateClassName);
+            final int superStateId = (superStateClass != null) ? stateIds.get(superStateClass.getQualifiedName().toString()) : StateHierarchy.ROOT_ID;
+            initializer.append(", ").append(superStateId);
+        }
+
+        initializer.append("},\n").append(eventIds.size()).append(",\nnew int[][] {$>\n{}");
+
+        for (final TypeElement stateClass : stateClasses.values()) {
+            final StringBuilder handledEvents = new StringBuilder();
+
+            for (final String signature : getEventSignatures(stateClass)) {
+                final Integer eventId = eventIds.get(signature);
+
+                if (eventId != null) {
+                    handledEvents.append((handledEvents.length() > 0) ? ", " : "").append(eventId);
+                }
+            }
+            initializer.append(",\n{").append(handledEvents).append("}");
+        }
+        initializer.append("$<}");
+
+        if (!timeouts.isEmpty()) {
+            final StringBuilder timeoutDelays = new StringBuilder("0L");
+            final StringBuilder timeoutEventIds = new StringBuilder(String.valueOf(StateHierarchy.UNKNOWN_ID));
+
+            for (final String stateClassName : stateClasses.keySet()) {
+                final Timeout timeout = timeouts.get(stateClassName);
+
+                if (timeout != null) {
+                    timeoutDelays.append(", ").append(timeout.unit().toMillis(timeout.value())).append('L');
+                    timeoutEventIds.append(", ").append(eventIds.get(timeout.event() + "()"));
+                } else {
+                    timeoutDelays.append(", 0L");
+                    timeoutEventIds.append(", ").append(StateHierarchy.UNKNOWN_ID);
+                }
+            }
+            initializer.append(",\nnew long[] {").append(timeoutDelays).append("}");
+            initializer.append(",\nnew int[] {").append(timeoutEventIds).append("}");
+        }
+        initializer.append("$<$<)");
+
+        final FieldSpec.Builder fieldBuilder = FieldSpec.builder(CLASS_STATE_HIERARCHY, FIELD_STATE_HIERARCHY, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+        fieldBuilder.initializer(initializer.toString(), CLASS_STATE_HIERARCHY);
+        classBuilder.addField(fieldBuilder.build());
+    }
+
+    /**
+     * Gets the signatures of the methods declared by the given state class and its super classes
+     * that are derived from the generated {@link StateEngine} implementation.
+     * @param stateClass A {@link TypeElement} representing the state class.
+     * @return A {@link Set} of signatures as {@link String}s ordered by the signatures.
+     */
+    private Set<String> getEventSignatures(final TypeElement stateClass) {
+        final TreeSet<String> signatures = new TreeSet<>();
+        final String stateEngineClassName = getStateEngineClassName();
+        TypeElement element = stateClass;
+
+        while (true) {
+            for (final ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+                final Set<Modifier> modifiers = method.getModifiers();
+
+                if (!modifiers.contains(Modifier.ABSTRACT) && !modifiers.contains(Modifier.STATIC)) {
+                    signatures.add(new EventMethod(method).getSignature());
+                }
+            }
+
+            final TypeMirror superClass = element.getSuperclass();
+
+            if (superClass.getKind() != TypeKind.DECLARED || superClass.toString().equals(stateEngineClassName)) {
+                return signatures;
+            }
+            element = (TypeElement) ((DeclaredType) superClass).asElement();
+        }
+    }
+
+    /**
+     * Create a constant for the id of each state class that can be used for state transitions
+     * with {@link StateEngine#transitTo(int)}. The name of a constant is derived from the simple
+     * name of the state class and its enclosing classes. No constant is created for a name that
+     * is not unique.
+     * @param classBuilder A {@link TypeSpec.Builder} for adding the created fields.
+     */
+    private void buildStateIdFields(final TypeSpec.Builder classBuilder) {
+        final LinkedHashMap<String, Integer> stateIds = new LinkedHashMap<>();
+        final HashSet<String> duplicateNames = new HashSet<>();
+        int stateId = StateHierarchy.ROOT_ID;
+
+        for (final TypeElement stateClass : stateClasses.values()) {
+            final String fieldName = getStateIdFieldName(stateClass);
+
+            if (stateIds.put(fieldName, ++stateId) != null) {
+                duplicateNames.add(fieldName);
+            }
+        }
+
+        for (final String fieldName : stateIds.keySet()) {
+            if (!duplicateNames.contains(fieldName)) {
+                final FieldSpec.Builder fieldBuilder = FieldSpec.builder(TypeName.INT, fieldName, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL);
+                fieldBuilder.initializer("$L", stateIds.get(fieldName));
+                classBuilder.addField(fieldBuilder.build());
+            }
+        }
+    }
+
+    private static String getStateIdFieldName(final TypeElement stateClass) {
+        final StringBuilder name = new StringBuilder();
+        Element element = stateClass;
+
+        while (element instanceof TypeElement) {
+            final String simpleName = element.getSimpleName().toString();
+            final StringBuilder words = new StringBuilder();
+
+            for (int i = 0; i < simpleName.length(); i++) {
+                final char character = simpleName.charAt(i);
+
+                if (i > 0 && Character.isUpperCase(character) && !Character.isUpperCase(simpleName.charAt(i - 1))) {
+                    words.append('_');
+                }
+                words.append(Character.toUpperCase(character));
+            }
+            name.insert(0, (name.length() > 0) ? words + "_" : words);
+            element = element.getEnclosingElement();
+        }
+        return FIELD_PREFIX_STATE_ID + name;
+    }
+
+    /**
+     * Create a method that overrides {@link StateEngine#createState(int)} to instantiate
+     * the states by their ids without reflection. A state class that cannot be instantiated from
+     * the generated class is left to be instantiated using reflection.
+     * @param elementUtils An {@link Elements} providing element utilities.
+     * @param packageName The package of the generated class.
+     * @param classBuilder A {@link TypeSpec.Builder} for adding the created method.
+     */
+    private void buildCreateStateMethod(final Elements elementUtils, final String packageName, final TypeSpec.Builder classBuilder) {
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("createState");
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addModifiers(Modifier.PROTECTED);
+        methodBuilder.returns(TypeVariableName.get(STATE_ENGINE_CLASS_NAME));
+        methodBuilder.addParameter(TypeName.INT, "stateId", Modifier.FINAL);
+        methodBuilder.beginControlFlow("switch (stateId)");
+
+        int stateId = StateHierarchy.ROOT_ID;
+
+        for (final TypeElement stateClass : stateClasses.values()) {
+            ++stateId;
+
+            if (isInstantiable(elementUtils, packageName, stateClass)) {
+                methodBuilder.addCode("case $L:\n$>", stateId);
+                methodBuilder.addStatement("return new $L()", stateClass.getQualifiedName());
+                methodBuilder.addCode("$<");
+            }
+        }
+
+        methodBuilder.addCode("default:\n$>");
+        methodBuilder.addStatement("return null");
+        methodBuilder.addCode("$<");
+        methodBuilder.endControlFlow();
         classBuilder.addMethod(methodBuilder.build());
     }
 
+    /**
+     * Tests if the given state class has a no-arg constructor that is accessible from the given
+     * package.
+     * @param elementUtils An {@link Elements} providing element utilities.
+     * @param packageName The name of the package.
+     * @param stateClass A {@link TypeElement} representing the state class.
+     * @return A {@code boolean} value.
+     */
+    private static boolean isInstantiable(final Elements elementUtils, final String packageName, final TypeElement stateClass) {
+        final boolean samePackage = elementUtils.getPackageOf(stateClass).getQualifiedName().contentEquals(packageName);
+        Element element = stateClass;
+
+        while (element instanceof TypeElement) {
+            if (!isAccessible(element, samePackage)) {
+                return false;
+            } else if (element.getEnclosingElement() instanceof TypeElement && !element.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+
+        for (final ExecutableElement constructor : ElementFilter.constructorsIn(stateClass.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return isAccessible(constructor, samePackage);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAccessible(final Element element, final boolean samePackage) {
+        final Set<Modifier> modifiers = element.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC) || (samePackage && !modifiers.contains(Modifier.PRIVATE));
+    }
+
     private void buildCreateMethod(final TypeSpec.Builder classBuilder) {
         final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("create");
         methodBuilder.addModifiers(Modifier.PUBLIC, Modifier.STATIC);
@@ -142,7 +450,7 @@ public class StateEngineClass {
         classBuilder.addMethod(methodBuilder.build());
     }
 
-    private void buildEventDispatcherMethod(final TypeSpec.Builder classBuilder, final EventMethod eventMethod) {
+    private void buildEventDispatcherMethod(final TypeSpec.Builder classBuilder, final EventMethod eventMethod, final int eventId) {
         final List<? extends VariableElement> parameters = eventMethod.getParameters();
         final String methodName = eventMethod.getMethodName();
         final String invocation = createInvocation(parameters, methodName);
@@ -156,8 +464,12 @@ public class StateEngineClass {
         }
 
         methodBuilder.beginControlFlow("if (isStateEngine())");
-        methodBuilder.addStatement(String.format("currentState.%s", invocation));
-        methodBuilder.nextControlFlow("else if (superState != getStateEngine())");
+        methodBuilder.beginControlFlow("if (isEventPosted())");
+        methodBuilder.addStatement(String.format("postEvent(%d, %s)", eventId, createArguments(parameters)));
+        methodBuilder.nextControlFlow("else");
+        addHandlerInvocation(methodBuilder, eventId, invocation);
+        methodBuilder.endControlFlow();
+        methodBuilder.nextControlFlow("else if (superState != null && superState != getStateEngine())");
         methodBuilder.addStatement(String.format("superState.%s", invocation));
         methodBuilder.nextControlFlow("else");
         methodBuilder.addStatement(String.format("onError(this, StateEngine.Error.ERROR_UNHANDLED_EVENT, \"%s\")", methodName));
@@ -165,6 +477,111 @@ public class StateEngineClass {
         classBuilder.addMethod(methodBuilder.build());
     }
 
+    /**
+     * Creates a nested class {@code Async} that implements the event interfaces by posting
+     * the events with their ids to a {@link StateMachineExecutor}.
+     * @param classBuilder A {@link TypeSpec.Builder} for adding the created class.
+     * @param eventIds The ids of the event methods indexed by their signatures.
+     */
+    private void buildAsyncClass(final TypeSpec.Builder classBuilder, final HashMap<String, Integer> eventIds) {
+        final TypeSpec.Builder asyncBuilder = TypeSpec.classBuilder(ASYNC_CLASS_NAME);
+        asyncBuilder.addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL);
+        asyncBuilder.superclass(CLASS_ASYNC_EVENTS);
+
+        for (final TypeElement eventInterface : eventInterfaces.values()) {
+            asyncBuilder.addSuperinterface(TypeName.get(eventInterface.asType()));
+        }
+
+        buildAsyncConstructor(asyncBuilder, ClassName.get(StateMachineExecutor.class), "executor");
+        buildAsyncConstructor(asyncBuilder, ClassName.get(StateMachineExecutor.Batch.class), "batch");
+
+        for (final String signature : new TreeSet<>(eventMethods.keySet())) {
+            final EventMethod eventMethod = eventMethods.get(signature);
+            final List<? extends VariableElement> parameters = eventMethod.getParameters();
+            final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(eventMethod.getMethodName());
+            methodBuilder.addAnnotation(Override.class);
+            methodBuilder.addModifiers(Modifier.PUBLIC);
+
+            for (final VariableElement parameter : parameters) {
+                final TypeName typeName = TypeName.get(parameter.asType());
+                final ParameterSpec.Builder parameterBuilder = ParameterSpec.builder(typeName, parameter.getSimpleName().toString(), Modifier.FINAL);
+                methodBuilder.addParameter(parameterBuilder.build());
+            }
+
+            methodBuilder.addStatement(String.format("post(%d, %s)", eventIds.get(signature), createArguments(parameters)));
+            asyncBuilder.addMethod(methodBuilder.build());
+        }
+        classBuilder.addType(asyncBuilder.build());
+    }
+
+    private void buildAsyncConstructor(final TypeSpec.Builder asyncBuilder, final TypeName targetType, final String targetName) {
+        final MethodSpec.Builder methodBuilder = MethodSpec.constructorBuilder();
+        methodBuilder.addModifiers(Modifier.PUBLIC);
+        methodBuilder.addParameter(ParameterSpec.builder(targetType, targetName, Modifier.FINAL).build());
+        methodBuilder.addParameter(ParameterSpec.builder(ClassName.get(StateMachine.class), "stateMachine", Modifier.FINAL).build());
+        methodBuilder.addStatement(String.format("super(%s, stateMachine)", targetName));
+        asyncBuilder.addMethod(methodBuilder.build());
+    }
+
+    /**
+     * Create a method that overrides {@link StateEngine#dispatchEvent(int, Object[])} to invoke
+     * the event methods by their ids.
+     * @param classBuilder A {@link TypeSpec.Builder} for adding the created method.
+     * @param eventIds The ids of the event methods indexed by their signatures.
+     */
+    private void buildDispatchEventMethod(final TypeSpec.Builder classBuilder, final HashMap<String, Integer> eventIds) {
+        final AnnotationSpec.Builder annotationBuilder = AnnotationSpec.builder(SuppressWarnings.class);
+        annotationBuilder.addMember("value", "\"unchecked\"");
+
+        final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("dispatchEvent");
+        methodBuilder.addAnnotation(Override.class);
+        methodBuilder.addAnnotation(annotationBuilder.build());
+        methodBuilder.addModifiers(Modifier.PROTECTED);
+        methodBuilder.addParameter(TypeName.INT, "eventId", Modifier.FINAL);
+        methodBuilder.addParameter(Object[].class, "args", Modifier.FINAL);
+        methodBuilder.beginControlFlow("switch (eventId)");
+
+        for (final String signature : new TreeSet<>(eventMethods.keySet())) {
+            final EventMethod eventMethod = eventMethods.get(signature);
+            final int eventId = eventIds.get(signature);
+            final StringBuilder invocation = new StringBuilder(eventMethod.getMethodName()).append('(');
+            int index = 0;
+
+            for (final VariableElement parameter : eventMethod.getParameters()) {
+                final TypeName typeName = TypeName.get(parameter.asType()).box();
+                invocation.append((index > 0) ? ", " : "").append(String.format("(%s) args[%d]", typeName, index++));
+            }
+            invocation.append(')');
+
+            methodBuilder.beginControlFlow("case $L:", eventId);
+            addHandlerInvocation(methodBuilder, eventId, invocation.toString());
+            methodBuilder.addStatement("break");
+            methodBuilder.endControlFlow();
+        }
+
+        methodBuilder.addCode("default:\n$>");
+        methodBuilder.addStatement("super.dispatchEvent(eventId, args)");
+        methodBuilder.addCode("$<");
+        methodBuilder.endControlFlow();
+        classBuilder.addMethod(methodBuilder.build());
+    }
+
+    /**
+     * Adds statements for invoking an event method of the state that handles the event. If
+     * the handling state is not known, the event method of the current state is invoked.
+     * @param methodBuilder A {@link MethodSpec.Builder} for adding the statements.
+     * @param eventId The id of the event.
+     * @param invocation The invocation of the event method as a {@link String}.
+     */
+    private void addHandlerInvocation(final MethodSpec.Builder methodBuilder, final int eventId, final String invocation) {
+        methodBuilder.addStatement(String.format("final %s handler = getEventHandler(%d)", STATE_ENGINE_CLASS_NAME, eventId));
+        methodBuilder.beginControlFlow("if (handler != null)");
+        methodBuilder.addStatement(String.format("handler.%s", invocation));
+        methodBuilder.nextControlFlow("else");
+        methodBuilder.addStatement(String.format("currentState.%s", invocation));
+        methodBuilder.endControlFlow();
+    }
+
     /**
      * Create a setter method and a instance field for the context reference.
      * @param classBuilder A {@link TypeSpec.Builder} for adding the created method and field.
@@ -221,6 +638,27 @@ public class StateEngineClass {
         classBuilder.addMethod(methodBuilder.build());
     }
 
+    private String createArguments(final List<? extends VariableElement> parameters) {
+        if (parameters.isEmpty()) {
+            return "null";
+        }
+
+        final StringBuilder builder = new StringBuilder("new Object[] {");
+        boolean firstParameter = true;
+
+        for (final VariableElement parameter : parameters) {
+            if (firstParameter) {
+                firstParameter = false;
+            } else {
+                builder.append(", ");
+            }
+            builder.append(parameter.getSimpleName().toString());
+        }
+
+        builder.append("}");
+        return builder.toString();
+    }
+
     private String createInvocation(final List<? extends VariableElement> parameters, final String methodName) {
         final StringBuilder builder = new StringBuilder(methodName);
         builder.append("(");
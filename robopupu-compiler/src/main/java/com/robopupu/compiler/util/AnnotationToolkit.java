@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2001 - 2015 Marko Salmela, http://fuusio.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.robopupu.compiler.util;
+
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+
+/**
+ * {@link AnnotationToolkit} provides a set of convenience methods for reading the values of
+ * annotations represented by {@link AnnotationMirror}s.
+ */
+public class AnnotationToolkit {
+
+    public static final String VALUE = "value";
+
+    /**
+     * Gets the explicitly given value of the specified annotation element.
+     *
+     * @param annotationMirror An {@link AnnotationMirror}. May be {@code null}.
+     * @param elementName The name of the annotation element.
+     * @return The {@link AnnotationValue} or {@code null} if the value is not explicitly given.
+     */
+    public static AnnotationValue getValue(final AnnotationMirror annotationMirror, final String elementName) {
+        if (annotationMirror != null) {
+            for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotationMirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals(elementName)) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}